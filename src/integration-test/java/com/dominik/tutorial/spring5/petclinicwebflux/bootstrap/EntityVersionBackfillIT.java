@@ -0,0 +1,96 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@DisplayName("IT: Entity Version Backfill")
+@DataMongoTest
+@Import({EntityVersionBackfill.class, Migrations.class})
+class EntityVersionBackfillIT {
+
+    private final EntityVersionBackfill backfill;
+    private final OwnerRepository ownerRepository;
+    private final PetRepository petRepository;
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    public EntityVersionBackfillIT(EntityVersionBackfill backfill, OwnerRepository ownerRepository,
+                                   PetRepository petRepository, ReactiveMongoOperations mongoOperations) {
+        this.backfill = backfill;
+        this.ownerRepository = ownerRepository;
+        this.petRepository = petRepository;
+        this.mongoOperations = mongoOperations;
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.ownerRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+        this.mongoOperations.dropCollection(Migrations.COLLECTION).block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.ownerRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+        this.mongoOperations.dropCollection(Migrations.COLLECTION).block();
+    }
+
+    @DisplayName("should add the initial version to entities stored without one, so they can be saved again")
+    @Test
+    void testRunAddsMissingVersions() throws Exception {
+        // given
+        TestDataFactory testDataFactory = new TestDataFactory(1, 1);
+        Owner owner = testDataFactory.getOwner();
+        Pet pet = testDataFactory.getPet();
+        this.ownerRepository.save(owner).block();
+        this.petRepository.save(pet).block();
+        Update withoutVersion = new Update().unset("version");
+        this.mongoOperations.updateFirst(new Query(where("_id").is(owner.getId())), withoutVersion, Owner.class).block();
+        this.mongoOperations.updateFirst(new Query(where("_id").is(pet.getId())), withoutVersion, Pet.class).block();
+        assertThat(this.ownerRepository.findById(owner.getId()).block().getVersion()).isNull();
+
+        // when
+        this.backfill.run();
+
+        // then
+        Owner storedOwner = this.ownerRepository.findById(owner.getId()).block();
+        assertThat(storedOwner.getVersion()).isEqualTo(0L);
+        assertThat(this.petRepository.findById(pet.getId()).block().getVersion()).isEqualTo(0L);
+        storedOwner.setCity("Another city");
+        assertThat(this.ownerRepository.save(storedOwner).block().getVersion()).isEqualTo(1L);
+    }
+
+    @DisplayName("should not look for entities without version once the backfill ran")
+    @Test
+    void testRunOnlyOnce() throws Exception {
+        // given
+        Owner owner = new TestDataFactory(1).getOwner();
+        this.backfill.run();
+        this.ownerRepository.save(owner).block();
+        this.mongoOperations.updateFirst(new Query(where("_id").is(owner.getId())), new Update().unset("version"),
+                Owner.class).block();
+
+        // when
+        this.backfill.run();
+
+        // then
+        assertThat(this.ownerRepository.findById(owner.getId()).block().getVersion()).isNull();
+    }
+}
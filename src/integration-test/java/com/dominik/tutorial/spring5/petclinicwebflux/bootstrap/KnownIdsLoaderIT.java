@@ -0,0 +1,84 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.IdFilter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("IT: Known IDs Loader")
+@DataMongoTest
+class KnownIdsLoaderIT {
+
+    private final OwnerRepository ownerRepository;
+    private final PetRepository petRepository;
+
+    @Autowired
+    public KnownIdsLoaderIT(OwnerRepository ownerRepository, PetRepository petRepository) {
+        this.ownerRepository = ownerRepository;
+        this.petRepository = petRepository;
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.ownerRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.ownerRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+    }
+
+    @DisplayName("should load the IDs of all stored owners and pets")
+    @Test
+    void testRunLoadsStoredIds() throws Exception {
+        // given
+        TestDataFactory testDataFactory = new TestDataFactory(2, 3);
+        this.ownerRepository.saveAll(testDataFactory.getOwners()).blockLast();
+        this.petRepository.saveAll(testDataFactory.getPets()).blockLast();
+        KnownIds knownIds = new KnownIds(new IdFilter(100, 0.01), new IdFilter(100, 0.01));
+        PetclinicProperties properties = new PetclinicProperties();
+        properties.getKnownIds().setEnabled(true);
+
+        // when
+        new KnownIdsLoader(this.ownerRepository, this.petRepository, knownIds, properties).run();
+
+        // then
+        assertThat(knownIds.owners().isLoaded()).isTrue();
+        assertThat(knownIds.pets().isLoaded()).isTrue();
+        assertThat(testDataFactory.getOwners()).extracting(Owner::getId).allMatch(knownIds.owners()::mightContain);
+        assertThat(testDataFactory.getPets()).extracting(Pet::getId).allMatch(knownIds.pets()::mightContain);
+        assertThat(knownIds.owners().mightContain(UUID.randomUUID())).isFalse();
+    }
+
+    @DisplayName("should not scan the stored IDs while the filters are disabled")
+    @Test
+    void testRunSkippedWhenDisabled() throws Exception {
+        // given
+        TestDataFactory testDataFactory = new TestDataFactory(2, 3);
+        this.ownerRepository.saveAll(testDataFactory.getOwners()).blockLast();
+        KnownIds knownIds = new KnownIds(new IdFilter(100, 0.01), new IdFilter(100, 0.01));
+
+        // when
+        new KnownIdsLoader(this.ownerRepository, this.petRepository, knownIds, new PetclinicProperties()).run();
+
+        // then
+        assertThat(knownIds.owners().isLoaded()).isFalse();
+        assertThat(knownIds.owners().mightContain(UUID.randomUUID())).isTrue();
+    }
+}
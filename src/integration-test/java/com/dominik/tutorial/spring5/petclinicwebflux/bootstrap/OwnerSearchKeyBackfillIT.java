@@ -0,0 +1,88 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.search.PhoneticKeys;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+@DisplayName("IT: Owner Search Key Backfill")
+@DataMongoTest
+@Import({OwnerSearchKeyBackfill.class, Migrations.class})
+class OwnerSearchKeyBackfillIT {
+
+    private final OwnerSearchKeyBackfill backfill;
+    private final OwnerRepository ownerRepository;
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    public OwnerSearchKeyBackfillIT(OwnerSearchKeyBackfill backfill, OwnerRepository ownerRepository,
+                                    ReactiveMongoOperations mongoOperations) {
+        this.backfill = backfill;
+        this.ownerRepository = ownerRepository;
+        this.mongoOperations = mongoOperations;
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.ownerRepository.deleteAll().block();
+        this.mongoOperations.dropCollection(Migrations.COLLECTION).block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.ownerRepository.deleteAll().block();
+        this.mongoOperations.dropCollection(Migrations.COLLECTION).block();
+    }
+
+    @DisplayName("should add search keys to owners stored without them")
+    @Test
+    void testRunAddsMissingSearchKeys() throws Exception {
+        // given
+        Owner owner = new TestDataFactory(1).getOwner();
+        this.ownerRepository.save(owner).block();
+        this.mongoOperations.updateFirst(new Query(where("_id").is(owner.getId())),
+                new Update().unset("lastNameKey").unset("lastNameTokens").unset("lastNamePhoneticKeys"), Owner.class).block();
+        String fragment = owner.getLastName().substring(2, 7);
+        assertThat(this.ownerRepository.searchByLastName(fragment).hasElements().block()).isFalse();
+
+        // when
+        this.backfill.run();
+
+        // then
+        Owner result = this.ownerRepository.searchByLastName(fragment).blockFirst();
+        assertThat(result).isNotNull();
+        assertThat(result.getId()).isEqualTo(owner.getId());
+        assertThat(result.getLastNameKey()).isEqualTo(owner.getLastName().toLowerCase());
+        assertThat(result.getLastNamePhoneticKeys()).isEqualTo(PhoneticKeys.keys(owner.getLastName()));
+    }
+
+    @DisplayName("should not look for owners without search keys once the backfill ran")
+    @Test
+    void testRunOnlyOnce() throws Exception {
+        // given
+        Owner owner = new TestDataFactory(1).getOwner();
+        this.backfill.run();
+        this.ownerRepository.save(owner).block();
+        this.mongoOperations.updateFirst(new Query(where("_id").is(owner.getId())),
+                new Update().unset("lastNameTokens"), Owner.class).block();
+
+        // when
+        this.backfill.run();
+
+        // then
+        assertThat(this.ownerRepository.findById(owner.getId()).block().getLastNameTokens()).isNullOrEmpty();
+    }
+}
@@ -0,0 +1,110 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.MongoConfig;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.UuidRepresentation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("IT: UUID Representation Migration")
+@DataMongoTest
+@Import({UuidRepresentationMigration.class, MongoConfig.class})
+class UuidRepresentationMigrationIT {
+
+    private final UuidRepresentationMigration migration;
+    private final OwnerRepository ownerRepository;
+    private final PetRepository petRepository;
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    public UuidRepresentationMigrationIT(UuidRepresentationMigration migration, OwnerRepository ownerRepository,
+                                         PetRepository petRepository, ReactiveMongoOperations mongoOperations) {
+        this.migration = migration;
+        this.ownerRepository = ownerRepository;
+        this.petRepository = petRepository;
+        this.mongoOperations = mongoOperations;
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.ownerRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.ownerRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+    }
+
+    @DisplayName("should convert IDs and references stored in the legacy representation")
+    @Test
+    void testRunConvertsLegacyUuids() throws Exception {
+        // given
+        UUID ownerId = UUID.randomUUID();
+        UUID petId = UUID.randomUUID();
+        this.insert(Owner.class, new BsonDocument("_id", legacy(ownerId))
+                .append("lastName", new BsonString("Legacy"))
+                .append("version", new BsonInt64(0)));
+        this.insert(Pet.class, new BsonDocument("_id", legacy(petId))
+                .append("name", new BsonString("Legacy"))
+                .append("ownerId", legacy(ownerId))
+                .append("version", new BsonInt64(0)));
+        assertThat(this.ownerRepository.findById(ownerId).block()).isNull();
+
+        // when
+        this.migration.run();
+
+        // then
+        assertThat(this.ownerRepository.findById(ownerId).block().getLastName()).isEqualTo("Legacy");
+        Pet pet = this.petRepository.findById(petId).block();
+        assertThat(pet.getOwnerId()).isEqualTo(ownerId);
+        assertThat(this.ownerRepository.count().block()).isEqualTo(1L);
+        assertThat(this.petRepository.count().block()).isEqualTo(1L);
+    }
+
+    @DisplayName("should leave documents in the standard representation as they are")
+    @Test
+    void testRunKeepsStandardUuids() throws Exception {
+        // given
+        Owner owner = Owner.builder().id(UUID.randomUUID()).lastName("Standard").build();
+        this.ownerRepository.save(owner).block();
+
+        // when
+        this.migration.run();
+        this.migration.run();
+
+        // then
+        assertThat(this.ownerRepository.findById(owner.getId()).block().getLastName()).isEqualTo("Standard");
+        assertThat(this.ownerRepository.count().block()).isEqualTo(1L);
+    }
+
+    private void insert(Class<?> type, BsonDocument document) {
+        Mono.from(this.mongoOperations.getCollection(this.mongoOperations.getCollectionName(type))
+                .withDocumentClass(BsonDocument.class)
+                .insertOne(document))
+                .block();
+    }
+
+    private static BsonBinary legacy(UUID uuid) {
+        return new BsonBinary(uuid, UuidRepresentation.JAVA_LEGACY);
+    }
+}
@@ -1,6 +1,8 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.TimeOrderedIdGenerator;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Vet;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.EntityIdCallback;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VetRepository;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.VetService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.mongo.VetServiceMongo;
@@ -16,7 +18,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @DisplayName("IT: Vet Data Loader")
 @DataMongoTest
-@Import({VetServiceMongo.class, VetDataLoader.class})
+@Import({VetServiceMongo.class, VetDataLoader.class, EntityIdCallback.class, TimeOrderedIdGenerator.class})
 class VetDataLoaderIT {
 
     private final VetService vetService;
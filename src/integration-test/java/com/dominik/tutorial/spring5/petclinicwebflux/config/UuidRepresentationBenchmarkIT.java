@@ -0,0 +1,133 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.config;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.IdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.TimeOrderedIdGenerator;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.BsonBinary;
+import org.bson.BsonDateTime;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.UuidRepresentation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+Compares visits referencing their pets by time ordered IDs in the legacy and in the standard representation:
+the size of the petId index and the latency of looking up the visits of a pet. The numbers are printed only,
+they depend too much on the machine to be asserted.
+ */
+@DisplayName("Benchmark: UUID Representations")
+@DataMongoTest
+class UuidRepresentationBenchmarkIT {
+
+    private static final String COLLECTION_LEGACY = "uuidBenchmarkLegacy";
+    private static final String COLLECTION_STANDARD = "uuidBenchmarkStandard";
+    private static final String FIELD_PET_ID = "petId";
+    private static final int PETS = 20_000;
+    private static final int VISITS_PER_PET = 5;
+    private static final int BATCH_SIZE = 1_000;
+    private static final int LOOKUPS = 2_000;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    UuidRepresentationBenchmarkIT(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.dropCollections();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.dropCollections();
+    }
+
+    @DisplayName("should compare the petId index and lookups in the legacy and in the standard representation")
+    @Test
+    void benchmarkLookupByPetId() {
+        // given
+        IdGenerator idGenerator = new TimeOrderedIdGenerator();
+        List<UUID> petIds = IntStream.range(0, PETS)
+                .mapToObj(i -> idGenerator.generate())
+                .collect(Collectors.toList());
+        this.insert(COLLECTION_LEGACY, UuidRepresentation.JAVA_LEGACY, idGenerator, petIds);
+        this.insert(COLLECTION_STANDARD, UuidRepresentation.STANDARD, idGenerator, petIds);
+        this.lookUp(COLLECTION_LEGACY, UuidRepresentation.JAVA_LEGACY, petIds);
+        this.lookUp(COLLECTION_STANDARD, UuidRepresentation.STANDARD, petIds);
+
+        // when
+        long legacyNanos = this.lookUp(COLLECTION_LEGACY, UuidRepresentation.JAVA_LEGACY, petIds);
+        long standardNanos = this.lookUp(COLLECTION_STANDARD, UuidRepresentation.STANDARD, petIds);
+
+        // then
+        System.out.printf("Legacy UUIDs: %d us per lookup, petId index %d bytes%n",
+                legacyNanos / LOOKUPS / 1_000, this.indexSize(COLLECTION_LEGACY));
+        System.out.printf("Standard UUIDs: %d us per lookup, petId index %d bytes%n",
+                standardNanos / LOOKUPS / 1_000, this.indexSize(COLLECTION_STANDARD));
+        long expectedCount = (long) PETS * VISITS_PER_PET;
+        assertThat(this.mongoOperations.count(new Query(), COLLECTION_LEGACY).block()).isEqualTo(expectedCount);
+        assertThat(this.mongoOperations.count(new Query(), COLLECTION_STANDARD).block()).isEqualTo(expectedCount);
+    }
+
+    /* Visits are written as they happen, so the visits of a pet are spread over the whole collection */
+    private void insert(String collectionName, UuidRepresentation representation, IdGenerator idGenerator,
+                        List<UUID> petIds) {
+        MongoCollection<BsonDocument> collection = this.collection(collectionName);
+        Mono.from(collection.createIndex(Indexes.ascending(FIELD_PET_ID))).block();
+        Flux.range(0, VISITS_PER_PET)
+                .flatMapIterable(visit -> petIds)
+                .map(petId -> new BsonDocument("_id", new BsonBinary(idGenerator.generate(), representation))
+                        .append("date", new BsonDateTime(System.currentTimeMillis()))
+                        .append("description", new BsonString("Visit"))
+                        .append(FIELD_PET_ID, new BsonBinary(petId, representation)))
+                .buffer(BATCH_SIZE)
+                .concatMap(collection::insertMany)
+                .blockLast();
+    }
+
+    private long lookUp(String collectionName, UuidRepresentation representation, List<UUID> petIds) {
+        MongoCollection<BsonDocument> collection = this.collection(collectionName);
+        long start = System.nanoTime();
+        Flux.range(0, LOOKUPS)
+                .map(i -> petIds.get(i * (PETS / LOOKUPS)))
+                .concatMap(petId -> Flux.from(collection.find(
+                        Filters.eq(FIELD_PET_ID, new BsonBinary(petId, representation)))).count())
+                .blockLast();
+        return System.nanoTime() - start;
+    }
+
+    private long indexSize(String collection) {
+        Document stats = this.mongoOperations.executeCommand(new Document("collStats", collection)).block();
+        return ((Number) stats.get("indexSizes", Document.class).get(FIELD_PET_ID + "_1")).longValue();
+    }
+
+    private MongoCollection<BsonDocument> collection(String collectionName) {
+        return this.mongoOperations.getCollection(collectionName).withDocumentClass(BsonDocument.class);
+    }
+
+    private void dropCollections() {
+        this.mongoOperations.dropCollection(COLLECTION_LEGACY).block();
+        this.mongoOperations.dropCollection(COLLECTION_STANDARD).block();
+    }
+}
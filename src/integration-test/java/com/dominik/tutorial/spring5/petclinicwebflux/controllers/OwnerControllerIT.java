@@ -20,11 +20,13 @@ import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWeb
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.reactive.function.BodyInserters;
 
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
@@ -84,7 +86,7 @@ public class OwnerControllerIT {
         // when
         this.ownerService.save(owner).block();
         this.petService.save(owner.getId(), pet).block();
-        this.visitService.createVisit(pet.getId(), visit).block();
+        this.visitService.createVisit(pet.getOwnerId(), pet.getId(), visit).block();
         owner.setTelephone("New Phone");
         owner.setCity("New City");
         owner.setAddress("New Address");
@@ -104,7 +106,39 @@ public class OwnerControllerIT {
         List<Visit> petVisitList = savedOwnerPetList.get(0).getVisits();
         assertEquals(1, petVisitList.size());
         assertThat(visit).isEqualToIgnoringGivenFields(petVisitList.get(0), "petId");
-        assertThat(owner).isEqualToIgnoringGivenFields(savedOwner, "pets");
+        assertThat(owner).isEqualToIgnoringGivenFields(savedOwner, "pets", "lastNameKey", "lastNameTokens", "lastNamePhoneticKeys", "graphVersion", "version");
+    }
+
+    @DisplayName("should send the second of two edits based on the same version back to the edit form")
+    @Test
+    void testEditOwnerConflict() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        this.ownerService.save(owner).block();
+        String editUrl = "/owners/" + owner.getId().toString() + "/edit";
+        owner.setCity("First City");
+        MultiValueMap<String, String> firstEdit = FormDataMapper.ownerToFormDataMap(owner);
+        owner.setCity("Second City");
+        MultiValueMap<String, String> secondEdit = FormDataMapper.ownerToFormDataMap(owner);
+
+        // when
+        this.webTestClient.post()
+                .uri(editUrl)
+                .body(BodyInserters.fromFormData(firstEdit))
+                .exchange()
+                .expectStatus().is3xxRedirection()
+                .expectHeader().value("Location", endsWith("/owners/" + owner.getId().toString()));
+        this.webTestClient.post()
+                .uri(editUrl)
+                .body(BodyInserters.fromFormData(secondEdit))
+                .exchange()
+                .expectStatus().is3xxRedirection()
+                .expectHeader().value("Location", endsWith(editUrl + "?conflict=true"));
+
+        // then
+        Owner savedOwner = this.ownerService.getById(owner.getId()).block();
+        assertEquals("First City", savedOwner.getCity());
+        assertEquals(1L, savedOwner.getVersion());
     }
 
     @DisplayName("should create owner")
@@ -123,7 +157,7 @@ public class OwnerControllerIT {
         // then
         Owner savedOwner = this.ownerService.findAll().blockFirst();
         assertNotNull(savedOwner);
-        assertThat(owner).isEqualToIgnoringGivenFields(savedOwner, "id", "pets");
+        assertThat(owner).isEqualToIgnoringGivenFields(savedOwner, "id", "pets", "lastNameKey", "lastNameTokens", "lastNamePhoneticKeys", "graphVersion", "version");
     }
 
     @DisplayName("should show owner details")
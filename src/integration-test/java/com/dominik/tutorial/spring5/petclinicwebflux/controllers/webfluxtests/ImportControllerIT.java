@@ -0,0 +1,141 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers.webfluxtests;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.controllers.ImportController;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ImportSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ImportService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("IT: Import Controller")
+@WebFluxTest(controllers = ImportController.class)
+@ExtendWith(MockitoExtension.class)
+class ImportControllerIT extends ControllerTestParent {
+
+    private static final String URL_IMPORTS = "/imports";
+
+    @MockBean
+    private ImportService importService;
+    @MockBean
+    private OwnerService ownerService;
+    @Autowired
+    private WebTestClient webTestClient;
+    private List<String> importedLines;
+
+    /* Imports nothing, only records the decoded lines and counts them as owners */
+    @BeforeEach
+    void setUp() {
+        this.importedLines = new CopyOnWriteArrayList<>();
+        when(this.importService.importRecords(any(), any())).thenAnswer(invocation -> {
+            Flux<String> lines = invocation.getArgument(0);
+            ImportSummary summary = new ImportSummary(10);
+            return lines
+                    .doOnNext(this.importedLines::add)
+                    .count()
+                    .map(count -> {
+                        summary.ownersImported(count);
+                        return summary;
+                    });
+        });
+    }
+
+    @DisplayName("should import NDJSON line by line and return the summary")
+    @Test
+    void testImportNdjson() {
+        // when
+        this.webTestClient.post()
+                .uri(URL_IMPORTS)
+                .contentType(MediaType.parseMediaType(ImportFormat.NDJSON_VALUE))
+                .bodyValue("{\"type\":\"owner\",\"lastName\":\"Schmidt\"}\n{\"type\":\"owner\",\"lastName\":\"Schmitt\"}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.owners").isEqualTo(2)
+                .jsonPath("$.failed").isEqualTo(0);
+
+        // then
+        verify(this.importService, times(1)).importRecords(any(), eq(ImportFormat.NDJSON));
+        assertThat(this.importedLines).containsExactly(
+                "{\"type\":\"owner\",\"lastName\":\"Schmidt\"}",
+                "{\"type\":\"owner\",\"lastName\":\"Schmitt\"}");
+    }
+
+    @DisplayName("should import CSV when the content type has a charset")
+    @Test
+    void testImportCsvWithCharset() {
+        // when
+        this.webTestClient.post()
+                .uri(URL_IMPORTS)
+                .contentType(MediaType.parseMediaType(ImportFormat.CSV_VALUE + ";charset=UTF-8"))
+                .bodyValue("type,lastName\r\nowner,Müller\r\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.owners").isEqualTo(2);
+
+        // then
+        verify(this.importService, times(1)).importRecords(any(), eq(ImportFormat.CSV));
+        assertThat(this.importedLines).containsExactly("type,lastName", "owner,Müller");
+    }
+
+    @DisplayName("should join lines which are split across chunks of the body")
+    @Test
+    void testImportLinesSplitAcrossChunks() {
+        // given
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        Flux<DataBuffer> chunks = Flux.just("type,last", "Name\nowner,Sch", "midt\nowner,Schmitt")
+                .map(chunk -> bufferFactory.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+
+        // when
+        this.webTestClient.post()
+                .uri(URL_IMPORTS)
+                .contentType(MediaType.parseMediaType(ImportFormat.CSV_VALUE))
+                .body(BodyInserters.fromDataBuffers(chunks))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.owners").isEqualTo(3);
+
+        // then
+        assertThat(this.importedLines).containsExactly("type,lastName", "owner,Schmidt", "owner,Schmitt");
+    }
+
+    @DisplayName("should return 415 for a content type which is not importable")
+    @Test
+    void testImportUnsupportedContentType() {
+        // when
+        this.webTestClient.post()
+                .uri(URL_IMPORTS)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"type\":\"owner\"}]")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+
+        // then
+        verifyNoInteractions(this.importService);
+    }
+}
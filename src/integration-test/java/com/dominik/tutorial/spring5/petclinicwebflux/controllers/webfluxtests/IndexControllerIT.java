@@ -1,10 +1,12 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.controllers.webfluxtests;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.controllers.IndexController;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.FluxExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -17,6 +19,9 @@ class IndexControllerIT extends ControllerTestParent {
 
     private static final String EXPECTED_VIEW = "index";
 
+    /* Needed by the OwnerDetailsETagFilter, which is part of every WebFlux slice */
+    @MockBean
+    private OwnerService ownerService;
     @Autowired
     private WebTestClient webTestClient;
 
@@ -2,7 +2,11 @@ package com.dominik.tutorial.spring5.petclinicwebflux.controllers.webfluxtests;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.controllers.OwnerController;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphVersion;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummaryPage;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
 import com.dominik.tutorial.spring5.petclinicwebflux.testutils.FormDataMapper;
@@ -15,6 +19,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.FluxExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -23,9 +28,13 @@ import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 import static org.hamcrest.Matchers.endsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @DisplayName("IT: Owner Controller")
@@ -41,8 +50,10 @@ class OwnerControllerIT extends ControllerTestParent {
     private static final String ENDPOINT_FIND_OWNER_FORM = "/owners/find";
     private static final String ENDPOINT_ADD_OWNER_FORM = "/owners/new";
     private static final String ENDPOINT_FIND_OWNERS = "/owners";
+    private static final String ENDPOINT_AUTOCOMPLETE = "/owners/autocomplete?prefix=sch&limit=5";
     private static final String ENDPOINT_OWNER_DETAILS_VALID = "/owners/82ee7568-c925-43ae-ae96-a6d3f96e834e";
     private static final String ENDPOINT_OWNER_DETAILS_INVALID = "/owners/123";
+    private static final String ETAG_OWNER_DETAILS = "\"82ee7568-c925-43ae-ae96-a6d3f96e834e-2.3\"";
     private static final String ENDPOINT_UPDATE_OWNER_VALID = "/owners/82ee7568-c925-43ae-ae96-a6d3f96e834e/edit";
     private static final String ENDPOINT_UPDATE_OWNER_INVALID = "/owners/123/edit";
 
@@ -54,9 +65,12 @@ class OwnerControllerIT extends ControllerTestParent {
     private static final String EXPECTED_VIEW_400_ERROR = "400error";
 
     private static final String QUERY_PARAM_FIND_OWNERS = "lastName";
+    private static final String QUERY_PARAM_PAGE_TOKEN = "after";
 
     @MockBean
     private OwnerService ownerService;
+    @MockBean
+    private OwnerAutocompleteService autocompleteService;
     @Autowired
     private WebTestClient webTestClient;
     private TestDataFactory testDataFactory;
@@ -78,6 +92,24 @@ class OwnerControllerIT extends ControllerTestParent {
         this.verifyView(EXPECTED_VIEW_FIND_OWNER, result);
     }
 
+    @DisplayName("should return last name completions as JSON")
+    @Test
+    void testAutocompleteLastName() {
+        // given
+        when(this.autocompleteService.completeLastName("sch", 5)).thenReturn(Flux.just("Schmitt", "Schneider"));
+
+        // when / then
+        this.webTestClient.get()
+                .uri(ENDPOINT_AUTOCOMPLETE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0]").isEqualTo("Schmitt")
+                .jsonPath("$[1]").isEqualTo("Schneider");
+    }
+
     @DisplayName("should show add owner form")
     @Test
     void testShowAddOwnerForm() {
@@ -151,7 +183,10 @@ class OwnerControllerIT extends ControllerTestParent {
         for (Pet pet : owner.getPets()) {
             pet.setVisits(this.testDataFactory.getVisits());
         }
-        when(this.ownerService.getById(any())).thenReturn(Mono.just(owner));
+        owner.setVersion(2L);
+        owner.setGraphVersion(3L);
+        when(this.ownerService.findGraphVersion(any())).thenReturn(Mono.just(graphVersion(2L, 3L)));
+        when(this.ownerService.getById(any(), eq("2.3"))).thenReturn(Mono.just(owner));
 
         // when / then
         FluxExchangeResult result = this.webTestClient.get()
@@ -159,16 +194,37 @@ class OwnerControllerIT extends ControllerTestParent {
                 .exchange()
                 .expectStatus().isOk()
                 .expectHeader().contentType(MediaType.TEXT_HTML)
+                .expectHeader().valueEquals("ETag", ETAG_OWNER_DETAILS)
                 .returnResult(FluxExchangeResult.class);
-        verify(this.ownerService, times(1)).getById(any());
+        verify(this.ownerService, times(1)).findGraphVersion(any());
+        verify(this.ownerService, times(1)).getById(any(), eq("2.3"));
         this.verifyView(EXPECTED_VIEW_OWNER_DETAILS, result);
     }
 
+    @DisplayName("should answer 304 without rendering the owner details if the browser has the current version")
+    @Test
+    void testOwnerDetailsNotModified() {
+        // given
+        when(this.ownerService.findGraphVersion(any())).thenReturn(Mono.just(graphVersion(2L, 3L)));
+
+        // when / then
+        this.webTestClient.get()
+                .uri(ENDPOINT_OWNER_DETAILS_VALID)
+                .header("If-None-Match", ETAG_OWNER_DETAILS)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("ETag", ETAG_OWNER_DETAILS)
+                .expectBody().isEmpty();
+        verify(this.ownerService, times(1)).findGraphVersion(any());
+        verify(this.ownerService, never()).getById(any());
+        verify(this.ownerService, never()).getById(any(), any());
+    }
+
     @DisplayName("should return 404 when showing details for non-existing owner")
     @Test
     void testOwnerDetailsNotFound() {
         // given
-        when(this.ownerService.getById(any())).thenReturn(Mono.empty());
+        when(this.ownerService.findGraphVersion(any())).thenReturn(Mono.empty());
 
         // when / then
         FluxExchangeResult result = this.webTestClient.get()
@@ -176,7 +232,8 @@ class OwnerControllerIT extends ControllerTestParent {
                 .exchange()
                 .expectStatus().isNotFound()
                 .returnResult(FluxExchangeResult.class);
-        verify(this.ownerService, times(1)).getById(any());
+        verify(this.ownerService, times(1)).findGraphVersion(any());
+        verify(this.ownerService, never()).getById(any(), any());
         this.verifyView(EXPECTED_VIEW_400_ERROR, result);
     }
 
@@ -212,7 +269,7 @@ class OwnerControllerIT extends ControllerTestParent {
     @Test
     void testFindOwnersWithBlankQuery() {
         // given
-        when(this.ownerService.findAll()).thenReturn(Flux.empty());
+        when(this.ownerService.findSummaryPage(eq(""), isNull())).thenReturn(Mono.just(new OwnerSummaryPage(List.of(), null)));
 
         // when
         String url = UriComponentsBuilder.fromUriString(ENDPOINT_FIND_OWNERS)
@@ -226,7 +283,7 @@ class OwnerControllerIT extends ControllerTestParent {
                 .returnResult(FluxExchangeResult.class);
 
         // then
-        verify(this.ownerService, times(1)).findAll();
+        verify(this.ownerService, times(1)).findSummaryPage(eq(""), isNull());
         this.verifyView(EXPECTED_VIEW_OWNER_LIST, result);
     }
 
@@ -234,7 +291,7 @@ class OwnerControllerIT extends ControllerTestParent {
     @Test
     void testFindOwnersWithQuery() {
         // given
-        when(this.ownerService.findByLastNameFragment(anyString())).thenReturn(Flux.empty());
+        when(this.ownerService.findSummaryPage(anyString(), any())).thenReturn(Mono.just(new OwnerSummaryPage(List.of(), null)));
 
         // when
         String url = UriComponentsBuilder.fromUriString(ENDPOINT_FIND_OWNERS)
@@ -248,10 +305,59 @@ class OwnerControllerIT extends ControllerTestParent {
                 .returnResult(FluxExchangeResult.class);
 
         // then
-        verify(this.ownerService, times(1)).findByLastNameFragment(anyString());
+        verify(this.ownerService, times(1)).findSummaryPage(anyString(), any());
         this.verifyView(EXPECTED_VIEW_OWNER_LIST, result);
     }
 
+    @DisplayName("should list owners with the names of their pets")
+    @Test
+    void testFindOwnersShowsPetNames() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        owner.setPets(this.testDataFactory.getPets());
+        OwnerSummary ownerSummary = this.testDataFactory.getOwnerSummaries().get(0);
+        when(this.ownerService.findSummaryPage(anyString(), any()))
+                .thenReturn(Mono.just(new OwnerSummaryPage(List.of(ownerSummary), "next-token")));
+
+        // when
+        String url = UriComponentsBuilder.fromUriString(ENDPOINT_FIND_OWNERS)
+                .queryParam(QUERY_PARAM_FIND_OWNERS, owner.getLastName())
+                .toUriString();
+        FluxExchangeResult result = this.webTestClient.get()
+                .uri(url)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.TEXT_HTML)
+                .returnResult(FluxExchangeResult.class);
+
+        // then
+        String body = new String(result.getResponseBodyContent());
+        this.verifyView(EXPECTED_VIEW_OWNER_LIST, result);
+        for (Pet pet : this.testDataFactory.getPets()) {
+            assertTrue(body.contains(pet.getName()));
+        }
+        assertTrue(body.contains("after=next-token"));
+    }
+
+    @DisplayName("should show 400 error page for invalid page token")
+    @Test
+    void testFindOwnersWithInvalidPageToken() {
+        // when
+        String url = UriComponentsBuilder.fromUriString(ENDPOINT_FIND_OWNERS)
+                .queryParam(QUERY_PARAM_FIND_OWNERS, "anything")
+                .queryParam(QUERY_PARAM_PAGE_TOKEN, "not-a-token")
+                .toUriString();
+        FluxExchangeResult result = this.webTestClient.get()
+                .uri(url)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .returnResult(FluxExchangeResult.class);
+
+        // then
+        verifyNoInteractions(this.ownerService);
+        this.verifyView(EXPECTED_VIEW_400_ERROR, result);
+    }
+
     @DisplayName("should show update owner form")
     @Test
     void testShowUpdateOwnerFormValid() {
@@ -282,7 +388,6 @@ class OwnerControllerIT extends ControllerTestParent {
                 .uri(ENDPOINT_UPDATE_OWNER_INVALID)
                 .exchange()
                 .expectStatus().isBadRequest()
-                .expectHeader().contentType(MediaType.TEXT_HTML)
                 .returnResult(FluxExchangeResult.class);
 
         // then
@@ -314,6 +419,7 @@ class OwnerControllerIT extends ControllerTestParent {
     void testUpdateOwnerValid() {
         // given
         Owner owner = this.testDataFactory.getOwner();
+        owner.setVersion(2L);
         when(this.ownerService.save(any())).thenReturn(Mono.just(owner));
         ArgumentCaptor captor = ArgumentCaptor.forClass(Owner.class);
 
@@ -330,6 +436,40 @@ class OwnerControllerIT extends ControllerTestParent {
         verify(this.ownerService, times(1)).save((Owner) captor.capture());
         Owner capturedOwner = (Owner)captor.getValue();
         assertEquals(owner.getId().toString(), capturedOwner.getId().toString());
+        assertEquals(2L, capturedOwner.getVersion());
+    }
+
+    @DisplayName("should send an update owner based on an outdated version back to the edit form")
+    @Test
+    void testUpdateOwnerConflict() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        owner.setVersion(2L);
+        when(this.ownerService.save(any())).thenReturn(Mono.error(new OptimisticLockingFailureException("outdated")));
+
+        // when / then
+        this.webTestClient.post()
+                .uri("/owners/" + owner.getId().toString() + "/edit")
+                .body(BodyInserters.fromFormData(FormDataMapper.ownerToFormDataMap(owner)))
+                .exchange()
+                .expectStatus().is3xxRedirection()
+                .expectHeader().value("Location", endsWith("/owners/" + owner.getId().toString() + "/edit?conflict=true"));
+    }
+
+    @DisplayName("should send an update owner without version back to the edit form without saving")
+    @Test
+    void testUpdateOwnerWithoutVersion() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+
+        // when / then
+        this.webTestClient.post()
+                .uri("/owners/" + owner.getId().toString() + "/edit")
+                .body(BodyInserters.fromFormData(FormDataMapper.ownerToFormDataMap(owner)))
+                .exchange()
+                .expectStatus().is3xxRedirection()
+                .expectHeader().value("Location", endsWith("/owners/" + owner.getId().toString() + "/edit?conflict=true"));
+        verifyNoInteractions(this.ownerService);
     }
 
     @DisplayName("should reject input with missing field for update owner")
@@ -369,11 +509,24 @@ class OwnerControllerIT extends ControllerTestParent {
                 .body(BodyInserters.fromFormData(FormDataMapper.ownerToFormDataMap(owner)))
                 .exchange()
                 .expectStatus().isBadRequest()
-                .expectHeader().contentType(MediaType.TEXT_HTML)
                 .returnResult(FluxExchangeResult.class);
 
         // then
         verifyNoInteractions(this.ownerService);
         this.verifyView(EXPECTED_VIEW_400_ERROR, result);
     }
-}
\ No newline at end of file
+
+    private static OwnerGraphVersion graphVersion(Long version, Long graphVersion) {
+        return new OwnerGraphVersion() {
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+
+            @Override
+            public Long getGraphVersion() {
+                return graphVersion;
+            }
+        };
+    }
+}
@@ -3,8 +3,10 @@ package com.dominik.tutorial.spring5.petclinicwebflux.controllers.webfluxtests;
 import com.dominik.tutorial.spring5.petclinicwebflux.controllers.PetController;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ReferenceData;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ReferenceDataService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory.PetTypeServiceInMemory;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
 import com.dominik.tutorial.spring5.petclinicwebflux.testutils.FormDataMapper;
@@ -17,7 +19,6 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.FluxExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -25,6 +26,7 @@ import org.springframework.web.reactive.function.BodyInserters;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -37,7 +39,6 @@ import static org.mockito.Mockito.*;
 @DisplayName("IT: Pet Controller")
 @WebFluxTest(controllers = PetController.class)
 @ExtendWith(MockitoExtension.class)
-@Import(PetTypeServiceInMemory.class)
 class PetControllerIT extends ControllerTestParent {
 
     private static final int NUM_OWNERS = 1;
@@ -59,6 +60,8 @@ class PetControllerIT extends ControllerTestParent {
     private PetService petService;
     @MockBean
     private OwnerService ownerService;
+    @MockBean
+    private ReferenceDataService referenceDataService;
     @Autowired
     private WebTestClient webTestClient;
     private TestDataFactory testDataFactory;
@@ -66,6 +69,8 @@ class PetControllerIT extends ControllerTestParent {
     @BeforeEach
     void setUp() {
         this.testDataFactory = new TestDataFactory(NUM_OWNERS, NUM_PETS, NUM_VISITS, NUM_VETS);
+        when(this.referenceDataService.getSnapshot()).thenReturn(ReferenceData.empty().next(List.of(), List.of(
+                PetTypeServiceInMemory.PET_TYPE_CAT, PetTypeServiceInMemory.PET_TYPE_DOG)));
     }
 
     @DisplayName("should show new pet form")
@@ -126,8 +131,7 @@ class PetControllerIT extends ControllerTestParent {
         Owner owner = this.testDataFactory.getOwner();
         Pet pet = this.testDataFactory.getPet();
         UUID ownerId = owner.getId();
-        when(this.ownerService.getById(eq(ownerId))).thenReturn(Mono.just(owner));
-        when(this.ownerService.save(eq(owner))).thenReturn(Mono.just(owner));
+        when(this.ownerService.existsById(eq(ownerId))).thenReturn(Mono.just(true));
         when(this.petService.save(any(), any())).thenReturn(Mono.just(pet));
         ArgumentCaptor captor = ArgumentCaptor.forClass(Pet.class);
 
@@ -297,9 +301,9 @@ class PetControllerIT extends ControllerTestParent {
         String ownerId = "82ee7568-c925-43ae-ae96-a6d3f96e834e";
         Pet pet = this.testDataFactory.getPets().get(0);
         Pet petFormData = this.testDataFactory.getPets().get(1);
+        petFormData.setVersion(1L);
         ArgumentCaptor captor = ArgumentCaptor.forClass(Pet.class);
-        when(this.ownerService.getById(any())).thenReturn(Mono.just(this.testDataFactory.getOwner()));
-        when(this.petService.findByIdAndOwner(any(), any())).thenReturn(Mono.just(pet));
+        when(this.petService.existsByIdAndOwner(any(), any())).thenReturn(Mono.just(true));
         when(this.petService.save(any(), any())).thenReturn(Mono.just(pet));
 
         // when
@@ -312,6 +316,8 @@ class PetControllerIT extends ControllerTestParent {
 
         // then
         verify(this.petService, times(1)).save(any(), (Pet)captor.capture());
+        verify(this.petService, never()).findByIdAndOwner(any(), any());
+        verifyNoInteractions(this.ownerService);
         Pet capturedPet = (Pet)captor.getValue();
         assertThat(petFormData).isEqualToIgnoringGivenFields(capturedPet, "id", "visits");
         assertEquals(capturedPet.getId().toString(), pet.getId().toString());
@@ -324,7 +330,6 @@ class PetControllerIT extends ControllerTestParent {
         Pet pet = this.testDataFactory.getPet();
         pet.setName("  ");
         when(this.ownerService.getById(any())).thenReturn(Mono.just(this.testDataFactory.getOwner()));
-        when(this.petService.findByIdAndOwner(any(), any())).thenReturn(Mono.empty());
 
         // when
         FluxExchangeResult result = this.webTestClient.post()
@@ -367,8 +372,7 @@ class PetControllerIT extends ControllerTestParent {
                 .name("MyCat")
                 .id(UUID.randomUUID())
                 .build();
-        when(this.ownerService.getById(any())).thenReturn(Mono.just(new Owner()));
-        when(this.petService.findByIdAndOwner(any(), any())).thenReturn(Mono.empty());
+        when(this.petService.existsByIdAndOwner(any(), any())).thenReturn(Mono.just(false));
 
         // when
         FluxExchangeResult result = this.webTestClient.post()
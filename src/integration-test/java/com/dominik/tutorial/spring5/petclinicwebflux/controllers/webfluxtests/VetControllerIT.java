@@ -1,7 +1,9 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.controllers.webfluxtests;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.controllers.VetController;
-import com.dominik.tutorial.spring5.petclinicwebflux.services.VetService;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ReferenceData;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ReferenceDataService;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -13,7 +15,8 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.FluxExchangeResult;
 import org.springframework.test.web.reactive.server.WebTestClient;
-import reactor.core.publisher.Flux;
+
+import java.util.List;
 
 import static org.mockito.Mockito.when;
 
@@ -23,7 +26,10 @@ import static org.mockito.Mockito.when;
 class VetControllerIT extends ControllerTestParent {
 
     @MockBean
-    private VetService vetService;
+    private ReferenceDataService referenceDataService;
+    /* Needed by the OwnerDetailsETagFilter, which is part of every WebFlux slice */
+    @MockBean
+    private OwnerService ownerService;
     @Autowired
     private WebTestClient webTestClient;
 
@@ -31,7 +37,8 @@ class VetControllerIT extends ControllerTestParent {
     @Test
     void showAllVets() {
         // given
-        when(this.vetService.findAll()).thenReturn(Flux.fromIterable(TestDataFactory.vetsOnly(3).getVets()));
+        when(this.referenceDataService.getSnapshot())
+                .thenReturn(ReferenceData.empty().next(TestDataFactory.vetsOnly(3).getVets(), List.of()));
 
         // when
         FluxExchangeResult result = this.webTestClient.get()
@@ -76,6 +76,9 @@ class VisitControllerIT extends ControllerTestParent {
                 .expectHeader().contentType(MediaType.TEXT_HTML)
                 .returnResult(FluxExchangeResult.class);
         this.verifyView(EXPECTED_VIEW_SHOW_CREATE_VISIT_FORM, result);
+        verify(this.ownerService, times(1)).getById(any());
+        verify(this.petService, times(1)).findByIdAndOwner(any(), any());
+        verifyNoInteractions(this.visitService);
     }
 
     @DisplayName("should return 400 when showing create visit form for invalid owner uuid")
@@ -145,9 +148,8 @@ class VisitControllerIT extends ControllerTestParent {
         Owner owner = this.testDataFactory.getOwner();
         Visit visit = this.testDataFactory.getVisit();
         Pet pet = this.testDataFactory.getPet();
-        when(this.ownerService.getById(any())).thenReturn(Mono.just(owner));
-        when(this.petService.findByIdAndOwner(any(), any())).thenReturn(Mono.just(pet));
-        when(this.visitService.createVisit(any(), any())).thenReturn(Mono.just(visit));
+        when(this.petService.existsByIdAndOwner(pet.getId(), owner.getId())).thenReturn(Mono.just(true));
+        when(this.visitService.createVisit(any(), any(), any())).thenReturn(Mono.just(visit));
         ArgumentCaptor captor = ArgumentCaptor.forClass(Visit.class);
         String url = "/owners/" + owner.getId().toString() + "/pets/" + pet.getId().toString() + "/visits/new";
 
@@ -161,7 +163,9 @@ class VisitControllerIT extends ControllerTestParent {
                 .returnResult(FluxExchangeResult.class);
 
         // then
-        verify(this.visitService, times(1)).createVisit(any(), (Visit)captor.capture());
+        verify(this.visitService, times(1)).createVisit(any(), any(), (Visit)captor.capture());
+        verify(this.petService, never()).findByIdAndOwner(any(), any());
+        verifyNoInteractions(this.ownerService);
         Visit capturedVisit = (Visit)captor.getValue();
         assertThat(visit).isEqualToIgnoringGivenFields(capturedVisit, "id");
     }
@@ -192,8 +196,7 @@ class VisitControllerIT extends ControllerTestParent {
     @Test
     void testCreateVisitOwnerNotExists() {
         // given
-        when(this.ownerService.getById(any())).thenReturn(Mono.empty());
-        when(this.petService.findByIdAndOwner(any(), any())).thenReturn(Mono.just(this.testDataFactory.getPet()));
+        when(this.petService.existsByIdAndOwner(any(), any())).thenReturn(Mono.just(false));
         Visit visit = this.testDataFactory.getVisit();
 
         // when / then
@@ -211,8 +214,7 @@ class VisitControllerIT extends ControllerTestParent {
     @Test
     void testCreateVisitPetNotExists() {
         // given
-        when(this.ownerService.getById(any())).thenReturn(Mono.just(testDataFactory.getOwner()));
-        when(this.petService.findByIdAndOwner(any(), any())).thenReturn(Mono.empty());
+        when(this.petService.existsByIdAndOwner(any(), any())).thenReturn(Mono.just(false));
         Visit visit = this.testDataFactory.getVisit();
 
         // when / then
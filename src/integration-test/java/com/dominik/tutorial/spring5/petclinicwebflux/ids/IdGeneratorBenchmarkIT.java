@@ -0,0 +1,106 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.ids;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+Compares inserting documents with random IDs and with time ordered IDs: the insert throughput and the size
+of the resulting _id index. The numbers are printed only, they depend too much on the machine to be asserted.
+ */
+@DisplayName("Benchmark: ID Generators")
+@DataMongoTest
+class IdGeneratorBenchmarkIT {
+
+    private static final String COLLECTION_RANDOM = "idBenchmarkRandom";
+    private static final String COLLECTION_TIME_ORDERED = "idBenchmarkTimeOrdered";
+    private static final int WARMUP_DOCUMENTS = 5_000;
+    private static final int MEASURED_DOCUMENTS = 100_000;
+    private static final int BATCH_SIZE = 1_000;
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    @Autowired
+    IdGeneratorBenchmarkIT(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.dropCollections();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.dropCollections();
+    }
+
+    @DisplayName("should compare inserts with random and with time ordered IDs")
+    @Test
+    void benchmarkInsert() {
+        // given
+        IdGenerator randomIds = new RandomIdGenerator();
+        IdGenerator timeOrderedIds = new TimeOrderedIdGenerator();
+        this.insert(COLLECTION_RANDOM, randomIds, WARMUP_DOCUMENTS);
+        this.insert(COLLECTION_TIME_ORDERED, timeOrderedIds, WARMUP_DOCUMENTS);
+
+        // when
+        long randomNanos = this.insert(COLLECTION_RANDOM, randomIds, MEASURED_DOCUMENTS);
+        long timeOrderedNanos = this.insert(COLLECTION_TIME_ORDERED, timeOrderedIds, MEASURED_DOCUMENTS);
+
+        // then
+        System.out.printf("Random IDs: %d inserts/s, _id index %d bytes%n",
+                this.perSecond(randomNanos), this.idIndexSize(COLLECTION_RANDOM));
+        System.out.printf("Time ordered IDs: %d inserts/s, _id index %d bytes%n",
+                this.perSecond(timeOrderedNanos), this.idIndexSize(COLLECTION_TIME_ORDERED));
+        long expectedCount = WARMUP_DOCUMENTS + MEASURED_DOCUMENTS;
+        assertThat(this.mongoOperations.count(new Query(), COLLECTION_RANDOM).block()).isEqualTo(expectedCount);
+        assertThat(this.mongoOperations.count(new Query(), COLLECTION_TIME_ORDERED).block()).isEqualTo(expectedCount);
+    }
+
+    private long insert(String collection, IdGenerator idGenerator, int count) {
+        long start = System.nanoTime();
+        Flux.range(0, count / BATCH_SIZE)
+                .concatMap(batch -> this.mongoOperations.insert(this.documents(idGenerator), collection))
+                .blockLast();
+        return System.nanoTime() - start;
+    }
+
+    /* Shaped like a visit */
+    private List<Document> documents(IdGenerator idGenerator) {
+        return IntStream.range(0, BATCH_SIZE)
+                .mapToObj(i -> new Document("_id", idGenerator.generate())
+                        .append("date", new Date(i * 86_400_000L))
+                        .append("description", "Visit " + i)
+                        .append("petId", idGenerator.generate()))
+                .collect(Collectors.toList());
+    }
+
+    private long perSecond(long nanos) {
+        return MEASURED_DOCUMENTS * 1_000_000_000L / nanos;
+    }
+
+    private long idIndexSize(String collection) {
+        Document stats = this.mongoOperations.executeCommand(new Document("collStats", collection)).block();
+        return ((Number) stats.get("indexSizes", Document.class).get("_id_")).longValue();
+    }
+
+    private void dropCollections() {
+        this.mongoOperations.dropCollection(COLLECTION_RANDOM).block();
+        this.mongoOperations.dropCollection(COLLECTION_TIME_ORDERED).block();
+    }
+}
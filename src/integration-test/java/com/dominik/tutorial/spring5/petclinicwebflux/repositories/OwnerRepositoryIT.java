@@ -59,7 +59,18 @@ class OwnerRepositoryIT {
                     .telephone("1233232")
                     .build();
 
-            this.ownerRepository.saveAll(List.of(owner1, owner2, owner3)).count().block();
+            Owner owner4 = Owner.builder()
+                    .id(UUID.randomUUID())
+                    .firstName("Jürgen")
+                    .lastName("Müller")
+                    .address("Address")
+                    .city("Köln")
+                    .telephone("1233232")
+                    .build();
+
+            List<Owner> owners = List.of(owner1, owner2, owner3, owner4);
+            owners.forEach(Owner::updateSearchKeys);
+            this.ownerRepository.saveAll(owners).count().block();
         }
     }
 
@@ -72,43 +83,54 @@ class OwnerRepositoryIT {
     @Test
     void testFindByLastNameWithResults() {
         // when: search with 1 match; case insensitive required
-        Flux<Owner> result = this.ownerRepository.findByLastNameContainingIgnoreCase("ICKE");
+        Flux<Owner> result = this.ownerRepository.searchByLastName("ICKE");
         // then
         assertEquals(1, result.count().block());
         assertEquals("Picker", result.blockFirst().getLastName());
 
-        // when: search with 2 matches; case insensitive required
-        result = this.ownerRepository.findByLastNameContainingIgnoreCase("ER");
+        // when: search with 3 matches; case insensitive required
+        result = this.ownerRepository.searchByLastName("ER");
         // then
-        assertEquals(2, result.count().block());
+        assertEquals(3, result.count().block());
 
         // when: search full name; case insensitive not required
-        result = this.ownerRepository.findByLastNameContainingIgnoreCase("Schmitt");
+        result = this.ownerRepository.searchByLastName("Schmitt");
         // then
         assertEquals(1, result.count().block());
         assertEquals("Schmitt", result.blockFirst().getLastName());
 
-        // when: matching all; case insensitive required
-        result = this.ownerRepository.findByLastNameContainingIgnoreCase("I");
+        // when: matching all but one; case insensitive required
+        result = this.ownerRepository.searchByLastName("I");
         // then
         assertEquals(3, result.count().block());
 
         // when: empty search
-        result = this.ownerRepository.findByLastNameContainingIgnoreCase("");
+        result = this.ownerRepository.searchByLastName("");
         // then
-        assertEquals(3, result.count().block());
+        assertEquals(4, result.count().block());
+
+        // when: search without accents; accent insensitive required
+        result = this.ownerRepository.searchByLastName("MULLER");
+        // then
+        assertEquals(1, result.count().block());
+        assertEquals("Müller", result.blockFirst().getLastName());
+
+        // when: search with accents and fragment longer than a single token
+        result = this.ownerRepository.searchByLastName("üLLe");
+        // then
+        assertEquals(1, result.count().block());
     }
 
     @DisplayName("should not show search results when there are none")
     @Test
     void testFindByLastNameWithoutResults() {
         // when
-        Flux<Owner> result = this.ownerRepository.findByLastNameContainingIgnoreCase("Nothing matches");
+        Flux<Owner> result = this.ownerRepository.searchByLastName("Nothing matches");
         // then
         assertFalse(result.hasElements().block());
 
         // when
-        result = this.ownerRepository.findByLastNameContainingIgnoreCase(" ");
+        result = this.ownerRepository.searchByLastName(" ");
         // then
         assertFalse(result.hasElements().block());
     }
@@ -0,0 +1,155 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.MongoConfig;
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ExportService;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/* The export relies on UUIDs sorted in the standard representation, so the Mongo configuration is imported */
+@DisplayName("IT: Export Service Mongo")
+@DataMongoTest
+@Import(MongoConfig.class)
+class ExportServiceMongoIT {
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final OwnerRepository ownerRepository;
+    private final PetRepository petRepository;
+    private final VisitRepository visitRepository;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private ExportService exportService;
+
+    @Autowired
+    public ExportServiceMongoIT(ReactiveMongoOperations mongoOperations, OwnerRepository ownerRepository,
+                                PetRepository petRepository, VisitRepository visitRepository) {
+        this.mongoOperations = mongoOperations;
+        this.ownerRepository = ownerRepository;
+        this.petRepository = petRepository;
+        this.visitRepository = visitRepository;
+    }
+
+    @BeforeEach
+    void setUp() {
+        PetclinicProperties properties = new PetclinicProperties();
+        properties.getExports().setBatchSize(2);
+        this.exportService = new ExportServiceMongo(this.mongoOperations, this.objectMapper, properties);
+        this.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.deleteAll();
+    }
+
+    @DisplayName("should export owners, pets and visits in this order, each sorted by its reference")
+    @Test
+    void testExportAll() {
+        // given
+        TestDataFactory testDataFactory = new TestDataFactory(20, 40, 80);
+        List<Owner> owners = testDataFactory.getOwners();
+        List<Pet> pets = testDataFactory.getPets();
+        List<Visit> visits = testDataFactory.getVisits();
+        for (int i = 0; i < pets.size(); i++) {
+            pets.get(i).setOwnerId(owners.get(i % owners.size()).getId());
+        }
+        for (int i = 0; i < visits.size(); i++) {
+            visits.get(i).setPetId(pets.get(i % pets.size()).getId());
+        }
+        this.ownerRepository.saveAll(owners).blockLast();
+        this.petRepository.saveAll(pets).blockLast();
+        this.visitRepository.saveAll(visits).blockLast();
+
+        // when
+        List<JsonNode> records = this.export();
+
+        // then
+        assertThat(records).hasSize(owners.size() + pets.size() + visits.size());
+        assertThat(records).extracting(r -> r.get("type").asText()).startsWith("owner").endsWith("visit");
+        assertThat(this.ids(records, "owner"))
+                .containsExactlyInAnyOrderElementsOf(owners.stream().map(Owner::getId).collect(Collectors.toList()));
+        assertThat(this.ids(records, "pet"))
+                .containsExactlyInAnyOrderElementsOf(pets.stream().map(Pet::getId).collect(Collectors.toList()));
+        assertThat(this.ids(records, "visit"))
+                .containsExactlyInAnyOrderElementsOf(visits.stream().map(Visit::getId).collect(Collectors.toList()));
+        JsonNode visit = records.get(records.size() - 1);
+        assertThat(visit.has("petId")).isTrue();
+        assertThat(visit.get("date").asText()).matches("\\d{4}-\\d{2}-\\d{2}");
+    }
+
+    @DisplayName("should leave out pets and visits whose owner or pet does not exist")
+    @Test
+    void testExportLeavesOutOrphans() {
+        // given
+        TestDataFactory testDataFactory = new TestDataFactory(1, 2, 2);
+        Owner owner = testDataFactory.getOwner();
+        Pet pet = testDataFactory.getPets().get(0);
+        Pet orphanPet = testDataFactory.getPets().get(1);
+        pet.setOwnerId(owner.getId());
+        orphanPet.setOwnerId(UUID.randomUUID());
+        Visit visit = testDataFactory.getVisits().get(0);
+        Visit orphanVisit = testDataFactory.getVisits().get(1);
+        visit.setPetId(pet.getId());
+        orphanVisit.setPetId(UUID.randomUUID());
+        this.ownerRepository.save(owner).block();
+        this.petRepository.saveAll(List.of(pet, orphanPet)).blockLast();
+        this.visitRepository.saveAll(List.of(visit, orphanVisit)).blockLast();
+
+        // when
+        List<JsonNode> records = this.export();
+
+        // then
+        assertThat(this.ids(records, "pet")).containsExactly(pet.getId());
+        assertThat(this.ids(records, "visit")).containsExactly(visit.getId());
+    }
+
+    private List<JsonNode> export() {
+        return this.exportService.exportAll()
+                .map(this::readTree)
+                .collectList()
+                .block();
+    }
+
+    private JsonNode readTree(String line) {
+        try {
+            return this.objectMapper.readTree(line);
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<UUID> ids(List<JsonNode> records, String type) {
+        return records.stream()
+                .filter(r -> r.get("type").asText().equals(type))
+                .map(r -> UUID.fromString(r.get("id").asText()))
+                .collect(Collectors.toList());
+    }
+
+    private void deleteAll() {
+        this.visitRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+        this.ownerRepository.deleteAll().block();
+    }
+}
@@ -0,0 +1,191 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.TimeOrderedIdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ImportError;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ImportSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ImportService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphCache;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphChanges;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportFormat;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportRecordParser;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory.OwnerAutocompleteServiceInMemory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import javax.validation.Validation;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("IT: Import Service Mongo")
+@DataMongoTest
+class ImportServiceMongoIT {
+
+    private static final UUID OWNER_ID = UUID.fromString("6d1f3e0a-4c2b-4f7e-9a51-0c8d2b7e4a11");
+    private static final UUID PET_ID = UUID.fromString("0b7c9e2f-8a14-4d63-b5e0-3f9a1c6d8e22");
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final OwnerRepository ownerRepository;
+    private final PetRepository petRepository;
+    private final VisitRepository visitRepository;
+    private OwnerAutocompleteService autocompleteService;
+    private PetclinicProperties properties;
+    private ImportService importService;
+
+    @Autowired
+    public ImportServiceMongoIT(ReactiveMongoOperations mongoOperations, OwnerRepository ownerRepository,
+                                PetRepository petRepository, VisitRepository visitRepository) {
+        this.mongoOperations = mongoOperations;
+        this.ownerRepository = ownerRepository;
+        this.petRepository = petRepository;
+        this.visitRepository = visitRepository;
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.properties = new PetclinicProperties();
+        this.properties.getImports().setBatchSize(2);
+        OwnerGraphChanges ownerGraphChanges = new OwnerGraphChanges(this.ownerRepository,
+                new OwnerGraphCache(1000, Duration.ofMinutes(10), new SimpleMeterRegistry()));
+        this.autocompleteService = new OwnerAutocompleteServiceInMemory(this.properties);
+        this.importService = new ImportServiceMongo(this.mongoOperations, this.ownerRepository, this.petRepository,
+                this.autocompleteService, ownerGraphChanges, KnownIds.noFilter(), new TimeOrderedIdGenerator(),
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new ImportRecordParser(Jackson2ObjectMapperBuilder.json().build()), this.properties);
+
+        this.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.deleteAll();
+    }
+
+    @DisplayName("should import owners, pets and visits referencing each other by their given IDs")
+    @Test
+    void testImportNdjson() {
+        // given
+        Flux<String> lines = Flux.just(
+                "{\"type\":\"owner\",\"id\":\"" + OWNER_ID + "\",\"firstName\":\"Maria\",\"lastName\":\"Escobito\","
+                        + "\"address\":\"345 Maple St.\",\"city\":\"Madison\",\"telephone\":\"6085557683\"}",
+                "{\"type\":\"owner\",\"firstName\":\"Jean\",\"lastName\":\"Coleman\","
+                        + "\"address\":\"105 N. Lake St.\",\"city\":\"Monona\",\"telephone\":\"6085552654\"}",
+                "{\"type\":\"pet\",\"id\":\"" + PET_ID + "\",\"ownerId\":\"" + OWNER_ID + "\",\"name\":\"Mulligan\","
+                        + "\"birthDate\":\"2017-09-24\",\"petType\":\"Dog\"}",
+                "{\"type\":\"visit\",\"petId\":\"" + PET_ID + "\",\"date\":\"2020-01-04\",\"description\":\"Rabies shot\"}",
+                "{\"type\":\"visit\",\"petId\":\"" + PET_ID + "\",\"date\":\"2020-02-01\",\"description\":\"Neutered\"}",
+                "{\"type\":\"visit\",\"petId\":\"" + PET_ID + "\",\"date\":\"2020-03-07\",\"description\":\"Checkup\"}");
+
+        // when
+        ImportSummary summary = this.importService.importRecords(lines, ImportFormat.NDJSON).block();
+
+        // then
+        assertThat(summary.getOwners()).isEqualTo(2);
+        assertThat(summary.getPets()).isEqualTo(1);
+        assertThat(summary.getVisits()).isEqualTo(3);
+        assertThat(summary.getFailed()).isZero();
+        Owner owner = this.ownerRepository.findById(OWNER_ID).block();
+        assertThat(owner.getLastNameKey()).isEqualTo("escobito");
+        assertThat(owner.getVersion()).isEqualTo(0L);
+        Pet pet = this.petRepository.findById(PET_ID).block();
+        assertThat(pet.getOwnerId()).isEqualTo(OWNER_ID);
+        assertThat(pet.getBirthDate()).isEqualTo(LocalDate.of(2017, 9, 24));
+        assertThat(this.visitRepository.findByPetId(PET_ID).map(Visit::getDescription).collectList().block())
+                .containsExactlyInAnyOrder("Rabies shot", "Neutered", "Checkup");
+        assertThat(this.ownerRepository.count().block()).isEqualTo(2L);
+        assertThat(this.autocompleteService.completeLastName("Esc", 10).collectList().block())
+                .containsExactly("Escobito");
+    }
+
+    @DisplayName("should import CSV with a header line and quoted fields")
+    @Test
+    void testImportCsv() {
+        // given
+        Flux<String> lines = Flux.just(
+                "type,id,firstName,lastName,address,city,telephone,ownerId,name,birthDate,petType",
+                "owner," + OWNER_ID + ",Maria,Escobito,\"345 Maple St., Apt. \"\"B\"\"\",Madison,6085557683",
+                "pet,,,,,,," + OWNER_ID + ",Mulligan,2017-09-24,Dog");
+
+        // when
+        ImportSummary summary = this.importService.importRecords(lines, ImportFormat.CSV).block();
+
+        // then
+        assertThat(summary.getOwners()).isEqualTo(1);
+        assertThat(summary.getPets()).isEqualTo(1);
+        assertThat(summary.getFailed()).isZero();
+        assertThat(this.ownerRepository.findById(OWNER_ID).block().getAddress()).isEqualTo("345 Maple St., Apt. \"B\"");
+        assertThat(this.petRepository.findByOwnerId(OWNER_ID).map(Pet::getName).collectList().block())
+                .containsExactly("Mulligan");
+    }
+
+    @DisplayName("should report failed records with their line and import the others")
+    @Test
+    void testImportReportsFailedRecords() {
+        // given
+        Flux<String> lines = Flux.just(
+                "{\"type\":\"owner\",\"id\":\"" + OWNER_ID + "\",\"firstName\":\"Maria\",\"lastName\":\"Escobito\","
+                        + "\"address\":\"345 Maple St.\",\"city\":\"Madison\",\"telephone\":\"6085557683\"}",
+                "{\"type\":\"owner\",\"id\":\"" + OWNER_ID + "\",\"firstName\":\"Maria\",\"lastName\":\"Escobito\","
+                        + "\"address\":\"345 Maple St.\",\"city\":\"Madison\",\"telephone\":\"6085557683\"}",
+                "{\"type\":\"owner\",\"firstName\":\"Jean\",\"lastName\":\"\"}",
+                "not json",
+                "{\"type\":\"vet\",\"firstName\":\"James\"}",
+                "{\"type\":\"pet\",\"ownerId\":\"" + UUID.randomUUID() + "\",\"name\":\"Leo\","
+                        + "\"birthDate\":\"2010-09-07\",\"petType\":\"Cat\"}",
+                "{\"type\":\"pet\",\"ownerId\":\"" + OWNER_ID + "\",\"name\":\"Basil\","
+                        + "\"birthDate\":\"2012-08-06\",\"petType\":\"Hamster\"}");
+
+        // when
+        ImportSummary summary = this.importService.importRecords(lines, ImportFormat.NDJSON).block();
+
+        // then
+        assertThat(summary.getOwners()).isEqualTo(1);
+        assertThat(summary.getPets()).isEqualTo(1);
+        assertThat(summary.getFailed()).isEqualTo(5);
+        assertThat(summary.getErrors()).extracting(ImportError::getLine).containsExactlyInAnyOrder(2L, 3L, 4L, 5L, 6L);
+        assertThat(this.ownerRepository.count().block()).isEqualTo(1L);
+        assertThat(this.petRepository.findByOwnerId(OWNER_ID).map(Pet::getName).collectList().block())
+                .containsExactly("Basil");
+    }
+
+    @DisplayName("should only report the configured number of errors, but count all")
+    @Test
+    void testImportLimitsReportedErrors() {
+        // given
+        this.properties.getImports().setMaxReportedErrors(2);
+        Flux<String> lines = Flux.range(0, 5).map(i -> "not json");
+
+        // when
+        ImportSummary summary = this.importService.importRecords(lines, ImportFormat.NDJSON).block();
+
+        // then
+        assertThat(summary.getFailed()).isEqualTo(5);
+        assertThat(summary.getErrors()).hasSize(2);
+        assertThat(summary.getImported()).isZero();
+    }
+
+    private void deleteAll() {
+        this.visitRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+        this.ownerRepository.deleteAll().block();
+    }
+}
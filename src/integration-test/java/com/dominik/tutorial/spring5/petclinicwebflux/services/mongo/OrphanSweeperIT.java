@@ -0,0 +1,123 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("IT: Orphan Sweeper")
+@DataMongoTest
+class OrphanSweeperIT {
+
+    private static final int NUM_OWNERS = 2;
+    private static final int NUM_PETS = 3;
+    private static final int NUM_VISITS = 4;
+    private static final int BATCH_SIZE = 1;
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final OwnerRepository ownerRepository;
+    private final PetRepository petRepository;
+    private final VisitRepository visitRepository;
+    private OrphanSweeper orphanSweeper;
+    private TestDataFactory testDataFactory;
+
+    @Autowired
+    public OrphanSweeperIT(ReactiveMongoOperations mongoOperations, OwnerRepository ownerRepository,
+                           PetRepository petRepository, VisitRepository visitRepository) {
+        this.mongoOperations = mongoOperations;
+        this.ownerRepository = ownerRepository;
+        this.petRepository = petRepository;
+        this.visitRepository = visitRepository;
+    }
+
+    @BeforeEach
+    void setUp() {
+        PetclinicProperties properties = new PetclinicProperties();
+        properties.getOrphanSweep().setBatchSize(BATCH_SIZE);
+        this.orphanSweeper = new OrphanSweeper(this.mongoOperations, this.ownerRepository, this.petRepository,
+                this.visitRepository, properties);
+        this.testDataFactory = new TestDataFactory(NUM_OWNERS, NUM_PETS, NUM_VISITS);
+
+        this.visitRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+        this.ownerRepository.deleteAll().block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.visitRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+        this.ownerRepository.deleteAll().block();
+    }
+
+    @DisplayName("should delete pets of deleted owners and visits of deleted pets, but nothing else")
+    @Test
+    void testSweep() {
+        // given
+        Owner owner = this.testDataFactory.getOwners().get(0);
+        Owner deletedOwner = this.testDataFactory.getOwners().get(1);
+        List<Pet> pets = this.testDataFactory.getPets();
+        List<Visit> visits = this.testDataFactory.getVisits();
+        this.ownerRepository.save(owner).block();
+        this.savePet(pets.get(0), owner.getId());
+        this.savePet(pets.get(1), deletedOwner.getId());
+        this.saveVisit(visits.get(0), pets.get(0).getId());
+        this.saveVisit(visits.get(1), pets.get(1).getId());
+        this.saveVisit(visits.get(2), pets.get(2).getId());
+        this.saveVisit(visits.get(3), pets.get(2).getId());
+
+        // when
+        Long deletedPets = this.orphanSweeper.sweepPets().block();
+        Long deletedVisits = this.orphanSweeper.sweepVisits().block();
+
+        // then
+        assertThat(deletedPets).isEqualTo(1L);
+        assertThat(deletedVisits).isEqualTo(3L);
+        assertThat(this.petRepository.findAll().map(Pet::getId).collectList().block())
+                .containsExactly(pets.get(0).getId());
+        assertThat(this.visitRepository.findAll().map(Visit::getId).collectList().block())
+                .containsExactly(visits.get(0).getId());
+    }
+
+    @DisplayName("should not delete anything without orphans")
+    @Test
+    void testSweepWithoutOrphans() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        Pet pet = this.testDataFactory.getPet();
+        this.ownerRepository.save(owner).block();
+        this.savePet(pet, owner.getId());
+        this.saveVisit(this.testDataFactory.getVisit(), pet.getId());
+
+        // when / then
+        assertThat(this.orphanSweeper.sweepPets().block()).isEqualTo(0L);
+        assertThat(this.orphanSweeper.sweepVisits().block()).isEqualTo(0L);
+        assertThat(this.visitRepository.count().block()).isEqualTo(1L);
+    }
+
+    private void savePet(Pet pet, UUID ownerId) {
+        pet.setOwnerId(ownerId);
+        this.petRepository.save(pet).block();
+    }
+
+    private void saveVisit(Visit visit, UUID petId) {
+        visit.setPetId(petId);
+        this.visitRepository.save(visit).block();
+    }
+}
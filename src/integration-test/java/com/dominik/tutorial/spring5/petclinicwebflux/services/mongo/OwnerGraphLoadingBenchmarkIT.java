@@ -0,0 +1,162 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.TimeOrderedIdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchLoader;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchWriter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphCache;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphChanges;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory.OwnerAutocompleteServiceInMemory;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory.VisitEventServiceInMemory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+Compares loading the owner details via the $lookup aggregation with loading them via separate queries.
+The timings are printed only, they depend too much on the machine to be asserted.
+ */
+@DisplayName("Benchmark: Owner Graph Loading")
+@DataMongoTest
+class OwnerGraphLoadingBenchmarkIT {
+
+    private static final int VISITS_PER_PET = 2;
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int MEASURED_ITERATIONS = 100;
+    private static final int VISIT_EVENT_BUFFER_SIZE = 16;
+
+    private final OwnerRepository ownerRepository;
+    private final PetRepository petRepository;
+    private final VisitRepository visitRepository;
+    private OwnerService aggregationOwnerService;
+    private OwnerService queryOwnerService;
+
+    @Autowired
+    OwnerGraphLoadingBenchmarkIT(OwnerRepository ownerRepository, PetRepository petRepository, VisitRepository visitRepository) {
+        this.ownerRepository = ownerRepository;
+        this.petRepository = petRepository;
+        this.visitRepository = visitRepository;
+    }
+
+    @BeforeEach
+    void setUp() {
+        OwnerGraphChanges ownerGraphChanges = new OwnerGraphChanges(this.ownerRepository, OwnerGraphCache.noCache());
+        VisitService visitService = new VisitServiceMongo(this.visitRepository,
+                BatchLoader.direct(this.visitRepository::findByPetIdIn, Visit::getPetId),
+                BatchWriter.direct(this.visitRepository::saveAll),
+                ownerGraphChanges, new VisitEventServiceInMemory(VISIT_EVENT_BUFFER_SIZE));
+        PetService petService = new PetServiceMongo(this.petRepository, visitService,
+                BatchLoader.direct(this.petRepository::findByOwnerIdIn, Pet::getOwnerId), ownerGraphChanges,
+                KnownIds.noFilter(), new TimeOrderedIdGenerator(), new PetclinicProperties());
+        PetclinicProperties queryProperties = new PetclinicProperties();
+        queryProperties.getOwnerGraph().setAggregation(false);
+        this.aggregationOwnerService = new OwnerServiceMongo(this.ownerRepository, petService,
+                new OwnerAutocompleteServiceInMemory(new PetclinicProperties()), OwnerGraphCache.noCache(),
+                KnownIds.noFilter(), new TimeOrderedIdGenerator(), new PetclinicProperties());
+        this.queryOwnerService = new OwnerServiceMongo(this.ownerRepository, petService,
+                new OwnerAutocompleteServiceInMemory(new PetclinicProperties()), OwnerGraphCache.noCache(),
+                KnownIds.noFilter(), new TimeOrderedIdGenerator(), queryProperties);
+        this.deleteAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.deleteAll();
+    }
+
+    @DisplayName("should compare loading owner details with the aggregation and with queries")
+    @ParameterizedTest(name = "{0} pets per owner")
+    @ValueSource(ints = {1, 20, 200})
+    void benchmarkGetById(int petsPerOwner) {
+        // given
+        UUID ownerId = this.createOwnerGraph(petsPerOwner);
+
+        // when
+        long aggregationNanos = this.measure(this.aggregationOwnerService, ownerId);
+        long queryNanos = this.measure(this.queryOwnerService, ownerId);
+
+        // then
+        System.out.printf("Owner graph with %d pets: aggregation %d µs/op, queries %d µs/op%n",
+                petsPerOwner, aggregationNanos / 1000, queryNanos / 1000);
+        Owner owner = this.aggregationOwnerService.getById(ownerId).block();
+        assertThat(owner).isNotNull();
+        assertThat(owner.getPets()).hasSize(petsPerOwner);
+        owner.getPets().forEach(p -> assertThat(p.getVisits()).hasSize(VISITS_PER_PET));
+    }
+
+    private long measure(OwnerService ownerService, UUID ownerId) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            ownerService.getById(ownerId).block();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            ownerService.getById(ownerId).block();
+        }
+        return (System.nanoTime() - start) / MEASURED_ITERATIONS;
+    }
+
+    private UUID createOwnerGraph(int numPets) {
+        Owner owner = Owner.builder()
+                .id(UUID.randomUUID())
+                .firstName("Benchmark")
+                .lastName("Owner")
+                .address("Address")
+                .city("City")
+                .telephone("123456")
+                .build();
+        this.ownerRepository.save(owner).block();
+
+        List<Pet> pets = new ArrayList<>();
+        List<Visit> visits = new ArrayList<>();
+        for (int i = 0; i < numPets; i++) {
+            Pet pet = Pet.builder()
+                    .id(UUID.randomUUID())
+                    .name("Pet " + i)
+                    .birthDate(LocalDate.of(2015, 1, 1))
+                    .petType("Cat")
+                    .ownerId(owner.getId())
+                    .build();
+            pets.add(pet);
+            for (int j = 0; j < VISITS_PER_PET; j++) {
+                Visit visit = Visit.builder()
+                        .id(UUID.randomUUID())
+                        .date(LocalDate.of(2019, 1, 1 + j))
+                        .description("Visit " + j)
+                        .build();
+                visit.setPetId(pet.getId());
+                visits.add(visit);
+            }
+        }
+        Flux.concat(this.petRepository.saveAll(pets), this.visitRepository.saveAll(visits)).blockLast();
+
+        return owner.getId();
+    }
+
+    private void deleteAll() {
+        this.visitRepository.deleteAll().block();
+        this.petRepository.deleteAll().block();
+        this.ownerRepository.deleteAll().block();
+    }
+}
@@ -1,14 +1,29 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.TimeOrderedIdGenerator;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerCursor;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummaryPage;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchLoader;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchWriter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphCache;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphChanges;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory.OwnerAutocompleteServiceInMemory;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory.VisitEventServiceInMemory;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -16,8 +31,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -31,11 +50,15 @@ public class OwnerServiceMongoIT {
     private static final int NUM_PETS = 1;
     private static final int NUM_VISITS = 1;
     private static final int NUM_VETS = 1;
+    private static final int VISIT_EVENT_BUFFER_SIZE = 16;
 
     private final OwnerRepository ownerRepository;
     private final PetRepository petRepository;
     private final VisitRepository visitRepository;
     private OwnerService ownerService;
+    private OwnerAutocompleteService autocompleteService;
+    private OwnerGraphCache ownerGraphCache;
+    private OwnerGraphChanges ownerGraphChanges;
     private PetService petService;
     private VisitService visitService;
     private TestDataFactory testDataFactory;
@@ -49,9 +72,19 @@ public class OwnerServiceMongoIT {
 
     @BeforeEach
     void setUp() {
-        this.visitService = new VisitServiceMongo(this.visitRepository);
-        this.petService = new PetServiceMongo(this.petRepository, this.visitService);
-        this.ownerService = new OwnerServiceMongo(this.ownerRepository, this.petService);
+        this.ownerGraphCache = new OwnerGraphCache(1000, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        this.ownerGraphChanges = new OwnerGraphChanges(this.ownerRepository, this.ownerGraphCache);
+        this.visitService = new VisitServiceMongo(this.visitRepository,
+                BatchLoader.direct(this.visitRepository::findByPetIdIn, Visit::getPetId),
+                BatchWriter.direct(this.visitRepository::saveAll),
+                this.ownerGraphChanges, new VisitEventServiceInMemory(VISIT_EVENT_BUFFER_SIZE));
+        this.petService = new PetServiceMongo(this.petRepository, this.visitService,
+                BatchLoader.direct(this.petRepository::findByOwnerIdIn, Pet::getOwnerId), this.ownerGraphChanges,
+                KnownIds.noFilter(), new TimeOrderedIdGenerator(), new PetclinicProperties());
+        this.autocompleteService = new OwnerAutocompleteServiceInMemory(new PetclinicProperties());
+        this.ownerService = new OwnerServiceMongo(this.ownerRepository, this.petService, this.autocompleteService,
+                this.ownerGraphCache, KnownIds.noFilter(), new TimeOrderedIdGenerator(),
+                new PetclinicProperties());
 
         this.visitRepository.deleteAll().block();
         this.petRepository.deleteAll().block();
@@ -82,7 +115,7 @@ public class OwnerServiceMongoIT {
         Owner savedOwner = this.ownerService.getById(owner.getId()).block();
         List<Pet> savedOwnerPets = savedOwner.getPets();
         List<Pet> ownerPets = owner.getPets();
-        assertThat(owner).isEqualToIgnoringGivenFields(savedOwner, "pets");
+        assertThat(owner).isEqualToIgnoringGivenFields(savedOwner, "pets", "graphVersion");
         assertEquals(1, savedOwnerPets.size());
         assertThat(pet).isEqualToIgnoringGivenFields(savedOwnerPets.get(0), "visits");
     }
@@ -118,9 +151,281 @@ public class OwnerServiceMongoIT {
         Owner savedOwner = this.ownerService.getById(owner.getId()).block();
         List<Pet> savedOwnerPets = savedOwner.getPets();
         List<Pet> ownerPets = owner.getPets();
-        assertThat(owner).isEqualToIgnoringGivenFields(savedOwner, "pets");
+        assertThat(owner).isEqualToIgnoringGivenFields(savedOwner, "pets", "graphVersion");
         assertEquals(2, savedOwnerPets.size());
         assertThat(pet).isEqualToIgnoringGivenFields(savedOwnerPets.get(0), "visits");
         assertThat(newPet).isEqualToIgnoringGivenFields(savedOwnerPets.get(1), "visits");
     }
+
+    @DisplayName("should serve cached owner details until the owner, its pets or their visits change")
+    @Test
+    void testGetByIdCachedUntilWrite() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        Pet pet = this.testDataFactory.getPet();
+        this.ownerService.save(owner).block();
+
+        // when / then
+        Owner cachedOwner = this.ownerService.getById(owner.getId()).block();
+        assertThat(this.ownerService.getById(owner.getId()).block()).isSameAs(cachedOwner);
+        assertThat(cachedOwner.getPets()).isEmpty();
+
+        this.petService.save(owner.getId(), pet).block();
+        assertThat(this.ownerService.getById(owner.getId()).block().getPets()).hasSize(1);
+
+        this.visitService.createVisit(pet.getOwnerId(), pet.getId(), this.testDataFactory.getVisit()).block();
+        assertThat(this.ownerService.getById(owner.getId()).block().getPets().get(0).getVisits()).hasSize(1);
+
+        owner.setCity("Another city");
+        this.ownerService.save(owner).block();
+        assertThat(this.ownerService.getById(owner.getId()).block().getCity()).isEqualTo("Another city");
+
+        this.petService.delete(pet.getId()).block();
+        assertThat(this.ownerService.getById(owner.getId()).block().getPets()).isEmpty();
+    }
+
+    @DisplayName("should change the details version whenever the owner, its pets or their visits change")
+    @Test
+    void testGraphVersionChangesOnWrites() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        Pet pet = this.testDataFactory.getPet();
+        Set<String> versions = new HashSet<>();
+
+        // when
+        this.ownerService.save(owner).block();
+        versions.add(this.ownerService.findGraphVersion(owner.getId()).block().detailsVersion());
+        this.petService.save(owner.getId(), pet).block();
+        versions.add(this.ownerService.findGraphVersion(owner.getId()).block().detailsVersion());
+        this.visitService.createVisit(pet.getOwnerId(), pet.getId(), this.testDataFactory.getVisit()).block();
+        versions.add(this.ownerService.findGraphVersion(owner.getId()).block().detailsVersion());
+        this.ownerService.save(owner).block();
+        versions.add(this.ownerService.findGraphVersion(owner.getId()).block().detailsVersion());
+        this.petService.delete(pet.getId()).block();
+        versions.add(this.ownerService.findGraphVersion(owner.getId()).block().detailsVersion());
+
+        // then
+        assertEquals(5, versions.size());
+        assertThat(versions).contains(this.ownerService.getById(owner.getId()).block().detailsVersion());
+    }
+
+    @DisplayName("should reload a cached owner graph which is older than the details version")
+    @Test
+    void testGetByIdReloadsOutdatedCachedGraph() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        this.ownerService.save(owner).block();
+        String cachedVersion = this.ownerService.getById(owner.getId()).block().detailsVersion();
+        /* Changed behind the cache, like by another instance */
+        this.ownerRepository.incrementGraphVersion(owner.getId()).block();
+
+        // when
+        String detailsVersion = this.ownerService.findGraphVersion(owner.getId()).block().detailsVersion();
+        Owner resultOwner = this.ownerService.getById(owner.getId(), detailsVersion).block();
+
+        // then
+        assertThat(detailsVersion).isNotEqualTo(cachedVersion);
+        assertThat(resultOwner.detailsVersion()).isEqualTo(detailsVersion);
+        assertThat(this.ownerService.getById(owner.getId()).block().detailsVersion()).isEqualTo(detailsVersion);
+    }
+
+    @DisplayName("should load the same owner graph with the aggregation and with separate queries")
+    @Test
+    void testGetByIdAggregationMatchesQueries() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        Pet pet = this.testDataFactory.getPet();
+        Visit visit = this.testDataFactory.getVisit();
+        this.ownerService.save(owner).block();
+        this.petService.save(owner.getId(), pet).block();
+        this.visitService.createVisit(pet.getOwnerId(), pet.getId(), visit).block();
+
+        PetclinicProperties queryProperties = new PetclinicProperties();
+        queryProperties.getOwnerGraph().setAggregation(false);
+        OwnerService queryOwnerService = new OwnerServiceMongo(this.ownerRepository, this.petService, this.autocompleteService,
+                OwnerGraphCache.noCache(), KnownIds.noFilter(), new TimeOrderedIdGenerator(),
+                queryProperties);
+
+        // when
+        Owner aggregatedOwner = this.ownerService.getById(owner.getId()).block();
+        Owner queriedOwner = queryOwnerService.getById(owner.getId()).block();
+
+        // then
+        assertThat(aggregatedOwner).isNotNull();
+        assertThat(queriedOwner).isNotNull();
+        assertThat(queriedOwner).isEqualToIgnoringGivenFields(aggregatedOwner, "pets");
+        assertEquals(1, aggregatedOwner.getPets().size());
+        assertThat(queriedOwner.getPets().get(0)).isEqualToIgnoringGivenFields(aggregatedOwner.getPets().get(0), "visits");
+        assertEquals(1, aggregatedOwner.getPets().get(0).getVisits().size());
+        assertThat(visit).isEqualToComparingFieldByField(aggregatedOwner.getPets().get(0).getVisits().get(0));
+        assertThat(this.ownerService.getById(UUID.randomUUID()).hasElement().block()).isFalse();
+    }
+
+    @DisplayName("should list owner summaries with pet names by last name fragment")
+    @Test
+    void testFindSummaryPageByLastNameFragment() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        Pet pet = this.testDataFactory.getPet();
+        this.ownerService.save(owner).block();
+        this.petService.save(owner.getId(), pet).block();
+        String fragment = owner.getLastName().substring(1, 4).toUpperCase();
+
+        // when
+        OwnerSummaryPage result = this.ownerService.findSummaryPage(fragment, null).block();
+
+        // then
+        assertThat(result.getOwners()).hasSize(1);
+        assertThat(result.hasNext()).isFalse();
+        OwnerSummary summary = result.getOwners().get(0);
+        assertThat(summary.getId()).isEqualTo(owner.getId());
+        assertThat(summary.getLastName()).isEqualTo(owner.getLastName());
+        assertThat(summary.getTelephone()).isEqualTo(owner.getTelephone());
+        assertThat(summary.getPetNames()).containsExactly(pet.getName());
+    }
+
+    @DisplayName("should page through all owners ordered by last name, first name and ID")
+    @Test
+    void testFindSummaryPagesInOrder() {
+        // given
+        PetclinicProperties pagingProperties = new PetclinicProperties();
+        pagingProperties.getOwnerList().setPageSize(2);
+        OwnerService pagingOwnerService = new OwnerServiceMongo(this.ownerRepository, this.petService, this.autocompleteService,
+                OwnerGraphCache.noCache(), KnownIds.noFilter(), new TimeOrderedIdGenerator(),
+                pagingProperties);
+        List<Owner> owners = List.of(
+                this.owner("Smith", "Anna"), this.owner("Adams", "Zoe"), this.owner("Smith", "Anna"),
+                this.owner("Miller", "Tom"), this.owner("Adams", "Bob"));
+        owners.forEach(o -> this.ownerService.save(o).block());
+
+        // when
+        List<OwnerSummary> result = new ArrayList<>();
+        int pages = 0;
+        OwnerCursor after = null;
+        OwnerSummaryPage page;
+        do {
+            page = pagingOwnerService.findSummaryPage("", after).block();
+            result.addAll(page.getOwners());
+            after = page.hasNext() ? OwnerCursor.fromToken(page.getNextToken()) : null;
+            pages++;
+        } while (page.hasNext());
+
+        // then
+        assertThat(pages).isEqualTo(3);
+        assertThat(result).extracting(OwnerSummary::getLastName)
+                .containsExactly("Adams", "Adams", "Miller", "Smith", "Smith");
+        assertThat(result).extracting(OwnerSummary::getFirstName)
+                .containsExactly("Bob", "Zoe", "Tom", "Anna", "Anna");
+        assertThat(result).extracting(OwnerSummary::getId).doesNotHaveDuplicates();
+    }
+
+    @DisplayName("should keep the last name autocompletion up to date on save")
+    @Test
+    void testSaveUpdatesAutocompletion() {
+        // given
+        Owner owner = this.owner("Schmitt", "Jens");
+        this.ownerService.save(owner).block();
+        this.ownerService.save(this.owner("Schneider", "Anna")).block();
+
+        // when
+        List<String> beforeRename = this.autocompleteService.completeLastName("sch", 10).collectList().block();
+        owner.setLastName("Meier");
+        this.ownerService.save(owner).block();
+        List<String> afterRename = this.autocompleteService.completeLastName("sch", 10).collectList().block();
+
+        // then
+        assertThat(beforeRename).containsExactly("Schmitt", "Schneider");
+        assertThat(afterRename).containsExactly("Schneider");
+        assertThat(this.autocompleteService.completeLastName("M", 10).collectList().block()).containsExactly("Meier");
+    }
+
+    @DisplayName("should find misspelled last names and rank them by similarity")
+    @Test
+    void testFindFuzzySummaryPage() {
+        // given
+        List.of(this.owner("Schmitt", "Jens"), this.owner("Schmidt", "Anna"), this.owner("Schmid", "Tom"),
+                this.owner("Smith", "Bob"), this.owner("Davis", "Zoe"))
+                .forEach(o -> this.ownerService.save(o).block());
+
+        // when
+        OwnerSummaryPage result = this.ownerService.findFuzzySummaryPage("Schmidt", 0).block();
+
+        // then
+        assertThat(result).isNotNull();
+        assertThat(result.hasNext()).isFalse();
+        assertThat(result.getOwners()).extracting(OwnerSummary::getLastName)
+                .startsWith("Schmidt", "Schmid", "Schmitt")
+                .doesNotContain("Davis");
+    }
+
+    @DisplayName("should page through similar sounding owners ranked by similarity, first name and ID")
+    @Test
+    void testFindFuzzySummaryPagesInOrder() {
+        // given
+        PetclinicProperties pagingProperties = new PetclinicProperties();
+        pagingProperties.getOwnerList().setPageSize(2);
+        OwnerService pagingOwnerService = new OwnerServiceMongo(this.ownerRepository, this.petService, this.autocompleteService,
+                OwnerGraphCache.noCache(), KnownIds.noFilter(), new TimeOrderedIdGenerator(),
+                pagingProperties);
+        List.of(this.owner("Schmitt", "Jens"), this.owner("Schmidt", "Zoe"), this.owner("Schmidt", "Anna"),
+                this.owner("Davis", "Tom"), this.owner("Schmidt", "Bob"))
+                .forEach(o -> this.ownerService.save(o).block());
+
+        // when
+        List<OwnerSummary> result = new ArrayList<>();
+        int pages = 0;
+        OwnerSummaryPage page;
+        do {
+            page = pagingOwnerService.findFuzzySummaryPage("Schmidt", pages).block();
+            result.addAll(page.getOwners());
+            pages++;
+        } while (page.hasNext());
+
+        // then
+        assertThat(pages).isEqualTo(2);
+        assertThat(result).extracting(OwnerSummary::getLastName)
+                .containsExactly("Schmidt", "Schmidt", "Schmidt", "Schmitt");
+        assertThat(result).extracting(OwnerSummary::getFirstName)
+                .containsExactly("Anna", "Bob", "Zoe", "Jens");
+    }
+
+    @DisplayName("should delete an owner together with its pets and their visits, but not those of other owners")
+    @Test
+    void testDeleteCascades() {
+        // given
+        Owner owner = this.owner("Schmidt", "Anna");
+        Owner otherOwner = this.owner("Davis", "Zoe");
+        TestDataFactory petData = new TestDataFactory(0, 2, 2);
+        Pet pet = petData.getPets().get(0);
+        Pet otherPet = petData.getPets().get(1);
+        this.ownerService.save(owner).block();
+        this.ownerService.save(otherOwner).block();
+        this.petService.save(owner.getId(), pet).block();
+        this.petService.save(otherOwner.getId(), otherPet).block();
+        this.visitService.createVisit(pet.getOwnerId(), pet.getId(), petData.getVisits().get(0)).block();
+        this.visitService.createVisit(otherPet.getOwnerId(), otherPet.getId(), petData.getVisits().get(1)).block();
+
+        // when
+        this.ownerService.delete(owner.getId()).block();
+
+        // then
+        assertThat(this.ownerService.getById(owner.getId()).block()).isNull();
+        assertThat(this.petRepository.findByOwnerId(owner.getId()).collectList().block()).isEmpty();
+        assertThat(this.visitRepository.findByPetIdIn(List.of(pet.getId())).collectList().block()).isEmpty();
+        Owner remaining = this.ownerService.getById(otherOwner.getId()).block();
+        assertThat(remaining.getPets()).hasSize(1);
+        assertThat(remaining.getPets().get(0).getVisits()).hasSize(1);
+    }
+
+    private Owner owner(String lastName, String firstName) {
+        Owner owner = this.testDataFactory.getOwner();
+        return Owner.builder()
+                .id(UUID.randomUUID())
+                .lastName(lastName)
+                .firstName(firstName)
+                .address(owner.getAddress())
+                .city(owner.getCity())
+                .telephone(owner.getTelephone())
+                .build();
+    }
 }
@@ -1,13 +1,23 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.TimeOrderedIdGenerator;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchLoader;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchWriter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphCache;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphChanges;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory.OwnerAutocompleteServiceInMemory;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory.VisitEventServiceInMemory;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,7 +26,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -29,6 +41,7 @@ public class PetServiceMongoIT {
     private static final int NUM_PETS = 2;
     private static final int NUM_VISITS = 1;
     private static final int NUM_VETS = 1;
+    private static final int VISIT_EVENT_BUFFER_SIZE = 16;
 
     private final PetRepository petRepository;
     private final VisitRepository visitRepository;
@@ -49,9 +62,17 @@ public class PetServiceMongoIT {
 
     @BeforeEach
     void setUp() {
-        this.visitService = new VisitServiceMongo(this.visitRepository);
-        this.petService = new PetServiceMongo(this.petRepository, this.visitService);
-        this.ownerService = new OwnerServiceMongo(this.ownerRepository, this.petService);
+        OwnerGraphChanges ownerGraphChanges = new OwnerGraphChanges(this.ownerRepository, OwnerGraphCache.noCache());
+        this.visitService = new VisitServiceMongo(this.visitRepository,
+                BatchLoader.direct(this.visitRepository::findByPetIdIn, Visit::getPetId),
+                BatchWriter.direct(this.visitRepository::saveAll),
+                ownerGraphChanges, new VisitEventServiceInMemory(VISIT_EVENT_BUFFER_SIZE));
+        this.petService = new PetServiceMongo(this.petRepository, this.visitService,
+                BatchLoader.direct(this.petRepository::findByOwnerIdIn, Pet::getOwnerId), ownerGraphChanges,
+                KnownIds.noFilter(), new TimeOrderedIdGenerator(), new PetclinicProperties());
+        this.ownerService = new OwnerServiceMongo(this.ownerRepository, this.petService,
+                new OwnerAutocompleteServiceInMemory(new PetclinicProperties()), OwnerGraphCache.noCache(),
+                KnownIds.noFilter(), new TimeOrderedIdGenerator(), new PetclinicProperties());
 
         this.visitRepository.deleteAll().block();
         this.petRepository.deleteAll().block();
@@ -83,9 +104,57 @@ public class PetServiceMongoIT {
 
         // then
         List<Pet> savedOwnerPetList = savedOwner.getPets();
-        assertThat(owner).isEqualToIgnoringGivenFields(savedOwner, "pets");
+        assertThat(owner).isEqualToIgnoringGivenFields(savedOwner, "pets", "graphVersion");
         assertEquals(2, savedOwnerPetList.size());
         assertThat(existingPet).isEqualToIgnoringGivenFields(savedOwnerPetList.get(0), "visits");
         assertThat(newPet).isEqualToIgnoringGivenFields(savedOwnerPetList.get(1), "visits");
     }
+
+    @DisplayName("should only report pets as existing for their own owner")
+    @Test
+    void testExistsByIdAndOwner() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        Pet pet = this.testDataFactory.getPet();
+        this.ownerService.save(owner).block();
+        this.petService.save(owner.getId(), pet).block();
+
+        // when
+        Boolean ownPet = this.petService.existsByIdAndOwner(pet.getId(), owner.getId()).block();
+        Boolean otherOwnersPet = this.petService.existsByIdAndOwner(pet.getId(), UUID.randomUUID()).block();
+        Boolean unknownPet = this.petService.existsByIdAndOwner(UUID.randomUUID(), owner.getId()).block();
+
+        // then
+        assertThat(ownPet).isTrue();
+        assertThat(otherOwnersPet).isFalse();
+        assertThat(unknownPet).isFalse();
+        assertThat(this.ownerService.existsById(owner.getId()).block()).isTrue();
+        assertThat(this.ownerService.existsById(UUID.randomUUID()).block()).isFalse();
+    }
+
+    @DisplayName("should delete a pet together with its visits, but not the visits of other pets")
+    @Test
+    void testDeleteCascades() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        Pet pet = this.testDataFactory.getPets().get(0);
+        Pet otherPet = this.testDataFactory.getPets().get(1);
+        this.ownerService.save(owner).block();
+        this.petService.save(owner.getId(), pet).block();
+        this.petService.save(owner.getId(), otherPet).block();
+        this.visitService.createVisit(pet.getOwnerId(), pet.getId(), this.testDataFactory.getVisit()).block();
+        this.visitService.createVisit(otherPet.getOwnerId(), otherPet.getId(), Visit.builder()
+                .id(UUID.randomUUID())
+                .date(LocalDate.of(2020, 1, 1))
+                .description("Checkup")
+                .build()).block();
+
+        // when
+        this.petService.delete(pet.getId()).block();
+
+        // then
+        assertThat(this.petRepository.findById(pet.getId()).block()).isNull();
+        assertThat(this.visitRepository.findByPetIdIn(List.of(pet.getId())).collectList().block()).isEmpty();
+        assertThat(this.visitRepository.findByPetIdIn(List.of(otherPet.getId())).collectList().block()).hasSize(1);
+    }
 }
@@ -0,0 +1,88 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.MongoConfig;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.VisitEvent;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("IT: Visit Event Service Mongo")
+@DataMongoTest
+@Import(MongoConfig.class)
+class VisitEventServiceMongoIT {
+
+    private static final int BUFFER_SIZE = 16;
+    private static final long CAPPED_SIZE = 1024 * 1024;
+    private static final Duration RETRY_DELAY = Duration.ofMillis(50);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final ReactiveMongoOperations mongoOperations;
+    private List<Visit> visits;
+    private UUID ownerId;
+
+    @Autowired
+    public VisitEventServiceMongoIT(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @BeforeEach
+    void setUp() {
+        this.visits = TestDataFactory.visitsOnly(2).getVisits();
+        this.ownerId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.mongoOperations.dropCollection(VisitEvent.class).block();
+    }
+
+    @DisplayName("should deliver events published on one node to the subscribers of another node")
+    @Test
+    void testPublishAcrossNodes() {
+        // given
+        VisitEventServiceMongo publishingNode = this.newNode();
+        VisitEventServiceMongo subscribingNode = this.newNode();
+
+        // when / then
+        StepVerifier.create(subscribingNode.events().take(2))
+                .then(() -> publishingNode.publish(VisitEvent.created(this.visits.get(0), this.ownerId)).block())
+                .then(() -> publishingNode.publish(VisitEvent.created(this.visits.get(1), this.ownerId)).block())
+                .assertNext(event -> assertThat(event.getVisitId()).isEqualTo(this.visits.get(0).getId()))
+                .assertNext(event -> {
+                    assertThat(event.getVisitId()).isEqualTo(this.visits.get(1).getId());
+                    assertThat(event.getOwnerId()).isEqualTo(this.ownerId);
+                })
+                .expectComplete()
+                .verify(TIMEOUT);
+    }
+
+    @DisplayName("should create the collection as capped collection")
+    @Test
+    void testCappedCollection() {
+        // when
+        this.newNode().publish(VisitEvent.created(this.visits.get(0), this.ownerId)).block();
+
+        // then
+        assertThat(this.mongoOperations.executeCommand("{collStats: 'visitEvents'}")
+                .map(stats -> stats.getBoolean("capped"))
+                .block()).isTrue();
+    }
+
+    private VisitEventServiceMongo newNode() {
+        return new VisitEventServiceMongo(this.mongoOperations, BUFFER_SIZE, CAPPED_SIZE, RETRY_DELAY);
+    }
+}
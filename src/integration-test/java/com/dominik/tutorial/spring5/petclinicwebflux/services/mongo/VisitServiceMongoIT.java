@@ -2,17 +2,31 @@ package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchLoader;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchWriter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphCache;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphChanges;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory.VisitEventServiceInMemory;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -23,20 +37,32 @@ class VisitServiceMongoIT {
     private final int NUM_OWNERS = 1;
     private final int NUM_PETS = 2;
     private final int NUM_VISITS = 3;
+    private final int VISIT_EVENT_BUFFER_SIZE = 16;
 
     private final VisitRepository visitRepository;
+    private final PetRepository petRepository;
+    private final OwnerRepository ownerRepository;
+    private final ReactiveMongoOperations mongoOperations;
     private VisitService visitService;
     private TestDataFactory testDataFactory;
 
     @Autowired
-    public VisitServiceMongoIT(VisitRepository visitRepository) {
+    public VisitServiceMongoIT(VisitRepository visitRepository, PetRepository petRepository,
+                               OwnerRepository ownerRepository, ReactiveMongoOperations mongoOperations) {
         this.visitRepository = visitRepository;
+        this.petRepository = petRepository;
+        this.ownerRepository = ownerRepository;
+        this.mongoOperations = mongoOperations;
     }
 
     @BeforeEach
     void setUp() {
         this.testDataFactory = new TestDataFactory(NUM_OWNERS, NUM_PETS, NUM_VISITS);
-        this.visitService = new VisitServiceMongo(this.visitRepository);
+        this.visitService = new VisitServiceMongo(this.visitRepository,
+                BatchLoader.direct(this.visitRepository::findByPetIdIn, Visit::getPetId),
+                BatchWriter.direct(this.mongoOperations::insertAll),
+                new OwnerGraphChanges(this.ownerRepository, OwnerGraphCache.noCache()),
+                new VisitEventServiceInMemory(VISIT_EVENT_BUFFER_SIZE));
     }
 
     @AfterEach
@@ -55,9 +81,9 @@ class VisitServiceMongoIT {
         Visit visit3 = this.testDataFactory.getVisits().get(2);
 
         // when
-        Visit resultVisit1 = this.visitService.createVisit(pet1.getId(), visit1).block();
-        Visit resultVisit2 = this.visitService.createVisit(pet1.getId(), visit2).block();
-        Visit resultVisit3 = this.visitService.createVisit(pet2.getId(), visit3).block();
+        Visit resultVisit1 = this.visitService.createVisit(pet1.getOwnerId(), pet1.getId(), visit1).block();
+        Visit resultVisit2 = this.visitService.createVisit(pet1.getOwnerId(), pet1.getId(), visit2).block();
+        Visit resultVisit3 = this.visitService.createVisit(pet2.getOwnerId(), pet2.getId(), visit3).block();
         List<Visit> visitsOfPet1 = this.visitService.findByPet(pet1.getId()).collectList().block();
         List<Visit> visitsOfPet2 = this.visitService.findByPet(pet2.getId()).collectList().block();
 
@@ -71,4 +97,67 @@ class VisitServiceMongoIT {
         assertThat(visit2).isEqualToComparingFieldByField(visitsOfPet1.get(1));
         assertThat(visit3).isEqualToComparingFieldByField(visitsOfPet2.get(0));
     }
-}
\ No newline at end of file
+
+    @DisplayName("should coalesce concurrent loads of visits by pet into one batch")
+    @Test
+    void testConcurrentFindByPetIsBatched() {
+        // given
+        Pet pet1 = this.testDataFactory.getPets().get(0);
+        Pet pet2 = this.testDataFactory.getPets().get(1);
+        this.visitService.createVisit(pet1.getOwnerId(), pet1.getId(), this.testDataFactory.getVisits().get(0)).block();
+        this.visitService.createVisit(pet1.getOwnerId(), pet1.getId(), this.testDataFactory.getVisits().get(1)).block();
+        this.visitService.createVisit(pet2.getOwnerId(), pet2.getId(), this.testDataFactory.getVisits().get(2)).block();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BatchLoader<UUID, Visit> loader = new BatchLoader<>("visitsByPet", this.visitRepository::findByPetIdIn,
+                Visit::getPetId, 10, Duration.ofMillis(50), meterRegistry);
+        VisitService batchingVisitService = new VisitServiceMongo(this.visitRepository, loader,
+                BatchWriter.direct(this.mongoOperations::insertAll),
+                new OwnerGraphChanges(this.ownerRepository, OwnerGraphCache.noCache()),
+                new VisitEventServiceInMemory(VISIT_EVENT_BUFFER_SIZE));
+
+        // when
+        List<List<Visit>> result = Flux.merge(
+                batchingVisitService.findByPet(pet1.getId()).collectList(),
+                batchingVisitService.findByPet(pet2.getId()).collectList(),
+                batchingVisitService.findByPet(UUID.randomUUID()).collectList())
+                .collectList()
+                .block();
+        loader.dispose();
+
+        // then
+        assertThat(result).extracting(List::size).containsExactlyInAnyOrder(2, 1, 0);
+        DistributionSummary batchSizes = meterRegistry.get("petclinic.batch.loader.size").summary();
+        assertThat(batchSizes.count()).isEqualTo(1);
+        assertThat(batchSizes.totalAmount()).isEqualTo(3);
+    }
+
+    @DisplayName("should coalesce concurrent inserts of visits into one batch")
+    @Test
+    void testConcurrentCreateVisitIsBatched() {
+        // given
+        Pet pet = this.testDataFactory.getPet();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        BatchWriter<Visit> writer = new BatchWriter<>("visits", this.mongoOperations::insertAll, 10,
+                Duration.ofMillis(50), meterRegistry);
+        VisitService batchingVisitService = new VisitServiceMongo(this.visitRepository,
+                BatchLoader.direct(this.visitRepository::findByPetIdIn, Visit::getPetId), writer,
+                new OwnerGraphChanges(this.ownerRepository, OwnerGraphCache.noCache()),
+                new VisitEventServiceInMemory(VISIT_EVENT_BUFFER_SIZE));
+
+        // when
+        List<Boolean> result = Flux.fromIterable(this.testDataFactory.getVisits())
+                .flatMap(visit -> batchingVisitService.createVisit(pet.getOwnerId(), pet.getId(), visit)
+                        .map(created -> created == visit && created.getId() != null && created.getVersion() != null))
+                .collectList()
+                .block();
+        writer.dispose();
+
+        // then
+        assertThat(result).hasSize(NUM_VISITS).containsOnly(true);
+        assertThat(this.visitRepository.findByPetIdIn(List.of(pet.getId())).count().block()).isEqualTo(NUM_VISITS);
+        DistributionSummary batchSizes = meterRegistry.get("petclinic.batch.writer.size").summary();
+        assertThat(batchSizes.count()).isEqualTo(1);
+        assertThat(batchSizes.totalAmount()).isEqualTo(NUM_VISITS);
+        assertThat(meterRegistry.get("petclinic.batch.writer.linger").timer().count()).isEqualTo(NUM_VISITS);
+    }
+}
@@ -28,6 +28,9 @@ public class FormDataMapper {
         if (owner.getTelephone() != null) {
             formData.add("telephone", owner.getTelephone());
         }
+        if (owner.getVersion() != null) {
+            formData.add("version", owner.getVersion().toString());
+        }
 
         return formData;
     }
@@ -46,6 +49,9 @@ public class FormDataMapper {
         if (pet.getPetType() != null) {
             result.add("petType", pet.getPetType().toString());
         }
+        if (pet.getVersion() != null) {
+            result.add("version", pet.getVersion().toString());
+        }
 
         return result;
     }
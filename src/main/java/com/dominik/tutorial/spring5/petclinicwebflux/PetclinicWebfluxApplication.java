@@ -2,8 +2,10 @@ package com.dominik.tutorial.spring5.petclinicwebflux;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class PetclinicWebfluxApplication {
 
 	public static void main(String[] args) {
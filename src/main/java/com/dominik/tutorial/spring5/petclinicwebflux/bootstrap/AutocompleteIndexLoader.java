@@ -0,0 +1,27 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerLastName;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AutocompleteIndexLoader implements CommandLineRunner {
+
+    private final OwnerRepository ownerRepository;
+    private final OwnerAutocompleteService autocompleteService;
+
+    public AutocompleteIndexLoader(OwnerRepository ownerRepository, OwnerAutocompleteService autocompleteService) {
+        this.ownerRepository = ownerRepository;
+        this.autocompleteService = autocompleteService;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Long count = this.autocompleteService
+                .rebuild(this.ownerRepository.findLastNamesBy().map(OwnerLastName::getLastName))
+                .block();
+        System.out.println("Indexed " + count + " owner last names for autocompletion");
+    }
+}
@@ -0,0 +1,40 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ImportSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ImportService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.generator.DatasetGenerator;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/*
+Loads a generated dataset on startup with the profile "generate", configured with --petclinic.generator.*.
+The records are imported without being serialized, in batches of --petclinic.imports.batch-size. Loading the
+same settings again only fails the records as duplicates, as their IDs are generated as well
+ */
+@Component
+@Profile("generate")
+public class DatasetGeneratorRunner implements CommandLineRunner {
+
+    private final ImportService importService;
+    private final PetclinicProperties properties;
+
+    public DatasetGeneratorRunner(ImportService importService, PetclinicProperties properties) {
+        this.importService = importService;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        PetclinicProperties.Generator generator = this.properties.getGenerator();
+        ImportSummary summary = this.importService
+                .importEntities(new DatasetGenerator(generator).generate())
+                .block();
+
+        System.out.println("Generated " + summary.getOwners() + " owners, " + summary.getPets() + " pets and "
+                + summary.getVisits() + " visits with seed " + generator.getSeed() + " in "
+                + summary.getDurationMillis() + " ms (" + summary.getRecordsPerSecond() + " records/s), "
+                + summary.getFailed() + " records failed");
+    }
+}
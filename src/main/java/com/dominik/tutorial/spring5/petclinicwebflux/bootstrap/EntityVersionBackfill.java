@@ -0,0 +1,53 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Vet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+Adds the initial version to entities which were stored before optimistic locking was introduced. Without
+version, saving such an entity would be taken for an insert and fail because of the existing ID. Finding them
+scans all entities, so it only runs once per database, see Migrations
+ */
+@Slf4j
+@Component
+public class EntityVersionBackfill implements CommandLineRunner {
+
+    private static final String MIGRATION = "entity-versions";
+    private static final String FIELD_VERSION = "version";
+    private static final long INITIAL_VERSION = 0L;
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final Migrations migrations;
+
+    public EntityVersionBackfill(ReactiveMongoOperations mongoOperations, Migrations migrations) {
+        this.mongoOperations = mongoOperations;
+        this.migrations = migrations;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Query entitiesWithoutVersion = new Query(where(FIELD_VERSION).exists(false));
+        Update initialVersion = new Update().set(FIELD_VERSION, INITIAL_VERSION);
+        Long updated = this.migrations.runOnce(MIGRATION, Flux.just(Owner.class, Pet.class, Visit.class, Vet.class)
+                        .flatMap(type -> this.mongoOperations.updateMulti(entitiesWithoutVersion, initialVersion, type))
+                        .map(UpdateResult::getModifiedCount)
+                        .reduce(0L, Long::sum))
+                .block();
+
+        if (updated != null && updated > 0) {
+            log.info("Added versions to {} entities", updated);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ExportService;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/* Exports to the file given with --petclinic.exports.file=<path> on startup */
+@Component
+public class ExportRunner implements CommandLineRunner {
+
+    private final ExportService exportService;
+    private final PetclinicProperties properties;
+
+    public ExportRunner(ExportService exportService, PetclinicProperties properties) {
+        this.exportService = exportService;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        String file = this.properties.getExports().getFile();
+        if (file == null || file.isBlank()) {
+            return;
+        }
+        Path path = Path.of(file);
+        long start = System.nanoTime();
+        Long lines = Flux.using(() -> Files.newBufferedWriter(path),
+                        writer -> this.exportService.exportAll()
+                                .publishOn(Schedulers.boundedElastic())
+                                .doOnNext(line -> this.writeLine(writer, line)),
+                        this::close)
+                .count()
+                .block();
+
+        System.out.println("Exported " + lines + " records to " + path + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private void writeLine(BufferedWriter writer, String line) {
+        try {
+            writer.write(line);
+            writer.newLine();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void close(BufferedWriter writer) {
+        try {
+            writer.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ImportSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ImportService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportFormat;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/*
+Imports the file given with --petclinic.imports.file=<path> on startup. The file is read lazily, line by line,
+as fast as the records are written
+ */
+@Component
+public class ImportRunner implements CommandLineRunner {
+
+    private final ImportService importService;
+    private final PetclinicProperties properties;
+
+    public ImportRunner(ImportService importService, PetclinicProperties properties) {
+        this.importService = importService;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        String file = this.properties.getImports().getFile();
+        if (file == null || file.isBlank()) {
+            return;
+        }
+        Path path = Path.of(file);
+        ImportSummary summary = this.importService
+                .importRecords(Flux.using(() -> Files.lines(path), Flux::fromStream, Stream::close),
+                        ImportFormat.fromFileName(file))
+                .block();
+
+        System.out.println("Imported " + summary.getOwners() + " owners, " + summary.getPets() + " pets and "
+                + summary.getVisits() + " visits from " + path + " in " + summary.getDurationMillis() + " ms ("
+                + summary.getRecordsPerSecond() + " records/s), " + summary.getFailed() + " records failed");
+        summary.getErrors().forEach(e -> System.out.println("Line " + e.getLine() + ": " + e.getMessage()));
+    }
+}
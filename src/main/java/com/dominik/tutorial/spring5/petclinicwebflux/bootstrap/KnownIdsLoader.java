@@ -0,0 +1,39 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.EntityId;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/* Only scans the IDs when the filters are enabled with --petclinic.known-ids.enabled=true */
+@Slf4j
+@Component
+public class KnownIdsLoader implements CommandLineRunner {
+
+    private final OwnerRepository ownerRepository;
+    private final PetRepository petRepository;
+    private final KnownIds knownIds;
+    private final PetclinicProperties properties;
+
+    public KnownIdsLoader(OwnerRepository ownerRepository, PetRepository petRepository, KnownIds knownIds,
+                          PetclinicProperties properties) {
+        this.ownerRepository = ownerRepository;
+        this.petRepository = petRepository;
+        this.knownIds = knownIds;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (!this.properties.getKnownIds().isEnabled()) {
+            return;
+        }
+        Long owners = this.knownIds.owners().load(this.ownerRepository.findIdsBy().map(EntityId::getId)).block();
+        Long pets = this.knownIds.pets().load(this.petRepository.findIdsBy().map(EntityId::getId)).block();
+        log.info("Loaded {} owner IDs and {} pet IDs", owners, pets);
+    }
+}
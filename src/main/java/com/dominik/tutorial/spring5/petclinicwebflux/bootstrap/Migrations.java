@@ -0,0 +1,47 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Date;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/*
+Records the migrations applied to the database, so that a migration which has to scan whole collections runs
+once per database instead of on every startup. A migration is only recorded after it completed, so an interrupted
+one runs again and has to be idempotent. Nodes starting at the same time may both run it, the second record fails
+as a duplicate and is ignored
+ */
+@Component
+public class Migrations {
+
+    static final String COLLECTION = "migrations";
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_APPLIED_AT = "appliedAt";
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public Migrations(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    /* Runs the migration unless it was applied before, emits nothing then */
+    public <T> Mono<T> runOnce(String name, Mono<T> migration) {
+        return this.mongoOperations.exists(query(where(FIELD_ID).is(name)), COLLECTION)
+                .flatMap(applied -> applied ? Mono.<T>empty() : migration
+                        .flatMap(result -> this.recordApplied(name).thenReturn(result))
+                        .switchIfEmpty(this.recordApplied(name).then(Mono.empty())));
+    }
+
+    private Mono<Void> recordApplied(String name) {
+        Document migration = new Document(FIELD_ID, name).append(FIELD_APPLIED_AT, new Date());
+        return this.mongoOperations.insert(migration, COLLECTION)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+                .then();
+    }
+}
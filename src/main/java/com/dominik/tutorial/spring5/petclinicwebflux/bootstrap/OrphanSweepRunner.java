@@ -0,0 +1,66 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.mongo.OrphanSweeper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+Starts the periodic orphan sweep once all other runners are done. A failed sweep is reported and retried
+with the next one, a sweep taking longer than the interval delays the next one instead of overlapping it
+ */
+@Slf4j
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class OrphanSweepRunner implements CommandLineRunner, DisposableBean {
+
+    private final OrphanSweeper orphanSweeper;
+    private final PetclinicProperties properties;
+    private Disposable sweeps;
+
+    public OrphanSweepRunner(OrphanSweeper orphanSweeper, PetclinicProperties properties) {
+        this.orphanSweeper = orphanSweeper;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        PetclinicProperties.OrphanSweep orphanSweep = this.properties.getOrphanSweep();
+        if (!orphanSweep.isEnabled()) {
+            return;
+        }
+        this.sweeps = Flux.interval(orphanSweep.getInitialDelay(), orphanSweep.getInterval())
+                .onBackpressureDrop()
+                .concatMap(i -> this.sweep(), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        if (this.sweeps != null) {
+            this.sweeps.dispose();
+        }
+    }
+
+    private Mono<Void> sweep() {
+        return this.orphanSweeper.sweepPets()
+                .zipWhen(pets -> this.orphanSweeper.sweepVisits())
+                .doOnNext(deleted -> {
+                    if (deleted.getT1() > 0 || deleted.getT2() > 0) {
+                        log.info("Deleted {} orphaned pets and {} orphaned visits", deleted.getT1(), deleted.getT2());
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.warn("Orphan sweep failed", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
@@ -0,0 +1,64 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+Adds the last name search keys to owners which were stored before the keys were introduced,
+so that they are found by the indexed last name search. Finding them scans all owners, so it only runs once
+per database, see Migrations
+ */
+@Slf4j
+@Component
+public class OwnerSearchKeyBackfill implements CommandLineRunner {
+
+    private static final String MIGRATION = "owner-search-keys";
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_LAST_NAME_KEY = "lastNameKey";
+    private static final String FIELD_LAST_NAME_TOKENS = "lastNameTokens";
+    private static final String FIELD_LAST_NAME_PHONETIC_KEYS = "lastNamePhoneticKeys";
+    private static final int CONCURRENCY = 16;
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final Migrations migrations;
+
+    public OwnerSearchKeyBackfill(ReactiveMongoOperations mongoOperations, Migrations migrations) {
+        this.mongoOperations = mongoOperations;
+        this.migrations = migrations;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Query ownersWithoutKeys = new Query(new Criteria().orOperator(
+                where(FIELD_LAST_NAME_TOKENS).exists(false),
+                where(FIELD_LAST_NAME_PHONETIC_KEYS).exists(false)));
+        Long updated = this.migrations.runOnce(MIGRATION, this.mongoOperations.find(ownersWithoutKeys, Owner.class)
+                        .flatMap(this::updateSearchKeys, CONCURRENCY)
+                        .count())
+                .block();
+
+        if (updated != null && updated > 0) {
+            log.info("Added search keys to {} owners", updated);
+        }
+    }
+
+    private Mono<Owner> updateSearchKeys(Owner owner) {
+        owner.updateSearchKeys();
+        Update update = new Update()
+                .set(FIELD_LAST_NAME_KEY, owner.getLastNameKey())
+                .set(FIELD_LAST_NAME_TOKENS, owner.getLastNameTokens())
+                .set(FIELD_LAST_NAME_PHONETIC_KEYS, owner.getLastNamePhoneticKeys());
+        return this.mongoOperations
+                .updateFirst(new Query(where(FIELD_ID).is(owner.getId())), update, Owner.class)
+                .thenReturn(owner);
+    }
+}
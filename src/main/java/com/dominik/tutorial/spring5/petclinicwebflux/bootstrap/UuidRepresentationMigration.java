@@ -0,0 +1,90 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.bootstrap;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Vet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.UuidRepresentation;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/*
+Converts the UUIDs of documents stored in the Java legacy representation to the standard one, see MongoConfig.
+As the ID of a document cannot be changed, each document is stored under its converted ID before the old one is
+deleted, so an interrupted migration can just be run again. Binary data sorts by subtype, so the documents still
+to be migrated are found on the _id index. Runs before the other runners, as they read the stored IDs
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class UuidRepresentationMigration implements CommandLineRunner {
+
+    private static final String FIELD_ID = "_id";
+    private static final BsonBinary FIRST_STANDARD_UUID = new BsonBinary(BsonBinarySubType.UUID_STANDARD, new byte[16]);
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public UuidRepresentationMigration(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        Map<Class<?>, List<String>> uuidFields = Map.of(
+                Owner.class, List.of(FIELD_ID),
+                Pet.class, List.of(FIELD_ID, "ownerId"),
+                Visit.class, List.of(FIELD_ID, "petId"),
+                Vet.class, List.of(FIELD_ID));
+        Long migrated = Flux.fromIterable(uuidFields.entrySet())
+                .concatMap(e -> this.migrate(this.mongoOperations.getCollectionName(e.getKey()), e.getValue()))
+                .reduce(0L, Long::sum)
+                .block();
+
+        if (migrated != null && migrated > 0) {
+            System.out.println("Converted the UUIDs of " + migrated + " documents to the standard representation");
+        }
+    }
+
+    private Mono<Long> migrate(String collectionName, List<String> uuidFields) {
+        MongoCollection<BsonDocument> collection = this.mongoOperations.getCollection(collectionName)
+                .withDocumentClass(BsonDocument.class);
+        return Flux.from(collection.find(Filters.lt(FIELD_ID, FIRST_STANDARD_UUID)))
+                .filter(document -> isLegacyUuid(document.get(FIELD_ID)))
+                .concatMap(document -> {
+                    BsonValue legacyId = document.get(FIELD_ID);
+                    uuidFields.forEach(field -> {
+                        if (isLegacyUuid(document.get(field))) {
+                            document.put(field, toStandard(document.getBinary(field)));
+                        }
+                    });
+                    return Mono.from(collection.replaceOne(Filters.eq(FIELD_ID, document.get(FIELD_ID)), document,
+                                    new ReplaceOptions().upsert(true)))
+                            .then(Mono.from(collection.deleteOne(Filters.eq(FIELD_ID, legacyId))));
+                })
+                .count();
+    }
+
+    private static boolean isLegacyUuid(BsonValue value) {
+        return value != null && value.isBinary()
+                && value.asBinary().getType() == BsonBinarySubType.UUID_LEGACY.getValue()
+                && value.asBinary().getData().length == 16;
+    }
+
+    private static BsonBinary toStandard(BsonBinary legacyUuid) {
+        return new BsonBinary(legacyUuid.asUuid(UuidRepresentation.JAVA_LEGACY), UuidRepresentation.STANDARD);
+    }
+}
@@ -0,0 +1,45 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.config;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.controllers.api.ApiResponses;
+import com.dominik.tutorial.spring5.petclinicwebflux.controllers.api.OwnerApiHandler;
+import com.dominik.tutorial.spring5.petclinicwebflux.controllers.api.VetApiHandler;
+import com.dominik.tutorial.spring5.petclinicwebflux.controllers.api.VisitEventApiHandler;
+import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.EntityNotFoundException;
+import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.InvalidParameterException;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+@Configuration
+public class ApiRouterConfig {
+
+    /*
+    Read-only JSON API next to the HTML pages, using the same services. Every route takes a "fields" parameter
+    with the fields to return, see FieldSelection
+     */
+    @Bean
+    public RouterFunction<ServerResponse> apiRoutes(OwnerApiHandler ownerHandler, VetApiHandler vetHandler,
+                                                    VisitEventApiHandler visitEventHandler,
+                                                    ApiResponses apiResponses) {
+        return RouterFunctions.route()
+                .path("/api", api -> api
+                        .GET("/owners", ownerHandler::findOwners)
+                        .GET("/owners/{ownerId}", ownerHandler::getOwner)
+                        .GET("/owners/{ownerId}/pets", ownerHandler::findPets)
+                        .GET("/owners/{ownerId}/pets/{petId}", ownerHandler::getPet)
+                        .GET("/owners/{ownerId}/pets/{petId}/visits", ownerHandler::findVisits)
+                        .GET("/visits/events", visitEventHandler::streamVisitEvents)
+                        .GET("/vets", vetHandler::findVets))
+                .onError(EntityNotFoundException.class,
+                        (exception, request) -> apiResponses.error(HttpStatus.NOT_FOUND, exception))
+                .onError(InvalidParameterException.class,
+                        (exception, request) -> apiResponses.error(HttpStatus.BAD_REQUEST, exception))
+                /* Invalid parameters are thrown when the handler is called, this turns them into errors */
+                .filter((request, next) -> Mono.defer(() -> next.handle(request)))
+                .build();
+    }
+}
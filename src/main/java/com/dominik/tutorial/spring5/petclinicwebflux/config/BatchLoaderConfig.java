@@ -0,0 +1,51 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.config;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchLoader;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+import java.util.UUID;
+
+@Configuration
+public class BatchLoaderConfig {
+
+    private final PetclinicProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public BatchLoaderConfig(PetclinicProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public BatchLoader<UUID, Pet> petsByOwnerLoader(PetRepository petRepository) {
+        return new BatchLoader<>("petsByOwner", petRepository::findByOwnerIdIn, Pet::getOwnerId,
+                this.maxBatchSize(), this.properties.getBatching().getMaxWait(), this.meterRegistry);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public BatchLoader<UUID, Visit> visitsByPetLoader(VisitRepository visitRepository) {
+        return new BatchLoader<>("visitsByPet", visitRepository::findByPetIdIn, Visit::getPetId,
+                this.maxBatchSize(), this.properties.getBatching().getMaxWait(), this.meterRegistry);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public BatchWriter<Visit> visitWriter(ReactiveMongoOperations mongoOperations) {
+        PetclinicProperties.BatchWrites batchWrites = this.properties.getBatchWrites();
+        return new BatchWriter<>("visits", mongoOperations::insertAll,
+                batchWrites.isEnabled() ? batchWrites.getMaxBatchSize() : 1, batchWrites.getMaxLinger(),
+                this.meterRegistry);
+    }
+
+    private int maxBatchSize() {
+        PetclinicProperties.Batching batching = this.properties.getBatching();
+        return batching.isEnabled() ? batching.getMaxBatchSize() : 1;
+    }
+}
@@ -0,0 +1,32 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.config;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.IdFilter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public OwnerGraphCache ownerGraphCache(PetclinicProperties properties, MeterRegistry meterRegistry) {
+        PetclinicProperties.OwnerCache ownerCache = properties.getOwnerCache();
+        if (!ownerCache.isEnabled()) {
+            return OwnerGraphCache.noCache();
+        }
+        return new OwnerGraphCache(ownerCache.getMaximumWeight(), ownerCache.getExpireAfterWrite(), meterRegistry);
+    }
+
+    @Bean
+    public KnownIds knownIds(PetclinicProperties properties) {
+        PetclinicProperties.KnownIds knownIds = properties.getKnownIds();
+        if (!knownIds.isEnabled()) {
+            return KnownIds.noFilter();
+        }
+        return new KnownIds(
+                new IdFilter(knownIds.getExpectedIds(), knownIds.getFalsePositiveProbability()),
+                new IdFilter(knownIds.getExpectedIds(), knownIds.getFalsePositiveProbability()));
+    }
+}
@@ -0,0 +1,19 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.config;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.IdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.RandomIdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.TimeOrderedIdGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    @Bean
+    public IdGenerator idGenerator(PetclinicProperties properties) {
+        if (properties.getIds().getGenerator() == PetclinicProperties.Ids.Generator.RANDOM) {
+            return new RandomIdGenerator();
+        }
+        return new TimeOrderedIdGenerator();
+    }
+}
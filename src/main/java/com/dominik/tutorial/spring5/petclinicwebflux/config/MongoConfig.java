@@ -0,0 +1,26 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.config;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.UuidRepresentation;
+import org.bson.codecs.UuidCodec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MongoConfig {
+
+    /*
+    UUIDs are stored as standard binary (subtype 4) instead of the driver's default Java legacy binary (subtype 3),
+    which stores both halves of the UUID byte-reversed. Only in the standard representation do time ordered IDs
+    sort by time in the indexes, and other drivers and tools read the same UUID. Documents stored in the legacy
+    representation are converted by the UuidRepresentationMigration
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer standardUuidRepresentation() {
+        return settings -> settings.codecRegistry(CodecRegistries.fromRegistries(
+                CodecRegistries.fromCodecs(new UuidCodec(UuidRepresentation.STANDARD)),
+                MongoClientSettings.getDefaultCodecRegistry()));
+    }
+}
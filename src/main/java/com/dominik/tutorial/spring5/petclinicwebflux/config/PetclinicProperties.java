@@ -0,0 +1,320 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "petclinic")
+public class PetclinicProperties {
+
+    private final OwnerGraph ownerGraph = new OwnerGraph();
+    private final Batching batching = new Batching();
+    private final BatchWrites batchWrites = new BatchWrites();
+    private final OwnerList ownerList = new OwnerList();
+    private final Autocomplete autocomplete = new Autocomplete();
+    private final OwnerCache ownerCache = new OwnerCache();
+    private final ReferenceData referenceData = new ReferenceData();
+    private final KnownIds knownIds = new KnownIds();
+    private final Ids ids = new Ids();
+    private final Imports imports = new Imports();
+    private final Exports exports = new Exports();
+    private final VisitEvents visitEvents = new VisitEvents();
+    private final Deletes deletes = new Deletes();
+    private final OrphanSweep orphanSweep = new OrphanSweep();
+    private final Generator generator = new Generator();
+
+    @Getter
+    @Setter
+    public static class OwnerGraph {
+
+        /**
+         * Load the owner details (owner, pets and visits) with a single $lookup aggregation
+         * instead of separate queries for the owner, the pets and the visits
+         */
+        private boolean aggregation = true;
+
+        /**
+         * Number of owners whose pets and visits are loaded together when listing owners
+         */
+        private int batchSize = 500;
+    }
+
+    @Getter
+    @Setter
+    public static class Batching {
+
+        /**
+         * Coalesce concurrent loads of pets by owner and visits by pet into batched $in queries
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of keys loaded with a single query
+         */
+        private int maxBatchSize = 100;
+
+        /**
+         * Maximum time a load waits for further keys before its batch is dispatched
+         */
+        private Duration maxWait = Duration.ofMillis(2);
+    }
+
+    @Getter
+    @Setter
+    public static class BatchWrites {
+
+        /**
+         * Coalesce concurrent inserts of new visits into batched inserts
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of visits inserted with a single insert
+         */
+        private int maxBatchSize = 100;
+
+        /**
+         * Maximum time an insert waits for further inserts before its batch is written
+         */
+        private Duration maxLinger = Duration.ofMillis(5);
+    }
+
+    @Getter
+    @Setter
+    public static class OwnerList {
+
+        /**
+         * Number of owners shown per page when listing or searching owners
+         */
+        private int pageSize = 20;
+    }
+
+    @Getter
+    @Setter
+    public static class Autocomplete {
+
+        /**
+         * Maximum number of last name completions kept per prefix and returned by the typeahead endpoint
+         */
+        private int maxCompletions = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class OwnerCache {
+
+        /**
+         * Cache the owner details (owner, pets and visits) by owner ID
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum total weight of the cached owner details, an owner weighs one plus one per pet and visit
+         */
+        private long maximumWeight = 50_000;
+
+        /**
+         * Time after which cached owner details are reloaded even without a write to the owner
+         */
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+    }
+
+    @Getter
+    @Setter
+    public static class ReferenceData {
+
+        /**
+         * Age of the vets and pet types snapshot after which it is reloaded in the background on the next read
+         */
+        private Duration refreshAfter = Duration.ofMinutes(5);
+    }
+
+    @Getter
+    @Setter
+    public static class KnownIds {
+
+        /**
+         * Answer reads of owner and pet IDs which were never stored as not found, without a query. The filters only
+         * know the IDs written through this instance, so enable it only when this instance is the single writer
+         */
+        private boolean enabled = false;
+
+        /**
+         * Number of owner IDs and of pet IDs the filters are sized for, beyond it false positives become more likely
+         */
+        private long expectedIds = 1_000_000;
+
+        /**
+         * Probability that an ID which was never stored is still looked up, at the expected number of IDs
+         */
+        private double falsePositiveProbability = 0.01;
+    }
+
+    @Getter
+    @Setter
+    public static class Ids {
+
+        /**
+         * Generator for the IDs of new entities, time ordered IDs keep inserts at the end of the _id index
+         */
+        private Generator generator = Generator.TIME_ORDERED;
+
+        public enum Generator {
+            TIME_ORDERED, RANDOM
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Imports {
+
+        /**
+         * NDJSON or CSV file (by the extension .csv) to import on startup
+         */
+        private String file;
+
+        /**
+         * Number of records of the same type written with a single unordered insert
+         */
+        private int batchSize = 1_000;
+
+        /**
+         * Maximum number of failed records reported with their line and error, further ones are only counted
+         */
+        private int maxReportedErrors = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class Exports {
+
+        /**
+         * NDJSON file to export all owners, pets and visits to on startup
+         */
+        private String file;
+
+        /**
+         * Number of documents fetched from a cursor at a time, at most two cursors are open during an export
+         */
+        private int batchSize = 1_000;
+    }
+
+    @Getter
+    @Setter
+    public static class VisitEvents {
+
+        /**
+         * Share new visits with the subscribers on all nodes through a capped collection, instead of only on this node
+         */
+        private boolean shared = false;
+
+        /**
+         * Number of events buffered for each subscriber, a subscriber falling further behind loses the oldest ones
+         */
+        private int bufferSize = 256;
+
+        /**
+         * Size in bytes of the capped collection of shared events, older events are overwritten beyond it
+         */
+        private long cappedSize = 16 * 1024 * 1024;
+
+        /**
+         * Time after which the tailable cursor on the shared events is opened again once it ended or failed
+         */
+        private Duration retryDelay = Duration.ofSeconds(1);
+
+        /**
+         * Interval of comments sent to idle subscribers, so that proxies do not close their connections
+         */
+        private Duration heartbeatInterval = Duration.ofSeconds(15);
+    }
+
+    @Getter
+    @Setter
+    public static class Deletes {
+
+        /**
+         * Number of pet IDs whose visits are deleted with a single deleteMany when an owner is deleted
+         */
+        private int batchSize = 1_000;
+    }
+
+    @Getter
+    @Setter
+    public static class OrphanSweep {
+
+        /**
+         * Periodically delete visits of deleted pets and pets of deleted owners
+         */
+        private boolean enabled = true;
+
+        /**
+         * Time after startup before the first sweep
+         */
+        private Duration initialDelay = Duration.ofMinutes(5);
+
+        /**
+         * Time between the start of two sweeps, a sweep still running when the next one is due delays it
+         */
+        private Duration interval = Duration.ofHours(1);
+
+        /**
+         * Number of referenced pet or owner IDs checked for existence with a single query
+         */
+        private int batchSize = 1_000;
+    }
+
+    @Getter
+    @Setter
+    public static class Generator {
+
+        /**
+         * Seed of the generated dataset, the same seed and settings always generate the same dataset
+         */
+        private long seed = 42;
+
+        /**
+         * Number of generated owners
+         */
+        private int owners = 10_000;
+
+        /**
+         * Mean number of pets per owner. Geometrically distributed: most owners have none or one, few have many
+         */
+        private double petsPerOwner = 1.5;
+
+        /**
+         * Most pets an owner gets
+         */
+        private int maxPetsPerOwner = 20;
+
+        /**
+         * Mean number of visits per pet. Log-normally distributed, so that a few pets have most of the visits
+         */
+        private double visitsPerPet = 4;
+
+        /**
+         * Skew of the visits per pet (standard deviation of their logarithm), with 0 every pet gets the mean
+         */
+        private double visitsSkew = 1.0;
+
+        /**
+         * Most visits a pet gets
+         */
+        private int maxVisitsPerPet = 500;
+
+        /**
+         * Day the generated history ends at (ISO date), fixed so that the dataset does not depend on the day
+         */
+        private String referenceDate = "2020-01-01";
+
+        /**
+         * Years of history before the reference date, in which the pets are born and visit the clinic
+         */
+        private int years = 15;
+    }
+}
@@ -0,0 +1,23 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.config;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitEventService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory.VisitEventServiceInMemory;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.mongo.VisitEventServiceMongo;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+
+@Configuration
+public class VisitEventConfig {
+
+    @Bean
+    public VisitEventService visitEventService(PetclinicProperties properties,
+                                               ReactiveMongoOperations mongoOperations) {
+        PetclinicProperties.VisitEvents visitEvents = properties.getVisitEvents();
+        if (!visitEvents.isShared()) {
+            return new VisitEventServiceInMemory(visitEvents.getBufferSize());
+        }
+        return new VisitEventServiceMongo(mongoOperations, visitEvents.getBufferSize(), visitEvents.getCappedSize(),
+                visitEvents.getRetryDelay());
+    }
+}
@@ -2,10 +2,13 @@ package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.EntityNotFoundException;
 import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.InvalidParameterException;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.BaseEntity;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import reactor.core.publisher.Mono;
 
 import java.util.UUID;
 
@@ -13,14 +16,27 @@ public class BaseController {
 
     private static final String MODEL_ATTRIBUTE_ERROR = "error";
     private static final String VIEW_400_ERROR = "400error";
+    protected static final String MODEL_ATTRIBUTE_CONFLICT = "conflict";
 
     protected UUID fromStringOrThrow(String givenId, Class forEntity) throws InvalidParameterException {
-        try {
-            return UUID.fromString(givenId);
-        }
-        catch (IllegalArgumentException e) {
-            throw InvalidParameterException.invalidUUID(forEntity, givenId);
+        return PathIds.fromStringOrThrow(givenId, forEntity);
+    }
+
+    /*
+    An edit has to be based on the version shown in the edit form. An edit without version would overwrite
+    any change made in the meantime, so it is treated like an outdated one
+     */
+    protected <T extends BaseEntity> Mono<T> requireVersion(T entity) {
+        if (entity.getVersion() == null) {
+            return Mono.error(new OptimisticLockingFailureException(entity.getClass().getSimpleName() + " with ID "
+                    + entity.getId() + " was edited without version"));
         }
+        return Mono.just(entity);
+    }
+
+    /* The edit form is shown again with the current state, so the changes can be applied to it */
+    protected String redirectToConflictingEdit(String editPath) {
+        return "redirect:" + editPath + "?" + MODEL_ATTRIBUTE_CONFLICT + "=true";
     }
 
     @ExceptionHandler
@@ -0,0 +1,26 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ExportService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+/* The lines are written as they are read from the database, a slow client slows down the reading */
+@RestController
+@RequestMapping("/exports")
+public class ExportController {
+
+    private final ExportService exportService;
+
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    @GetMapping(produces = ImportFormat.NDJSON_VALUE)
+    public Flux<String> exportAll() {
+        return this.exportService.exportAll()
+                .map(line -> line + "\n");
+    }
+}
@@ -0,0 +1,33 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ImportSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ImportService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/* The body is decoded line by line while it is imported, it is never held in memory as a whole */
+@RestController
+@RequestMapping("/imports")
+public class ImportController {
+
+    private final ImportService importService;
+
+    public ImportController(ImportService importService) {
+        this.importService = importService;
+    }
+
+    @PostMapping(consumes = {ImportFormat.NDJSON_VALUE, ImportFormat.CSV_VALUE},
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ImportSummary> importRecords(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                             @RequestBody Flux<String> lines) {
+        return this.importService.importRecords(lines, ImportFormat.fromMediaType(contentType));
+    }
+}
@@ -1,15 +1,23 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.EntityNotFoundException;
+import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.InvalidParameterException;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerCursor;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphVersion;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
-import org.springframework.validation.DataBinder;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Mono;
 
+import javax.validation.Valid;
+import java.util.List;
 import java.util.UUID;
 
 @Controller
@@ -18,6 +26,9 @@ public class OwnerController extends BaseController {
 
     public static final String MODEL_ATTRIBUTE_OWNER = "owner";
     private static final String MODEL_ATTRIBUTE_IS_NEW = "isNew";
+    private static final String MODEL_ATTRIBUTE_LAST_NAME = "lastName";
+    private static final String MODEL_ATTRIBUTE_PAGE = "page";
+    private static final String MODEL_ATTRIBUTE_FUZZY = "fuzzy";
 
     private static final String VIEW_CREATE_OR_UPDATE_OWNER_FORM = "owners/createOrUpdateOwnerForm";
     private static final String VIEW_OWNER_DETAILS = "owners/ownerDetails";
@@ -26,34 +37,46 @@ public class OwnerController extends BaseController {
 
 
     private final OwnerService ownerService;
-    private DataBinder dataBinder;
+    private final OwnerAutocompleteService autocompleteService;
 
-    public OwnerController(OwnerService ownerService) {
+    public OwnerController(OwnerService ownerService, OwnerAutocompleteService autocompleteService) {
         this.ownerService = ownerService;
+        this.autocompleteService = autocompleteService;
     }
 
     @InitBinder
     public void avoidIdFieldProcessing(WebDataBinder webDataBinder) {
         webDataBinder.setDisallowedFields("id");
         webDataBinder.setDisallowedFields("pets");
-        this.dataBinder = webDataBinder;
     }
 
     @GetMapping({"", "/"})
-    public String findOwners(@RequestParam(required = false) String lastName, Model model) {
+    public String findOwners(@RequestParam(required = false) String lastName,
+                             @RequestParam(required = false) String after,
+                             @RequestParam(defaultValue = "false") boolean fuzzy, Model model) {
         if (lastName == null) {
             return "redirect:/owners/find";
         }
-        if (lastName.trim().equals("")) {
-            model.addAttribute("selections", this.ownerService.findAll());
-        }
-        else {
-            model.addAttribute("selections", this.ownerService.findByLastNameFragment(lastName));
+        model.addAttribute(MODEL_ATTRIBUTE_LAST_NAME, lastName);
+        model.addAttribute(MODEL_ATTRIBUTE_FUZZY, fuzzy);
+        if (fuzzy) {
+            int page = after == null || after.isBlank() ? 0 : this.fuzzyPageFromToken(after);
+            model.addAttribute(MODEL_ATTRIBUTE_PAGE, this.ownerService.findFuzzySummaryPage(lastName.trim(), page));
+            return VIEW_OWNERS_LIST;
         }
+        OwnerCursor cursor = after == null || after.isBlank() ? null : OwnerCursor.fromToken(after);
+        model.addAttribute(MODEL_ATTRIBUTE_PAGE, this.ownerService.findSummaryPage(lastName.trim(), cursor));
 
         return VIEW_OWNERS_LIST;
     }
 
+    @GetMapping(value = "/autocomplete", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public Mono<List<String>> autocompleteLastName(@RequestParam String prefix,
+                                                   @RequestParam(defaultValue = "10") int limit) {
+        return this.autocompleteService.completeLastName(prefix, limit).collectList();
+    }
+
     @GetMapping("/find")
     public String showFindOwnerForm(Model model) {
         model.addAttribute(MODEL_ATTRIBUTE_OWNER, Mono.just(new Owner()));
@@ -67,22 +90,29 @@ public class OwnerController extends BaseController {
         return VIEW_CREATE_OR_UPDATE_OWNER_FORM;
     }
 
+    /*
+    The owner is bound and validated for each request on its own, with its own binding result. The controller
+    is shared by all requests, so it must not keep a binder or binding result itself
+     */
     @PostMapping("/new")
-    public Mono<String> createOwner(@ModelAttribute(MODEL_ATTRIBUTE_OWNER) Mono<Owner> owner, Model model) {
-        this.dataBinder.validate();
-        if (this.dataBinder.getBindingResult().hasErrors()) {
+    public Mono<String> createOwner(@Valid @ModelAttribute(MODEL_ATTRIBUTE_OWNER) Owner owner,
+                                    BindingResult bindingResult, Model model) {
+        if (bindingResult.hasErrors()) {
             model.addAttribute(MODEL_ATTRIBUTE_IS_NEW, true);
             return Mono.just(VIEW_CREATE_OR_UPDATE_OWNER_FORM);
         }
-        return owner
-                .flatMap(this.ownerService::save)
+        return this.ownerService.save(owner)
                 .flatMap(o -> Mono.just("redirect:/owners/" + o.getId()));
     }
 
+    /* The same version lookup as in the OwnerDetailsETagFilter, so the page is rendered in the version of its ETag */
     @GetMapping("/{ownerId}")
     public Mono<String> showOwnerDetails(@PathVariable String ownerId, Model model) {
         UUID ownerUUID = this.fromStringOrThrow(ownerId, Owner.class);
-        Mono<Owner> owner = this.ownerService.getById(ownerUUID);
+        Mono<Owner> owner = RequestLookups.memoize(OwnerGraphVersion.class, ownerUUID,
+                () -> this.ownerService.findGraphVersion(ownerUUID))
+                .flatMap(version -> this.ownerService.getById(ownerUUID, version.detailsVersion()))
+                .cache();
 
         model.addAttribute(MODEL_ATTRIBUTE_OWNER, owner);
         return owner
@@ -91,31 +121,47 @@ public class OwnerController extends BaseController {
     }
 
     @GetMapping("/{ownerId}/edit")
-    public Mono<String> showUpdateOwnerForm(@PathVariable String ownerId, Model model) {
+    public Mono<String> showUpdateOwnerForm(@PathVariable String ownerId,
+                                            @RequestParam(defaultValue = "false") boolean conflict, Model model) {
         UUID ownerUUID = this.fromStringOrThrow(ownerId, Owner.class);
         Mono<Owner> owner = this.ownerService.getById(ownerUUID);
         model.addAttribute(MODEL_ATTRIBUTE_OWNER, owner);
         model.addAttribute(MODEL_ATTRIBUTE_IS_NEW, false);
+        model.addAttribute(MODEL_ATTRIBUTE_CONFLICT, conflict);
         return owner
                 .flatMap(o -> Mono.just(VIEW_CREATE_OR_UPDATE_OWNER_FORM))
                 .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Owner.class, ownerId)));
     }
 
     @PostMapping("/{ownerId}/edit")
-    public Mono<String> updateOwner(@PathVariable String ownerId, @ModelAttribute("owner") Mono<Owner> owner, Model model) {
+    public Mono<String> updateOwner(@PathVariable String ownerId,
+                                    @Valid @ModelAttribute(MODEL_ATTRIBUTE_OWNER) Owner owner,
+                                    BindingResult bindingResult, Model model) {
         UUID ownerUUID = this.fromStringOrThrow(ownerId, Owner.class);
-        this.dataBinder.validate();
-        if (this.dataBinder.getBindingResult().hasErrors()) {
+        if (bindingResult.hasErrors()) {
             model.addAttribute(MODEL_ATTRIBUTE_IS_NEW, false);
             return Mono.just(VIEW_CREATE_OR_UPDATE_OWNER_FORM);
         }
 
-        return owner
-                .flatMap(o -> {
-                    o.setId(ownerUUID);
-                    return Mono.just(o);
-                })
+        owner.setId(ownerUUID);
+        return this.requireVersion(owner)
                 .flatMap(this.ownerService::save)
-                .flatMap(o -> Mono.just("redirect:/owners/" + ownerId));
+                .flatMap(o -> Mono.just("redirect:/owners/" + ownerId))
+                .onErrorResume(OptimisticLockingFailureException.class,
+                        e -> Mono.just(this.redirectToConflictingEdit("/owners/" + ownerId + "/edit")));
+    }
+
+    /* The fuzzy search is ranked by similarity, not ordered by a key, so its pages are numbered */
+    private int fuzzyPageFromToken(String token) throws InvalidParameterException {
+        try {
+            int page = Integer.parseInt(token);
+            if (page < 0) {
+                throw InvalidParameterException.invalidPageToken(token);
+            }
+            return page;
+        }
+        catch (NumberFormatException e) {
+            throw InvalidParameterException.invalidPageToken(token);
+        }
     }
 }
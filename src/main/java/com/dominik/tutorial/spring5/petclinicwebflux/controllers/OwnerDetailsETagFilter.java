@@ -0,0 +1,71 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphVersion;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/*
+Conditional GET for the owner details page: the details version of the owner serves as ETag. If the browser
+already has the current version, the request is answered with 304 after looking up just the version, without
+loading pets and visits or rendering the page. Otherwise the controller renders the owner graph of that version,
+from the same lookup (see RequestLookups), so a stale cached graph is never served under the new ETag. Runs within
+the context of the RequestLookupsFilter.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class OwnerDetailsETagFilter implements WebFilter {
+
+    private static final PathPattern OWNER_DETAILS = new PathPatternParser().parse("/owners/{ownerId}");
+    private static final String PATH_VARIABLE_OWNER_ID = "ownerId";
+
+    private final OwnerService ownerService;
+
+    public OwnerDetailsETagFilter(OwnerService ownerService) {
+        this.ownerService = ownerService;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        UUID ownerId = this.ownerDetailsId(exchange.getRequest());
+        if (ownerId == null) {
+            return chain.filter(exchange);
+        }
+        return RequestLookups.memoize(OwnerGraphVersion.class, ownerId,
+                () -> this.ownerService.findGraphVersion(ownerId))
+                .map(version -> {
+                    exchange.getResponse().getHeaders().setCacheControl(CacheControl.noCache());
+                    return exchange.checkNotModified(ownerId + "-" + version.detailsVersion());
+                })
+                .defaultIfEmpty(false)
+                .flatMap(notModified -> notModified ? exchange.getResponse().setComplete() : chain.filter(exchange));
+    }
+
+    private UUID ownerDetailsId(ServerHttpRequest request) {
+        if (request.getMethod() != HttpMethod.GET) {
+            return null;
+        }
+        PathPattern.PathMatchInfo match = OWNER_DETAILS.matchAndExtract(request.getPath().pathWithinApplication());
+        if (match == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(match.getUriVariables().get(PATH_VARIABLE_OWNER_ID));
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
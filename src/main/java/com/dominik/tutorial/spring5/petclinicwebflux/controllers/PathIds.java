@@ -0,0 +1,21 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.InvalidParameterException;
+
+import java.util.UUID;
+
+/* Parses entity IDs given in request paths, for the annotated controllers and the functional API handlers alike */
+public final class PathIds {
+
+    private PathIds() {
+    }
+
+    public static UUID fromStringOrThrow(String givenId, Class forEntity) throws InvalidParameterException {
+        try {
+            return UUID.fromString(givenId);
+        }
+        catch (IllegalArgumentException e) {
+            throw InvalidParameterException.invalidUUID(forEntity, givenId);
+        }
+    }
+}
@@ -5,15 +5,17 @@ import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
-import com.dominik.tutorial.spring5.petclinicwebflux.services.PetTypeService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ReferenceDataService;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
-import org.springframework.validation.DataBinder;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import javax.validation.Valid;
+import java.util.List;
 import java.util.UUID;
 
 @Controller
@@ -30,13 +32,12 @@ public class PetController extends BaseController {
 
     private final PetService petService;
     private final OwnerService ownerService;
-    private final PetTypeService petTypeService;
-    private DataBinder dataBinder;
+    private final ReferenceDataService referenceDataService;
 
-    public PetController(PetService petService, OwnerService ownerService, PetTypeService petTypeService) {
+    public PetController(PetService petService, OwnerService ownerService, ReferenceDataService referenceDataService) {
         this.petService = petService;
         this.ownerService = ownerService;
-        this.petTypeService = petTypeService;
+        this.referenceDataService = referenceDataService;
     }
 
     @InitBinder({"owner", "pet"})
@@ -44,50 +45,48 @@ public class PetController extends BaseController {
         dataBinder.setDisallowedFields("id");
         dataBinder.setDisallowedFields("visits");
         dataBinder.setDisallowedFields("ownerId");
-        this.dataBinder = dataBinder;
-    }
-
-    @ModelAttribute(MODEL_ATTRIBUTE_OWNER)
-    public Mono<Owner> addOwner(@PathVariable String ownerId) {
-        UUID ownerUUID = this.fromStringOrThrow(ownerId, Owner.class);
-        return this.ownerService.getById(ownerUUID)
-                .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Owner.class, ownerId)));
     }
 
     @ModelAttribute(MODEL_ATTRIBUTE_PET_TYPES)
-    public Flux<String> addPetTypes() {
-        return this.petTypeService.findAll();
+    public List<String> addPetTypes() {
+        return this.referenceDataService.getSnapshot().getPetTypes();
     }
 
     @GetMapping("/new")
-    public String showNewPetForm(Model model) {
+    public String showNewPetForm(@PathVariable String ownerId, Model model) {
+        this.addOwner(ownerId, model);
         model.addAttribute(MODEL_ATTRIBUTE_PET, new Pet());
         model.addAttribute(MODEL_ATTRIBUTE_IS_NEW, true);
         return VIEW_NAME_NEW_PET_FORM;
     }
 
+    /* The pet and its binding result are added to the model by the binding of the request, see OwnerController */
     @PostMapping("/new")
-    public Mono<String> createPet(@PathVariable String ownerId, Pet pet, Model model) {
-        this.dataBinder.validate();
-        if (dataBinder.getBindingResult().hasErrors()) {
+    public Mono<String> createPet(@PathVariable String ownerId, @Valid Pet pet, BindingResult bindingResult,
+                                  Model model) {
+        if (bindingResult.hasErrors()) {
+            this.addOwner(ownerId, model);
             model.addAttribute(MODEL_ATTRIBUTE_IS_NEW, true);
-            model.addAttribute(MODEL_ATTRIBUTE_PET, pet);
             return Mono.just(VIEW_NAME_NEW_PET_FORM);
         }
         UUID ownerUUID = this.fromStringOrThrow(ownerId, Owner.class);
-        return this.ownerService.getById(ownerUUID)
-                .flatMap(o -> this.petService.save(ownerUUID, pet))
-                .flatMap(p -> Mono.just("redirect:/owners/" + ownerId.toString()))
-                .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Owner.class, ownerId.toString())));
+        return this.ownerService.existsById(ownerUUID)
+                .filter(Boolean::booleanValue)
+                .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Owner.class, ownerId)))
+                .flatMap(exists -> this.petService.save(ownerUUID, pet))
+                .flatMap(p -> Mono.just("redirect:/owners/" + ownerId));
     }
 
     @GetMapping("/{petId}/edit")
-    public Mono<String> showEditPetForm(@PathVariable String ownerId, @PathVariable String petId, Model model) {
+    public Mono<String> showEditPetForm(@PathVariable String ownerId, @PathVariable String petId,
+                                        @RequestParam(defaultValue = "false") boolean conflict, Model model) {
         UUID ownerUUID = this.fromStringOrThrow(ownerId, Owner.class);
         UUID petUUID = this.fromStringOrThrow(petId, Pet.class);
+        this.addOwner(ownerId, model);
         model.addAttribute(MODEL_ATTRIBUTE_IS_NEW, false);
+        model.addAttribute(MODEL_ATTRIBUTE_CONFLICT, conflict);
 
-        return this.ownerService.getById(ownerUUID)
+        return this.findOwner(ownerUUID)
                 .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Owner.class, ownerId)))
                 .flatMap(o -> this.petService.findByIdAndOwner(petUUID, ownerUUID))
                 .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Pet.class, petId)))
@@ -99,26 +98,43 @@ public class PetController extends BaseController {
     }
 
     @PostMapping("/{petId}/edit")
-    public Mono<String> editPet(@PathVariable String ownerId, @PathVariable String petId, Pet pet, Model model) {
+    public Mono<String> editPet(@PathVariable String ownerId, @PathVariable String petId, @Valid Pet pet,
+                                BindingResult bindingResult, Model model) {
         UUID ownerUUID = this.fromStringOrThrow(ownerId, Owner.class);
         UUID petUUID = this.fromStringOrThrow(petId, Pet.class);
 
-        this.dataBinder.validate();
-        if (this.dataBinder.getBindingResult().hasErrors()) {
+        if (bindingResult.hasErrors()) {
+            this.addOwner(ownerId, model);
             model.addAttribute(MODEL_ATTRIBUTE_IS_NEW, false);
-            model.addAttribute(MODEL_ATTRIBUTE_PET, pet);
             return Mono.just(VIEW_NAME_EDIT_PET_FORM);
         }
 
-        return this.ownerService.getById(ownerUUID)
-                .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Owner.class, ownerId)))
-                .flatMap(o -> this.petService.findByIdAndOwner(petUUID, ownerUUID))
-                .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Pet.class, petId)))
-                .flatMap(p -> {
-                    pet.setId(p.getId());
+        return this.petService.existsByIdAndOwner(petUUID, ownerUUID)
+                .filter(Boolean::booleanValue)
+                .switchIfEmpty(Mono.error(EntityNotFoundException.failedOwnedLookup(Pet.class, petId, Owner.class, ownerId)))
+                .flatMap(exists -> {
+                    pet.setId(petUUID);
                     return Mono.just(pet);
                 })
+                .flatMap(this::requireVersion)
                 .flatMap(p -> this.petService.save(ownerUUID, p))
-                .flatMap(p -> Mono.just("redirect:/owners/" + ownerId));
+                .flatMap(p -> Mono.just("redirect:/owners/" + ownerId))
+                .onErrorResume(OptimisticLockingFailureException.class,
+                        e -> Mono.just(this.redirectToConflictingEdit("/owners/" + ownerId + "/pets/" + petId + "/edit")));
+    }
+
+    /*
+    Only the forms show the owner. It is not a @ModelAttribute method, as model attributes are resolved for
+    redirects as well, and the write paths only need to know that owner and pet exist
+     */
+    private void addOwner(String ownerId, Model model) {
+        UUID ownerUUID = this.fromStringOrThrow(ownerId, Owner.class);
+        model.addAttribute(MODEL_ATTRIBUTE_OWNER, this.findOwner(ownerUUID)
+                .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Owner.class, ownerId))));
+    }
+
+    /* The edit form needs the owner for the model and the handler, see RequestLookups */
+    private Mono<Owner> findOwner(UUID ownerId) {
+        return RequestLookups.memoize(Owner.class, ownerId, () -> this.ownerService.getById(ownerId));
     }
 }
@@ -0,0 +1,35 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/*
+Memoizes entity lookups for the duration of a request. The @ModelAttribute methods and the handler method of a
+request all run within the subscriber context set up by the RequestLookupsFilter, so they share a single lookup
+per entity instead of loading it once per method. Without that context (e.g. outside of a request), every lookup
+goes to the given supplier.
+ */
+public final class RequestLookups {
+
+    private static final String CONTEXT_KEY = RequestLookups.class.getName();
+
+    private RequestLookups() {
+    }
+
+    public static Context withLookups(Context context) {
+        return context.put(CONTEXT_KEY, new ConcurrentHashMap<String, Mono<?>>());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Mono<T> memoize(Class<T> type, Object key, Supplier<Mono<T>> lookup) {
+        return Mono.subscriberContext()
+                .flatMap(context -> context.<Map<String, Mono<?>>>getOrEmpty(CONTEXT_KEY)
+                        .map(lookups -> (Mono<T>) lookups.computeIfAbsent(type.getSimpleName() + ":" + key,
+                                k -> lookup.get().cache()))
+                        .orElseGet(lookup));
+    }
+}
@@ -0,0 +1,20 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/* Gives every request its own memo of entity lookups, see RequestLookups. Runs first, so all other filters share it */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLookupsFilter implements WebFilter {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return chain.filter(exchange).subscriberContext(RequestLookups::withLookups);
+    }
+}
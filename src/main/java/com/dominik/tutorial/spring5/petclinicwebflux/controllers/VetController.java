@@ -1,6 +1,6 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
 
-import com.dominik.tutorial.spring5.petclinicwebflux.services.VetService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ReferenceDataService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,15 +12,15 @@ public class VetController extends BaseController {
 
     private static final String VIEW_NAME_LIST_VETS = "vets/index";
 
-    private final VetService vetService;
+    private final ReferenceDataService referenceDataService;
 
-    public VetController(VetService vetService) {
-        this.vetService = vetService;
+    public VetController(ReferenceDataService referenceDataService) {
+        this.referenceDataService = referenceDataService;
     }
 
     @GetMapping
     public String showAllVets(Model model) {
-        model.addAttribute("vets", this.vetService.findAll());
+        model.addAttribute("vets", this.referenceDataService.getSnapshot().getVets());
         return VIEW_NAME_LIST_VETS;
     }
 }
@@ -9,12 +9,12 @@ import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
-import org.springframework.validation.DataBinder;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import javax.validation.Valid;
 import java.util.UUID;
 
 @Controller
@@ -31,7 +31,6 @@ public class VisitController extends BaseController {
     private final VisitService visitService;
     private final OwnerService ownerService;
     private final PetService petService;
-    private DataBinder dataBinder;
 
     public VisitController(VisitService visitService, OwnerService ownerService, PetService petService) {
         this.visitService = visitService;
@@ -41,37 +40,18 @@ public class VisitController extends BaseController {
 
     @InitBinder
     public void disallowIdBinding(WebDataBinder dataBinder) {
-        dataBinder.setDisallowedFields("id");
-        dataBinder.setDisallowedFields("petId");
-        this.dataBinder = dataBinder;
-    }
-
-    @ModelAttribute(MODEL_ATTRIBUTE_OWNER)
-    public Mono<Owner> addOwnerToModel(@PathVariable String ownerId) {
-        return this.ownerService.getById(this.fromStringOrThrow(ownerId, Owner.class));
-    }
-
-    @ModelAttribute(MODEL_ATTRIBUTE_PET)
-    public Mono<Pet> addPetToModel(@PathVariable String ownerId, @PathVariable String petId) {
-        return this.petService.findByIdAndOwner(
-                this.fromStringOrThrow(petId, Owner.class),
-                this.fromStringOrThrow(ownerId, Owner.class));
-    }
-
-    @ModelAttribute(MODEL_ATTRIBUTE_PET_VISITS)
-    public Flux<Visit> addPetVisitsToModel(@PathVariable String petId) {
-        UUID petUUID = this.fromStringOrThrow(petId, Pet.class);
-        return this.visitService.findByPet(petUUID);
+        dataBinder.setDisallowedFields("id", "petId", "version");
     }
 
     @GetMapping({"", "/"})
     public Mono<String> showCreateVisitForm(@PathVariable String ownerId, @PathVariable String petId, Model model) {
         UUID ownerUUID = this.fromStringOrThrow(ownerId, Owner.class);
         UUID petUUID = this.fromStringOrThrow(petId, Pet.class);
+        this.addOwnerAndPet(ownerUUID, petUUID, model);
 
-        return this.ownerService.getById(ownerUUID)
+        return this.findOwner(ownerUUID)
                 .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Owner.class, ownerId)))
-                .flatMap(o -> this.petService.findByIdAndOwner(petUUID, ownerUUID))
+                .flatMap(o -> this.findPet(petUUID, ownerUUID))
                 .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Pet.class, petId)))
                 .flatMap(p -> {
                     model.addAttribute(MODEL_ATTRIBUTE_VISIT, new Visit());
@@ -79,22 +59,44 @@ public class VisitController extends BaseController {
                 });
     }
 
+    /* The visit and its binding result are added to the model by the binding of the request, see OwnerController */
     @PostMapping({"", "/"})
-    public Mono<String> createVisit(@PathVariable String ownerId, @PathVariable String petId, Visit visit, Model model) {
+    public Mono<String> createVisit(@PathVariable String ownerId, @PathVariable String petId, @Valid Visit visit,
+                                    BindingResult bindingResult, Model model) {
         UUID ownerUUID = this.fromStringOrThrow(ownerId, Owner.class);
         UUID petUUID = this.fromStringOrThrow(petId, Pet.class);
 
-        this.dataBinder.validate();
-        if (this.dataBinder.getBindingResult().hasErrors()) {
-            model.addAttribute(MODEL_ATTRIBUTE_VISIT, visit);
+        if (bindingResult.hasErrors()) {
+            this.addOwnerAndPet(ownerUUID, petUUID, model);
             return Mono.just(VIEW_NAME_CREATE_VISIT_FORM);
         }
 
-        return this.ownerService.getById(ownerUUID)
-                .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Owner.class, ownerId)))
-                .flatMap(o -> this.petService.findByIdAndOwner(petUUID, ownerUUID))
-                .switchIfEmpty(Mono.error(EntityNotFoundException.failedIdLookup(Pet.class, petId)))
-                .flatMap(p -> this.visitService.createVisit(petUUID, visit))
+        return this.petService.existsByIdAndOwner(petUUID, ownerUUID)
+                .filter(Boolean::booleanValue)
+                .switchIfEmpty(Mono.error(EntityNotFoundException.failedOwnedLookup(Pet.class, petId, Owner.class, ownerId)))
+                .flatMap(exists -> this.visitService.createVisit(ownerUUID, petUUID, visit))
                 .flatMap(v -> Mono.just("redirect:/owners/" + ownerId));
     }
+
+    /*
+    Only the form shows owner, pet and visits. They are no @ModelAttribute methods, as model attributes are resolved
+    for redirects as well, and creating a visit only needs to know that the pet belongs to the owner.
+    The pet is loaded with its visits, so they don't need a query of their own
+     */
+    private void addOwnerAndPet(UUID ownerId, UUID petId, Model model) {
+        Mono<Pet> pet = this.findPet(petId, ownerId);
+        model.addAttribute(MODEL_ATTRIBUTE_OWNER, this.findOwner(ownerId));
+        model.addAttribute(MODEL_ATTRIBUTE_PET, pet);
+        model.addAttribute(MODEL_ATTRIBUTE_PET_VISITS, pet.flatMapIterable(Pet::getVisits));
+    }
+
+    /* Owner and pet are needed by the model and the handler, see RequestLookups */
+    private Mono<Owner> findOwner(UUID ownerId) {
+        return RequestLookups.memoize(Owner.class, ownerId, () -> this.ownerService.getById(ownerId));
+    }
+
+    private Mono<Pet> findPet(UUID petId, UUID ownerId) {
+        return RequestLookups.memoize(Pet.class, petId + "/" + ownerId,
+                () -> this.petService.findByIdAndOwner(petId, ownerId));
+    }
 }
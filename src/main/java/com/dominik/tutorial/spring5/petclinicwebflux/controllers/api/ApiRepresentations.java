@@ -0,0 +1,100 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers.api;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.BaseEntity;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Vet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.VisitEvent;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/*
+The JSON representations of the API, limited to the selected fields. They are built explicitly, so that internal
+fields like the search keys or the graph version never become part of the API
+ */
+public final class ApiRepresentations {
+
+    public static final String FIELD_PETS = "pets";
+    public static final String FIELD_VISITS = "visits";
+
+    private ApiRepresentations() {
+    }
+
+    public static Map<String, Object> owner(Owner owner, FieldSelection fields) {
+        Map<String, Object> representation = entity(owner, fields);
+        put(representation, fields, "firstName", owner::getFirstName);
+        put(representation, fields, "lastName", owner::getLastName);
+        put(representation, fields, "address", owner::getAddress);
+        put(representation, fields, "city", owner::getCity);
+        put(representation, fields, "telephone", owner::getTelephone);
+        if (fields.includes(FIELD_PETS)) {
+            FieldSelection petFields = fields.nested(FIELD_PETS);
+            representation.put(FIELD_PETS, owner.getPets().stream()
+                    .map(pet -> pet(pet, petFields))
+                    .collect(Collectors.toList()));
+        }
+        return representation;
+    }
+
+    public static Map<String, Object> pet(Pet pet, FieldSelection fields) {
+        Map<String, Object> representation = entity(pet, fields);
+        put(representation, fields, "name", pet::getName);
+        put(representation, fields, "birthDate", pet::getBirthDate);
+        put(representation, fields, "petType", pet::getPetType);
+        put(representation, fields, "ownerId", pet::getOwnerId);
+        if (fields.includes(FIELD_VISITS)) {
+            FieldSelection visitFields = fields.nested(FIELD_VISITS);
+            representation.put(FIELD_VISITS, pet.getVisits().stream()
+                    .map(visit -> visit(visit, visitFields))
+                    .collect(Collectors.toList()));
+        }
+        return representation;
+    }
+
+    public static Map<String, Object> visit(Visit visit, FieldSelection fields) {
+        Map<String, Object> representation = entity(visit, fields);
+        put(representation, fields, "date", visit::getDate);
+        put(representation, fields, "description", visit::getDescription);
+        put(representation, fields, "petId", visit::getPetId);
+        return representation;
+    }
+
+    /* Like a visit, with the owner of the pet */
+    public static Map<String, Object> visitEvent(VisitEvent event, FieldSelection fields) {
+        Map<String, Object> representation = new LinkedHashMap<>();
+        representation.put("id", event.getVisitId());
+        put(representation, fields, "date", event::getDate);
+        put(representation, fields, "description", event::getDescription);
+        put(representation, fields, "petId", event::getPetId);
+        put(representation, fields, "ownerId", event::getOwnerId);
+        return representation;
+    }
+
+    public static Map<String, Object> vet(Vet vet, FieldSelection fields) {
+        Map<String, Object> representation = entity(vet, fields);
+        put(representation, fields, "firstName", vet::getFirstName);
+        put(representation, fields, "lastName", vet::getLastName);
+        put(representation, fields, "specialties",
+                () -> vet.getSpecialties() == null ? List.of() : vet.getSpecialties());
+        return representation;
+    }
+
+    private static Map<String, Object> entity(BaseEntity entity, FieldSelection fields) {
+        Map<String, Object> representation = new LinkedHashMap<>();
+        representation.put("id", entity.getId());
+        put(representation, fields, "version", entity::getVersion);
+        return representation;
+    }
+
+    private static void put(Map<String, Object> representation, FieldSelection fields, String field,
+                            Supplier<Object> value) {
+        if (fields.includes(field)) {
+            representation.put(field, value.get());
+        }
+    }
+}
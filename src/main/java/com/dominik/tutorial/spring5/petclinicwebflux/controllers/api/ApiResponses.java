@@ -0,0 +1,126 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers.api;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportFormat;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/*
+Writes the representations of the API in the media type negotiated from the Accept header: a JSON array, or one
+JSON document per line for NDJSON and stream+json. Both are written while the representations are emitted.
+The representations are serialized here, because the JSON encoder of Spring collects a Flux into a list before
+writing the array, and does not write NDJSON at all
+ */
+@Component
+public class ApiResponses {
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(ImportFormat.NDJSON_VALUE);
+    /* In order of preference, a wildcard Accept header gets the JSON array */
+    private static final List<MediaType> PRODUCIBLE_MEDIA_TYPES = List.of(
+            MediaType.APPLICATION_JSON, APPLICATION_NDJSON, MediaType.APPLICATION_STREAM_JSON);
+    private static final byte[] ARRAY_START = {'['};
+    private static final byte[] ARRAY_SEPARATOR = {','};
+    private static final byte[] ARRAY_END = {']'};
+    private static final byte[] LINE_END = {'\n'};
+
+    private final ObjectMapper objectMapper;
+    private final DataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    public ApiResponses(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /* The representations are only looked up once the media type is known */
+    public Mono<ServerResponse> stream(ServerRequest request, Supplier<Flux<?>> representationsSupplier) {
+        Optional<MediaType> mediaType = negotiate(request.headers().accept());
+        if (mediaType.isEmpty()) {
+            return this.notAcceptable();
+        }
+        Flux<?> representations = representationsSupplier.get();
+        Flux<DataBuffer> body = MediaType.APPLICATION_JSON.equals(mediaType.get())
+                ? this.jsonArray(representations)
+                : representations.map(representation -> this.line(this.toJson(representation)));
+        return ServerResponse.ok()
+                .contentType(mediaType.get())
+                .body(BodyInserters.fromDataBuffers(body));
+    }
+
+    public Mono<ServerResponse> single(ServerRequest request, Object representation) {
+        Optional<MediaType> mediaType = negotiate(request.headers().accept());
+        if (mediaType.isEmpty()) {
+            return this.notAcceptable();
+        }
+        byte[] json = this.toJson(representation);
+        DataBuffer body = MediaType.APPLICATION_JSON.equals(mediaType.get())
+                ? this.bufferFactory.wrap(json)
+                : this.line(json);
+        return ServerResponse.ok()
+                .contentType(mediaType.get())
+                .body(BodyInserters.fromDataBuffers(Mono.just(body)));
+    }
+
+    public Mono<ServerResponse> error(HttpStatus status, Throwable exception) {
+        return ServerResponse.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("status", status.value(), "error", String.valueOf(exception.getMessage())));
+    }
+
+    static Optional<MediaType> negotiate(List<MediaType> acceptedMediaTypes) {
+        if (acceptedMediaTypes.isEmpty()) {
+            return Optional.of(MediaType.APPLICATION_JSON);
+        }
+        List<MediaType> accepted = new ArrayList<>(acceptedMediaTypes);
+        MediaType.sortBySpecificityAndQuality(accepted);
+        return accepted.stream()
+                .filter(mediaType -> mediaType.getQualityValue() > 0)
+                .flatMap(mediaType -> PRODUCIBLE_MEDIA_TYPES.stream().filter(mediaType::includes).limit(1))
+                .findFirst();
+    }
+
+    private Mono<ServerResponse> notAcceptable() {
+        return ServerResponse.status(HttpStatus.NOT_ACCEPTABLE).build();
+    }
+
+    private Flux<DataBuffer> jsonArray(Flux<?> representations) {
+        Flux<DataBuffer> elements = representations
+                .index((index, representation) -> index == 0
+                        ? this.bufferFactory.wrap(this.toJson(representation))
+                        : this.bufferFactory.join(List.of(
+                                this.bufferFactory.wrap(ARRAY_SEPARATOR),
+                                this.bufferFactory.wrap(this.toJson(representation)))));
+        return Flux.concat(
+                Mono.fromSupplier(() -> this.bufferFactory.wrap(ARRAY_START)),
+                elements,
+                Mono.fromSupplier(() -> this.bufferFactory.wrap(ARRAY_END)));
+    }
+
+    private DataBuffer line(byte[] json) {
+        return this.bufferFactory.join(List.of(this.bufferFactory.wrap(json), this.bufferFactory.wrap(LINE_END)));
+    }
+
+    private byte[] toJson(Object representation) {
+        try {
+            return this.objectMapper.writeValueAsBytes(representation);
+        }
+        catch (JsonProcessingException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers.api;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.InvalidParameterException;
+
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/*
+Sparse fieldset of an API request, given as comma separated field paths like "lastName,pets.name". Selecting a
+field selects all fields below it, and without selection all fields are selected. The ID is always part of the
+representation, so it does not have to be selected
+ */
+public final class FieldSelection {
+
+    private static final FieldSelection ALL = new FieldSelection(null);
+    private static final Pattern FIELD_PATH = Pattern.compile("[A-Za-z]+(\\.[A-Za-z]+)*");
+    private static final String SEPARATOR = ".";
+
+    /* null if all fields are selected */
+    private final Set<String> paths;
+
+    private FieldSelection(Set<String> paths) {
+        this.paths = paths;
+    }
+
+    public static FieldSelection all() {
+        return ALL;
+    }
+
+    public static FieldSelection parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> paths = Pattern.compile(",").splitAsStream(fields)
+                .map(String::trim)
+                .filter(path -> !path.isEmpty())
+                .collect(Collectors.toSet());
+        if (paths.isEmpty() || !paths.stream().allMatch(path -> FIELD_PATH.matcher(path).matches())) {
+            throw InvalidParameterException.invalidFields(fields);
+        }
+        return new FieldSelection(paths);
+    }
+
+    public boolean includes(String field) {
+        return this.paths == null || this.paths.stream()
+                .anyMatch(path -> path.equals(field) || path.startsWith(field + SEPARATOR));
+    }
+
+    /* The selection of the fields below the given field, relative to it */
+    public FieldSelection nested(String field) {
+        if (this.paths == null || this.paths.contains(field)) {
+            return ALL;
+        }
+        String prefix = field + SEPARATOR;
+        return new FieldSelection(this.paths.stream()
+                .filter(path -> path.startsWith(prefix))
+                .map(path -> path.substring(prefix.length()))
+                .collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,108 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers.api;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.controllers.PathIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.EntityNotFoundException;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphDepth;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/*
+Owners with their pets and visits. Only the selected fields are loaded as far as they are stored apart: pets are
+only looked up if a pet field is selected, visits only if a visit field is selected
+ */
+@Component
+public class OwnerApiHandler {
+
+    public static final String PATH_VARIABLE_OWNER_ID = "ownerId";
+    public static final String PATH_VARIABLE_PET_ID = "petId";
+    private static final String PARAM_FIELDS = "fields";
+    private static final String PARAM_LAST_NAME = "lastName";
+
+    private final OwnerService ownerService;
+    private final PetService petService;
+    private final VisitService visitService;
+    private final ApiResponses apiResponses;
+
+    public OwnerApiHandler(OwnerService ownerService, PetService petService, VisitService visitService,
+                           ApiResponses apiResponses) {
+        this.ownerService = ownerService;
+        this.petService = petService;
+        this.visitService = visitService;
+        this.apiResponses = apiResponses;
+    }
+
+    public Mono<ServerResponse> findOwners(ServerRequest request) {
+        FieldSelection fields = this.fields(request);
+        OwnerGraphDepth depth = ownerGraphDepth(fields);
+        return this.apiResponses.stream(request, () -> request.queryParam(PARAM_LAST_NAME)
+                .map(lastName -> this.ownerService.findByLastNameFragment(lastName.trim(), depth))
+                .orElseGet(() -> this.ownerService.findAll(depth))
+                .map(owner -> ApiRepresentations.owner(owner, fields)));
+    }
+
+    public Mono<ServerResponse> getOwner(ServerRequest request) {
+        FieldSelection fields = this.fields(request);
+        String ownerId = request.pathVariable(PATH_VARIABLE_OWNER_ID);
+        return this.ownerService.getById(PathIds.fromStringOrThrow(ownerId, Owner.class), ownerGraphDepth(fields))
+                .switchIfEmpty(Mono.error(() -> EntityNotFoundException.failedIdLookup(Owner.class, ownerId)))
+                .flatMap(owner -> this.apiResponses.single(request, ApiRepresentations.owner(owner, fields)));
+    }
+
+    public Mono<ServerResponse> findPets(ServerRequest request) {
+        FieldSelection fields = this.fields(request);
+        String ownerId = request.pathVariable(PATH_VARIABLE_OWNER_ID);
+        UUID ownerUUID = PathIds.fromStringOrThrow(ownerId, Owner.class);
+        boolean withVisits = fields.includes(ApiRepresentations.FIELD_VISITS);
+        return this.ownerService.existsById(ownerUUID)
+                .flatMap(exists -> exists
+                        ? this.apiResponses.stream(request, () -> this.petService.findByOwnerId(ownerUUID, withVisits)
+                                .map(pet -> ApiRepresentations.pet(pet, fields)))
+                        : Mono.error(EntityNotFoundException.failedIdLookup(Owner.class, ownerId)));
+    }
+
+    public Mono<ServerResponse> getPet(ServerRequest request) {
+        FieldSelection fields = this.fields(request);
+        String ownerId = request.pathVariable(PATH_VARIABLE_OWNER_ID);
+        String petId = request.pathVariable(PATH_VARIABLE_PET_ID);
+        return this.petService.findByIdAndOwner(PathIds.fromStringOrThrow(petId, Pet.class),
+                        PathIds.fromStringOrThrow(ownerId, Owner.class), fields.includes(ApiRepresentations.FIELD_VISITS))
+                .switchIfEmpty(Mono.error(() -> EntityNotFoundException.failedOwnedLookup(Pet.class, petId,
+                        Owner.class, ownerId)))
+                .flatMap(pet -> this.apiResponses.single(request, ApiRepresentations.pet(pet, fields)));
+    }
+
+    public Mono<ServerResponse> findVisits(ServerRequest request) {
+        FieldSelection fields = this.fields(request);
+        String ownerId = request.pathVariable(PATH_VARIABLE_OWNER_ID);
+        String petId = request.pathVariable(PATH_VARIABLE_PET_ID);
+        UUID petUUID = PathIds.fromStringOrThrow(petId, Pet.class);
+        return this.petService.existsByIdAndOwner(petUUID, PathIds.fromStringOrThrow(ownerId, Owner.class))
+                .flatMap(exists -> exists
+                        ? this.apiResponses.stream(request, () -> this.visitService.findByPet(petUUID)
+                                .map(visit -> ApiRepresentations.visit(visit, fields)))
+                        : Mono.error(EntityNotFoundException.failedOwnedLookup(Pet.class, petId,
+                                Owner.class, ownerId)));
+    }
+
+    private static OwnerGraphDepth ownerGraphDepth(FieldSelection fields) {
+        if (!fields.includes(ApiRepresentations.FIELD_PETS)) {
+            return OwnerGraphDepth.OWNER;
+        }
+        return fields.nested(ApiRepresentations.FIELD_PETS).includes(ApiRepresentations.FIELD_VISITS)
+                ? OwnerGraphDepth.VISITS
+                : OwnerGraphDepth.PETS;
+    }
+
+    private FieldSelection fields(ServerRequest request) {
+        return FieldSelection.parse(request.queryParam(PARAM_FIELDS).orElse(null));
+    }
+}
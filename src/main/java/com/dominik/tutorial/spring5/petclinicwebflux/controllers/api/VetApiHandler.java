@@ -0,0 +1,30 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers.api;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ReferenceDataService;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/* Vets are served from the reference data snapshot, like on the vets page */
+@Component
+public class VetApiHandler {
+
+    private static final String PARAM_FIELDS = "fields";
+
+    private final ReferenceDataService referenceDataService;
+    private final ApiResponses apiResponses;
+
+    public VetApiHandler(ReferenceDataService referenceDataService, ApiResponses apiResponses) {
+        this.referenceDataService = referenceDataService;
+        this.apiResponses = apiResponses;
+    }
+
+    public Mono<ServerResponse> findVets(ServerRequest request) {
+        FieldSelection fields = FieldSelection.parse(request.queryParam(PARAM_FIELDS).orElse(null));
+        return this.apiResponses.stream(request, () -> Flux
+                .fromIterable(this.referenceDataService.getSnapshot().getVets())
+                .map(vet -> ApiRepresentations.vet(vet, fields)));
+    }
+}
@@ -0,0 +1,51 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers.api;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitEventService;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+/*
+Pushes new visits as server-sent events, for as long as the client stays connected. The ID of each event is the
+ID of the visit. A client which falls too far behind skips the oldest visits, see VisitEventService
+ */
+@Component
+public class VisitEventApiHandler {
+
+    private static final String PARAM_FIELDS = "fields";
+    private static final String EVENT_VISIT_CREATED = "visit-created";
+    private static final String COMMENT_HEARTBEAT = "heartbeat";
+
+    private final VisitEventService visitEventService;
+    private final Duration heartbeatInterval;
+
+    public VisitEventApiHandler(VisitEventService visitEventService, PetclinicProperties properties) {
+        this.visitEventService = visitEventService;
+        this.heartbeatInterval = properties.getVisitEvents().getHeartbeatInterval();
+    }
+
+    public Mono<ServerResponse> streamVisitEvents(ServerRequest request) {
+        FieldSelection fields = FieldSelection.parse(request.queryParam(PARAM_FIELDS).orElse(null));
+        Flux<ServerSentEvent<Map<String, Object>>> visits = this.visitEventService.events()
+                .map(event -> ServerSentEvent.builder(ApiRepresentations.visitEvent(event, fields))
+                        .id(event.getVisitId().toString())
+                        .event(EVENT_VISIT_CREATED)
+                        .build());
+        Flux<ServerSentEvent<Map<String, Object>>> heartbeats = Flux.interval(this.heartbeatInterval)
+                .map(tick -> ServerSentEvent.<Map<String, Object>>builder()
+                        .comment(COMMENT_HEARTBEAT)
+                        .build());
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(BodyInserters.fromServerSentEvents(Flux.merge(visits, heartbeats)));
+    }
+}
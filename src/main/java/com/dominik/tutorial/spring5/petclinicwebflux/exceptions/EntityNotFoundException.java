@@ -9,4 +9,9 @@ public class EntityNotFoundException extends RuntimeException {
     public static EntityNotFoundException failedIdLookup(Class type, String id) {
         return new EntityNotFoundException(type.getSimpleName() + " with ID " + id + " not found");
     }
+
+    public static EntityNotFoundException failedOwnedLookup(Class type, String id, Class ownerType, String ownerId) {
+        return new EntityNotFoundException(type.getSimpleName() + " with ID " + id + " of "
+                + ownerType.getSimpleName() + " with ID " + ownerId + " not found");
+    }
 }
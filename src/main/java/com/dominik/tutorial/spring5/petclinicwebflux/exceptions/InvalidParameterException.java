@@ -10,4 +10,12 @@ public class InvalidParameterException extends RuntimeException {
         return new InvalidParameterException("Given UUID '" + givenId + "' for entity " + entityClass.getSimpleName()
                 + " is invalid");
     }
+
+    public static InvalidParameterException invalidPageToken(String givenToken) {
+        return new InvalidParameterException("Given page token '" + givenToken + "' is invalid");
+    }
+
+    public static InvalidParameterException invalidFields(String givenFields) {
+        return new InvalidParameterException("Given fields '" + givenFields + "' are invalid");
+    }
 }
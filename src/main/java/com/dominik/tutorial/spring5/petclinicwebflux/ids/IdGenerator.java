@@ -0,0 +1,21 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.ids;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.BaseEntity;
+
+import java.util.UUID;
+
+/*
+Strategy for the IDs of new entities. Entities get their ID when they are first persisted, not when they are created,
+so form objects and other entities which are never stored do not cost an ID
+ */
+public interface IdGenerator {
+
+    UUID generate();
+
+    default <T extends BaseEntity> T assignId(T entity) {
+        if (entity.getId() == null) {
+            entity.setId(this.generate());
+        }
+        return entity;
+    }
+}
@@ -0,0 +1,12 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.ids;
+
+import java.util.UUID;
+
+/* Random (version 4) UUIDs, as used before the time ordered IDs */
+public class RandomIdGenerator implements IdGenerator {
+
+    @Override
+    public UUID generate() {
+        return UUID.randomUUID();
+    }
+}
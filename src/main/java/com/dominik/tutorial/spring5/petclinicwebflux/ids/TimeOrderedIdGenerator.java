@@ -0,0 +1,50 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.ids;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/*
+Time ordered UUIDs in the layout of version 7: 48 bits of milliseconds since the epoch, the version, a 12 bit
+sequence within the millisecond and 62 random bits after the variant. Consecutive IDs are strictly increasing
+within the application (a full sequence borrows from the next millisecond), so new entities are appended to the
+right edge of the _id index instead of being scattered over it.
+
+Timestamp and sequence are advanced with a single compare-and-set, and the random bits come from the thread local
+random, so generating an ID neither locks nor contends on a SecureRandom. The IDs are unique, not unguessable.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+
+    public static final int SEQUENCE_BITS = 12;
+    private static final long VERSION_7 = 0x7000L;
+    private static final long VARIANT_MASK = 0x3fffffffffffffffL;
+    private static final long VARIANT_RFC_4122 = 0x8000000000000000L;
+
+    private final LongSupplier clock;
+    private final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+    public TimeOrderedIdGenerator() {
+        this(System::currentTimeMillis);
+    }
+
+    TimeOrderedIdGenerator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public UUID generate() {
+        long timeAndSequence = this.lastTimeAndSequence.updateAndGet(
+                last -> Math.max(last + 1, this.clock.getAsLong() << SEQUENCE_BITS));
+        return of(timeAndSequence, ThreadLocalRandom.current().nextLong());
+    }
+
+    /* The milliseconds since the epoch shifted by the sequence bits, plus the sequence within the millisecond */
+    public static UUID of(long timeAndSequence, long randomBits) {
+        long millis = timeAndSequence >>> SEQUENCE_BITS;
+        long sequence = timeAndSequence & ((1L << SEQUENCE_BITS) - 1);
+        long mostSignificantBits = (millis << 16) | VERSION_7 | sequence;
+        long leastSignificantBits = (randomBits & VARIANT_MASK) | VARIANT_RFC_4122;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
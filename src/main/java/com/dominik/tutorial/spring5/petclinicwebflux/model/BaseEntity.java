@@ -3,23 +3,25 @@ package com.dominik.tutorial.spring5.petclinicwebflux.model;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 
 import java.util.UUID;
 
 @Setter
 @Getter
 public abstract class BaseEntity {
+    /* Assigned when the entity is first persisted, see IdGenerator */
     @Id
     private UUID id;
 
+    /* Incremented on every save, saving an outdated version fails with an OptimisticLockingFailureException */
+    @Version
+    private Long version;
+
     public BaseEntity(UUID id) {
         this.id = id;
-        if (this.id == null) {
-            this.id = UUID.randomUUID();
-        }
     }
 
     public BaseEntity() {
-        this.id = UUID.randomUUID();
     }
 }
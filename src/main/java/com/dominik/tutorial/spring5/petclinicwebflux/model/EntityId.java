@@ -0,0 +1,9 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+import java.util.UUID;
+
+/* Projection of an entity to its ID */
+public interface EntityId {
+
+    UUID getId();
+}
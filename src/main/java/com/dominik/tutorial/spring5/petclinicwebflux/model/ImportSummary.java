@@ -0,0 +1,64 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Counts the imported and the failed records while the import runs. Only the first errors are kept,
+so that an input failing as a whole does not have to be held in memory
+ */
+public class ImportSummary {
+
+    private final int maxReportedErrors;
+    @Getter
+    private long owners;
+    @Getter
+    private long pets;
+    @Getter
+    private long visits;
+    @Getter
+    private long failed;
+    @Getter
+    private final List<ImportError> errors = new ArrayList<>();
+    @Getter
+    private long durationMillis;
+
+    public ImportSummary(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public void ownersImported(long count) {
+        this.owners += count;
+    }
+
+    public void petsImported(long count) {
+        this.pets += count;
+    }
+
+    public void visitsImported(long count) {
+        this.visits += count;
+    }
+
+    public void recordFailed(long line, String message) {
+        this.failed++;
+        if (this.errors.size() < this.maxReportedErrors) {
+            this.errors.add(new ImportError(line, message));
+        }
+    }
+
+    public ImportSummary finished(Duration duration) {
+        this.durationMillis = duration.toMillis();
+        return this;
+    }
+
+    public long getImported() {
+        return this.owners + this.pets + this.visits;
+    }
+
+    public long getRecordsPerSecond() {
+        return (this.getImported() + this.failed) * 1000 / Math.max(1, this.durationMillis);
+    }
+}
@@ -1,10 +1,14 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.model;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.search.PhoneticKeys;
+import com.dominik.tutorial.spring5.petclinicwebflux.search.SearchKeys;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.validator.constraints.Length;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
@@ -14,6 +18,7 @@ import java.util.List;
 import java.util.UUID;
 
 @Document
+@CompoundIndex(name = "lastName_firstName_id", def = "{'lastName': 1, 'firstName': 1, '_id': 1}")
 @Getter
 @Setter
 public class Owner extends Person {
@@ -36,6 +41,17 @@ public class Owner extends Person {
     @Transient
     private List<Pet> pets = new ArrayList<>();
 
+    /* Normalized last name and its n-grams for the indexed last name search, see SearchKeys */
+    private String lastNameKey;
+    @Indexed
+    private List<String> lastNameTokens = new ArrayList<>();
+    /* Incremented whenever its pets or their visits change, see OwnerGraphChanges and detailsVersion() */
+    private long graphVersion;
+
+    /* Phonetic codes of the last name for the fuzzy last name search, see PhoneticKeys */
+    @Indexed
+    private List<String> lastNamePhoneticKeys = new ArrayList<>();
+
     @Builder
     public Owner(UUID id, String firstName, String lastName, String address, String city, String telephone, List<Pet> pets) {
         super(id, firstName, lastName);
@@ -50,4 +66,22 @@ public class Owner extends Person {
     public Owner() {
         super();
     }
+
+    /*
+    Identifies the state of the owner details. Saving the owner increments the version (and may store an older
+    graph version), changes to pets and visits only increment the graph version, so no pair is used twice
+     */
+    public String detailsVersion() {
+        return detailsVersion(this.getVersion(), this.graphVersion);
+    }
+
+    public static String detailsVersion(Long version, long graphVersion) {
+        return version + "." + graphVersion;
+    }
+
+    public void updateSearchKeys() {
+        this.lastNameKey = SearchKeys.normalize(this.getLastName());
+        this.lastNameTokens = SearchKeys.tokens(this.lastNameKey);
+        this.lastNamePhoneticKeys = PhoneticKeys.keys(this.getLastName());
+    }
 }
@@ -0,0 +1,60 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.InvalidParameterException;
+import lombok.Getter;
+
+import java.io.*;
+import java.util.Base64;
+import java.util.UUID;
+
+/*
+Position in the owner list ordered by last name, first name and ID. It is handed to clients as an opaque
+continuation token, so the next page can be queried from this position on instead of skipping over all
+previous owners.
+ */
+@Getter
+public class OwnerCursor {
+
+    private final String lastName;
+    private final String firstName;
+    private final UUID id;
+
+    public OwnerCursor(String lastName, String firstName, UUID id) {
+        this.lastName = lastName;
+        this.firstName = firstName;
+        this.id = id;
+    }
+
+    public static OwnerCursor of(OwnerSummary owner) {
+        return new OwnerCursor(owner.getLastName(), owner.getFirstName(), owner.getId());
+    }
+
+    public static OwnerCursor fromToken(String token) throws InvalidParameterException {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(token);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            OwnerCursor cursor = new OwnerCursor(in.readUTF(), in.readUTF(), new UUID(in.readLong(), in.readLong()));
+            if (in.available() > 0) {
+                throw InvalidParameterException.invalidPageToken(token);
+            }
+            return cursor;
+        }
+        catch (IllegalArgumentException | IOException e) {
+            throw InvalidParameterException.invalidPageToken(token);
+        }
+    }
+
+    public String toToken() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(this.lastName);
+            out.writeUTF(this.firstName);
+            out.writeLong(this.id.getMostSignificantBits());
+            out.writeLong(this.id.getLeastSignificantBits());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+}
@@ -0,0 +1,6 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+/* How much of the details of an owner is loaded: just the owner, also its pets, or also their visits */
+public enum OwnerGraphDepth {
+    OWNER, PETS, VISITS
+}
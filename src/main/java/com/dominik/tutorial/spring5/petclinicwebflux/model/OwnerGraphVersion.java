@@ -0,0 +1,13 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+/* Projection of an owner to the version of its details, see Owner.detailsVersion() */
+public interface OwnerGraphVersion {
+
+    Long getVersion();
+    Long getGraphVersion();
+
+    /* Owners stored before the graph version was introduced have graph version 0 until their next change */
+    default String detailsVersion() {
+        return Owner.detailsVersion(this.getVersion(), this.getGraphVersion() == null ? 0 : this.getGraphVersion());
+    }
+}
@@ -0,0 +1,7 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+/* Projection of an owner to the last name */
+public interface OwnerLastName {
+
+    String getLastName();
+}
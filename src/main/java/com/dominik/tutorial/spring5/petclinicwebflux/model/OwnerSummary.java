@@ -0,0 +1,46 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Transient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/*
+Read-only view of an owner for list pages: the owner fields plus the names of the pets,
+without loading the pets' details or their visits
+ */
+@Getter
+@Setter
+public class OwnerSummary {
+
+    private UUID id;
+    private String firstName;
+    private String lastName;
+    private String address;
+    private String city;
+    private String telephone;
+
+    @Transient
+    private List<String> petNames = new ArrayList<>();
+
+    @Builder
+    public OwnerSummary(UUID id, String firstName, String lastName, String address, String city, String telephone,
+                        List<String> petNames) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.address = address;
+        this.city = city;
+        this.telephone = telephone;
+        if (petNames != null) {
+            this.petNames = petNames;
+        }
+    }
+
+    public OwnerSummary() {
+    }
+}
@@ -0,0 +1,23 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class OwnerSummaryPage {
+
+    private final List<OwnerSummary> owners;
+
+    /* Token to pass for the following page, null if this is the last page */
+    private final String nextToken;
+
+    public OwnerSummaryPage(List<OwnerSummary> owners, String nextToken) {
+        this.owners = owners;
+        this.nextToken = nextToken;
+    }
+
+    public boolean hasNext() {
+        return this.nextToken != null;
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.validator.constraints.Length;
 import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.format.annotation.DateTimeFormat;
 
@@ -19,6 +20,7 @@ import java.util.UUID;
 @Getter
 @Setter
 @Document
+@CompoundIndex(name = "ownerId_id", def = "{'ownerId': 1, '_id': 1}")
 public class Pet extends BaseEntity {
 
     @NotNull(message = "Name must be entered")
@@ -38,6 +40,7 @@ public class Pet extends BaseEntity {
     @Transient
     private List<Visit> visits = new ArrayList<>();
 
+    /* Indexed together with the ID, so ownership checks are covered by the index */
     private UUID ownerId;
 
     @Builder
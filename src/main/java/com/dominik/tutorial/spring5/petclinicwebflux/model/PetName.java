@@ -0,0 +1,10 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+import java.util.UUID;
+
+/* Projection of a pet to the fields needed to list it by name under its owner */
+public interface PetName {
+
+    UUID getOwnerId();
+    String getName();
+}
@@ -0,0 +1,10 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+import java.util.UUID;
+
+/* Projection of a pet to the owner it belongs to */
+public interface PetOwner {
+
+    UUID getId();
+    UUID getOwnerId();
+}
@@ -0,0 +1,50 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/*
+Immutable snapshot of the rarely changing reference data. Each loaded snapshot gets the next version,
+the empty snapshot used before the first load has version 0.
+ */
+@Getter
+public class ReferenceData {
+
+    private final long version;
+    private final Instant loadedAt;
+    private final List<Vet> vets;
+    private final List<String> specialties;
+    private final List<String> petTypes;
+
+    private ReferenceData(long version, Instant loadedAt, List<Vet> vets, List<String> petTypes) {
+        this.version = version;
+        this.loadedAt = loadedAt;
+        this.vets = Collections.unmodifiableList(vets);
+        this.petTypes = List.copyOf(petTypes);
+
+        TreeSet<String> specialties = new TreeSet<>();
+        vets.stream()
+                .map(Vet::getSpecialties)
+                .filter(Objects::nonNull)
+                .forEach(specialties::addAll);
+        this.specialties = List.copyOf(specialties);
+    }
+
+    public static ReferenceData empty() {
+        return new ReferenceData(0, null, List.of(), List.of());
+    }
+
+    public ReferenceData next(List<Vet> vets, List<String> petTypes) {
+        return new ReferenceData(this.version + 1, Instant.now(), vets, petTypes);
+    }
+
+    public boolean isOlderThan(Duration age) {
+        return this.loadedAt == null || !this.loadedAt.plus(age).isAfter(Instant.now());
+    }
+}
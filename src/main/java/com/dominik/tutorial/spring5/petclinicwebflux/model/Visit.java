@@ -4,6 +4,7 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.validator.constraints.Length;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.format.annotation.DateTimeFormat;
 
@@ -28,6 +29,7 @@ public class Visit extends BaseEntity {
     @Length(min = 1, max = 500, message = "Description length must be between 1 and 500")
     private String description;
 
+    @Indexed
     private UUID petId;
 
     @Builder
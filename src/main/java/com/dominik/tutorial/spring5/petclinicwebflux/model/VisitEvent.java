@@ -0,0 +1,51 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.model;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/* A newly created visit, with the owner of the pet so that subscribers do not have to look it up */
+@Getter
+@Setter
+@Document(collection = "visitEvents")
+public class VisitEvent {
+
+    @Id
+    private UUID visitId;
+    private UUID petId;
+    private UUID ownerId;
+    private LocalDate date;
+    private String description;
+    /* Set by the publishing node, see VisitEventServiceMongo */
+    private Instant createdAt;
+
+    @Builder
+    public VisitEvent(UUID visitId, UUID petId, UUID ownerId, LocalDate date, String description, Instant createdAt) {
+        this.visitId = visitId;
+        this.petId = petId;
+        this.ownerId = ownerId;
+        this.date = date;
+        this.description = description;
+        this.createdAt = createdAt;
+    }
+
+    public VisitEvent() {
+    }
+
+    public static VisitEvent created(Visit visit, UUID ownerId) {
+        return VisitEvent.builder()
+                .visitId(visit.getId())
+                .petId(visit.getPetId())
+                .ownerId(ownerId)
+                .date(visit.getDate())
+                .description(visit.getDescription())
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,26 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.repositories;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.IdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.BaseEntity;
+import org.reactivestreams.Publisher;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeConvertCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/*
+Assigns the ID of entities persisted without one. Mongo can only generate ObjectIds, not UUIDs
+ */
+@Component
+public class EntityIdCallback implements ReactiveBeforeConvertCallback<BaseEntity> {
+
+    private final IdGenerator idGenerator;
+
+    public EntityIdCallback(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    @Override
+    public Publisher<BaseEntity> onBeforeConvert(BaseEntity entity, String collection) {
+        return Mono.just(this.idGenerator.assignId(entity));
+    }
+}
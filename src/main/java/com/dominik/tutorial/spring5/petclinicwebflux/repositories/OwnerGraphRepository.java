@@ -0,0 +1,14 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.repositories;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.UUID;
+
+public interface OwnerGraphRepository {
+
+    Mono<Owner> findGraphById(UUID id);
+    Mono<Void> incrementGraphVersion(UUID id);
+    Mono<Void> incrementGraphVersions(Collection<UUID> ids);
+}
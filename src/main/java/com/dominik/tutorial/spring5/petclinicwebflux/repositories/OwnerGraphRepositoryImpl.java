@@ -0,0 +1,89 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.repositories;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.lookup;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class OwnerGraphRepositoryImpl implements OwnerGraphRepository {
+
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_OWNER_ID = "ownerId";
+    private static final String FIELD_PET_ID = "petId";
+    private static final String FIELD_PETS = "pets";
+    private static final String FIELD_VISITS = "visits";
+    private static final String FIELD_GRAPH_VERSION = "graphVersion";
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public OwnerGraphRepositoryImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    /*
+    Loads the owner together with all pets and all their visits in one server-side pipeline.
+    The visits are looked up via the array of pet IDs and assigned to their pets in memory.
+     */
+    @Override
+    public Mono<Owner> findGraphById(UUID id) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                match(where(FIELD_ID).is(id)),
+                lookup(this.mongoOperations.getCollectionName(Pet.class), FIELD_ID, FIELD_OWNER_ID, FIELD_PETS),
+                lookup(this.mongoOperations.getCollectionName(Visit.class), FIELD_PETS + "." + FIELD_ID, FIELD_PET_ID,
+                        FIELD_VISITS)
+        );
+
+        return this.mongoOperations
+                .aggregate(aggregation, this.mongoOperations.getCollectionName(Owner.class), Document.class)
+                .next()
+                .map(this::toOwner);
+    }
+
+    /* Incremented by the database, so that concurrent changes from several application instances all count */
+    @Override
+    public Mono<Void> incrementGraphVersion(UUID id) {
+        return this.mongoOperations
+                .updateFirst(new Query(where(FIELD_ID).is(id)), new Update().inc(FIELD_GRAPH_VERSION, 1), Owner.class)
+                .then();
+    }
+
+    @Override
+    public Mono<Void> incrementGraphVersions(Collection<UUID> ids) {
+        return this.mongoOperations
+                .updateMulti(new Query(where(FIELD_ID).in(ids)), new Update().inc(FIELD_GRAPH_VERSION, 1), Owner.class)
+                .then();
+    }
+
+    private Owner toOwner(Document document) {
+        MongoConverter converter = this.mongoOperations.getConverter();
+
+        Map<UUID, List<Visit>> visitsByPet = new HashMap<>();
+        for (Document visitDocument : document.getList(FIELD_VISITS, Document.class, Collections.emptyList())) {
+            Visit visit = converter.read(Visit.class, visitDocument);
+            visitsByPet.computeIfAbsent(visit.getPetId(), k -> new ArrayList<>()).add(visit);
+        }
+
+        List<Pet> pets = new ArrayList<>();
+        for (Document petDocument : document.getList(FIELD_PETS, Document.class, Collections.emptyList())) {
+            Pet pet = converter.read(Pet.class, petDocument);
+            pet.setVisits(visitsByPet.getOrDefault(pet.getId(), new ArrayList<>()));
+            pets.add(pet);
+        }
+
+        Owner owner = converter.read(Owner.class, document);
+        owner.setPets(pets);
+        return owner;
+    }
+}
@@ -1,14 +1,24 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.repositories;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.model.EntityId;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphVersion;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerLastName;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.Collection;
 import java.util.UUID;
 
 @Repository
-public interface OwnerRepository extends ReactiveMongoRepository<Owner, UUID> {
+public interface OwnerRepository extends ReactiveMongoRepository<Owner, UUID>, OwnerGraphRepository,
+        OwnerSummaryRepository, OwnerSearchRepository {
 
-    Flux<Owner> findByLastNameContainingIgnoreCase(String lastNameFragment);
+    Flux<EntityId> findIdsBy();
+    Flux<EntityId> findIdsByIdIn(Collection<UUID> ids);
+    Flux<OwnerLastName> findLastNamesBy();
+    Mono<OwnerLastName> findLastNameById(UUID id);
+    Mono<OwnerGraphVersion> findGraphVersionById(UUID id);
 }
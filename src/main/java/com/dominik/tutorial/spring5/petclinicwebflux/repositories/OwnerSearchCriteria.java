@@ -0,0 +1,35 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.repositories;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.search.SearchKeys;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+final class OwnerSearchCriteria {
+
+    static final String FIELD_LAST_NAME_KEY = "lastNameKey";
+    static final String FIELD_LAST_NAME_TOKENS = "lastNameTokens";
+
+    private OwnerSearchCriteria() {
+    }
+
+    /*
+    Case- and accent-insensitive "last name contains" condition which is answered by the index on the
+    last name tokens. Returns null for an empty fragment, which matches all owners.
+     */
+    static Criteria lastNameContains(String lastNameFragment) {
+        String fragment = SearchKeys.normalize(lastNameFragment);
+        if (fragment.isEmpty()) {
+            return null;
+        }
+        List<String> tokens = SearchKeys.queryTokens(fragment);
+        if (fragment.length() <= SearchKeys.MAX_TOKEN_LENGTH) {
+            return where(FIELD_LAST_NAME_TOKENS).is(tokens.get(0));
+        }
+        return where(FIELD_LAST_NAME_TOKENS).all(tokens)
+                .and(FIELD_LAST_NAME_KEY).regex(Pattern.quote(fragment));
+    }
+}
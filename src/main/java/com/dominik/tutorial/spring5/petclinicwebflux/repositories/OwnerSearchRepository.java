@@ -0,0 +1,9 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.repositories;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import reactor.core.publisher.Flux;
+
+public interface OwnerSearchRepository {
+
+    Flux<Owner> searchByLastName(String lastNameFragment);
+}
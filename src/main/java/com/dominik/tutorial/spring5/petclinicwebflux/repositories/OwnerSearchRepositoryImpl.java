@@ -0,0 +1,26 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.repositories;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+public class OwnerSearchRepositoryImpl implements OwnerSearchRepository {
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public OwnerSearchRepositoryImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public Flux<Owner> searchByLastName(String lastNameFragment) {
+        Query query = new Query();
+        Criteria lastNameContains = OwnerSearchCriteria.lastNameContains(lastNameFragment);
+        if (lastNameContains != null) {
+            query.addCriteria(lastNameContains);
+        }
+        return this.mongoOperations.find(query, Owner.class);
+    }
+}
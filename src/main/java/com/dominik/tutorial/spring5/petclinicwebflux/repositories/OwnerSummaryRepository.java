@@ -0,0 +1,15 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.repositories;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerCursor;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummary;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OwnerSummaryRepository {
+
+    Flux<OwnerSummary> findSummariesAfter(String lastNameFragment, OwnerCursor after, int limit);
+    Flux<String> findLastNamesByPhoneticKeys(Collection<String> phoneticKeys);
+    Flux<OwnerSummary> findSummariesByLastNames(List<String> rankedLastNames, long skip, int limit);
+}
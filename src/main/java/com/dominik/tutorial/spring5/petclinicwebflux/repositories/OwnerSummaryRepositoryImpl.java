@@ -0,0 +1,86 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.repositories;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerCursor;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummary;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.limit;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.skip;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+public class OwnerSummaryRepositoryImpl implements OwnerSummaryRepository {
+
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_LAST_NAME = "lastName";
+    private static final String FIELD_FIRST_NAME = "firstName";
+    private static final String FIELD_LAST_NAME_PHONETIC_KEYS = "lastNamePhoneticKeys";
+    private static final String FIELD_RANK = "rank";
+
+    private final ReactiveMongoOperations mongoOperations;
+
+    public OwnerSummaryRepositoryImpl(ReactiveMongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    /*
+    Keyset pagination: instead of skipping the owners of previous pages, the query continues right after
+    the given cursor in (lastName, firstName, _id) order, which the compound index on Owner serves directly
+     */
+    @Override
+    public Flux<OwnerSummary> findSummariesAfter(String lastNameFragment, OwnerCursor after, int limit) {
+        Query query = new Query();
+        Criteria lastNameContains = OwnerSearchCriteria.lastNameContains(lastNameFragment);
+        if (lastNameContains != null) {
+            query.addCriteria(lastNameContains);
+        }
+        if (after != null) {
+            query.addCriteria(new Criteria().orOperator(
+                    where(FIELD_LAST_NAME).gt(after.getLastName()),
+                    where(FIELD_LAST_NAME).is(after.getLastName()).and(FIELD_FIRST_NAME).gt(after.getFirstName()),
+                    where(FIELD_LAST_NAME).is(after.getLastName()).and(FIELD_FIRST_NAME).is(after.getFirstName())
+                            .and(FIELD_ID).gt(after.getId())));
+        }
+
+        query.with(Sort.by(FIELD_LAST_NAME, FIELD_FIRST_NAME, FIELD_ID)).limit(limit);
+        return this.mongoOperations.find(query, OwnerSummary.class, this.mongoOperations.getCollectionName(Owner.class));
+    }
+
+    /* Only the distinct last names, there are far less of them than owners sharing a phonetic key */
+    @Override
+    public Flux<String> findLastNamesByPhoneticKeys(Collection<String> phoneticKeys) {
+        Query query = new Query(where(FIELD_LAST_NAME_PHONETIC_KEYS).in(phoneticKeys));
+        return this.mongoOperations.findDistinct(query, FIELD_LAST_NAME, this.mongoOperations.getCollectionName(Owner.class),
+                String.class);
+    }
+
+    /*
+    Orders the owners by the position of their last name in the given ranking, then by first name and ID. The sort
+    is followed by skip and limit, so the server only keeps the owners up to the requested page
+     */
+    @Override
+    public Flux<OwnerSummary> findSummariesByLastNames(List<String> rankedLastNames, long skip, int limit) {
+        Document rank = new Document("$indexOfArray",
+                List.of(new Document("$literal", rankedLastNames), "$" + FIELD_LAST_NAME));
+        Aggregation aggregation = Aggregation.newAggregation(
+                match(where(FIELD_LAST_NAME).in(rankedLastNames)),
+                context -> new Document("$addFields", new Document(FIELD_RANK, rank)),
+                sort(Sort.by(FIELD_RANK, FIELD_FIRST_NAME, FIELD_ID)),
+                skip(skip),
+                limit(limit)
+        );
+        return this.mongoOperations.aggregate(aggregation, this.mongoOperations.getCollectionName(Owner.class),
+                OwnerSummary.class);
+    }
+}
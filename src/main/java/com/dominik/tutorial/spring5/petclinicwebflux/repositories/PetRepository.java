@@ -1,14 +1,27 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.repositories;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.model.EntityId;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.PetName;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.PetOwner;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
 import java.util.UUID;
 
 public interface PetRepository extends ReactiveMongoRepository<Pet, UUID> {
 
+    Flux<EntityId> findIdsBy();
+    Flux<EntityId> findIdsByIdIn(Collection<UUID> ids);
+    Flux<EntityId> findIdsByOwnerId(UUID ownerId);
+    Flux<PetOwner> findOwnerIdsByIdIn(Collection<UUID> ids);
     Flux<Pet> findByOwnerId(UUID ownerId);
+    Flux<Pet> findByOwnerIdIn(Collection<UUID> ownerIds);
+    Flux<PetName> findNamesByOwnerIdIn(Collection<UUID> ownerIds);
     Mono<Pet> findByIdAndOwnerId(UUID id, UUID ownerId);
+    Mono<Boolean> existsByIdAndOwnerId(UUID id, UUID ownerId);
+    Mono<Long> deleteByOwnerId(UUID ownerId);
+    Mono<Long> deleteByOwnerIdIn(Collection<UUID> ownerIds);
 }
@@ -4,11 +4,15 @@ import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.util.Collection;
 import java.util.UUID;
 
 @Repository
 public interface VisitRepository extends ReactiveMongoRepository<Visit, UUID> {
 
     Flux<Visit> findByPetId(UUID petId);
+    Flux<Visit> findByPetIdIn(Collection<UUID> petIds);
+    Mono<Long> deleteByPetIdIn(Collection<UUID> petIds);
 }
@@ -0,0 +1,142 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.search;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+Prefix tree over normalized values (see SearchKeys) which counts how often each original spelling was added.
+Every node keeps its most frequent completions, so a lookup only walks down the prefix and returns that
+list, independent of how many values share the prefix. Updates recompute these lists along the path.
+ */
+public class CompletionTrie {
+
+    private static final Comparator<Completion> BY_COUNT_THEN_VALUE = Comparator
+            .comparingInt((Completion c) -> c.count).reversed()
+            .thenComparing(c -> c.value);
+
+    private final int maxCompletions;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root = new Node();
+
+    public CompletionTrie(int maxCompletions) {
+        this.maxCompletions = maxCompletions;
+    }
+
+    public void add(String value) {
+        this.change(value, 1);
+    }
+
+    public void remove(String value) {
+        this.change(value, -1);
+    }
+
+    public void clear() {
+        this.lock.writeLock().lock();
+        try {
+            this.root = new Node();
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public List<String> complete(String prefix, int limit) {
+        String key = SearchKeys.normalize(prefix);
+        this.lock.readLock().lock();
+        try {
+            Node node = this.root;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.children.get(key.charAt(i));
+            }
+            if (node == null) {
+                return Collections.emptyList();
+            }
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < node.top.size() && i < limit; i++) {
+                result.add(node.top.get(i).value);
+            }
+            return result;
+        }
+        finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void change(String value, int delta) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        String key = SearchKeys.normalize(value);
+        this.lock.writeLock().lock();
+        try {
+            List<Node> path = new ArrayList<>(key.length() + 1);
+            Node node = this.root;
+            path.add(node);
+            for (int i = 0; i < key.length(); i++) {
+                Node child = node.children.get(key.charAt(i));
+                if (child == null) {
+                    if (delta < 0) {
+                        return;
+                    }
+                    child = new Node();
+                    node.children.put(key.charAt(i), child);
+                }
+                node = child;
+                path.add(node);
+            }
+
+            if (delta < 0 && !node.counts.containsKey(value)) {
+                return;
+            }
+            int count = node.counts.getOrDefault(value, 0) + delta;
+            if (count > 0) {
+                node.counts.put(value, count);
+            }
+            else {
+                node.counts.remove(value);
+            }
+
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node current = path.get(i);
+                if (i > 0 && current.isEmpty()) {
+                    path.get(i - 1).children.remove(key.charAt(i - 1));
+                }
+                else {
+                    current.top = this.topCompletions(current);
+                }
+            }
+        }
+        finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private List<Completion> topCompletions(Node node) {
+        List<Completion> candidates = new ArrayList<>();
+        node.counts.forEach((value, count) -> candidates.add(new Completion(value, count)));
+        node.children.values().forEach(child -> candidates.addAll(child.top));
+        candidates.sort(BY_COUNT_THEN_VALUE);
+        return List.copyOf(candidates.subList(0, Math.min(this.maxCompletions, candidates.size())));
+    }
+
+    private static class Node {
+        private final SortedMap<Character, Node> children = new TreeMap<>();
+        private final Map<String, Integer> counts = new HashMap<>();
+        private List<Completion> top = Collections.emptyList();
+
+        private boolean isEmpty() {
+            return this.children.isEmpty() && this.counts.isEmpty();
+        }
+    }
+
+    private static class Completion {
+        private final String value;
+        private final int count;
+
+        private Completion(String value, int count) {
+            this.value = value;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.search;
+
+import org.apache.commons.codec.language.ColognePhonetic;
+import org.apache.commons.codec.language.DoubleMetaphone;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/*
+Phonetic keys for the fuzzy last name search: a value is encoded with Double Metaphone (primary and
+alternate code) and Cologne phonetics, which suits the German names of many owners. Values sharing a key
+sound alike, so fuzzy candidates are looked up by key and only these are ranked by their edit distance.
+ */
+public final class PhoneticKeys {
+
+    private static final String DOUBLE_METAPHONE_PREFIX = "dm:";
+    private static final String COLOGNE_PREFIX = "kp:";
+    private static final Pattern NON_LETTERS = Pattern.compile("[^a-z]+");
+
+    private static final DoubleMetaphone DOUBLE_METAPHONE = new DoubleMetaphone();
+    private static final ColognePhonetic COLOGNE_PHONETIC = new ColognePhonetic();
+
+    private PhoneticKeys() {
+    }
+
+    public static List<String> keys(String value) {
+        String letters = NON_LETTERS.matcher(SearchKeys.normalize(value)).replaceAll("");
+        if (letters.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        addKey(keys, DOUBLE_METAPHONE_PREFIX, DOUBLE_METAPHONE.doubleMetaphone(letters));
+        addKey(keys, DOUBLE_METAPHONE_PREFIX, DOUBLE_METAPHONE.doubleMetaphone(letters, true));
+        addKey(keys, COLOGNE_PREFIX, COLOGNE_PHONETIC.colognePhonetic(letters));
+        return new ArrayList<>(keys);
+    }
+
+    /* Levenshtein distance of the normalized values */
+    public static int distance(String value, String other) {
+        String a = SearchKeys.normalize(value);
+        String b = SearchKeys.normalize(other);
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static void addKey(Set<String> keys, String prefix, String code) {
+        if (code != null && !code.isEmpty()) {
+            keys.add(prefix + code);
+        }
+    }
+}
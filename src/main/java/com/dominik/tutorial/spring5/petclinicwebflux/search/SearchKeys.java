@@ -0,0 +1,58 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/*
+Normalized keys for indexed "contains" searches: values are lower-cased and accent-folded, and broken down
+into all n-grams up to MAX_TOKEN_LENGTH characters. A fragment of up to that length is found by an exact
+match on a single token; a longer fragment is narrowed down by its n-grams of maximum length and then
+checked against the normalized value.
+ */
+public final class SearchKeys {
+
+    public static final int MAX_TOKEN_LENGTH = 3;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private SearchKeys() {
+    }
+
+    public static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /* All distinct n-grams of the normalized value with a length from 1 to MAX_TOKEN_LENGTH */
+    public static List<String> tokens(String normalizedValue) {
+        Set<String> tokens = new LinkedHashSet<>();
+        for (int length = 1; length <= MAX_TOKEN_LENGTH; length++) {
+            tokens.addAll(ngrams(normalizedValue, length));
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    /* The tokens a value must have to contain the normalized fragment */
+    public static List<String> queryTokens(String normalizedFragment) {
+        if (normalizedFragment.length() <= MAX_TOKEN_LENGTH) {
+            return List.of(normalizedFragment);
+        }
+        return new ArrayList<>(new LinkedHashSet<>(ngrams(normalizedFragment, MAX_TOKEN_LENGTH)));
+    }
+
+    private static List<String> ngrams(String value, int length) {
+        List<String> ngrams = new ArrayList<>();
+        for (int i = 0; i + length <= value.length(); i++) {
+            ngrams.add(value.substring(i, i + length));
+        }
+        return ngrams;
+    }
+}
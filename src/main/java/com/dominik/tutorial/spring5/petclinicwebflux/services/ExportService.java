@@ -0,0 +1,8 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services;
+
+import reactor.core.publisher.Flux;
+
+public interface ExportService {
+
+    Flux<String> exportAll();
+}
@@ -0,0 +1,13 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ImportSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportFormat;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportRecord;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ImportService {
+
+    Mono<ImportSummary> importRecords(Flux<String> lines, ImportFormat format);
+    Mono<ImportSummary> importEntities(Flux<ImportRecord> records);
+}
@@ -0,0 +1,11 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface OwnerAutocompleteService {
+
+    Flux<String> completeLastName(String prefix, int limit);
+    void lastNameChanged(String previousLastName, String lastName);
+    Mono<Long> rebuild(Flux<String> lastNames);
+}
@@ -1,6 +1,9 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.services;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerCursor;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphDepth;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummaryPage;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -9,7 +12,16 @@ import java.util.UUID;
 public interface OwnerService {
 
     Flux<Owner> findAll();
+    Flux<Owner> findAll(OwnerGraphDepth depth);
     Mono<Owner> getById(UUID id);
+    Mono<Owner> getById(UUID id, OwnerGraphDepth depth);
+    Mono<Owner> getById(UUID id, String detailsVersion);
+    Mono<OwnerGraphVersion> findGraphVersion(UUID id);
+    Mono<Boolean> existsById(UUID id);
     Mono<Owner> save(Owner owner);
+    Mono<Void> delete(UUID id);
     Flux<Owner> findByLastNameFragment(String lastNameFragment);
+    Flux<Owner> findByLastNameFragment(String lastNameFragment, OwnerGraphDepth depth);
+    Mono<OwnerSummaryPage> findSummaryPage(String lastNameFragment, OwnerCursor after);
+    Mono<OwnerSummaryPage> findFuzzySummaryPage(String lastName, int page);
 }
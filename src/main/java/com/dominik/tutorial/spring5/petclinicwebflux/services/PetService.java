@@ -1,16 +1,25 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.services;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.PetName;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
 import java.util.UUID;
 
 public interface PetService {
 
     Mono<Pet> findByIdAndOwner(UUID petId, UUID ownerId);
+    Mono<Pet> findByIdAndOwner(UUID petId, UUID ownerId, boolean withVisits);
+    Mono<Boolean> existsByIdAndOwner(UUID petId, UUID ownerId);
     Mono<Pet> findById(UUID petId);
     Flux<Pet> findByOwnerId(UUID ownerId);
+    Flux<Pet> findByOwnerId(UUID ownerId, boolean withVisits);
+    Flux<Pet> findByOwnerIds(Collection<UUID> ownerIds);
+    Flux<Pet> findByOwnerIds(Collection<UUID> ownerIds, boolean withVisits);
+    Flux<PetName> findNamesByOwnerIds(Collection<UUID> ownerIds);
     Mono<Pet> save(UUID ownerId, Pet pet);
     Mono<Void> delete(UUID petId);
+    Mono<Long> deleteByOwnerId(UUID ownerId);
 }
@@ -0,0 +1,10 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ReferenceData;
+import reactor.core.publisher.Mono;
+
+public interface ReferenceDataService {
+
+    ReferenceData getSnapshot();
+    Mono<ReferenceData> refresh();
+}
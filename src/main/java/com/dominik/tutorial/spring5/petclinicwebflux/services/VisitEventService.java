@@ -0,0 +1,16 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.VisitEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+Feed of newly created visits. The events are hot: a subscriber only gets the events published while it is
+subscribed. Every subscriber has its own bounded buffer, a subscriber too slow to keep up loses its oldest
+events instead of holding up the publisher or the other subscribers
+ */
+public interface VisitEventService {
+
+    Mono<Void> publish(VisitEvent event);
+    Flux<VisitEvent> events();
+}
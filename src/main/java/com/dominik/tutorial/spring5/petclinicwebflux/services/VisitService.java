@@ -4,10 +4,13 @@ import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
 import java.util.UUID;
 
 public interface VisitService {
 
-    Mono<Visit> createVisit(UUID petId, Visit visit);
+    Mono<Visit> createVisit(UUID ownerId, UUID petId, Visit visit);
     Flux<Visit> findByPet(UUID petId);
+    Flux<Visit> findByPets(Collection<UUID> petIds);
+    Mono<Long> deleteByPets(Collection<UUID> petIds);
 }
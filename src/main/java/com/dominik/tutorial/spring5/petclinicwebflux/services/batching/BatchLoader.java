@@ -0,0 +1,84 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.batching;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+/*
+Coalesces loads for single keys that arrive within a short window (or until the maximum batch size is reached)
+into one query for all keys of the batch, and hands the results back to the individual callers.
+Batching, restarts and disposal are those of the BatchPipeline.
+ */
+public class BatchLoader<K, V> implements Disposable {
+
+    private static final String METRIC_BATCH_SIZE = "petclinic.batch.loader.size";
+    private static final String METRIC_WAIT_TIME = "petclinic.batch.loader.wait";
+    private static final String TAG_LOADER = "loader";
+
+    private final Function<Collection<K>, Flux<V>> batchFunction;
+    private final Function<V, K> keyFunction;
+    private final DistributionSummary batchSizes;
+    private final BatchPipeline<K, List<V>> pipeline;
+
+    public BatchLoader(String name, Function<Collection<K>, Flux<V>> batchFunction, Function<V, K> keyFunction,
+                       int maxBatchSize, Duration maxWait, MeterRegistry meterRegistry) {
+        this.batchFunction = batchFunction;
+        this.keyFunction = keyFunction;
+
+        Timer waitTimes = null;
+        if (maxBatchSize > 1) {
+            this.batchSizes = DistributionSummary.builder(METRIC_BATCH_SIZE)
+                    .description("Number of keys loaded with a single query")
+                    .tag(TAG_LOADER, name)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            waitTimes = Timer.builder(METRIC_WAIT_TIME)
+                    .description("Time a key waited for its batch to be dispatched")
+                    .tag(TAG_LOADER, name)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+        else {
+            this.batchSizes = null;
+        }
+        this.pipeline = new BatchPipeline<>("Batch loader " + name, this::query, maxBatchSize, maxWait, waitTimes);
+    }
+
+    public static <K, V> BatchLoader<K, V> direct(Function<Collection<K>, Flux<V>> batchFunction,
+                                                  Function<V, K> keyFunction) {
+        return new BatchLoader<>(null, batchFunction, keyFunction, 1, Duration.ZERO, null);
+    }
+
+    public Flux<V> load(K key) {
+        return this.pipeline.submit(key)
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    @Override
+    public void dispose() {
+        this.pipeline.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return this.pipeline.isDisposed();
+    }
+
+    /* The same key may be loaded several times within a batch, it is queried once */
+    private Mono<Function<K, List<V>>> query(List<K> keys) {
+        Set<K> distinctKeys = new LinkedHashSet<>(keys);
+        if (this.batchSizes != null) {
+            this.batchSizes.record(distinctKeys.size());
+        }
+        return Flux.defer(() -> this.batchFunction.apply(distinctKeys))
+                .collectMultimap(this.keyFunction)
+                .map(valuesByKey -> key -> new ArrayList<>(valuesByKey.getOrDefault(key, Collections.emptyList())));
+    }
+}
@@ -0,0 +1,176 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.batching;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.UnicastProcessor;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/*
+Coalesces the items submitted within a short window (or until the maximum batch size is reached) into one call of
+the batch function, which resolves the result of each item of the batch. If a batch fails, all of its items fail.
+With a maximum batch size of 1 every item is passed through to the batch function directly.
+If the pipeline stops (like when more batches wait than the batch function calls in flight allow), the items
+waiting in it fail and a new pipeline takes the following items. Once disposed, waiting and new items fail.
+Shared by the BatchLoader and the BatchWriter
+ */
+@Slf4j
+class BatchPipeline<I, R> implements Disposable {
+
+    private final String description;
+    private final Function<List<I>, Mono<Function<I, R>>> batchFunction;
+    private final int maxBatchSize;
+    private final Duration maxWait;
+    private final Timer waitTimes;
+    private volatile Pipeline<I, R> pipeline;
+    private volatile boolean disposed;
+
+    /* The wait times are only recorded with batching, so they may be null with a maximum batch size of 1 */
+    BatchPipeline(String description, Function<List<I>, Mono<Function<I, R>>> batchFunction, int maxBatchSize,
+                  Duration maxWait, Timer waitTimes) {
+        this.description = description;
+        this.batchFunction = batchFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWait = maxWait;
+        this.waitTimes = waitTimes;
+        if (maxBatchSize > 1) {
+            this.start();
+        }
+    }
+
+    Mono<R> submit(I item) {
+        if (this.maxBatchSize <= 1) {
+            return Mono.defer(() -> this.batchFunction.apply(List.of(item)))
+                    .map(results -> results.apply(item));
+        }
+        return Mono.defer(() -> {
+            if (this.disposed) {
+                return Mono.error(this.disposedError());
+            }
+            Pipeline<I, R> pipeline = this.pipeline;
+            PendingItem<I, R> pendingItem = new PendingItem<>(item, MonoProcessor.create(), System.nanoTime());
+            pipeline.pendingItems.add(pendingItem);
+            pipeline.sink.next(pendingItem);
+            /* The pipeline may have stopped before it took the item, then nothing else completes it */
+            if (pipeline.stopped) {
+                pipeline.fail(pendingItem, this.stoppedError());
+            }
+            return pendingItem.result;
+        });
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (this.pipeline == null || this.disposed) {
+            return;
+        }
+        this.disposed = true;
+        this.pipeline.stopped = true;
+        this.pipeline.subscription.dispose();
+        this.pipeline.failAll(this.disposedError());
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return this.pipeline == null || this.disposed;
+    }
+
+    private void start() {
+        UnicastProcessor<PendingItem<I, R>> processor = UnicastProcessor.create(
+                Queues.<PendingItem<I, R>>unboundedMultiproducer().get());
+        Pipeline<I, R> pipeline = new Pipeline<>(processor.sink());
+        this.pipeline = pipeline;
+        pipeline.subscription = processor
+                .bufferTimeout(this.maxBatchSize, this.maxWait)
+                .flatMap(batch -> this.dispatch(pipeline, batch))
+                .subscribe(null, e -> this.restart(pipeline, e), () -> this.restart(pipeline, null));
+    }
+
+    private synchronized void restart(Pipeline<I, R> pipeline, Throwable error) {
+        pipeline.stopped = true;
+        pipeline.failAll(error != null ? error : this.stoppedError());
+        if (!this.disposed) {
+            log.warn("{} stopped, restarting it", this.description, error);
+            this.start();
+        }
+    }
+
+    private IllegalStateException stoppedError() {
+        return new IllegalStateException(this.description + " stopped before the batch was dispatched");
+    }
+
+    private IllegalStateException disposedError() {
+        return new IllegalStateException(this.description + " is disposed");
+    }
+
+    private Mono<Void> dispatch(Pipeline<I, R> pipeline, List<PendingItem<I, R>> batch) {
+        long dispatchedAt = System.nanoTime();
+        List<I> items = new ArrayList<>(batch.size());
+        for (PendingItem<I, R> pendingItem : batch) {
+            items.add(pendingItem.item);
+            this.waitTimes.record(dispatchedAt - pendingItem.enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+
+        return Mono.defer(() -> this.batchFunction.apply(items))
+                .switchIfEmpty(Mono.defer(() -> Mono.error(new IllegalStateException(this.description
+                        + " resolved no results for a batch"))))
+                .doOnNext(results -> batch.forEach(p -> pipeline.complete(p, results.apply(p.item))))
+                .doOnError(e -> batch.forEach(p -> pipeline.fail(p, e)))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /*
+    One subscription of the pipeline and the items given to it which are not completed yet. An item is completed
+    by whoever removes it from the pending items, so it is never completed twice
+     */
+    private static class Pipeline<I, R> {
+        private final FluxSink<PendingItem<I, R>> sink;
+        private final Set<PendingItem<I, R>> pendingItems = ConcurrentHashMap.newKeySet();
+        private volatile Disposable subscription;
+        private volatile boolean stopped;
+
+        private Pipeline(FluxSink<PendingItem<I, R>> sink) {
+            this.sink = sink;
+        }
+
+        private void complete(PendingItem<I, R> pendingItem, R result) {
+            if (this.pendingItems.remove(pendingItem)) {
+                pendingItem.result.onNext(result);
+            }
+        }
+
+        private void fail(PendingItem<I, R> pendingItem, Throwable error) {
+            if (this.pendingItems.remove(pendingItem)) {
+                pendingItem.result.onError(error);
+            }
+        }
+
+        private void failAll(Throwable error) {
+            this.pendingItems.forEach(p -> this.fail(p, error));
+        }
+    }
+
+    private static class PendingItem<I, R> {
+        private final I item;
+        private final MonoProcessor<R> result;
+        private final long enqueuedAt;
+
+        private PendingItem(I item, MonoProcessor<R> result, long enqueuedAt) {
+            this.item = item;
+            this.result = result;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.batching;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+Coalesces single inserts that arrive within a short window (or until the maximum batch size is reached) into one
+insert of the whole batch, and completes each caller with its own entity once its batch is acknowledged. The
+batch function has to write the given instances, like ReactiveMongoOperations.insertAll, which assigns their IDs
+and versions. A batch which acknowledges other entities or another number of them fails as a whole, rather than
+handing a caller the entity of another one. If a batch fails, all of its writes fail, even though part of the
+batch may have been written. Batching, restarts and disposal are those of the BatchPipeline.
+ */
+public class BatchWriter<T> implements Disposable {
+
+    private static final String METRIC_BATCH_SIZE = "petclinic.batch.writer.size";
+    private static final String METRIC_LINGER_TIME = "petclinic.batch.writer.linger";
+    private static final String TAG_WRITER = "writer";
+
+    private final Function<List<T>, Flux<T>> batchFunction;
+    private final DistributionSummary batchSizes;
+    private final BatchPipeline<T, T> pipeline;
+
+    public BatchWriter(String name, Function<List<T>, Flux<T>> batchFunction, int maxBatchSize, Duration maxLinger,
+                       MeterRegistry meterRegistry) {
+        this.batchFunction = batchFunction;
+
+        Timer lingerTimes = null;
+        if (maxBatchSize > 1) {
+            this.batchSizes = DistributionSummary.builder(METRIC_BATCH_SIZE)
+                    .description("Number of entities written with a single insert")
+                    .tag(TAG_WRITER, name)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            lingerTimes = Timer.builder(METRIC_LINGER_TIME)
+                    .description("Time a write waited for its batch to be dispatched")
+                    .tag(TAG_WRITER, name)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+        else {
+            this.batchSizes = null;
+        }
+        this.pipeline = new BatchPipeline<>("Batch writer " + name, this::insert, maxBatchSize, maxLinger,
+                lingerTimes);
+    }
+
+    public static <T> BatchWriter<T> direct(Function<List<T>, Flux<T>> batchFunction) {
+        return new BatchWriter<>(null, batchFunction, 1, Duration.ZERO, null);
+    }
+
+    public Mono<T> write(T entity) {
+        return this.pipeline.submit(entity);
+    }
+
+    @Override
+    public void dispose() {
+        this.pipeline.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return this.pipeline.isDisposed();
+    }
+
+    private Mono<Function<T, T>> insert(List<T> entities) {
+        if (this.batchSizes != null) {
+            this.batchSizes.record(entities.size());
+        }
+        return Flux.defer(() -> this.batchFunction.apply(entities))
+                .collectList()
+                .flatMap(written -> this.isWrittenAsGiven(entities, written)
+                        ? Mono.just(Function.<T>identity())
+                        : Mono.error(new IllegalStateException("Batch of " + entities.size() + " entities returned "
+                                + written.size() + " other written entities")));
+    }
+
+    private boolean isWrittenAsGiven(List<T> entities, List<T> written) {
+        if (written.size() != entities.size()) {
+            return false;
+        }
+        Set<T> given = Collections.newSetFromMap(new IdentityHashMap<>());
+        given.addAll(entities);
+        return given.containsAll(written);
+    }
+}
@@ -0,0 +1,99 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.caching;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+Bloom filter of stored IDs: an ID which was not added is reported as absent with certainty, an added one
+as possibly present. Until the stored IDs are loaded every ID is possibly present, so a lookup is only skipped
+once the filter knows all IDs. IDs cannot be removed, so deleted IDs stay possibly present and are looked up.
+ */
+public class IdFilter {
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+    private volatile boolean loaded;
+
+    public IdFilter(long expectedIds, double falsePositiveProbability) {
+        long expected = Math.max(1, expectedIds);
+        long optimalBits = (long) Math.ceil(-expected * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (optimalBits + 63) / 64));
+        this.bits = new AtomicLongArray(words);
+        this.numBits = (long) words * 64;
+        this.numHashes = Math.max(1, (int) Math.round((double) this.numBits / expected * Math.log(2)));
+    }
+
+    private IdFilter() {
+        this.bits = null;
+        this.numBits = 0;
+        this.numHashes = 0;
+    }
+
+    public static IdFilter noFilter() {
+        return new IdFilter();
+    }
+
+    /* To be called before the ID is written, so that it is never absent from the filter while it is stored */
+    public void add(UUID id) {
+        if (this.bits == null || id == null) {
+            return;
+        }
+        long hash1 = mix(id.getMostSignificantBits());
+        long hash2 = mix(id.getLeastSignificantBits() ^ hash1);
+        for (int i = 0; i < this.numHashes; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, this.numBits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = this.bits.get(word);
+            } while ((current & mask) == 0 && !this.bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(UUID id) {
+        if (this.bits == null || !this.loaded) {
+            return true;
+        }
+        if (id == null) {
+            return false;
+        }
+        long hash1 = mix(id.getMostSignificantBits());
+        long hash2 = mix(id.getLeastSignificantBits() ^ hash1);
+        for (int i = 0; i < this.numHashes; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, this.numBits);
+            if ((this.bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+    Adds all stored IDs and only then starts to report absent IDs. IDs saved in the meantime are added by the save
+     */
+    public Mono<Long> load(Flux<UUID> storedIds) {
+        return storedIds
+                .doOnNext(this::add)
+                .count()
+                .doOnSuccess(c -> this.loaded = true);
+    }
+
+    public boolean isLoaded() {
+        return this.loaded;
+    }
+
+    /* The finalizer of MurmurHash3, so that IDs differing in only a few bits still spread over the whole filter */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
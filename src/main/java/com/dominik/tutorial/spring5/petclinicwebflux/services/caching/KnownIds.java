@@ -0,0 +1,29 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.caching;
+
+/*
+The IDs of all stored owners and pets. Reads of IDs which were never stored (like stale links or guessed URLs)
+are answered as not found by the services, without a query. Only IDs written through this instance are added
+after the startup load, so this assumes a single writer. Existence checks before writes always query
+ */
+public class KnownIds {
+
+    private final IdFilter owners;
+    private final IdFilter pets;
+
+    public KnownIds(IdFilter owners, IdFilter pets) {
+        this.owners = owners;
+        this.pets = pets;
+    }
+
+    public static KnownIds noFilter() {
+        return new KnownIds(IdFilter.noFilter(), IdFilter.noFilter());
+    }
+
+    public IdFilter owners() {
+        return this.owners;
+    }
+
+    public IdFilter pets() {
+        return this.pets;
+    }
+}
@@ -0,0 +1,69 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.caching;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+
+/*
+Caches complete owner graphs (owner, pets and visits) by owner ID. Concurrent lookups of the same owner share
+a single load, and the cache is bounded by the size of the graphs: an owner weighs one plus one per pet and visit.
+Every write to an owner, its pets or their visits has to invalidate the owner, expiry is only a safety net.
+ */
+public class OwnerGraphCache {
+
+    private static final String CACHE_NAME = "ownerGraph";
+
+    private final AsyncCache<UUID, Owner> owners;
+
+    public OwnerGraphCache(long maximumWeight, Duration expireAfterWrite, MeterRegistry meterRegistry) {
+        this.owners = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((UUID id, Owner owner) -> weight(owner))
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, this.owners, CACHE_NAME);
+    }
+
+    private OwnerGraphCache() {
+        this.owners = null;
+    }
+
+    public static OwnerGraphCache noCache() {
+        return new OwnerGraphCache();
+    }
+
+    /*
+    Subscribers get a copy of the shared future, so a cancelled subscription does not cancel the load for others
+     */
+    public Mono<Owner> get(UUID ownerId, Function<UUID, Mono<Owner>> loader) {
+        if (this.owners == null) {
+            return loader.apply(ownerId);
+        }
+        return Mono.fromFuture(() -> this.owners
+                .get(ownerId, (id, executor) -> loader.apply(id).toFuture())
+                .copy());
+    }
+
+    public void invalidate(UUID ownerId) {
+        if (this.owners != null && ownerId != null) {
+            this.owners.synchronous().invalidate(ownerId);
+        }
+    }
+
+    private static int weight(Owner owner) {
+        int weight = 1;
+        for (Pet pet : owner.getPets()) {
+            weight += 1 + pet.getVisits().size();
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,40 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.caching;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/*
+Records changes to the details of an owner (its pets and their visits): the graph version of the owner is
+incremented in the database and its cached details are invalidated. Only the cache of this application instance
+is invalidated, other instances serve their cached details, with their older version, until they expire.
+ */
+@Component
+public class OwnerGraphChanges {
+
+    private final OwnerRepository ownerRepository;
+    private final OwnerGraphCache ownerGraphCache;
+
+    public OwnerGraphChanges(OwnerRepository ownerRepository, OwnerGraphCache ownerGraphCache) {
+        this.ownerRepository = ownerRepository;
+        this.ownerGraphCache = ownerGraphCache;
+    }
+
+    /* To be called after the change was written, so that no older details are loaded with the new version */
+    public Mono<Void> changed(UUID ownerId) {
+        return Mono.defer(() -> this.ownerRepository.incrementGraphVersion(ownerId))
+                .doOnSuccess(v -> this.ownerGraphCache.invalidate(ownerId));
+    }
+
+    /* Records a change to several owners with a single update */
+    public Mono<Void> changed(Collection<UUID> ownerIds) {
+        if (ownerIds.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> this.ownerRepository.incrementGraphVersions(ownerIds))
+                .doOnSuccess(v -> ownerIds.forEach(this.ownerGraphCache::invalidate));
+    }
+}
@@ -0,0 +1,54 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.exports;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+The exported fields of each entity, named like in the import (see ImportRecordParser), so that an export can be
+imported again. Derived fields like the search keys are left out
+ */
+public final class ExportRecords {
+
+    private static final String FIELD_TYPE = "type";
+
+    private ExportRecords() {
+    }
+
+    public static Map<String, Object> owner(Owner owner) {
+        Map<String, Object> record = record("owner", owner.getId());
+        record.put("firstName", owner.getFirstName());
+        record.put("lastName", owner.getLastName());
+        record.put("address", owner.getAddress());
+        record.put("city", owner.getCity());
+        record.put("telephone", owner.getTelephone());
+        return record;
+    }
+
+    public static Map<String, Object> pet(Pet pet) {
+        Map<String, Object> record = record("pet", pet.getId());
+        record.put("ownerId", pet.getOwnerId());
+        record.put("name", pet.getName());
+        record.put("birthDate", pet.getBirthDate());
+        record.put("petType", pet.getPetType());
+        return record;
+    }
+
+    public static Map<String, Object> visit(Visit visit) {
+        Map<String, Object> record = record("visit", visit.getId());
+        record.put("petId", visit.getPetId());
+        record.put("date", visit.getDate());
+        record.put("description", visit.getDescription());
+        return record;
+    }
+
+    private static Map<String, Object> record(String type, Object id) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put(FIELD_TYPE, type);
+        record.put("id", id);
+        return record;
+    }
+}
@@ -0,0 +1,77 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.exports;
+
+import reactor.core.publisher.Flux;
+
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/*
+Joins two streams sorted by the same key while they are read, so that neither has to be held in memory:
+only the last key seen is kept, and each stream is read just ahead of the other
+ */
+public final class MergeJoin {
+
+    /*
+    The order in which MongoDB sorts UUIDs stored in the standard representation (see MongoConfig): byte by byte,
+    as unsigned values. UUID.compareTo compares the signed halves, which differs for half of all UUIDs
+     */
+    public static final Comparator<UUID> STORED_UUID_ORDER = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    private MergeJoin() {
+    }
+
+    /*
+    Emits the elements of the source whose key is one of the given keys, in the order of the source. Elements
+    without key are dropped. The source has to be sorted by its keys and the keys have to be sorted, both in the
+    stored order
+     */
+    public static <T> Flux<T> semiJoin(Flux<T> sortedSource, Function<T, UUID> keyFunction, Flux<UUID> sortedKeys,
+                                       int prefetch) {
+        Comparator<Keyed<T>> order = Comparator
+                .comparing((Keyed<T> k) -> k.key, STORED_UUID_ORDER)
+                .thenComparing(k -> k.element != null);
+        return Flux.defer(() -> {
+            AtomicReference<UUID> lastKey = new AtomicReference<>();
+            return Flux.mergeOrdered(prefetch, order,
+                            requireSorted(sortedKeys.map(key -> new Keyed<T>(key, null))),
+                            requireSorted(sortedSource
+                                    .filter(element -> keyFunction.apply(element) != null)
+                                    .map(element -> new Keyed<>(keyFunction.apply(element), element))))
+                    .<T>handle((keyed, sink) -> {
+                        if (keyed.element == null) {
+                            lastKey.set(keyed.key);
+                        } else if (keyed.key.equals(lastKey.get())) {
+                            sink.next(keyed.element);
+                        }
+                    });
+        });
+    }
+
+    /* A stream in another order would silently drop elements, for example UUIDs in the legacy representation */
+    private static <T> Flux<Keyed<T>> requireSorted(Flux<Keyed<T>> keyed) {
+        return Flux.defer(() -> {
+            AtomicReference<UUID> previousKey = new AtomicReference<>();
+            return keyed.doOnNext(k -> {
+                UUID previous = previousKey.getAndSet(k.key);
+                if (previous != null && STORED_UUID_ORDER.compare(previous, k.key) > 0) {
+                    throw new IllegalStateException("Key " + k.key + " follows " + previous
+                            + ", the stream is not sorted in the stored order");
+                }
+            });
+        });
+    }
+
+    private static class Keyed<T> {
+        private final UUID key;
+        private final T element;
+
+        private Keyed(UUID key, T element) {
+            this.key = key;
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.generator;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.TimeOrderedIdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportRecord;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/*
+Generates a reproducible dataset of owners with their pets and visits. Each owner is generated by a random
+generator seeded with the seed and the number of the owner only, so the same settings always generate the same
+dataset, however much of it is consumed. Names, cities, pet types and visit reasons are Zipf distributed, like
+real ones. The records are emitted per chunk of owners: first the owners, then their pets and then their visits,
+so that every record only references records before it and an import writes full batches.
+The IDs are time ordered like those of the TimeOrderedIdGenerator, but with a synthetic timestamp: the owners are
+spread evenly over the configured years, and the pets and visits of an owner follow it in the sequence. So the IDs
+of each kind of record increase in the order of the records, and an import appends to the right edge of the
+_id indexes
+ */
+public class DatasetGenerator {
+
+    private static final int CHUNK_SIZE = 1_000;
+    private static final long SEED_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static final String[] FIRST_NAMES = {"James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael",
+            "Linda", "William", "Elizabeth", "David", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas",
+            "Sarah", "Charles", "Karen", "Daniel", "Nancy", "Matthew", "Lisa", "Anthony", "Betty", "Mark", "Sandra",
+            "Paul", "Ashley", "Steven", "Emily", "Andrew", "Donna", "Joshua", "Michelle", "Kevin", "Carol", "Brian",
+            "Amanda", "George", "Melissa", "Edward", "Deborah", "Ronald", "Stephanie", "Timothy", "Rebecca"};
+    /* Ordered by frequency, as they are drawn by their rank */
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+            "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Thomas",
+            "Taylor", "Moore", "Jackson", "Martin", "Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark",
+            "Ramirez", "Lewis", "Robinson", "Walker", "Young", "Allen", "King", "Wright", "Scott", "Torres", "Nguyen",
+            "Hill", "Flores", "Green", "Adams", "Nelson", "Baker", "Hall", "Rivera", "Campbell", "Mitchell", "Carter",
+            "Roberts", "Gomez", "Phillips", "Evans", "Turner", "Diaz", "Parker", "Cruz", "Edwards", "Collins", "Reyes",
+            "Stewart", "Morris", "Morales", "Murphy", "Cook", "Rogers", "Gutierrez", "Ortiz", "Morgan", "Cooper",
+            "Peterson", "Bailey", "Reed", "Kelly", "Howard", "Ramos", "Kim", "Cox", "Ward", "Richardson", "Watson",
+            "Brooks", "Chavez", "Wood", "James", "Bennett", "Gray", "Mendoza", "Ruiz", "Hughes", "Price", "Alvarez",
+            "Castillo", "Sanders", "Patel", "Myers", "Long", "Ross", "Foster", "Jimenez", "Schmitt", "Escobito",
+            "Franklin", "McTavish", "Black", "Estaban", "Leary", "Douglas", "Coleman"};
+    private static final String[] CITIES = {"Madison", "Sun Prairie", "McFarland", "Windsor", "Monona", "Middleton",
+            "Fitchburg", "Verona", "Waunakee", "Stoughton", "Oregon", "DeForest", "Cottage Grove", "Mount Horeb"};
+    private static final String[] STREETS = {"W. Liberty St.", "Maple St.", "N. Lake St.", "Lake St.",
+            "E. Washington Ave.", "Oak St.", "Park Ave.", "Elm St.", "Pine St.", "Cedar Ave.", "Main St.", "Hill Rd."};
+    private static final String[] PET_NAMES = {"Bella", "Max", "Luna", "Charlie", "Lucy", "Cooper", "Daisy", "Milo",
+            "Bailey", "Buddy", "Lily", "Rocky", "Molly", "Leo", "Sadie", "Oliver", "Lola", "Tucker", "Chloe", "Bear",
+            "Samantha", "Jewel", "Iggy", "George", "Basil", "Rosy", "Freddy", "Mulligan", "Sly", "Lucky"};
+    private static final String[] PET_TYPES = {"dog", "cat", "bird", "hamster", "lizard", "snake"};
+    private static final String[] VISIT_REASONS = {"Checkup", "Vaccination", "Rabies shot", "Dental cleaning",
+            "Skin allergy", "Ear infection", "Limping", "Follow-up", "Deworming", "Neutered", "Spayed",
+            "Broken leg", "Eye infection", "Weight check", "Surgery"};
+
+    private static final double[] LAST_NAME_WEIGHTS = zipfWeights(LAST_NAMES.length);
+    private static final double[] CITY_WEIGHTS = zipfWeights(CITIES.length);
+    private static final double[] PET_NAME_WEIGHTS = zipfWeights(PET_NAMES.length);
+    private static final double[] PET_TYPE_WEIGHTS = zipfWeights(PET_TYPES.length);
+    private static final double[] VISIT_REASON_WEIGHTS = zipfWeights(VISIT_REASONS.length);
+
+    private final PetclinicProperties.Generator settings;
+    private final LocalDate referenceDate;
+    private final int historyDays;
+    private final long historyStartMillis;
+    private final long millisPerOwner;
+
+    public DatasetGenerator(PetclinicProperties.Generator settings) {
+        this.settings = settings;
+        this.referenceDate = LocalDate.parse(settings.getReferenceDate());
+        this.historyDays = (int) ChronoUnit.DAYS.between(this.referenceDate.minusYears(settings.getYears()),
+                this.referenceDate);
+        this.historyStartMillis = this.referenceDate.minusDays(this.historyDays)
+                .atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        this.millisPerOwner = Math.max(1, this.historyDays * 86_400_000L / Math.max(1, settings.getOwners()));
+    }
+
+    /* The line of a record is the number of the owner it belongs to, starting with 1 */
+    public Flux<ImportRecord> generate() {
+        int owners = this.settings.getOwners();
+        int chunks = (owners + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return Flux.range(0, chunks)
+                .concatMapIterable(chunk -> this.generateChunk(chunk * CHUNK_SIZE,
+                        Math.min(owners, (chunk + 1) * CHUNK_SIZE)));
+    }
+
+    private List<ImportRecord> generateChunk(int fromOwner, int toOwner) {
+        List<ImportRecord> owners = new ArrayList<>(toOwner - fromOwner);
+        List<ImportRecord> pets = new ArrayList<>();
+        List<ImportRecord> visits = new ArrayList<>();
+        for (int i = fromOwner; i < toOwner; i++) {
+            long line = i + 1;
+            SplittableRandom random = new SplittableRandom(this.settings.getSeed() * SEED_GAMMA + i);
+            long timeAndSequence = (this.historyStartMillis + i * this.millisPerOwner)
+                    << TimeOrderedIdGenerator.SEQUENCE_BITS;
+            Owner owner = this.owner(random, uuid(random, timeAndSequence++));
+            owners.add(ImportRecord.of(line, ImportRecord.Type.OWNER, owner));
+
+            int numPets = this.geometric(random, this.settings.getPetsPerOwner(), this.settings.getMaxPetsPerOwner());
+            for (int p = 0; p < numPets; p++) {
+                Pet pet = this.pet(random, uuid(random, timeAndSequence++), owner.getId());
+                pets.add(ImportRecord.of(line, ImportRecord.Type.PET, pet));
+
+                int numVisits = this.logNormal(random, this.settings.getVisitsPerPet(), this.settings.getVisitsSkew(),
+                        this.settings.getMaxVisitsPerPet());
+                for (int v = 0; v < numVisits; v++) {
+                    Visit visit = this.visit(random, uuid(random, timeAndSequence++), pet);
+                    visits.add(ImportRecord.of(line, ImportRecord.Type.VISIT, visit));
+                }
+            }
+        }
+        List<ImportRecord> chunk = new ArrayList<>(owners.size() + pets.size() + visits.size());
+        chunk.addAll(owners);
+        chunk.addAll(pets);
+        chunk.addAll(visits);
+        return chunk;
+    }
+
+    private Owner owner(SplittableRandom random, UUID id) {
+        return Owner.builder()
+                .id(id)
+                .firstName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)])
+                .lastName(LAST_NAMES[zipf(random, LAST_NAME_WEIGHTS)])
+                .address((1 + random.nextInt(9_999)) + " " + STREETS[random.nextInt(STREETS.length)])
+                .city(CITIES[zipf(random, CITY_WEIGHTS)])
+                .telephone(String.format(Locale.ROOT, "608555%04d", random.nextInt(10_000)))
+                .build();
+    }
+
+    private Pet pet(SplittableRandom random, UUID id, UUID ownerId) {
+        return Pet.builder()
+                .id(id)
+                .name(PET_NAMES[zipf(random, PET_NAME_WEIGHTS)])
+                .birthDate(this.referenceDate.minusDays(random.nextInt(this.historyDays + 1)))
+                .petType(PET_TYPES[zipf(random, PET_TYPE_WEIGHTS)])
+                .ownerId(ownerId)
+                .build();
+    }
+
+    /* Between the birth of the pet and the reference date */
+    private Visit visit(SplittableRandom random, UUID id, Pet pet) {
+        int daysAlive = (int) ChronoUnit.DAYS.between(pet.getBirthDate(), this.referenceDate);
+        Visit visit = Visit.builder()
+                .id(id)
+                .date(pet.getBirthDate().plusDays(random.nextInt(daysAlive + 1)))
+                .description(VISIT_REASONS[zipf(random, VISIT_REASON_WEIGHTS)])
+                .build();
+        visit.setPetId(pet.getId());
+        return visit;
+    }
+
+    /* Number of failures before the first success, with the success probability giving the mean */
+    private int geometric(SplittableRandom random, double mean, int max) {
+        if (mean <= 0) {
+            return 0;
+        }
+        double successProbability = 1 / (1 + mean);
+        double value = Math.floor(Math.log(1 - random.nextDouble()) / Math.log(1 - successProbability));
+        return (int) Math.min(max, value);
+    }
+
+    /* The logarithm is normally distributed, its mean is chosen so that the values have the given mean */
+    private int logNormal(SplittableRandom random, double mean, double skew, int max) {
+        if (mean <= 0) {
+            return 0;
+        }
+        double mu = Math.log(mean) - skew * skew / 2;
+        double value = Math.round(Math.exp(mu + skew * gaussian(random)));
+        return (int) Math.min(max, value);
+    }
+
+    /* Box-Muller transform, SplittableRandom has no Gaussian values of its own */
+    private static double gaussian(SplittableRandom random) {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    /* Index of a value drawn with the cumulative weights */
+    private static int zipf(SplittableRandom random, double[] cumulativeWeights) {
+        double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        int low = 0;
+        int high = cumulativeWeights.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulativeWeights[middle] <= target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /* The value of rank k has weight 1/k */
+    private static double[] zipfWeights(int count) {
+        double[] cumulativeWeights = new double[count];
+        double sum = 0;
+        for (int rank = 1; rank <= count; rank++) {
+            sum += 1.0 / rank;
+            cumulativeWeights[rank - 1] = sum;
+        }
+        return cumulativeWeights;
+    }
+
+    /* A time ordered UUID, with the random bits drawn from the seeded generator */
+    private static UUID uuid(SplittableRandom random, long timeAndSequence) {
+        return TimeOrderedIdGenerator.of(timeAndSequence, random.nextLong());
+    }
+}
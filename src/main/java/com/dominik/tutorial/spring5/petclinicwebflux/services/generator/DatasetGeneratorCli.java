@@ -0,0 +1,89 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.generator;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.exports.ExportRecords;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+Writes a generated dataset as NDJSON, which can be imported with --petclinic.imports.file, without a database.
+Takes the settings of petclinic.generator without prefix (like --owners=1000000 --seed=7) and --out=<file>,
+writing to standard output without file. From the application jar:
+java -cp petclinic-webflux.jar -Dloader.main=<this class> org.springframework.boot.loader.PropertiesLauncher [args]
+ */
+public final class DatasetGeneratorCli {
+
+    private static final String ARGUMENT_PREFIX = "--";
+    private static final String ARGUMENT_OUT = "out";
+    private static final String SETTINGS_PREFIX = "generator";
+
+    private DatasetGeneratorCli() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith(ARGUMENT_PREFIX) || separator < 0) {
+                throw new IllegalArgumentException("Arguments must be given as --<name>=<value>, not " + arg);
+            }
+            arguments.put(arg.substring(ARGUMENT_PREFIX.length(), separator), arg.substring(separator + 1));
+        }
+        String out = arguments.remove(ARGUMENT_OUT);
+
+        Map<String, String> settings = new HashMap<>();
+        arguments.forEach((name, value) -> settings.put(SETTINGS_PREFIX + "." + name, value));
+        PetclinicProperties.Generator generator = new Binder(new MapConfigurationPropertySource(settings))
+                .bind(SETTINGS_PREFIX, Bindable.ofInstance(new PetclinicProperties.Generator()))
+                .orElseGet(PetclinicProperties.Generator::new);
+
+        ObjectWriter objectWriter = Jackson2ObjectMapperBuilder.json().build().writer();
+        try (Writer writer = out == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Path.of(out))) {
+            new DatasetGenerator(generator).generate()
+                    .doOnNext(record -> writeLine(writer, objectWriter, record))
+                    .blockLast();
+        }
+    }
+
+    private static void writeLine(Writer writer, ObjectWriter objectWriter, ImportRecord record) {
+        try {
+            writer.write(objectWriter.writeValueAsString(toExportRecord(record)));
+            writer.write('\n');
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, Object> toExportRecord(ImportRecord record) {
+        switch (record.getType()) {
+            case OWNER:
+                return ExportRecords.owner((Owner) record.getEntity());
+            case PET:
+                return ExportRecords.pet((Pet) record.getEntity());
+            default:
+                return ExportRecords.visit((Visit) record.getEntity());
+        }
+    }
+}
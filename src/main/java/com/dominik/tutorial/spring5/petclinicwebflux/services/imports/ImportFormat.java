@@ -0,0 +1,34 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.imports;
+
+import org.springframework.http.MediaType;
+
+import java.util.Locale;
+
+/*
+NDJSON has one JSON object per line, CSV a header line naming the fields and one record per line. Both name
+the kind of each record in the field "type" (owner, pet or visit)
+ */
+public enum ImportFormat {
+
+    NDJSON(ImportFormat.NDJSON_VALUE, ".ndjson"),
+    CSV(ImportFormat.CSV_VALUE, ".csv");
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String CSV_VALUE = "text/csv";
+
+    private final MediaType mediaType;
+    private final String fileExtension;
+
+    ImportFormat(String mediaType, String fileExtension) {
+        this.mediaType = MediaType.parseMediaType(mediaType);
+        this.fileExtension = fileExtension;
+    }
+
+    public static ImportFormat fromMediaType(MediaType mediaType) {
+        return mediaType != null && CSV.mediaType.isCompatibleWith(mediaType) ? CSV : NDJSON;
+    }
+
+    public static ImportFormat fromFileName(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(CSV.fileExtension) ? CSV : NDJSON;
+    }
+}
@@ -0,0 +1,50 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.imports;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.BaseEntity;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import lombok.Getter;
+
+/* A record of the import input with its line number, either parsed to an entity or failed with the reason */
+@Getter
+public class ImportRecord {
+
+    private final long line;
+    private final Type type;
+    private final BaseEntity entity;
+    private final String error;
+
+    private ImportRecord(long line, Type type, BaseEntity entity, String error) {
+        this.line = line;
+        this.type = type;
+        this.entity = entity;
+        this.error = error;
+    }
+
+    public static ImportRecord of(long line, Type type, BaseEntity entity) {
+        return new ImportRecord(line, type, entity, null);
+    }
+
+    public static ImportRecord failed(long line, String error) {
+        return new ImportRecord(line, null, null, error);
+    }
+
+    public boolean isFailed() {
+        return this.error != null;
+    }
+
+    public enum Type {
+        OWNER(Owner.class), PET(Pet.class), VISIT(Visit.class);
+
+        private final Class<? extends BaseEntity> entityClass;
+
+        Type(Class<? extends BaseEntity> entityClass) {
+            this.entityClass = entityClass;
+        }
+
+        public Class<? extends BaseEntity> getEntityClass() {
+            return this.entityClass;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.imports;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.util.function.Tuples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+Parses the import input line by line, so that it is never held in memory as a whole. A line which cannot be parsed
+becomes a failed record instead of failing the import. CSV fields may be quoted, but may not span several lines
+ */
+@Component
+public class ImportRecordParser {
+
+    private static final String FIELD_TYPE = "type";
+
+    private final ObjectMapper objectMapper;
+
+    public ImportRecordParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public Flux<ImportRecord> parse(Flux<String> lines, ImportFormat format) {
+        return Flux.defer(() -> {
+            AtomicReference<List<String>> csvHeader = new AtomicReference<>();
+            return lines
+                    .index((index, line) -> Tuples.of(index + 1, line))
+                    .filter(numberedLine -> !numberedLine.getT2().isBlank())
+                    .<ImportRecord>handle((numberedLine, sink) -> {
+                        long lineNumber = numberedLine.getT1();
+                        String line = numberedLine.getT2();
+                        if (format == ImportFormat.NDJSON) {
+                            sink.next(this.parseJson(lineNumber, line));
+                        } else if (csvHeader.get() == null) {
+                            List<String> header = splitCsv(line);
+                            csvHeader.set(header == null ? List.of() : header);
+                        } else {
+                            sink.next(this.parseCsv(lineNumber, csvHeader.get(), line));
+                        }
+                    });
+        });
+    }
+
+    private ImportRecord parseJson(long lineNumber, String line) {
+        JsonNode node;
+        try {
+            node = this.objectMapper.readTree(line);
+        }
+        catch (JsonProcessingException e) {
+            return ImportRecord.failed(lineNumber, "Invalid JSON: " + e.getOriginalMessage());
+        }
+        if (!node.isObject()) {
+            return ImportRecord.failed(lineNumber, "Record must be a JSON object");
+        }
+        return this.toRecord(lineNumber, (ObjectNode) node);
+    }
+
+    private ImportRecord parseCsv(long lineNumber, List<String> header, String line) {
+        List<String> values = splitCsv(line);
+        if (values == null) {
+            return ImportRecord.failed(lineNumber, "Quoted field is not closed");
+        }
+        if (values.size() > header.size()) {
+            return ImportRecord.failed(lineNumber, "Record has " + values.size() + " fields, but the header only "
+                    + header.size());
+        }
+        ObjectNode node = this.objectMapper.createObjectNode();
+        for (int i = 0; i < values.size(); i++) {
+            if (!values.get(i).isEmpty()) {
+                node.put(header.get(i).trim(), values.get(i));
+            }
+        }
+        return this.toRecord(lineNumber, node);
+    }
+
+    private ImportRecord toRecord(long lineNumber, ObjectNode node) {
+        JsonNode typeNode = node.remove(FIELD_TYPE);
+        ImportRecord.Type type = null;
+        for (ImportRecord.Type candidate : ImportRecord.Type.values()) {
+            if (typeNode != null && candidate.name().equalsIgnoreCase(typeNode.asText())) {
+                type = candidate;
+            }
+        }
+        if (type == null) {
+            return ImportRecord.failed(lineNumber, "Record type must be one of owner, pet and visit");
+        }
+        try {
+            return ImportRecord.of(lineNumber, type, this.objectMapper.treeToValue(node, type.getEntityClass()));
+        }
+        catch (JsonProcessingException e) {
+            return ImportRecord.failed(lineNumber, "Invalid " + type.name().toLowerCase(Locale.ROOT) + ": "
+                    + e.getOriginalMessage());
+        }
+    }
+
+    /* Null if a quoted field is not closed within the line */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
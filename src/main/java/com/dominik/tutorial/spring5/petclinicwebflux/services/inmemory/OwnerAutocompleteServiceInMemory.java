@@ -0,0 +1,47 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.search.CompletionTrie;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+
+@Service
+public class OwnerAutocompleteServiceInMemory implements OwnerAutocompleteService {
+
+    private final CompletionTrie lastNames;
+    private final int maxCompletions;
+
+    public OwnerAutocompleteServiceInMemory(PetclinicProperties properties) {
+        this.maxCompletions = properties.getAutocomplete().getMaxCompletions();
+        this.lastNames = new CompletionTrie(this.maxCompletions);
+    }
+
+    @Override
+    public Flux<String> completeLastName(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank() || limit < 1) {
+            return Flux.empty();
+        }
+        return Flux.fromIterable(this.lastNames.complete(prefix, Math.min(limit, this.maxCompletions)));
+    }
+
+    @Override
+    public void lastNameChanged(String previousLastName, String lastName) {
+        if (Objects.equals(previousLastName, lastName)) {
+            return;
+        }
+        this.lastNames.remove(previousLastName);
+        this.lastNames.add(lastName);
+    }
+
+    @Override
+    public Mono<Long> rebuild(Flux<String> lastNames) {
+        return Mono.fromRunnable(this.lastNames::clear)
+                .thenMany(lastNames)
+                .doOnNext(this.lastNames::add)
+                .count();
+    }
+}
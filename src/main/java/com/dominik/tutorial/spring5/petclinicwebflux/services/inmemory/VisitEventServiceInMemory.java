@@ -0,0 +1,33 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.VisitEvent;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitEventService;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+/* Only subscribers on this node see the visits created on it */
+public class VisitEventServiceInMemory implements VisitEventService {
+
+    private final DirectProcessor<VisitEvent> processor = DirectProcessor.create();
+    /* Serializes concurrent publishes, the processor itself must only be called from one thread at a time */
+    private final FluxSink<VisitEvent> sink = this.processor.sink();
+    private final int bufferSize;
+
+    public VisitEventServiceInMemory(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public Mono<Void> publish(VisitEvent event) {
+        return Mono.fromRunnable(() -> this.sink.next(event));
+    }
+
+    @Override
+    public Flux<VisitEvent> events() {
+        return this.processor
+                .onBackpressureBuffer(this.bufferSize, dropped -> { }, BufferOverflowStrategy.DROP_OLDEST);
+    }
+}
@@ -0,0 +1,87 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.BaseEntity;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ExportService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.exports.ExportRecords;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.exports.MergeJoin;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.UUID;
+
+/*
+Exports all owners, then all pets, then all visits as NDJSON lines in the format of the import, one collection
+after the other. Every collection is read with a cursor sorted along an index, and pets and visits are merge-joined
+with the sorted IDs of the owners and pets, so that pets and visits of deleted owners and pets are left out
+without holding anything in memory. The cursors are only read as fast as the lines are consumed
+ */
+@Service
+public class ExportServiceMongo implements ExportService {
+
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_OWNER_ID = "ownerId";
+    private static final String FIELD_PET_ID = "petId";
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final ObjectMapper objectMapper;
+    private final PetclinicProperties properties;
+
+    public ExportServiceMongo(ReactiveMongoOperations mongoOperations, ObjectMapper objectMapper,
+                              PetclinicProperties properties) {
+        this.mongoOperations = mongoOperations;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    @Override
+    public Flux<String> exportAll() {
+        int batchSize = this.properties.getExports().getBatchSize();
+        Flux<Map<String, Object>> owners = this.mongoOperations.find(this.sortedBy(FIELD_ID), Owner.class)
+                .map(ExportRecords::owner);
+        Flux<Map<String, Object>> pets = MergeJoin.semiJoin(
+                        this.mongoOperations.find(this.sortedBy(FIELD_OWNER_ID, FIELD_ID), Pet.class),
+                        Pet::getOwnerId, this.sortedIds(Owner.class), batchSize)
+                .map(ExportRecords::pet);
+        Flux<Map<String, Object>> visits = MergeJoin.semiJoin(
+                        this.mongoOperations.find(this.sortedBy(FIELD_PET_ID), Visit.class),
+                        Visit::getPetId, this.sortedIds(Pet.class), batchSize)
+                .map(ExportRecords::visit);
+        return Flux.concat(owners, pets, visits)
+                .map(this::toJson);
+    }
+
+    /* Only sorts covered by an index, so that no collection has to be sorted in memory by the database */
+    private Query sortedBy(String... fields) {
+        return new Query()
+                .with(Sort.by(fields))
+                .cursorBatchSize(this.properties.getExports().getBatchSize());
+    }
+
+    /* Read from the _id index only */
+    private <T extends BaseEntity> Flux<UUID> sortedIds(Class<T> type) {
+        Query query = this.sortedBy(FIELD_ID);
+        query.fields().include(FIELD_ID);
+        return this.mongoOperations.find(query, type)
+                .map(BaseEntity::getId);
+    }
+
+    private String toJson(Map<String, Object> record) {
+        try {
+            return this.objectMapper.writeValueAsString(record);
+        }
+        catch (JsonProcessingException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+}
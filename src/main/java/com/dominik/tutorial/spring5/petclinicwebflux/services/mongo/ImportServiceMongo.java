@@ -0,0 +1,264 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.IdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.BaseEntity;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.EntityId;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ImportSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.PetOwner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ImportService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphChanges;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportFormat;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportRecord;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportRecordParser;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+Imports the records in batches of consecutive records of the same type, one batch at a time, so the input is
+only read as fast as it is written. Records are imported as new entities: they keep a given ID, so that pets and
+visits can reference owners and pets of the same input, which have to come before them. A record failing
+validation, referencing a missing owner or pet or failing to be written is reported and skipped
+ */
+@Service
+public class ImportServiceMongo implements ImportService {
+
+    private static final long INITIAL_VERSION = 0L;
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final OwnerRepository ownerRepository;
+    private final PetRepository petRepository;
+    private final OwnerAutocompleteService autocompleteService;
+    private final OwnerGraphChanges ownerGraphChanges;
+    private final KnownIds knownIds;
+    private final IdGenerator idGenerator;
+    private final Validator validator;
+    private final ImportRecordParser parser;
+    private final PetclinicProperties properties;
+
+    public ImportServiceMongo(ReactiveMongoOperations mongoOperations, OwnerRepository ownerRepository,
+                              PetRepository petRepository, OwnerAutocompleteService autocompleteService,
+                              OwnerGraphChanges ownerGraphChanges, KnownIds knownIds, IdGenerator idGenerator,
+                              Validator validator, ImportRecordParser parser, PetclinicProperties properties) {
+        this.mongoOperations = mongoOperations;
+        this.ownerRepository = ownerRepository;
+        this.petRepository = petRepository;
+        this.autocompleteService = autocompleteService;
+        this.ownerGraphChanges = ownerGraphChanges;
+        this.knownIds = knownIds;
+        this.idGenerator = idGenerator;
+        this.validator = validator;
+        this.parser = parser;
+        this.properties = properties;
+    }
+
+    @Override
+    public Mono<ImportSummary> importRecords(Flux<String> lines, ImportFormat format) {
+        return this.importEntities(this.parser.parse(lines, format));
+    }
+
+    /* For records which are already parsed, like generated ones. Failed records are only counted and reported */
+    @Override
+    public Mono<ImportSummary> importEntities(Flux<ImportRecord> records) {
+        return Mono.defer(() -> {
+            ImportSummary summary = new ImportSummary(this.properties.getImports().getMaxReportedErrors());
+            long start = System.nanoTime();
+            return records
+                    .map(this::validate)
+                    .<ImportRecord>handle((record, sink) -> {
+                        if (record.isFailed()) {
+                            summary.recordFailed(record.getLine(), record.getError());
+                        } else {
+                            sink.next(record);
+                        }
+                    })
+                    .transform(this::batches)
+                    .concatMap(batch -> this.importBatch(batch, summary))
+                    .then(Mono.fromCallable(() -> summary.finished(Duration.ofNanos(System.nanoTime() - start))));
+        });
+    }
+
+    private ImportRecord validate(ImportRecord record) {
+        if (record.isFailed()) {
+            return record;
+        }
+        Set<ConstraintViolation<BaseEntity>> violations = this.validator.validate(record.getEntity());
+        if (violations.isEmpty()) {
+            return record;
+        }
+        return ImportRecord.failed(record.getLine(), violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", ")));
+    }
+
+    /* A batch ends when it is full or the type of the records changes */
+    private Flux<List<ImportRecord>> batches(Flux<ImportRecord> records) {
+        int batchSize = this.properties.getImports().getBatchSize();
+        return Flux.defer(() -> {
+                    AtomicReference<ImportRecord.Type> batchType = new AtomicReference<>();
+                    AtomicInteger batchCount = new AtomicInteger();
+                    return records.bufferUntil(record -> {
+                        boolean typeChanged = record.getType() != batchType.getAndSet(record.getType());
+                        if (typeChanged || batchCount.get() >= batchSize) {
+                            batchCount.set(1);
+                            return true;
+                        }
+                        batchCount.incrementAndGet();
+                        return false;
+                    }, true);
+                })
+                .filter(batch -> !batch.isEmpty());
+    }
+
+    private Mono<Void> importBatch(List<ImportRecord> batch, ImportSummary summary) {
+        switch (batch.get(0).getType()) {
+            case OWNER:
+                return this.importOwners(batch, summary);
+            case PET:
+                return this.importPets(batch, summary);
+            default:
+                return this.importVisits(batch, summary);
+        }
+    }
+
+    private Mono<Void> importOwners(List<ImportRecord> records, ImportSummary summary) {
+        records.forEach(r -> {
+            Owner owner = (Owner) r.getEntity();
+            owner.updateSearchKeys();
+            this.prepare(owner);
+            this.knownIds.owners().add(owner.getId());
+        });
+        return this.insert(Owner.class, records, summary)
+                .doOnNext(owners -> {
+                    owners.forEach(r -> this.autocompleteService.lastNameChanged("",
+                            ((Owner) r.getEntity()).getLastName()));
+                    summary.ownersImported(owners.size());
+                })
+                .then();
+    }
+
+    /* Owners of the same input are found as well, as their batches are written before */
+    private Mono<Void> importPets(List<ImportRecord> records, ImportSummary summary) {
+        Function<ImportRecord, UUID> ownerId = r -> ((Pet) r.getEntity()).getOwnerId();
+        return this.ownerRepository.findIdsByIdIn(this.referencedIds(records, ownerId))
+                .map(EntityId::getId)
+                .collect(Collectors.toSet())
+                .flatMap(existingOwnerIds -> {
+                    List<ImportRecord> pets = this.withExistingReference(records, ownerId, existingOwnerIds,
+                            "Owner", summary);
+                    pets.forEach(r -> {
+                        this.prepare(r.getEntity());
+                        this.knownIds.pets().add(r.getEntity().getId());
+                    });
+                    return this.insert(Pet.class, pets, summary);
+                })
+                .flatMap(pets -> {
+                    summary.petsImported(pets.size());
+                    return this.ownerGraphChanges.changed(this.referencedIds(pets, ownerId));
+                });
+    }
+
+    private Mono<Void> importVisits(List<ImportRecord> records, ImportSummary summary) {
+        Function<ImportRecord, UUID> petId = r -> ((Visit) r.getEntity()).getPetId();
+        return this.petRepository.findOwnerIdsByIdIn(this.referencedIds(records, petId))
+                .filter(p -> p.getOwnerId() != null)
+                .collectMap(PetOwner::getId, PetOwner::getOwnerId)
+                .flatMap(ownerIdsByPet -> {
+                    List<ImportRecord> visits = this.withExistingReference(records, petId, ownerIdsByPet.keySet(),
+                            "Pet", summary);
+                    visits.forEach(r -> this.prepare(r.getEntity()));
+                    return this.insert(Visit.class, visits, summary)
+                            .flatMap(inserted -> {
+                                summary.visitsImported(inserted.size());
+                                return this.ownerGraphChanges.changed(
+                                        this.referencedIds(inserted, petId.andThen(ownerIdsByPet::get)));
+                            });
+                });
+    }
+
+    private void prepare(BaseEntity entity) {
+        this.idGenerator.assignId(entity);
+        entity.setVersion(INITIAL_VERSION);
+    }
+
+    private Set<UUID> referencedIds(List<ImportRecord> records, Function<ImportRecord, UUID> reference) {
+        return records.stream()
+                .map(reference)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    private List<ImportRecord> withExistingReference(List<ImportRecord> records,
+                                                     Function<ImportRecord, UUID> reference, Set<UUID> existingIds,
+                                                     String referencedType, ImportSummary summary) {
+        List<ImportRecord> referencing = new ArrayList<>(records.size());
+        for (ImportRecord record : records) {
+            UUID referencedId = reference.apply(record);
+            if (referencedId == null) {
+                summary.recordFailed(record.getLine(), referencedType + " ID must be given");
+            } else if (!existingIds.contains(referencedId)) {
+                summary.recordFailed(record.getLine(), referencedType + " with ID " + referencedId + " not found");
+            } else {
+                referencing.add(record);
+            }
+        }
+        return referencing;
+    }
+
+    /*
+    Unordered, so that a failing record (like one with a duplicate ID) does not stop the records after it.
+    Returns the records which were written
+     */
+    private Mono<List<ImportRecord>> insert(Class<?> entityClass, List<ImportRecord> records, ImportSummary summary) {
+        if (records.isEmpty()) {
+            return Mono.just(records);
+        }
+        MongoConverter converter = this.mongoOperations.getConverter();
+        List<Document> documents = new ArrayList<>(records.size());
+        records.forEach(r -> {
+            Document document = new Document();
+            converter.write(r.getEntity(), document);
+            documents.add(document);
+        });
+        return Mono.from(this.mongoOperations.getCollection(this.mongoOperations.getCollectionName(entityClass))
+                        .insertMany(documents, new InsertManyOptions().ordered(false)))
+                .thenReturn(records)
+                .onErrorResume(MongoBulkWriteException.class, e -> {
+                    Set<Integer> failedIndexes = new HashSet<>();
+                    e.getWriteErrors().forEach(error -> {
+                        failedIndexes.add(error.getIndex());
+                        summary.recordFailed(records.get(error.getIndex()).getLine(), error.getMessage());
+                    });
+                    List<ImportRecord> written = new ArrayList<>(records.size());
+                    for (int i = 0; i < records.size(); i++) {
+                        if (!failedIndexes.contains(i)) {
+                            written.add(records.get(i));
+                        }
+                    }
+                    return Mono.just(written);
+                });
+    }
+}
@@ -0,0 +1,82 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.EntityId;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+Deletes pets whose owner and visits whose pet no longer exists, e.g. because a cascading delete failed halfway.
+The referenced IDs are streamed in order from the index on the reference, so every ID is checked only once,
+and are checked for existence and deleted with one query each per batch
+ */
+@Service
+public class OrphanSweeper {
+
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_OWNER_ID = "ownerId";
+    private static final String FIELD_PET_ID = "petId";
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final OwnerRepository ownerRepository;
+    private final PetRepository petRepository;
+    private final VisitRepository visitRepository;
+    private final PetclinicProperties properties;
+
+    public OrphanSweeper(ReactiveMongoOperations mongoOperations, OwnerRepository ownerRepository,
+                         PetRepository petRepository, VisitRepository visitRepository,
+                         PetclinicProperties properties) {
+        this.mongoOperations = mongoOperations;
+        this.ownerRepository = ownerRepository;
+        this.petRepository = petRepository;
+        this.visitRepository = visitRepository;
+        this.properties = properties;
+    }
+
+    /* Returns the number of deleted pets */
+    public Mono<Long> sweepPets() {
+        Query ownerIds = new Query(where(FIELD_OWNER_ID).ne(null)).with(Sort.by(FIELD_OWNER_ID));
+        ownerIds.fields().include(FIELD_OWNER_ID).exclude(FIELD_ID);
+        return this.sweep(this.mongoOperations.find(ownerIds, Pet.class).map(Pet::getOwnerId),
+                this.ownerRepository::findIdsByIdIn, this.petRepository::deleteByOwnerIdIn);
+    }
+
+    /* Returns the number of deleted visits, pets are to be swept first so that their visits are found as well */
+    public Mono<Long> sweepVisits() {
+        Query petIds = new Query(where(FIELD_PET_ID).ne(null)).with(Sort.by(FIELD_PET_ID));
+        petIds.fields().include(FIELD_PET_ID).exclude(FIELD_ID);
+        return this.sweep(this.mongoOperations.find(petIds, Visit.class).map(Visit::getPetId),
+                this.petRepository::findIdsByIdIn, this.visitRepository::deleteByPetIdIn);
+    }
+
+    private Mono<Long> sweep(Flux<UUID> referencedIds, Function<Collection<UUID>, Flux<EntityId>> findExisting,
+                             Function<Collection<UUID>, Mono<Long>> deleteReferencing) {
+        return referencedIds
+                .distinctUntilChanged()
+                .buffer(this.properties.getOrphanSweep().getBatchSize())
+                .concatMap(batch -> findExisting.apply(batch)
+                        .map(EntityId::getId)
+                        .collect(Collectors.toSet())
+                        .flatMap(existing -> {
+                            List<UUID> missing = new ArrayList<>(batch);
+                            missing.removeAll(existing);
+                            return missing.isEmpty() ? Mono.just(0L) : deleteReferencing.apply(missing);
+                        }))
+                .reduce(0L, Long::sum);
+    }
+}
@@ -1,60 +1,269 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.IdGenerator;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerCursor;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphDepth;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphVersion;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerLastName;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummaryPage;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.PetName;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.search.PhoneticKeys;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.IdFilter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphCache;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 @Service
 public class OwnerServiceMongo implements OwnerService {
 
     private final OwnerRepository ownerRepository;
     private final PetService petService;
+    private final OwnerAutocompleteService autocompleteService;
+    private final OwnerGraphCache ownerGraphCache;
+    private final IdFilter ownerIds;
+    private final IdGenerator idGenerator;
+    private final PetclinicProperties properties;
 
-    public OwnerServiceMongo(OwnerRepository ownerRepository, PetService petService) {
+    public OwnerServiceMongo(OwnerRepository ownerRepository, PetService petService,
+                             OwnerAutocompleteService autocompleteService, OwnerGraphCache ownerGraphCache,
+                             KnownIds knownIds, IdGenerator idGenerator, PetclinicProperties properties) {
         this.ownerRepository = ownerRepository;
         this.petService = petService;
+        this.autocompleteService = autocompleteService;
+        this.ownerGraphCache = ownerGraphCache;
+        this.ownerIds = knownIds.owners();
+        this.idGenerator = idGenerator;
+        this.properties = properties;
     }
 
     @Override
     public Flux<Owner> findAll() {
-        return this.ownerRepository.findAll()
-                .flatMap(o -> this.addPets(Mono.just(o), o.getId()));
+        return this.findAll(OwnerGraphDepth.VISITS);
+    }
+
+    @Override
+    public Flux<Owner> findAll(OwnerGraphDepth depth) {
+        return this.addPets(this.ownerRepository.findAll(), depth);
     }
 
     @Override
     public Mono<Owner> getById(UUID id) {
-        return this.ownerRepository.findById(id)
-                .flatMap(o -> this.addPets(Mono.just(o), id));
+        if (!this.ownerIds.mightContain(id)) {
+            return Mono.empty();
+        }
+        return this.ownerGraphCache.get(id, this::loadById);
     }
 
+    /* Only the complete details are cached, less of them is loaded without the cache */
+    @Override
+    public Mono<Owner> getById(UUID id, OwnerGraphDepth depth) {
+        if (depth == OwnerGraphDepth.VISITS) {
+            return this.getById(id);
+        }
+        if (!this.ownerIds.mightContain(id)) {
+            return Mono.empty();
+        }
+        Mono<Owner> owner = this.ownerRepository.findById(id);
+        return depth == OwnerGraphDepth.OWNER ? owner : owner.flatMap(o -> this.addPets(Mono.just(o), id, false));
+    }
+
+    /*
+    The cached graph is kept while it has the given details version. A graph of another version (like one cached
+    before another instance changed the owner) is evicted and loaded again, so it is never served under a newer ETag
+     */
+    @Override
+    public Mono<Owner> getById(UUID id, String detailsVersion) {
+        return this.getById(id)
+                .flatMap(owner -> owner.detailsVersion().equals(detailsVersion)
+                        ? Mono.just(owner)
+                        : Mono.defer(() -> {
+                            this.ownerGraphCache.invalidate(id);
+                            return this.getById(id);
+                        }));
+    }
+
+    /* Reads only the versions of the owner by _id, without its pets and visits */
+    @Override
+    public Mono<OwnerGraphVersion> findGraphVersion(UUID id) {
+        if (!this.ownerIds.mightContain(id)) {
+            return Mono.empty();
+        }
+        return this.ownerRepository.findGraphVersionById(id);
+    }
+
+    /*
+    Only probes the _id index, without loading the owner or its pets. Asked before writes, so it does not trust
+    the ID filter
+     */
+    @Override
+    public Mono<Boolean> existsById(UUID id) {
+        return this.ownerRepository.existsById(id);
+    }
+
+    /*
+    The ID of a new owner is assigned here already, as it has to be known before the write. A new owner has no
+    previous last name to look up
+     */
     @Override
     public Mono<Owner> save(Owner owner) {
-        return this.ownerRepository.save(owner);
+        boolean isNew = owner.getId() == null;
+        owner.updateSearchKeys();
+        this.idGenerator.assignId(owner);
+        this.ownerIds.add(owner.getId());
+        Mono<String> previousLastNameMono = isNew ? Mono.just("") : this.ownerRepository.findLastNameById(owner.getId())
+                .map(OwnerLastName::getLastName)
+                .defaultIfEmpty("");
+        return previousLastNameMono
+                .flatMap(previousLastName -> this.ownerRepository.save(owner)
+                        .doOnNext(o -> {
+                            this.ownerGraphCache.invalidate(o.getId());
+                            this.autocompleteService.lastNameChanged(previousLastName, o.getLastName());
+                        }));
+    }
+
+    /*
+    The pets and their visits are deleted before the owner, so that a delete failing in between leaves an owner
+    with fewer pets instead of pets without owner. Pets added while the owner is deleted are left to the
+    OrphanSweeper
+     */
+    @Override
+    public Mono<Void> delete(UUID id) {
+        return this.ownerRepository.findLastNameById(id)
+                .flatMap(o -> this.petService.deleteByOwnerId(id)
+                        .then(this.ownerRepository.deleteById(id))
+                        .doOnSuccess(v -> {
+                            this.ownerGraphCache.invalidate(id);
+                            this.autocompleteService.lastNameChanged(o.getLastName(), "");
+                        }));
     }
 
     @Override
     public Flux<Owner> findByLastNameFragment(String lastNameFragment) {
-        return this.ownerRepository.findByLastNameContainingIgnoreCase(lastNameFragment)
-                .flatMap(o -> this.addPets(Mono.just(o), o.getId()));
+        return this.findByLastNameFragment(lastNameFragment, OwnerGraphDepth.VISITS);
+    }
 
+    @Override
+    public Flux<Owner> findByLastNameFragment(String lastNameFragment, OwnerGraphDepth depth) {
+        return this.addPets(this.ownerRepository.searchByLastName(lastNameFragment), depth);
     }
 
     /*
-    TODO: Needs optimization
-    This approach leads to a repository call for each single owner in the result, this is huge.
-    Better approach would be to get all pets in the DB, potentially filtered by the given ownerUUID(s)
-    and then add them programmatically to the right owner
+    One more owner than the page size is queried to find out whether there is a following page
      */
-    private Mono<Owner> addPets(Mono<Owner> ownerMono, UUID ownerId) {
-        Mono<List<Pet>> petListMono = this.petService.findByOwnerId(ownerId).collectList();
+    @Override
+    public Mono<OwnerSummaryPage> findSummaryPage(String lastNameFragment, OwnerCursor after) {
+        int pageSize = this.properties.getOwnerList().getPageSize();
+        return this.ownerRepository.findSummariesAfter(lastNameFragment, after, pageSize + 1)
+                .collectList()
+                .flatMap(owners -> {
+                    boolean hasNext = owners.size() > pageSize;
+                    List<OwnerSummary> pageOwners = hasNext ? new ArrayList<>(owners.subList(0, pageSize)) : owners;
+                    String nextToken = hasNext ? OwnerCursor.of(pageOwners.get(pageSize - 1)).toToken() : null;
+                    return this.addPetNames(pageOwners)
+                            .collectList()
+                            .map(o -> new OwnerSummaryPage(o, nextToken));
+                });
+    }
+
+    /*
+    Only the distinct last names sharing a phonetic key with the given last name are loaded (using the index on the
+    keys) and ranked by their edit distance, which is computed once per name. Then only the owners of the requested
+    page are queried in the order of that ranking, plus one to find out whether there is a following page
+     */
+    @Override
+    public Mono<OwnerSummaryPage> findFuzzySummaryPage(String lastName, int page) {
+        List<String> phoneticKeys = PhoneticKeys.keys(lastName);
+        if (phoneticKeys.isEmpty()) {
+            return Mono.just(new OwnerSummaryPage(Collections.emptyList(), null));
+        }
+        int pageSize = this.properties.getOwnerList().getPageSize();
+        Comparator<Map.Entry<String, Integer>> bySimilarity = Map.Entry.<String, Integer>comparingByValue()
+                .thenComparing(Map.Entry.comparingByKey());
+        return this.ownerRepository.findLastNamesByPhoneticKeys(phoneticKeys)
+                .map(name -> Map.entry(name, PhoneticKeys.distance(lastName, name)))
+                .collectSortedList(bySimilarity)
+                .flatMap(ranking -> {
+                    if (ranking.isEmpty()) {
+                        return Mono.just(Collections.<OwnerSummary>emptyList());
+                    }
+                    List<String> rankedLastNames = new ArrayList<>(ranking.size());
+                    ranking.forEach(e -> rankedLastNames.add(e.getKey()));
+                    return this.ownerRepository
+                            .findSummariesByLastNames(rankedLastNames, (long) page * pageSize, pageSize + 1)
+                            .collectList();
+                })
+                .flatMap(owners -> {
+                    boolean hasNext = owners.size() > pageSize;
+                    List<OwnerSummary> pageOwners = hasNext ? new ArrayList<>(owners.subList(0, pageSize)) : owners;
+                    String nextToken = hasNext ? String.valueOf(page + 1) : null;
+                    return this.addPetNames(pageOwners)
+                            .collectList()
+                            .map(o -> new OwnerSummaryPage(o, nextToken));
+                });
+    }
+
+    private Mono<Owner> loadById(UUID id) {
+        if (this.properties.getOwnerGraph().isAggregation()) {
+            return this.ownerRepository.findGraphById(id);
+        }
+        return this.ownerRepository.findById(id)
+                .flatMap(o -> this.addPets(Mono.just(o), id, true));
+    }
+
+    private Mono<Owner> addPets(Mono<Owner> ownerMono, UUID ownerId, boolean withVisits) {
+        Mono<List<Pet>> petListMono = this.petService.findByOwnerId(ownerId, withVisits).collectList();
         return Mono.zip(ownerMono, petListMono, (o, p) -> { o.setPets(p); return o;});
     }
+
+    /*
+    Owners are processed in batches: the pets (and their visits) of a whole batch are loaded with
+    a single query each and then assigned in memory, so a batch costs a constant number of queries
+     */
+    private Flux<Owner> addPets(Flux<Owner> owners, OwnerGraphDepth depth) {
+        if (depth == OwnerGraphDepth.OWNER) {
+            return owners;
+        }
+        return owners
+                .buffer(this.properties.getOwnerGraph().getBatchSize())
+                .concatMap(batch -> this.addPets(batch, depth == OwnerGraphDepth.VISITS));
+    }
+
+    private Flux<Owner> addPets(List<Owner> owners, boolean withVisits) {
+        Set<UUID> ownerIds = new LinkedHashSet<>();
+        owners.forEach(o -> ownerIds.add(o.getId()));
+        return this.petService.findByOwnerIds(ownerIds, withVisits)
+                .collectMultimap(Pet::getOwnerId)
+                .flatMapMany(petsByOwner -> {
+                    owners.forEach(o -> o.setPets(new ArrayList<>(
+                            petsByOwner.getOrDefault(o.getId(), Collections.emptyList()))));
+                    return Flux.fromIterable(owners);
+                });
+    }
+
+    /*
+    Only the pet names of the given owners are projected from the database, with a single query
+     */
+    private Flux<OwnerSummary> addPetNames(List<OwnerSummary> owners) {
+        Set<UUID> ownerIds = new LinkedHashSet<>();
+        owners.forEach(o -> ownerIds.add(o.getId()));
+        return this.petService.findNamesByOwnerIds(ownerIds)
+                .collectMultimap(PetName::getOwnerId, PetName::getName)
+                .flatMapMany(petNamesByOwner -> {
+                    owners.forEach(o -> o.setPetNames(new ArrayList<>(
+                            petNamesByOwner.getOrDefault(o.getId(), Collections.emptyList()))));
+                    return Flux.fromIterable(owners);
+                });
+    }
 }
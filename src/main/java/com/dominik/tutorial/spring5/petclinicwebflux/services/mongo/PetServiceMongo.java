@@ -1,65 +1,169 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.IdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.EntityId;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.PetName;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchLoader;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.IdFilter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphChanges;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 @Component
 public class PetServiceMongo implements PetService {
 
     private final PetRepository petRepository;
     private final VisitService visitService;
+    private final BatchLoader<UUID, Pet> petsByOwnerLoader;
+    private final OwnerGraphChanges ownerGraphChanges;
+    private final IdFilter petIds;
+    private final IdGenerator idGenerator;
+    private final PetclinicProperties properties;
 
-    public PetServiceMongo(PetRepository petRepository, VisitService visitService) {
+    public PetServiceMongo(PetRepository petRepository, VisitService visitService,
+                           BatchLoader<UUID, Pet> petsByOwnerLoader, OwnerGraphChanges ownerGraphChanges,
+                           KnownIds knownIds, IdGenerator idGenerator, PetclinicProperties properties) {
         this.petRepository = petRepository;
         this.visitService = visitService;
+        this.petsByOwnerLoader = petsByOwnerLoader;
+        this.ownerGraphChanges = ownerGraphChanges;
+        this.petIds = knownIds.pets();
+        this.idGenerator = idGenerator;
+        this.properties = properties;
     }
 
     @Override
     public Mono<Pet> findByIdAndOwner(UUID petId, UUID ownerId) {
-        return this.petRepository.findByIdAndOwnerId(petId, ownerId)
-                .flatMap(p -> this.addVisits(Mono.just(p), petId));
+        return this.findByIdAndOwner(petId, ownerId, true);
+    }
+
+    @Override
+    public Mono<Pet> findByIdAndOwner(UUID petId, UUID ownerId, boolean withVisits) {
+        if (!this.petIds.mightContain(petId)) {
+            return Mono.empty();
+        }
+        Mono<Pet> pet = this.petRepository.findByIdAndOwnerId(petId, ownerId);
+        return withVisits ? pet.flatMap(p -> this.addVisits(Mono.just(p), petId)) : pet;
+    }
+
+    /*
+    Answered from the ownerId/_id index, without loading the pet or its visits. Asked before writes, so it does
+    not trust the ID filter
+     */
+    @Override
+    public Mono<Boolean> existsByIdAndOwner(UUID petId, UUID ownerId) {
+        return this.petRepository.existsByIdAndOwnerId(petId, ownerId);
     }
 
     @Override
     public Mono<Pet> findById(UUID petId) {
+        if (!this.petIds.mightContain(petId)) {
+            return Mono.empty();
+        }
         return this.petRepository.findById(petId)
                 .flatMap(p -> this.addVisits(Mono.just(p), petId));
     }
 
     @Override
     public Flux<Pet> findByOwnerId(UUID ownerId) {
-        return this.petRepository.findByOwnerId(ownerId)
-                .flatMap(p -> this.addVisits(Mono.just(p), p.getId()));
+        return this.findByOwnerId(ownerId, true);
+    }
+
+    @Override
+    public Flux<Pet> findByOwnerId(UUID ownerId, boolean withVisits) {
+        Flux<Pet> pets = this.petsByOwnerLoader.load(ownerId);
+        return withVisits ? pets.collectList().flatMapMany(this::addVisits) : pets;
     }
 
+    @Override
+    public Flux<Pet> findByOwnerIds(Collection<UUID> ownerIds) {
+        return this.findByOwnerIds(ownerIds, true);
+    }
+
+    @Override
+    public Flux<Pet> findByOwnerIds(Collection<UUID> ownerIds, boolean withVisits) {
+        if (ownerIds.isEmpty()) {
+            return Flux.empty();
+        }
+        Flux<Pet> pets = this.petRepository.findByOwnerIdIn(ownerIds);
+        return withVisits ? pets.collectList().flatMapMany(this::addVisits) : pets;
+    }
+
+    @Override
+    public Flux<PetName> findNamesByOwnerIds(Collection<UUID> ownerIds) {
+        if (ownerIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return this.petRepository.findNamesByOwnerIdIn(ownerIds);
+    }
+
+    /* The ID of a new pet is assigned here already, as it has to be known before the write */
     @Override
     public Mono<Pet> save(UUID ownerId, Pet pet) {
         pet.setOwnerId(ownerId);
-        return this.petRepository.save(pet);
+        this.idGenerator.assignId(pet);
+        this.petIds.add(pet.getId());
+        return this.petRepository.save(pet)
+                .flatMap(p -> this.ownerGraphChanges.changed(ownerId).thenReturn(p));
     }
 
+    /*
+    The visits are deleted before the pet, so that a delete failing in between leaves a pet without visits
+    instead of visits without pet
+     */
     @Override
     public Mono<Void> delete(UUID petId) {
-        return this.petRepository.deleteById(petId);
+        return this.petRepository.findById(petId)
+                .flatMap(p -> this.visitService.deleteByPets(List.of(petId))
+                        .then(this.petRepository.deleteById(petId))
+                        .then(this.ownerGraphChanges.changed(p.getOwnerId())));
     }
 
     /*
-    TODO: Needs optimization
-    This approach leads to a repository call for each single pet in the result, this is huge.
-    Better approach would be to get all visits in the DB, potentially filtered by the given petUUID(s)
-    and then add them programmatically to the right pet
+    Reads the IDs of the pets from the ownerId/_id index, deletes their visits with one deleteMany per batch of
+    pets and then the pets with a single deleteMany, so the round trips only grow with the number of batches.
+    Returns the number of deleted pets
      */
+    @Override
+    public Mono<Long> deleteByOwnerId(UUID ownerId) {
+        return this.petRepository.findIdsByOwnerId(ownerId)
+                .map(EntityId::getId)
+                .buffer(this.properties.getDeletes().getBatchSize())
+                .concatMap(this.visitService::deleteByPets)
+                .then(this.petRepository.deleteByOwnerId(ownerId));
+    }
+
     private Mono<Pet> addVisits(Mono<Pet> petMono, UUID petId) {
         Mono<List<Visit>> visitListMono = this.visitService.findByPet(petId).collectList();
         return Mono.zip(petMono, visitListMono, (p, v) -> { p.setVisits(v); return p;});
     }
+
+    /*
+    Loads the visits of all given pets with a single query and assigns them in memory,
+    instead of querying the visits for each pet separately
+     */
+    private Flux<Pet> addVisits(List<Pet> pets) {
+        if (pets.isEmpty()) {
+            return Flux.empty();
+        }
+        Set<UUID> petIds = new LinkedHashSet<>();
+        pets.forEach(p -> petIds.add(p.getId()));
+        return this.visitService.findByPets(petIds)
+                .collectMultimap(Visit::getPetId)
+                .flatMapMany(visitsByPet -> {
+                    pets.forEach(p -> p.setVisits(new ArrayList<>(
+                            visitsByPet.getOrDefault(p.getId(), Collections.emptyList()))));
+                    return Flux.fromIterable(pets);
+                });
+    }
 }
@@ -0,0 +1,71 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ReferenceData;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.PetTypeService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ReferenceDataService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VetService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+Readers always get the current snapshot right away and never wait for the database. Once the snapshot is older
+than the configured age, the next read starts a single reload in the background (refresh-ahead), and the new
+snapshot replaces the current one atomically when it is complete. A failed reload keeps the current snapshot.
+ */
+@Slf4j
+@Service
+public class ReferenceDataServiceMongo implements ReferenceDataService {
+
+    private final VetService vetService;
+    private final PetTypeService petTypeService;
+    private final PetclinicProperties properties;
+    private final AtomicReference<ReferenceData> snapshot = new AtomicReference<>(ReferenceData.empty());
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    public ReferenceDataServiceMongo(VetService vetService, PetTypeService petTypeService,
+                                     PetclinicProperties properties) {
+        this.vetService = vetService;
+        this.petTypeService = petTypeService;
+        this.properties = properties;
+    }
+
+    /* Runs after the command line runners, so the vets loaded at startup are part of the first snapshot */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        ReferenceData loaded = this.refresh().block();
+        log.info("Loaded reference data version {}", loaded.getVersion());
+    }
+
+    @Override
+    public ReferenceData getSnapshot() {
+        ReferenceData current = this.snapshot.get();
+        if (current.isOlderThan(this.properties.getReferenceData().getRefreshAfter())) {
+            this.refreshInBackground();
+        }
+        return current;
+    }
+
+    @Override
+    public Mono<ReferenceData> refresh() {
+        return Mono.zip(this.vetService.findAll().collectList(), this.petTypeService.findAll().collectList())
+                .map(loaded -> this.snapshot.updateAndGet(current -> current.next(loaded.getT1(), loaded.getT2())));
+    }
+
+    private void refreshInBackground() {
+        if (!this.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        this.refresh()
+                .doFinally(signal -> this.refreshing.set(false))
+                .subscribe(loaded -> { },
+                        error -> log.warn("Refreshing the reference data failed, keeping version {}",
+                                this.snapshot.get().getVersion(), error));
+    }
+}
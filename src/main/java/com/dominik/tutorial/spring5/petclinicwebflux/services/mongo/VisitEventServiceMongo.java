@@ -0,0 +1,120 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.VisitEvent;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitEventService;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/*
+Shares the visits created on any node through a capped collection: publishing inserts the event, and each node
+follows the collection with a single tailable cursor, shared by all its subscribers. The cursor is opened with the
+first subscriber and closed after the last one. Oldest events are overwritten once the collection is full
+ */
+public class VisitEventServiceMongo implements VisitEventService {
+
+    private static final String FIELD_CREATED_AT = "createdAt";
+
+    private final ReactiveMongoOperations mongoOperations;
+    private final int bufferSize;
+    private final long cappedSize;
+    private final Duration retryDelay;
+    private final AtomicBoolean collectionCreated = new AtomicBoolean();
+    private final Flux<VisitEvent> tail;
+
+    public VisitEventServiceMongo(ReactiveMongoOperations mongoOperations, int bufferSize, long cappedSize,
+                                  Duration retryDelay) {
+        this.mongoOperations = mongoOperations;
+        this.bufferSize = bufferSize;
+        this.cappedSize = cappedSize;
+        this.retryDelay = retryDelay;
+        this.tail = Flux.defer(() -> this.tailFrom(Instant.now()))
+                .publish()
+                .refCount();
+    }
+
+    @Override
+    public Mono<Void> publish(VisitEvent event) {
+        return this.createCollection()
+                .then(this.mongoOperations.insert(event))
+                .then();
+    }
+
+    @Override
+    public Flux<VisitEvent> events() {
+        return this.tail
+                .onBackpressureBuffer(this.bufferSize, dropped -> { }, BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    /*
+    A tailable cursor ends when the collection is empty or the connection fails, it is opened again from the time
+    of the last event seen. The time is stored in milliseconds, so the cursor is opened again including that time
+    and the events of that millisecond which were already seen are dropped. Events are ordered by insertion, so an
+    event published with an earlier time by a node with a lagging clock can be missed when the cursor is opened again
+     */
+    private Flux<VisitEvent> tailFrom(Instant start) {
+        TailPosition position = new TailPosition(start.truncatedTo(ChronoUnit.MILLIS));
+        return this.createCollection()
+                .thenMany(Flux.defer(() -> this.mongoOperations.tail(
+                        new Query(where(FIELD_CREATED_AT).gte(position.lastSeen())), VisitEvent.class)))
+                .filter(position::advance)
+                .repeatWhen(completed -> completed.delayElements(this.retryDelay))
+                .retryWhen(errors -> errors.delayElements(this.retryDelay));
+    }
+
+    /* Another node may create the collection at the same time, which is fine as long as it exists afterwards */
+    private Mono<Void> createCollection() {
+        if (this.collectionCreated.get()) {
+            return Mono.empty();
+        }
+        Mono<Boolean> exists = this.mongoOperations.collectionExists(VisitEvent.class);
+        return exists
+                .flatMap(existing -> existing
+                        ? Mono.empty()
+                        : this.mongoOperations.createCollection(VisitEvent.class,
+                                CollectionOptions.empty().capped().size(this.cappedSize)).then())
+                .onErrorResume(e -> exists.flatMap(existing -> existing ? Mono.empty() : Mono.error(e)))
+                .doOnSuccess(v -> this.collectionCreated.set(true));
+    }
+
+    /* The time of the last event seen by the tailable cursor, with the events seen at that time */
+    static class TailPosition {
+
+        private final Set<UUID> seenAtLastSeen = new HashSet<>();
+        private Instant lastSeen;
+
+        TailPosition(Instant start) {
+            this.lastSeen = start;
+        }
+
+        synchronized Instant lastSeen() {
+            return this.lastSeen;
+        }
+
+        /* Returns false for an event which was already seen before the cursor was opened again */
+        synchronized boolean advance(VisitEvent event) {
+            Instant createdAt = event.getCreatedAt();
+            if (createdAt.isAfter(this.lastSeen)) {
+                this.lastSeen = createdAt;
+                this.seenAtLastSeen.clear();
+            }
+            else if (createdAt.isBefore(this.lastSeen)) {
+                return true;
+            }
+            return this.seenAtLastSeen.add(event.getVisitId());
+        }
+    }
+}
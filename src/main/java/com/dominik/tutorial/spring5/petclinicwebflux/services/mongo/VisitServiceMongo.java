@@ -1,31 +1,73 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.VisitEvent;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitEventService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchLoader;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchWriter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphChanges;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
 import java.util.UUID;
 
 @Service
 public class VisitServiceMongo implements VisitService {
 
     private final VisitRepository visitRepository;
+    private final BatchLoader<UUID, Visit> visitsByPetLoader;
+    private final BatchWriter<Visit> visitWriter;
+    private final OwnerGraphChanges ownerGraphChanges;
+    private final VisitEventService visitEventService;
 
-    public VisitServiceMongo(VisitRepository visitRepository) {
+    public VisitServiceMongo(VisitRepository visitRepository, BatchLoader<UUID, Visit> visitsByPetLoader,
+                             BatchWriter<Visit> visitWriter, OwnerGraphChanges ownerGraphChanges,
+                             VisitEventService visitEventService) {
         this.visitRepository = visitRepository;
+        this.visitsByPetLoader = visitsByPetLoader;
+        this.visitWriter = visitWriter;
+        this.ownerGraphChanges = ownerGraphChanges;
+        this.visitEventService = visitEventService;
     }
 
+    /*
+    The owner is the one the caller checked the pet against, so the change to its details is recorded and the new
+    visit published without reading the pet again. The visit is stored once saved, a failed publish only fails to
+    notify the feed. A new visit is inserted together with the visits created at the same time, see BatchWriter
+     */
     @Override
-    public Mono<Visit> createVisit(UUID petId, Visit visit) {
+    public Mono<Visit> createVisit(UUID ownerId, UUID petId, Visit visit) {
         visit.setPetId(petId);
-        return this.visitRepository.save(visit);
+        return this.visitWriter.write(visit)
+                .flatMap(v -> this.ownerGraphChanges.changed(ownerId)
+                        .then(this.visitEventService.publish(VisitEvent.created(v, ownerId))
+                                .onErrorResume(e -> Mono.empty()))
+                        .thenReturn(v));
     }
 
     @Override
     public Flux<Visit> findByPet(UUID petId) {
-        return this.visitRepository.findByPetId(petId);
+        return this.visitsByPetLoader.load(petId);
+    }
+
+    @Override
+    public Flux<Visit> findByPets(Collection<UUID> petIds) {
+        if (petIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return this.visitRepository.findByPetIdIn(petIds);
+    }
+
+    /* A single deleteMany, covered by the index on the pet ID */
+    @Override
+    public Mono<Long> deleteByPets(Collection<UUID> petIds) {
+        if (petIds.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return this.visitRepository.deleteByPetIdIn(petIds);
     }
 }
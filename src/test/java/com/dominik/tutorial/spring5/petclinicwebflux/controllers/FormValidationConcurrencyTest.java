@@ -0,0 +1,250 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ReferenceData;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ReferenceDataService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.result.view.View;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+/*
+Submits valid and invalid owner, pet and visit forms interleaved from many threads. The views only echo the
+binding results with errors, so a form validated against the binding result of another request shows up
+as a wrong echo, as a rejected valid form or as an accepted invalid one
+ */
+@DisplayName("Form Validation Concurrency")
+@ExtendWith(MockitoExtension.class)
+class FormValidationConcurrencyTest {
+
+    private static final int NUM_SUBMISSIONS = 3_000;
+    private static final int NUM_THREADS = 32;
+    private static final String REDIRECT_PREFIX = "redirect:";
+    private static final Map<String, String> TAG_FIELDS = Map.of("owner", "lastName", "pet", "name",
+            "visit", "description");
+
+    @Mock
+    private OwnerService ownerService;
+    @Mock
+    private OwnerAutocompleteService autocompleteService;
+    @Mock
+    private PetService petService;
+    @Mock
+    private VisitService visitService;
+    @Mock
+    private ReferenceDataService referenceDataService;
+    private final Map<UUID, String> savedPetNames = new ConcurrentHashMap<>();
+    private final Map<UUID, String> savedVisitDescriptions = new ConcurrentHashMap<>();
+    private WebTestClient webTestClient;
+    private ExecutorService executor;
+    private TestDataFactory testDataFactory;
+
+    @BeforeEach
+    void setUp() {
+        this.webTestClient = WebTestClient
+                .bindToController(new OwnerController(this.ownerService, this.autocompleteService),
+                        new PetController(this.petService, this.ownerService, this.referenceDataService),
+                        new VisitController(this.visitService, this.ownerService, this.petService))
+                .viewResolvers(registry -> registry.viewResolver((viewName, locale) -> Mono.just(this.echo(viewName))))
+                .build();
+        this.executor = Executors.newFixedThreadPool(NUM_THREADS);
+        this.testDataFactory = new TestDataFactory(1, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @DisplayName("should validate every one of thousands of concurrently submitted forms against its own input")
+    @Test
+    void testConcurrentFormSubmissions() throws Exception {
+        // given
+        given(this.ownerService.save(any(Owner.class))).willAnswer(invocation -> {
+            Owner owner = invocation.getArgument(0);
+            owner.setId(this.ownerId(owner.getLastName()));
+            return Mono.just(owner);
+        });
+        given(this.ownerService.existsById(any())).willReturn(Mono.just(true));
+        given(this.ownerService.getById(any())).willReturn(Mono.just(this.testDataFactory.getOwner()));
+        given(this.petService.save(any(), any(Pet.class))).willAnswer(invocation -> {
+            this.savedPetNames.put(invocation.getArgument(0), invocation.<Pet>getArgument(1).getName());
+            return Mono.just(invocation.getArgument(1));
+        });
+        given(this.petService.existsByIdAndOwner(any(), any())).willReturn(Mono.just(true));
+        given(this.petService.findByIdAndOwner(any(), any())).willReturn(Mono.just(this.testDataFactory.getPet()));
+        given(this.visitService.createVisit(any(), any(), any(Visit.class))).willAnswer(invocation -> {
+            this.savedVisitDescriptions.put(invocation.getArgument(1), invocation.<Visit>getArgument(2).getDescription());
+            return Mono.just(invocation.getArgument(2));
+        });
+        given(this.referenceDataService.getSnapshot())
+                .willReturn(ReferenceData.empty().next(List.of(), List.of("Cat", "Dog")));
+
+        // when
+        List<Future<?>> submissions = new ArrayList<>();
+        for (int i = 0; i < NUM_SUBMISSIONS; i++) {
+            int submission = i;
+            submissions.add(this.executor.submit(() -> this.submit(submission)));
+        }
+
+        // then
+        for (Future<?> submission : submissions) {
+            submission.get();
+        }
+        assertThat(this.savedPetNames).hasSize(NUM_SUBMISSIONS / 6);
+        assertThat(this.savedVisitDescriptions).hasSize(NUM_SUBMISSIONS / 6);
+    }
+
+    /* Even submissions are valid, and every form type comes valid and invalid */
+    private void submit(int submission) {
+        boolean valid = submission % 2 == 0;
+        UUID ownerId = this.ownerId("Owner-" + submission);
+        switch ((submission / 2) % 3) {
+            case 0:
+                this.submitOwner(submission, valid);
+                break;
+            case 1:
+                this.submitPet(submission, valid, ownerId);
+                break;
+            default:
+                this.submitVisit(submission, valid, ownerId, UUID.randomUUID());
+        }
+    }
+
+    private void submitOwner(int submission, boolean valid) {
+        String lastName = "Owner-" + submission;
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("firstName", valid ? "George" : "");
+        form.add("lastName", lastName);
+        form.add("address", "110 W. Liberty St.");
+        form.add("city", "Madison");
+        form.add("telephone", "6085551023");
+        WebTestClient.ResponseSpec response = this.post("/owners/new", form);
+
+        if (valid) {
+            this.expectRedirect(response, "/owners/" + this.ownerId(lastName));
+        } else {
+            this.expectEcho(response, "owner|" + lastName + "|firstName");
+        }
+    }
+
+    private void submitPet(int submission, boolean valid, UUID ownerId) {
+        String name = "Pet-" + submission;
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("name", name);
+        form.add("birthDate", valid ? "2015-03-01" : "2999-03-01");
+        form.add("petType", "Cat");
+        WebTestClient.ResponseSpec response = this.post("/owners/" + ownerId + "/pets/new", form);
+
+        if (valid) {
+            this.expectRedirect(response, "/owners/" + ownerId);
+            assertThat(this.savedPetNames.get(ownerId)).isEqualTo(name);
+        } else {
+            this.expectEcho(response, "pet|" + name + "|birthDate");
+        }
+    }
+
+    private void submitVisit(int submission, boolean valid, UUID ownerId, UUID petId) {
+        String description = "Visit-" + submission;
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("date", valid ? "2019-11-30" : "2999-11-30");
+        form.add("description", description);
+        WebTestClient.ResponseSpec response = this.post("/owners/" + ownerId + "/pets/" + petId + "/visits/new", form);
+
+        if (valid) {
+            this.expectRedirect(response, "/owners/" + ownerId);
+            assertThat(this.savedVisitDescriptions.get(petId)).isEqualTo(description);
+        } else {
+            this.expectEcho(response, "visit|" + description + "|date");
+        }
+    }
+
+    private WebTestClient.ResponseSpec post(String uri, MultiValueMap<String, String> form) {
+        return this.webTestClient.post()
+                .uri(uri)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body(BodyInserters.fromFormData(form))
+                .exchange();
+    }
+
+    private void expectRedirect(WebTestClient.ResponseSpec response, String location) {
+        response.expectStatus().isSeeOther()
+                .expectHeader().valueEquals(HttpHeaders.LOCATION, location);
+    }
+
+    private void expectEcho(WebTestClient.ResponseSpec response, String echo) {
+        response.expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(echo);
+    }
+
+    private UUID ownerId(String lastName) {
+        return UUID.nameUUIDFromBytes(lastName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /*
+    Redirects, or writes "<object>|<tag field value>|<fields with errors>" for every binding result with errors.
+    The tag field is unique per submission, so it tells which input the binding result was made for
+     */
+    private View echo(String viewName) {
+        return (model, contentType, exchange) -> {
+            ServerHttpResponse response = exchange.getResponse();
+            if (viewName.startsWith(REDIRECT_PREFIX)) {
+                response.setStatusCode(HttpStatus.SEE_OTHER);
+                response.getHeaders().setLocation(URI.create(viewName.substring(REDIRECT_PREFIX.length())));
+                return response.setComplete();
+            }
+            String echo = model.values().stream()
+                    .filter(BindingResult.class::isInstance)
+                    .map(BindingResult.class::cast)
+                    .filter(BindingResult::hasErrors)
+                    .map(result -> result.getObjectName() + "|"
+                            + result.getFieldValue(TAG_FIELDS.get(result.getObjectName())) + "|"
+                            + result.getFieldErrors().stream()
+                                    .map(FieldError::getField)
+                                    .distinct()
+                                    .sorted()
+                                    .collect(Collectors.joining(",")))
+                    .sorted()
+                    .collect(Collectors.joining("\n"));
+            response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+            DataBuffer buffer = response.bufferFactory().wrap(echo.getBytes(StandardCharsets.UTF_8));
+            return response.writeWith(Mono.just(buffer));
+        };
+    }
+}
@@ -3,6 +3,11 @@ package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
 import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.EntityNotFoundException;
 import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.InvalidParameterException;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerCursor;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphVersion;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummaryPage;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,9 +18,9 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
-import org.springframework.web.bind.WebDataBinder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -28,6 +33,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
 @DisplayName("Owner Controller")
@@ -40,9 +46,10 @@ class OwnerControllerTest {
     private static final String EXPECTED_VIEW_SHOW_OWNER_DETAILS = "owners/ownerDetails";
     private static final String EXPECTED_VIEW_CREATE_OR_UPDATE_OWNER_FORM = "owners/createOrUpdateOwnerForm";
     private static final String EXPECTED_VIEW_OWNER_CREATED = "redirect:/owners/";
-    private static final String OWNER_SEARCH_RESULT_KEY = "selections";
+    private static final String OWNER_SEARCH_RESULT_KEY = "page";
     private static final String OWNER_KEY = "owner";
     private static final String IS_NEW_KEY = "isNew";
+    private static final String CONFLICT_KEY = "conflict";
     private static final int NUM_OWNERS = 3;
 
     @Mock
@@ -50,9 +57,9 @@ class OwnerControllerTest {
     @Mock
     private OwnerService ownerService;
     @Mock
-    private WebDataBinder dataBinder;
+    private OwnerAutocompleteService autocompleteService;
     @Mock
-    BindingResult bindingResult;
+    private BindingResult bindingResult;
     @InjectMocks
     private OwnerController controller;
     private TestDataFactory testDataFactory;
@@ -62,35 +69,46 @@ class OwnerControllerTest {
         this.testDataFactory = new TestDataFactory(NUM_OWNERS);
     }
 
+    @DisplayName("should return last name completions for a prefix")
+    @Test
+    void testAutocompleteLastName() {
+        // given
+        given(this.autocompleteService.completeLastName("sch", 5)).willReturn(Flux.just("Schmitt", "Schneider"));
+
+        // when
+        List<String> result = this.controller.autocompleteLastName("sch", 5).block();
+
+        // then
+        assertThat(result).containsExactly("Schmitt", "Schneider");
+        then(this.ownerService).shouldHaveNoInteractions();
+    }
+
     @DisplayName("should show form when no search")
     @Test
     void testFindOwnersNoSearchString() {
         // when
-        String resultView = this.controller.findOwners(null, this.model);
+        String resultView = this.controller.findOwners(null, null, false, this.model);
 
         // then
         then(this.model).shouldHaveNoInteractions();
         assertThat(EXPECTED_VIEW_SEARCH_FORM_REDIRECT).isEqualTo(resultView);
     }
 
-    @DisplayName("should show all when empty search string")
+    @DisplayName("should show first page of all owners when empty search string")
     @Test
     void testFindOwnersEmptySearchString() {
         // given
-        given(this.ownerService.findAll()).willReturn(Flux.fromIterable(this.testDataFactory.getOwners()));
-        ArgumentCaptor<Flux<Owner>> captor = ArgumentCaptor.forClass(Flux.class);
+        OwnerSummaryPage page = new OwnerSummaryPage(this.testDataFactory.getOwnerSummaries(), null);
+        given(this.ownerService.findSummaryPage("", null)).willReturn(Mono.just(page));
+        ArgumentCaptor<Mono<OwnerSummaryPage>> captor = ArgumentCaptor.forClass(Mono.class);
 
         // when
-        String resultView = this.controller.findOwners("  ", this.model);
+        String resultView = this.controller.findOwners("  ", null, false, this.model);
 
         // then
-        then(this.ownerService).should(times(1)).findAll();
+        then(this.ownerService).should(times(1)).findSummaryPage("", null);
         then(this.model).should(times(1)).addAttribute(eq(OWNER_SEARCH_RESULT_KEY), captor.capture());
-        List<Owner> ownerList = captor.getValue().collectList().block();
-        assertThat(ownerList).isNotNull();
-        for (int i = 0; i < NUM_OWNERS; i++) {
-            assertThat(this.testDataFactory.getOwners().get(i)).isEqualToComparingFieldByField(ownerList.get(i));
-        }
+        assertThat(captor.getValue().block()).isSameAs(page);
         assertThat(EXPECTED_VIEW_OWNERS_LIST).isEqualTo(resultView);
     }
 
@@ -99,23 +117,95 @@ class OwnerControllerTest {
     void testFindOwnersNonEmptySearchString() {
         // given
         String searchString = "anything";
-        given(this.ownerService.findByLastNameFragment(searchString)).willReturn(Flux.fromIterable(this.testDataFactory.getOwners()));
-        ArgumentCaptor<Flux<Owner>> captor = ArgumentCaptor.forClass(Flux.class);
+        OwnerSummaryPage page = new OwnerSummaryPage(this.testDataFactory.getOwnerSummaries(), null);
+        given(this.ownerService.findSummaryPage(searchString, null)).willReturn(Mono.just(page));
+        ArgumentCaptor<Mono<OwnerSummaryPage>> captor = ArgumentCaptor.forClass(Mono.class);
 
         // when
-        String resultView = this.controller.findOwners(searchString, this.model);
+        String resultView = this.controller.findOwners(searchString, null, false, this.model);
 
         // then
-        then(this.ownerService).should(times(1)).findByLastNameFragment(eq(searchString));
+        then(this.ownerService).should(times(1)).findSummaryPage(eq(searchString), any());
         then(this.model).should(times(1)).addAttribute(eq(OWNER_SEARCH_RESULT_KEY), captor.capture());
-        List<Owner> ownerList = captor.getValue().collectList().block();
+        List<OwnerSummary> ownerList = captor.getValue().block().getOwners();
         assertThat(ownerList).isNotNull();
         for (int i = 0; i < NUM_OWNERS; i++) {
-            assertThat(this.testDataFactory.getOwners().get(i)).isEqualToComparingFieldByField(ownerList.get(i));
+            assertThat(this.testDataFactory.getOwnerSummaries().get(i)).isEqualToComparingFieldByField(ownerList.get(i));
         }
         assertThat(EXPECTED_VIEW_OWNERS_LIST).isEqualTo(resultView);
     }
 
+    @DisplayName("should search similar sounding last names in fuzzy mode")
+    @Test
+    void testFindOwnersFuzzy() {
+        // given
+        OwnerSummaryPage page = new OwnerSummaryPage(this.testDataFactory.getOwnerSummaries(), null);
+        given(this.ownerService.findFuzzySummaryPage("Schmidt", 0)).willReturn(Mono.just(page));
+        ArgumentCaptor<Mono<OwnerSummaryPage>> captor = ArgumentCaptor.forClass(Mono.class);
+
+        // when
+        String resultView = this.controller.findOwners(" Schmidt ", null, true, this.model);
+
+        // then
+        then(this.ownerService).should(times(1)).findFuzzySummaryPage("Schmidt", 0);
+        then(this.ownerService).shouldHaveNoMoreInteractions();
+        then(this.model).should(times(1)).addAttribute(eq(OWNER_SEARCH_RESULT_KEY), captor.capture());
+        assertThat(captor.getValue().block()).isSameAs(page);
+        assertThat(EXPECTED_VIEW_OWNERS_LIST).isEqualTo(resultView);
+    }
+
+    @DisplayName("should continue after the owner given by the page token")
+    @Test
+    void testFindOwnersWithPageToken() {
+        // given
+        OwnerSummary lastOwner = this.testDataFactory.getOwnerSummaries().get(0);
+        String token = OwnerCursor.of(lastOwner).toToken();
+        given(this.ownerService.findSummaryPage(eq("anything"), any()))
+                .willReturn(Mono.just(new OwnerSummaryPage(List.of(), null)));
+        ArgumentCaptor<OwnerCursor> captor = ArgumentCaptor.forClass(OwnerCursor.class);
+
+        // when
+        this.controller.findOwners("anything", token, false, this.model);
+
+        // then
+        then(this.ownerService).should(times(1)).findSummaryPage(eq("anything"), captor.capture());
+        OwnerCursor cursor = captor.getValue();
+        assertThat(cursor.getLastName()).isEqualTo(lastOwner.getLastName());
+        assertThat(cursor.getFirstName()).isEqualTo(lastOwner.getFirstName());
+        assertThat(cursor.getId()).isEqualTo(lastOwner.getId());
+    }
+
+    @DisplayName("should throw exception for invalid page token")
+    @Test
+    void testFindOwnersInvalidPageToken() {
+        // when / then
+        assertThrows(InvalidParameterException.class, () -> this.controller.findOwners("anything", "not-a-token", false, this.model));
+        then(this.ownerService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should pass the page number of the page token in fuzzy mode")
+    @Test
+    void testFindOwnersFuzzyWithPageToken() {
+        // given
+        given(this.ownerService.findFuzzySummaryPage("Schmidt", 3))
+                .willReturn(Mono.just(new OwnerSummaryPage(List.of(), null)));
+
+        // when
+        this.controller.findOwners("Schmidt", "3", true, this.model);
+
+        // then
+        then(this.ownerService).should(times(1)).findFuzzySummaryPage("Schmidt", 3);
+    }
+
+    @DisplayName("should throw exception for a page token which is not a page number in fuzzy mode")
+    @Test
+    void testFindOwnersFuzzyInvalidPageToken() {
+        // when / then
+        assertThrows(InvalidParameterException.class, () -> this.controller.findOwners("Schmidt", "-1", true, this.model));
+        assertThrows(InvalidParameterException.class, () -> this.controller.findOwners("Schmidt", "abc", true, this.model));
+        then(this.ownerService).shouldHaveNoInteractions();
+    }
+
     @DisplayName("should show find owner form")
     @Test
     void testShowFindOwnerForm() {
@@ -148,8 +238,7 @@ class OwnerControllerTest {
         ArgumentCaptor<Owner> captor = ArgumentCaptor.forClass(Owner.class);
 
         // when
-        this.controller.avoidIdFieldProcessing(new WebDataBinder(owner));
-        String resultView = this.controller.createOwner(Mono.just(owner), this.model).block();
+        String resultView = this.controller.createOwner(owner, this.bindingResult, this.model).block();
 
         // then
         then(this.ownerService).should(times(1)).save(captor.capture());
@@ -157,18 +246,16 @@ class OwnerControllerTest {
         assertThat(EXPECTED_VIEW_OWNER_CREATED + owner.getId().toString()).isEqualTo(resultView);
     }
 
-    @DisplayName("should create owner with valid input")
+    @DisplayName("should not create owner with invalid input")
     @Test
     void testCreateOwnerInvalidInput() {
         // given
         Owner owner = this.testDataFactory.getOwner();
         owner.setFirstName("");
-        given(dataBinder.getBindingResult()).willReturn(bindingResult);
-        given(bindingResult.hasErrors()).willReturn(true);
-        this.controller.avoidIdFieldProcessing(this.dataBinder);
+        given(this.bindingResult.hasErrors()).willReturn(true);
 
         // when
-        String resultView = this.controller.createOwner(Mono.just(owner), this.model).block();
+        String resultView = this.controller.createOwner(owner, this.bindingResult, this.model).block();
 
         // then
         then(this.model).should(times(1)).addAttribute(IS_NEW_KEY, true);
@@ -180,14 +267,16 @@ class OwnerControllerTest {
     void testShowExistingOwnerDetails() {
         // given
         UUID uuid = UUID.randomUUID();
-        given(this.ownerService.getById(any())).willReturn(Mono.just(this.testDataFactory.getOwner()));
+        given(this.ownerService.findGraphVersion(uuid)).willReturn(Mono.just(graphVersion(2L, 3L)));
+        given(this.ownerService.getById(any(), any())).willReturn(Mono.just(this.testDataFactory.getOwner()));
         ArgumentCaptor<Mono> captor = ArgumentCaptor.forClass(Mono.class);
 
         // when
         String returnedView = this.controller.showOwnerDetails(uuid.toString(), this.model).block();
 
         // then
-        then(this.ownerService).should(times(1)).getById(eq(uuid));
+        then(this.ownerService).should(times(1)).findGraphVersion(eq(uuid));
+        then(this.ownerService).should(times(1)).getById(eq(uuid), eq("2.3"));
         then(this.model).should(times(1)).addAttribute(eq(OWNER_KEY), captor.capture());
         assertThat(this.testDataFactory.getOwner()).isEqualToComparingFieldByField(captor.getValue().block());
         assertThat(EXPECTED_VIEW_SHOW_OWNER_DETAILS).isEqualTo(returnedView);
@@ -210,13 +299,14 @@ class OwnerControllerTest {
     void testShowNonExistingOwnerDetails() {
         // given
         UUID uuid = UUID.randomUUID();
-        given(this.ownerService.getById(any())).willReturn(Mono.empty());
+        given(this.ownerService.findGraphVersion(uuid)).willReturn(Mono.empty());
 
         // when
         assertThrows(EntityNotFoundException.class, () -> {
             this.controller.showOwnerDetails(uuid.toString(), this.model).block();
         });
-        then(this.ownerService).should(times(1)).getById(eq(uuid));
+        then(this.ownerService).should(times(1)).findGraphVersion(eq(uuid));
+        then(this.ownerService).should(never()).getById(any(), any());
     }
 
     @DisplayName("should show update owner form for existing owner")
@@ -228,12 +318,13 @@ class OwnerControllerTest {
         ArgumentCaptor<Mono> captor = ArgumentCaptor.forClass(Mono.class);
 
         // when
-        String returnedView = this.controller.showUpdateOwnerForm(uuid.toString(), this.model).block();
+        String returnedView = this.controller.showUpdateOwnerForm(uuid.toString(), false, this.model).block();
 
         //then
         then(this.ownerService).should(times(1)).getById(eq(uuid));
         then(this.model).should(times(1)).addAttribute(eq(OWNER_KEY), captor.capture());
         then(this.model).should(times(1)).addAttribute(IS_NEW_KEY, false);
+        then(this.model).should(times(1)).addAttribute(CONFLICT_KEY, false);
         assertThat(this.testDataFactory.getOwner()).isEqualToComparingFieldByField(captor.getValue().block());
         assertThat(EXPECTED_VIEW_CREATE_OR_UPDATE_OWNER_FORM).isEqualTo(returnedView);
     }
@@ -246,7 +337,7 @@ class OwnerControllerTest {
 
         // when
         assertThrows(InvalidParameterException.class, () -> {
-            this.controller.showUpdateOwnerForm(uuid, this.model).block();
+            this.controller.showUpdateOwnerForm(uuid, false, this.model).block();
         });
     }
 
@@ -259,7 +350,7 @@ class OwnerControllerTest {
 
         // when
         assertThrows(EntityNotFoundException.class, () -> {
-            this.controller.showUpdateOwnerForm(uuid.toString(), this.model).block();
+            this.controller.showUpdateOwnerForm(uuid.toString(), false, this.model).block();
         });
         then(this.ownerService).should(times(1)).getById(eq(uuid));
     }
@@ -270,13 +361,13 @@ class OwnerControllerTest {
         // given
         Owner databaseOwner = this.testDataFactory.getOwner();
         Owner updatedOwner = this.testDataFactory.getOwners().get(1);
+        updatedOwner.setVersion(4L);
         given(this.ownerService.save(any())).willReturn(Mono.just(updatedOwner));
         ArgumentCaptor<Owner> captor = ArgumentCaptor.forClass(Owner.class);
 
         // when
-        this.controller.avoidIdFieldProcessing(new WebDataBinder(updatedOwner));
-        String returnedView = this.controller.updateOwner(databaseOwner.getId().toString(), Mono.just(updatedOwner),
-                this.model).block();
+        String returnedView = this.controller.updateOwner(databaseOwner.getId().toString(), updatedOwner,
+                this.bindingResult, this.model).block();
 
         // then
         then(this.ownerService).should(times(1)).save(captor.capture());
@@ -286,6 +377,35 @@ class OwnerControllerTest {
         assertThat(EXPECTED_VIEW_OWNER_CREATED + databaseOwner.getId().toString()).isEqualTo(returnedView);
     }
 
+    @DisplayName("should show the update owner form again if the owner was changed in the meantime")
+    @Test
+    void testUpdateOwnerConflict() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        owner.setVersion(4L);
+        given(this.ownerService.save(any())).willReturn(Mono.error(new OptimisticLockingFailureException("outdated")));
+
+        // when
+        String returnedView = this.controller.updateOwner(owner.getId().toString(), owner, this.bindingResult, this.model).block();
+
+        // then
+        assertThat(returnedView).isEqualTo(EXPECTED_VIEW_OWNER_CREATED + owner.getId().toString() + "/edit?conflict=true");
+    }
+
+    @DisplayName("should not save an owner updated without version")
+    @Test
+    void testUpdateOwnerWithoutVersion() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+
+        // when
+        String returnedView = this.controller.updateOwner(owner.getId().toString(), owner, this.bindingResult, this.model).block();
+
+        // then
+        then(this.ownerService).shouldHaveNoInteractions();
+        assertThat(returnedView).isEqualTo(EXPECTED_VIEW_OWNER_CREATED + owner.getId().toString() + "/edit?conflict=true");
+    }
+
     @DisplayName("should throw exception when updating owner with invalid UUID")
     @Test
     void testUpdateOwnerInvalidUUID() {
@@ -294,7 +414,7 @@ class OwnerControllerTest {
 
         // when
         assertThrows(InvalidParameterException.class, () -> {
-            this.controller.updateOwner(uuid, Mono.just(this.testDataFactory.getOwner()), this.model).block();
+            this.controller.updateOwner(uuid, this.testDataFactory.getOwner(), this.bindingResult, this.model).block();
         });
     }
 
@@ -304,15 +424,27 @@ class OwnerControllerTest {
         // given
         Owner owner = this.testDataFactory.getOwner();
         owner.setFirstName("");
-        given(this.dataBinder.getBindingResult()).willReturn(this.bindingResult);
         given(this.bindingResult.hasErrors()).willReturn(true);
 
         // when
-        this.controller.avoidIdFieldProcessing(this.dataBinder);
-        String returnedView = this.controller.updateOwner(owner.getId().toString(), Mono.just(owner), this.model).block();
+        String returnedView = this.controller.updateOwner(owner.getId().toString(), owner, this.bindingResult, this.model).block();
 
         // then
         then(this.model).should(times(1)).addAttribute(IS_NEW_KEY, false);
         assertThat(EXPECTED_VIEW_CREATE_OR_UPDATE_OWNER_FORM).isEqualTo(returnedView);
     }
-}
\ No newline at end of file
+
+    private static OwnerGraphVersion graphVersion(Long version, Long graphVersion) {
+        return new OwnerGraphVersion() {
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+
+            @Override
+            public Long getGraphVersion() {
+                return graphVersion;
+            }
+        };
+    }
+}
@@ -4,9 +4,10 @@ import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.EntityNotFoundEx
 import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.InvalidParameterException;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ReferenceData;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
-import com.dominik.tutorial.spring5.petclinicwebflux.services.PetTypeService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ReferenceDataService;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -16,11 +17,12 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
-import org.springframework.web.bind.WebDataBinder;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -29,6 +31,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
 @DisplayName("Pet Controller")
@@ -49,9 +52,7 @@ class PetControllerTest {
     @Mock
     private OwnerService ownerService;
     @Mock
-    private PetTypeService petTypeService;
-    @Mock
-    private WebDataBinder dataBinder;
+    private ReferenceDataService referenceDataService;
     @Mock
     private BindingResult bindingResult;
     @Mock
@@ -65,11 +66,25 @@ class PetControllerTest {
         this.testDataFactory = new TestDataFactory(NUM_OWNERS, NUM_PETS);
     }
 
-    @DisplayName("should show new pet form")
+    @DisplayName("should add the pet types of the reference data snapshot")
+    @Test
+    void testAddPetTypes() {
+        // given
+        ReferenceData referenceData = ReferenceData.empty().next(List.of(), List.of("Cat", "Dog"));
+        given(this.referenceDataService.getSnapshot()).willReturn(referenceData);
+
+        // when
+        List<String> result = this.controller.addPetTypes();
+
+        // then
+        assertThat(result).containsExactly("Cat", "Dog");
+    }
+
+        @DisplayName("should show new pet form")
     @Test
     void testShowNewPetForm() {
         // when
-        String returnedView = this.controller.showNewPetForm(this.model);
+        String returnedView = this.controller.showNewPetForm(UUID.randomUUID().toString(), this.model);
 
         // then
         then(this.model).should(times(1)).addAttribute(IS_NEW_KEY, true);
@@ -83,17 +98,18 @@ class PetControllerTest {
         // given
         Owner owner = this.testDataFactory.getOwner();
         Pet pet = this.testDataFactory.getPet();
-        given(this.ownerService.getById(any())).willReturn(Mono.just(owner));
+        given(this.ownerService.existsById(owner.getId())).willReturn(Mono.just(true));
         given(this.petService.save(owner.getId(), pet)).willReturn(Mono.just(pet));
-        this.addDataBinderMock(false);
+        this.givenBindingResult(false);
         ArgumentCaptor<Pet> captor = ArgumentCaptor.forClass(Pet.class);
 
         // when
-        String returnedView = this.controller.createPet(owner.getId().toString(), pet, this.model).block();
+        String returnedView = this.controller.createPet(owner.getId().toString(), pet, this.bindingResult, this.model).block();
 
         // then
         then(this.model).shouldHaveNoInteractions();
-        then(this.ownerService).should(times(1)).getById(owner.getId());
+        then(this.ownerService).should(times(1)).existsById(owner.getId());
+        then(this.ownerService).should(never()).getById(any());
         then(this.petService).should(times(1)).save(eq(owner.getId()), captor.capture());
         Pet capturedPet = captor.getValue();
         assertThat(pet).isEqualToIgnoringGivenFields(capturedPet, "ownerId");
@@ -105,11 +121,11 @@ class PetControllerTest {
     void testCreatePetInvalidOwnerUUID() {
         // given
         String uuid = "123";
-        this.addDataBinderMock(false);
+        this.givenBindingResult(false);
 
         // when
         assertThrows(InvalidParameterException.class, () -> {
-            this.controller.createPet(uuid, this.testDataFactory.getPet(), this.model).block();
+            this.controller.createPet(uuid, this.testDataFactory.getPet(), this.bindingResult, this.model).block();
         });
 
         // then
@@ -122,16 +138,16 @@ class PetControllerTest {
     void testCreatePetNonExistingOwner() {
         // given
         UUID uuid = UUID.randomUUID();
-        this.addDataBinderMock(false);
-        given(this.ownerService.getById(uuid)).willReturn(Mono.empty());
+        this.givenBindingResult(false);
+        given(this.ownerService.existsById(uuid)).willReturn(Mono.just(false));
 
         // when
         assertThrows(EntityNotFoundException.class, () -> {
-            this.controller.createPet(uuid.toString(), this.testDataFactory.getPet(), this.model).block();
+            this.controller.createPet(uuid.toString(), this.testDataFactory.getPet(), this.bindingResult, this.model).block();
         });
 
         // then
-        then(this.ownerService).should(times(1)).getById(uuid);
+        then(this.ownerService).should(times(1)).existsById(uuid);
         then(this.petService).shouldHaveNoInteractions();
     }
 
@@ -141,14 +157,13 @@ class PetControllerTest {
         // given
         Pet pet = this.testDataFactory.getPet();
         pet.setName("");
-        this.addDataBinderMock(true);
+        this.givenBindingResult(true);
 
         // when
-        String returnedView = this.controller.createPet(UUID.randomUUID().toString(), pet, this.model).block();
+        String returnedView = this.controller.createPet(UUID.randomUUID().toString(), pet, this.bindingResult, this.model).block();
 
         // then
         then(this.model).should(times(1)).addAttribute(IS_NEW_KEY, true);
-        then(this.model).should(times(1)).addAttribute(eq(PET_KEY), any(Pet.class));
         then(this.ownerService).shouldHaveNoInteractions();
         then(this.petService).shouldHaveNoInteractions();
         assertThat(EXPECTED_VIEW_CREATE_OR_UPDATE_PET_FORM).isEqualTo(returnedView);
@@ -166,7 +181,7 @@ class PetControllerTest {
 
         // when
         String returnedView = this.controller.showEditPetForm(owner.getId().toString(), pet.getId().toString(),
-                this.model).block();
+                false, this.model).block();
 
         // then
         then(this.model).should(times(1)).addAttribute(IS_NEW_KEY, false);
@@ -184,10 +199,10 @@ class PetControllerTest {
 
         // when
         assertThrows(InvalidParameterException.class, () -> {
-            this.controller.showEditPetForm(invalidUUID, invalidUUID, this.model).block();
+            this.controller.showEditPetForm(invalidUUID, invalidUUID, false, this.model).block();
         });
         assertThrows(InvalidParameterException.class, () -> {
-            this.controller.showEditPetForm(validUUID, invalidUUID, this.model).block();
+            this.controller.showEditPetForm(validUUID, invalidUUID, false, this.model).block();
         });
 
         // then
@@ -204,7 +219,7 @@ class PetControllerTest {
 
         // when
         assertThrows(EntityNotFoundException.class, () -> {
-            this.controller.showEditPetForm(uuid, uuid, this.model).block();
+            this.controller.showEditPetForm(uuid, uuid, false, this.model).block();
         });
 
         // then
@@ -223,7 +238,7 @@ class PetControllerTest {
 
         // when
         assertThrows(EntityNotFoundException.class, () -> {
-            this.controller.showEditPetForm(uuid, uuid, this.model).block();
+            this.controller.showEditPetForm(uuid, uuid, false, this.model).block();
         });
 
         // then
@@ -241,10 +256,10 @@ class PetControllerTest {
 
         // when
         assertThrows(InvalidParameterException.class, () -> {
-            this.controller.editPet(invalidUUID, invalidUUID, pet, this.model).block();
+            this.controller.editPet(invalidUUID, invalidUUID, pet, this.bindingResult, this.model).block();
         });
         assertThrows(InvalidParameterException.class, () -> {
-            this.controller.editPet(validUUID, invalidUUID, pet, this.model).block();
+            this.controller.editPet(validUUID, invalidUUID, pet, this.bindingResult, this.model).block();
         });
 
         // then
@@ -257,18 +272,18 @@ class PetControllerTest {
     void testEditPetNonExistingOwner() {
         // when
         String uuid = UUID.randomUUID().toString();
-        given(this.ownerService.getById(any())).willReturn(Mono.empty());
+        given(this.petService.existsByIdAndOwner(any(), any())).willReturn(Mono.just(false));
         Pet pet = this.testDataFactory.getPet();
 
         // when
-        this.addDataBinderMock();
+        this.givenBindingResult(false);
         assertThrows(EntityNotFoundException.class, () -> {
-            this.controller.editPet(uuid, uuid, pet, this.model).block();
+            this.controller.editPet(uuid, uuid, pet, this.bindingResult, this.model).block();
         });
 
         // then
-        then(this.ownerService).should(times(1)).getById(any());
-        then(this.petService).shouldHaveNoInteractions();
+        then(this.ownerService).shouldHaveNoInteractions();
+        then(this.petService).should(never()).save(any(), any());
     }
 
     @DisplayName("should throw exception when editing non-existing pet")
@@ -278,18 +293,17 @@ class PetControllerTest {
         String uuid = UUID.randomUUID().toString();
         Owner owner = this.testDataFactory.getOwner();
         Pet pet = this.testDataFactory.getPet();
-        given(this.ownerService.getById(any())).willReturn(Mono.just(owner));
-        given(this.petService.findByIdAndOwner(any(), any())).willReturn(Mono.empty());
+        given(this.petService.existsByIdAndOwner(UUID.fromString(uuid), owner.getId())).willReturn(Mono.just(false));
 
         // when
-        this.addDataBinderMock();
+        this.givenBindingResult(false);
         assertThrows(EntityNotFoundException.class, () -> {
-            this.controller.editPet(uuid, uuid, pet, this.model).block();
+            this.controller.editPet(owner.getId().toString(), uuid, pet, this.bindingResult, this.model).block();
         });
 
         // then
-        then(this.ownerService).should(times(1)).getById(any());
-        then(this.petService).should(times(1)).findByIdAndOwner(any(), any());
+        then(this.petService).should(times(1)).existsByIdAndOwner(UUID.fromString(uuid), owner.getId());
+        then(this.petService).should(never()).save(any(), any());
     }
 
     @DisplayName("should not update invalid pet")
@@ -299,18 +313,15 @@ class PetControllerTest {
         Pet pet = this.testDataFactory.getPet();
         pet.setName("");
         String uuid = UUID.randomUUID().toString();
-        ArgumentCaptor<Pet> captor = ArgumentCaptor.forClass(Pet.class);
 
         // when
-        this.addDataBinderMock(true);
-        String returnedView = this.controller.editPet(uuid, uuid, pet, this.model).block();
+        this.givenBindingResult(true);
+        String returnedView = this.controller.editPet(uuid, uuid, pet, this.bindingResult, this.model).block();
 
         // then
         then(this.ownerService).shouldHaveNoInteractions();
         then(this.petService).shouldHaveNoInteractions();
         then(this.model).should(times(1)).addAttribute(IS_NEW_KEY, false);
-        then(this.model).should(times(1)).addAttribute(eq(PET_KEY), captor.capture());
-        assertThat(pet).isEqualToComparingFieldByField(captor.getValue());
         assertThat(EXPECTED_VIEW_CREATE_OR_UPDATE_PET_FORM).isEqualTo(returnedView);
     }
 
@@ -320,31 +331,63 @@ class PetControllerTest {
         // given
         Owner owner = this.testDataFactory.getOwner();
         Pet pet = this.testDataFactory.getPet();
+        pet.setVersion(1L);
         ArgumentCaptor<Pet> captor = ArgumentCaptor.forClass(Pet.class);
-        given(this.ownerService.getById(owner.getId())).willReturn(Mono.just(owner));
-        given(this.petService.findByIdAndOwner(pet.getId(), owner.getId())).willReturn(Mono.just(pet));
+        given(this.petService.existsByIdAndOwner(pet.getId(), owner.getId())).willReturn(Mono.just(true));
         given(this.petService.save(eq(owner.getId()), any(Pet.class))).willReturn(Mono.just(pet));
 
         // when
-        this.addDataBinderMock();
-        String returnedView = this.controller.editPet(owner.getId().toString(), pet.getId().toString(), pet, this.model).block();
+        this.givenBindingResult(false);
+        String returnedView = this.controller.editPet(owner.getId().toString(), pet.getId().toString(), pet, this.bindingResult, this.model).block();
 
         // then
-        then(this.ownerService).should(times(1)).getById(owner.getId());
-        then(this.petService).should(times(1)).findByIdAndOwner(pet.getId(), owner.getId());
+        then(this.ownerService).shouldHaveNoInteractions();
+        then(this.petService).should(times(1)).existsByIdAndOwner(pet.getId(), owner.getId());
+        then(this.petService).should(never()).findByIdAndOwner(any(), any());
         then(this.petService).should(times(1)).save(eq(owner.getId()), captor.capture());
         Pet capturedPet = captor.getValue();
         assertThat(pet).isEqualToComparingFieldByField(capturedPet);
         assertThat(EXPECTED_REDIRECT_OWNER_DETAILS + owner.getId().toString()).isEqualTo(returnedView);
     }
 
-    private void addDataBinderMock() {
-        this.addDataBinderMock(false);
+    @DisplayName("should show the edit pet form again if the pet was changed in the meantime")
+    @Test
+    void testEditPetConflict() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        Pet pet = this.testDataFactory.getPet();
+        pet.setVersion(1L);
+        given(this.petService.existsByIdAndOwner(pet.getId(), owner.getId())).willReturn(Mono.just(true));
+        given(this.petService.save(eq(owner.getId()), any(Pet.class)))
+                .willReturn(Mono.error(new OptimisticLockingFailureException("outdated")));
+
+        // when
+        this.givenBindingResult(false);
+        String returnedView = this.controller.editPet(owner.getId().toString(), pet.getId().toString(), pet, this.bindingResult, this.model).block();
+
+        // then
+        assertThat(returnedView).isEqualTo(EXPECTED_REDIRECT_OWNER_DETAILS + owner.getId().toString()
+                + "/pets/" + pet.getId().toString() + "/edit?conflict=true");
+    }
+
+    @DisplayName("should not save a pet edited without version")
+    @Test
+    void testEditPetWithoutVersion() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        Pet pet = this.testDataFactory.getPet();
+        given(this.petService.existsByIdAndOwner(pet.getId(), owner.getId())).willReturn(Mono.just(true));
+
+        // when
+        this.givenBindingResult(false);
+        String returnedView = this.controller.editPet(owner.getId().toString(), pet.getId().toString(), pet, this.bindingResult, this.model).block();
+
+        // then
+        then(this.petService).should(never()).save(any(), any());
+        assertThat(returnedView).endsWith("/edit?conflict=true");
     }
 
-    private void addDataBinderMock(boolean hasErrors) {
-        given(this.dataBinder.getBindingResult()).willReturn(this.bindingResult);
+    private void givenBindingResult(boolean hasErrors) {
         given(this.bindingResult.hasErrors()).willReturn(hasErrors);
-        this.controller.disallowIdBinding(this.dataBinder);
     }
 }
\ No newline at end of file
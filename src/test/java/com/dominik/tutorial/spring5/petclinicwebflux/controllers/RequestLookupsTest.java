@@ -0,0 +1,88 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Request Lookups")
+class RequestLookupsTest {
+
+    private Owner owner;
+    private AtomicInteger lookups;
+    private Supplier<Mono<Owner>> lookup;
+
+    @BeforeEach
+    void setUp() {
+        this.owner = new TestDataFactory(1).getOwner();
+        this.lookups = new AtomicInteger();
+        this.lookup = () -> Mono.fromCallable(() -> {
+            this.lookups.incrementAndGet();
+            return this.owner;
+        });
+    }
+
+    @DisplayName("should look up an entity once per request")
+    @Test
+    void testMemoizeWithinRequest() {
+        // when
+        Owner result = RequestLookups.memoize(Owner.class, this.owner.getId(), this.lookup)
+                .then(RequestLookups.memoize(Owner.class, this.owner.getId(), this.lookup))
+                .subscriberContext(RequestLookups::withLookups)
+                .block();
+
+        // then
+        assertThat(result).isSameAs(this.owner);
+        assertThat(this.lookups).hasValue(1);
+    }
+
+    @DisplayName("should not share lookups between requests")
+    @Test
+    void testMemoizeAcrossRequests() {
+        // when
+        RequestLookups.memoize(Owner.class, this.owner.getId(), this.lookup)
+                .subscriberContext(RequestLookups::withLookups)
+                .block();
+        RequestLookups.memoize(Owner.class, this.owner.getId(), this.lookup)
+                .subscriberContext(RequestLookups::withLookups)
+                .block();
+
+        // then
+        assertThat(this.lookups).hasValue(2);
+    }
+
+    @DisplayName("should keep lookups of different entity types apart")
+    @Test
+    void testMemoizeByType() {
+        // given
+        Pet pet = new TestDataFactory(0, 1).getPet();
+
+        // when
+        Pet result = RequestLookups.memoize(Owner.class, pet.getId(), this.lookup)
+                .then(RequestLookups.memoize(Pet.class, pet.getId(), () -> Mono.just(pet)))
+                .subscriberContext(RequestLookups::withLookups)
+                .block();
+
+        // then
+        assertThat(result).isSameAs(pet);
+    }
+
+    @DisplayName("should look up every time outside of a request")
+    @Test
+    void testMemoizeWithoutRequest() {
+        // when
+        RequestLookups.memoize(Owner.class, this.owner.getId(), this.lookup).block();
+        RequestLookups.memoize(Owner.class, this.owner.getId(), this.lookup).block();
+
+        // then
+        assertThat(this.lookups).hasValue(2);
+    }
+}
@@ -1,7 +1,8 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.controllers;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ReferenceData;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Vet;
-import com.dominik.tutorial.spring5.petclinicwebflux.services.VetService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ReferenceDataService;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -12,7 +13,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.ui.Model;
-import reactor.core.publisher.Flux;
 
 import java.util.List;
 
@@ -31,7 +31,7 @@ class VetControllerTest {
     private static final String EXPECTED_VIEW_LIST_VETS = "vets/index";
 
     @Mock
-    private VetService vetService;
+    private ReferenceDataService referenceDataService;
     @Mock
     private Model model;
     @InjectMocks
@@ -47,15 +47,16 @@ class VetControllerTest {
     @Test
     void showAllVets() {
         // given
-        given(this.vetService.findAll()).willReturn(Flux.fromIterable(this.testDataFactory.getVets()));
-        ArgumentCaptor<Flux<Vet>> captor = ArgumentCaptor.forClass(Flux.class);
+        ReferenceData referenceData = ReferenceData.empty().next(this.testDataFactory.getVets(), List.of());
+        given(this.referenceDataService.getSnapshot()).willReturn(referenceData);
+        ArgumentCaptor<List<Vet>> captor = ArgumentCaptor.forClass(List.class);
 
         // when
         String returnedView = this.controller.showAllVets(this.model);
 
         // then
         then(this.model).should(times(1)).addAttribute(eq(MODEL_ATTRIBUTE_VETS), captor.capture());
-        List<Vet> capturedVets = captor.getValue().collectList().block();
+        List<Vet> capturedVets = captor.getValue();
         assertThat(capturedVets).hasSize(NUM_VETS);
         for (int i = 0; i < NUM_VETS; i++) {
             assertThat(this.testDataFactory.getVets().get(i)).isEqualToComparingFieldByField(capturedVets.get(i));
@@ -17,6 +17,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ui.ConcurrentModel;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
@@ -32,6 +33,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
 @DisplayName("Visit Controller")
@@ -41,6 +43,9 @@ class VisitControllerTest {
     private static final int NUM_OWNERS = 1;
     private static final int NUM_PETS = 1;
     private static final int NUM_VISITS = 3;
+    private static final String MODEL_ATTRIBUTE_OWNER = "owner";
+    private static final String MODEL_ATTRIBUTE_PET = "pet";
+    private static final String MODEL_ATTRIBUTE_PET_VISITS = "petVisits";
     private static final String MODEL_ATTRIBUTE_VISIT = "visit";
     private static final String EXPECTED_VIEW_CREATE_VISIT = "pets/createOrUpdateVisitForm";
     private static final String EXPECTED_REDIRECT_OWNER_DETAILS = "redirect:/owners/";
@@ -52,8 +57,6 @@ class VisitControllerTest {
     @Mock
     private PetService petService;
     @Mock
-    private WebDataBinder dataBinder;
-    @Mock
     private BindingResult bindingResult;
     @Mock
     private Model model;
@@ -66,6 +69,19 @@ class VisitControllerTest {
         this.testDataFactory = new TestDataFactory(NUM_OWNERS, NUM_PETS, NUM_VISITS);
     }
 
+    @DisplayName("should not bind the ID, pet ID or version of a visit")
+    @Test
+    void testDisallowIdBinding() {
+        // given
+        WebDataBinder dataBinder = new WebDataBinder(new Visit());
+
+        // when
+        this.controller.disallowIdBinding(dataBinder);
+
+        // then
+        assertThat(dataBinder.getDisallowedFields()).containsExactlyInAnyOrder("id", "petId", "version");
+    }
+
     @DisplayName("should throw exception when showing form for invalid owner or pet uuid")
     @Test
     void testShowCreateVisitFormInvalidUUIDs() {
@@ -156,10 +172,10 @@ class VisitControllerTest {
 
         // when
         assertThrows(InvalidParameterException.class, () -> {
-            this.controller.createVisit(invalidUUID, validUUID, visit, this.model).block();
+            this.controller.createVisit(invalidUUID, validUUID, visit, this.bindingResult, this.model).block();
         });
         assertThrows(InvalidParameterException.class, () -> {
-            this.controller.createVisit(validUUID, invalidUUID, visit, this.model).block();
+            this.controller.createVisit(validUUID, invalidUUID, visit, this.bindingResult, this.model).block();
         });
 
         // then
@@ -174,17 +190,17 @@ class VisitControllerTest {
         // given
         UUID uuid = UUID.randomUUID();
         Visit visit = this.testDataFactory.getVisit();
-        given(this.ownerService.getById(uuid)).willReturn(Mono.empty());
+        given(this.petService.existsByIdAndOwner(uuid, uuid)).willReturn(Mono.just(false));
 
         // when
-        this.addDataBinderMock();
+        this.givenBindingResult(false);
         assertThrows(EntityNotFoundException.class, () -> {
-            this.controller.createVisit(uuid.toString(), uuid.toString(), visit, this.model).block();
+            this.controller.createVisit(uuid.toString(), uuid.toString(), visit, this.bindingResult, this.model).block();
         });
 
         // then
-        then(this.ownerService).should(times(1)).getById(uuid);
-        then(this.petService).shouldHaveNoInteractions();
+        then(this.ownerService).shouldHaveNoInteractions();
+        then(this.petService).should(times(1)).existsByIdAndOwner(uuid, uuid);
         then(this.visitService).shouldHaveNoInteractions();
     }
 
@@ -195,18 +211,17 @@ class VisitControllerTest {
         UUID uuid = UUID.randomUUID();
         Owner owner = this.testDataFactory.getOwner();
         Visit visit = this.testDataFactory.getVisit();
-        given(this.ownerService.getById(uuid)).willReturn(Mono.just(owner));
-        given(this.petService.findByIdAndOwner(uuid, uuid)).willReturn(Mono.empty());
+        given(this.petService.existsByIdAndOwner(uuid, owner.getId())).willReturn(Mono.just(false));
 
         // when
-        this.addDataBinderMock();
+        this.givenBindingResult(false);
         assertThrows(EntityNotFoundException.class, () -> {
-            this.controller.createVisit(uuid.toString(), uuid.toString(), visit, this.model).block();
+            this.controller.createVisit(owner.getId().toString(), uuid.toString(), visit, this.bindingResult, this.model).block();
         });
 
         // then
-        then(this.ownerService).should(times(1)).getById(uuid);
-        then(this.petService).should(times(1)).findByIdAndOwner(uuid, uuid);
+        then(this.ownerService).shouldHaveNoInteractions();
+        then(this.petService).should(times(1)).existsByIdAndOwner(uuid, owner.getId());
         then(this.visitService).shouldHaveNoInteractions();
     }
 
@@ -218,16 +233,14 @@ class VisitControllerTest {
         Pet pet = this.testDataFactory.getPet();
         Visit visit = this.testDataFactory.getVisit();
         visit.setDate(null);
-        ArgumentCaptor<Visit> captor = ArgumentCaptor.forClass(Visit.class);
 
         // when
-        this.addDataBinderMock(true);
+        this.givenBindingResult(true);
         String returnedView = this.controller.createVisit(owner.getId().toString(), pet.getId().toString(), visit,
-                this.model).block();
+                this.bindingResult, this.model).block();
 
         // then
-        then(this.model).should(times(1)).addAttribute(eq(MODEL_ATTRIBUTE_VISIT), captor.capture());
-        assertThat(visit).isEqualToComparingFieldByField(captor.getValue());
+        then(this.visitService).shouldHaveNoInteractions();
         assertThat(EXPECTED_VIEW_CREATE_VISIT).isEqualTo(returnedView);
     }
 
@@ -239,77 +252,73 @@ class VisitControllerTest {
         Pet pet = this.testDataFactory.getPet();
         Visit visit = this.testDataFactory.getVisit();
         visit.setDate(null);
-        given(this.ownerService.getById(owner.getId())).willReturn(Mono.just(owner));
-        given(this.petService.findByIdAndOwner(pet.getId(), owner.getId())).willReturn(Mono.just(pet));
-        given(this.visitService.createVisit(eq(pet.getId()), any(Visit.class))).willReturn(Mono.just(visit));
+        given(this.petService.existsByIdAndOwner(pet.getId(), owner.getId())).willReturn(Mono.just(true));
+        given(this.visitService.createVisit(eq(owner.getId()), eq(pet.getId()), any(Visit.class))).willReturn(Mono.just(visit));
         ArgumentCaptor<Visit> captor = ArgumentCaptor.forClass(Visit.class);
 
         // when
-        this.addDataBinderMock();
+        this.givenBindingResult(false);
         String returnedView = this.controller.createVisit(owner.getId().toString(), pet.getId().toString(), visit,
-                this.model).block();
+                this.bindingResult, this.model).block();
 
         // then
-        then(this.visitService).should(times(1)).createVisit(eq(pet.getId()), captor.capture());
+        then(this.ownerService).shouldHaveNoInteractions();
+        then(this.petService).should(never()).findByIdAndOwner(any(), any());
+        then(this.visitService).should(times(1)).createVisit(eq(owner.getId()), eq(pet.getId()), captor.capture());
         assertThat(visit).isEqualToComparingFieldByField(captor.getValue());
         assertThat(EXPECTED_REDIRECT_OWNER_DETAILS + owner.getId().toString()).isEqualTo(returnedView);
     }
 
-    @DisplayName("should get owner for model")
+    @DisplayName("should add owner, pet and its visits to the model of the form")
     @Test
-    void testOwnerToModel() {
-        // given
-        Owner owner = this.testDataFactory.getOwner();
-        given(this.ownerService.getById(owner.getId())).willReturn(Mono.just(owner));
-
-        // when
-        Owner resultOwner = this.controller.addOwnerToModel(owner.getId().toString()).block();
-
-        // then
-        assertThat(owner).isEqualToComparingFieldByField(resultOwner);
-    }
-
-    @DisplayName("should get pet for model")
-    @Test
-    void testPetToModel() {
+    void testShowCreateVisitFormModel() {
         // given
         Owner owner = this.testDataFactory.getOwner();
         Pet pet = this.testDataFactory.getPet();
+        List<Visit> visits = this.testDataFactory.getVisits();
+        pet.setVisits(visits);
+        Model model = new ConcurrentModel();
+        given(this.ownerService.getById(owner.getId())).willReturn(Mono.just(owner));
         given(this.petService.findByIdAndOwner(pet.getId(), owner.getId())).willReturn(Mono.just(pet));
 
         // when
-        Pet resultPet = this.controller.addPetToModel(owner.getId().toString(), pet.getId().toString()).block();
+        this.controller.showCreateVisitForm(owner.getId().toString(), pet.getId().toString(), model).block();
 
         // then
-        assertThat(pet).isEqualToComparingFieldByField(resultPet);
+        assertThat(((Mono<?>) model.getAttribute(MODEL_ATTRIBUTE_OWNER)).block()).isSameAs(owner);
+        assertThat(((Mono<?>) model.getAttribute(MODEL_ATTRIBUTE_PET)).block()).isSameAs(pet);
+        assertThat(((Flux<?>) model.getAttribute(MODEL_ATTRIBUTE_PET_VISITS)).collectList().block())
+                .containsExactlyElementsOf(visits);
+        then(this.visitService).shouldHaveNoInteractions();
     }
 
-    @DisplayName("should get visits for model")
+    @DisplayName("should load owner and pet once for the model and the handler of a request")
     @Test
-    void testVisitsToModel() {
+    void testLookupsMemoizedPerRequest() {
         // given
         Owner owner = this.testDataFactory.getOwner();
         Pet pet = this.testDataFactory.getPet();
-        List<Visit> visits = this.testDataFactory.getVisits();
-        given(this.visitService.findByPet(pet.getId())).willReturn(Flux.fromIterable(visits));
+        Model model = new ConcurrentModel();
+        given(this.ownerService.getById(owner.getId())).willReturn(Mono.just(owner));
+        given(this.petService.findByIdAndOwner(pet.getId(), owner.getId())).willReturn(Mono.just(pet));
 
         // when
-        List<Visit> resultVisits = this.controller.addPetVisitsToModel(pet.getId().toString()).collectList().block();
+        String returnedView = this.controller.showCreateVisitForm(owner.getId().toString(), pet.getId().toString(), model)
+                .flatMap(view -> Mono.when(
+                        (Mono<?>) model.getAttribute(MODEL_ATTRIBUTE_OWNER),
+                        (Mono<?>) model.getAttribute(MODEL_ATTRIBUTE_PET),
+                        ((Flux<?>) model.getAttribute(MODEL_ATTRIBUTE_PET_VISITS)).collectList())
+                        .thenReturn(view))
+                .subscriberContext(RequestLookups::withLookups)
+                .block();
 
         // then
-        assertThat(resultVisits).hasSize(visits.size());
-        for (int i = 0; i < visits.size(); i++) {
-            assertThat(visits.get(i)).isEqualToComparingFieldByField(resultVisits.get(i));
-        }
-    }
-
-    private void addDataBinderMock() {
-        this.addDataBinderMock(false);
+        then(this.ownerService).should(times(1)).getById(owner.getId());
+        then(this.petService).should(times(1)).findByIdAndOwner(pet.getId(), owner.getId());
+        assertThat(returnedView).isEqualTo(EXPECTED_VIEW_CREATE_VISIT);
     }
 
-    private void addDataBinderMock(boolean hasErrors) {
-        given(this.dataBinder.getBindingResult()).willReturn(this.bindingResult);
+    private void givenBindingResult(boolean hasErrors) {
         given(this.bindingResult.hasErrors()).willReturn(hasErrors);
-        this.controller.disallowIdBinding(this.dataBinder);
     }
 }
\ No newline at end of file
@@ -0,0 +1,255 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers.api;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.ApiRouterConfig;
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphDepth;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ReferenceData;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.VisitEvent;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.ReferenceDataService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitEventService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+
+@DisplayName("API Routes")
+@ExtendWith(MockitoExtension.class)
+class ApiRoutesTest {
+
+    private static final int NUM_OWNERS = 2;
+    private static final int NUM_VETS = 3;
+
+    @Mock
+    private OwnerService ownerService;
+    @Mock
+    private PetService petService;
+    @Mock
+    private VisitService visitService;
+    @Mock
+    private ReferenceDataService referenceDataService;
+    @Mock
+    private VisitEventService visitEventService;
+    private WebTestClient webTestClient;
+    private TestDataFactory testDataFactory;
+
+    @BeforeEach
+    void setUp() {
+        ApiResponses apiResponses = new ApiResponses(Jackson2ObjectMapperBuilder.json().build());
+        this.webTestClient = WebTestClient
+                .bindToRouterFunction(new ApiRouterConfig().apiRoutes(
+                        new OwnerApiHandler(this.ownerService, this.petService, this.visitService, apiResponses),
+                        new VetApiHandler(this.referenceDataService, apiResponses),
+                        new VisitEventApiHandler(this.visitEventService, new PetclinicProperties()),
+                        apiResponses))
+                .build();
+        this.testDataFactory = new TestDataFactory(NUM_OWNERS, 1, 1);
+    }
+
+    @DisplayName("should stream all owners with pets and visits as JSON array")
+    @Test
+    void testFindOwners() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        owner.getPets().add(this.testDataFactory.getPet());
+        given(this.ownerService.findAll(OwnerGraphDepth.VISITS))
+                .willReturn(Flux.fromIterable(this.testDataFactory.getOwners()));
+
+        // when / then
+        this.webTestClient.get()
+                .uri("/api/owners")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(NUM_OWNERS)
+                .jsonPath("$[0].lastName").isEqualTo(owner.getLastName())
+                .jsonPath("$[0].pets[0].name").isEqualTo(this.testDataFactory.getPet().getName())
+                .jsonPath("$[0].pets[0].visits").isArray()
+                .jsonPath("$[0].graphVersion").doesNotExist();
+    }
+
+    @DisplayName("should not load pets if no pet field is selected")
+    @Test
+    void testFindOwnersWithoutPets() {
+        // given
+        given(this.ownerService.findByLastNameFragment("Doe", OwnerGraphDepth.OWNER))
+                .willReturn(Flux.fromIterable(this.testDataFactory.getOwners()));
+
+        // when / then
+        this.webTestClient.get()
+                .uri("/api/owners?lastName=Doe&fields=lastName")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo(this.testDataFactory.getOwner().getId().toString())
+                .jsonPath("$[0].lastName").isEqualTo(this.testDataFactory.getOwner().getLastName())
+                .jsonPath("$[0].firstName").doesNotExist()
+                .jsonPath("$[0].pets").doesNotExist();
+        then(this.petService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should load pets without visits if no visit field is selected")
+    @Test
+    void testGetOwnerWithoutVisits() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        given(this.ownerService.getById(owner.getId(), OwnerGraphDepth.PETS)).willReturn(Mono.just(owner));
+
+        // when / then
+        this.webTestClient.get()
+                .uri("/api/owners/" + owner.getId() + "?fields=city,pets.name")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.city").isEqualTo(owner.getCity())
+                .jsonPath("$.pets").isArray();
+    }
+
+    @DisplayName("should stream pets as NDJSON without loading their visits")
+    @Test
+    void testFindPetsAsNdjson() {
+        // given
+        UUID ownerId = this.testDataFactory.getOwner().getId();
+        Pet pet = this.testDataFactory.getPet();
+        given(this.ownerService.existsById(ownerId)).willReturn(Mono.just(true));
+        given(this.petService.findByOwnerId(ownerId, false)).willReturn(Flux.just(pet, pet));
+
+        // when
+        String body = this.webTestClient.get()
+                .uri("/api/owners/" + ownerId + "/pets?fields=name")
+                .accept(ApiResponses.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(ApiResponses.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        // then
+        assertThat(body.split("\n"))
+                .hasSize(2)
+                .allMatch(line -> line.equals("{\"id\":\"" + pet.getId() + "\",\"name\":\"" + pet.getName() + "\"}"));
+        then(this.visitService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should answer 404 for the pets of an unknown owner")
+    @Test
+    void testFindPetsOfUnknownOwner() {
+        // given
+        UUID ownerId = UUID.randomUUID();
+        given(this.ownerService.existsById(ownerId)).willReturn(Mono.just(false));
+
+        // when / then
+        this.webTestClient.get()
+                .uri("/api/owners/" + ownerId + "/pets")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Owner with ID " + ownerId + " not found");
+    }
+
+    @DisplayName("should answer 400 for an invalid owner ID")
+    @Test
+    void testInvalidOwnerId() {
+        this.webTestClient.get()
+                .uri("/api/owners/no-uuid")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(400);
+        then(this.ownerService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should answer 406 without looking up vets, if no representation is acceptable")
+    @Test
+    void testNotAcceptable() {
+        this.webTestClient.get()
+                .uri("/api/vets")
+                .accept(MediaType.TEXT_HTML)
+                .exchange()
+                .expectStatus().isEqualTo(406);
+        then(this.referenceDataService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should list all vets")
+    @Test
+    void testFindVets() {
+        // given
+        given(this.referenceDataService.getSnapshot())
+                .willReturn(ReferenceData.empty().next(TestDataFactory.vetsOnly(NUM_VETS).getVets(), List.of()));
+
+        // when / then
+        this.webTestClient.get()
+                .uri("/api/vets")
+                .accept(MediaType.ALL)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(NUM_VETS);
+    }
+
+    @DisplayName("should push new visits as server-sent events")
+    @Test
+    void testStreamVisitEvents() {
+        // given
+        Visit visit = this.testDataFactory.getVisit();
+        VisitEvent event = VisitEvent.created(visit, this.testDataFactory.getOwner().getId());
+        given(this.visitEventService.events()).willReturn(Flux.just(event).concatWith(Flux.never()));
+
+        // when
+        Flux<ServerSentEvent<Map<String, Object>>> events = this.webTestClient.get()
+                .uri("/api/visits/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<Map<String, Object>>>() { })
+                .getResponseBody();
+
+        // then
+        StepVerifier.create(events)
+                .assertNext(sse -> {
+                    assertThat(sse.id()).isEqualTo(visit.getId().toString());
+                    assertThat(sse.event()).isEqualTo("visit-created");
+                    assertThat(sse.data()).containsEntry("ownerId", event.getOwnerId().toString());
+                })
+                .thenCancel()
+                .verify();
+    }
+
+    @DisplayName("should prefer the media type of higher quality")
+    @Test
+    void testNegotiate() {
+        assertThat(ApiResponses.negotiate(MediaType.parseMediaTypes("application/json;q=0.5, application/x-ndjson")))
+                .contains(ApiResponses.APPLICATION_NDJSON);
+        assertThat(ApiResponses.negotiate(MediaType.parseMediaTypes("*/*"))).contains(MediaType.APPLICATION_JSON);
+        assertThat(ApiResponses.negotiate(List.of())).contains(MediaType.APPLICATION_JSON);
+        assertThat(ApiResponses.negotiate(MediaType.parseMediaTypes("text/html"))).isEmpty();
+    }
+}
@@ -0,0 +1,56 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.controllers.api;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.exceptions.InvalidParameterException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Field Selection")
+class FieldSelectionTest {
+
+    @DisplayName("should select all fields without selection")
+    @Test
+    void testWithoutSelection() {
+        // when
+        FieldSelection fields = FieldSelection.parse(null);
+
+        // then
+        assertThat(fields.includes("lastName")).isTrue();
+        assertThat(fields.nested("pets").includes("visits")).isTrue();
+        assertThat(FieldSelection.parse(" ").includes("pets")).isTrue();
+    }
+
+    @DisplayName("should select only the given fields and the fields on their path")
+    @Test
+    void testSelection() {
+        // when
+        FieldSelection fields = FieldSelection.parse("lastName, pets.name");
+
+        // then
+        assertThat(fields.includes("lastName")).isTrue();
+        assertThat(fields.includes("firstName")).isFalse();
+        assertThat(fields.includes("pets")).isTrue();
+        assertThat(fields.nested("pets").includes("name")).isTrue();
+        assertThat(fields.nested("pets").includes("visits")).isFalse();
+    }
+
+    @DisplayName("should select all fields below a selected field")
+    @Test
+    void testNestedOfSelectedField() {
+        // when
+        FieldSelection fields = FieldSelection.parse("pets");
+
+        // then
+        assertThat(fields.nested("pets").includes("visits")).isTrue();
+        assertThat(fields.nested("pets").nested("visits").includes("date")).isTrue();
+    }
+
+    @DisplayName("should reject malformed field paths")
+    @Test
+    void testInvalidSelection() {
+        assertThatThrownBy(() -> FieldSelection.parse("pets..name")).isInstanceOf(InvalidParameterException.class);
+        assertThatThrownBy(() -> FieldSelection.parse(",")).isInstanceOf(InvalidParameterException.class);
+    }
+}
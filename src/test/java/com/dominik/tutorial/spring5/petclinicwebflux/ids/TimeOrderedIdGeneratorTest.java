@@ -0,0 +1,89 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.ids;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Time Ordered ID Generator")
+class TimeOrderedIdGeneratorTest {
+
+    private static final long NOW = 1_577_836_800_000L;
+
+    @DisplayName("should generate version 7 UUIDs starting with the current time")
+    @Test
+    void testLayout() {
+        // given
+        IdGenerator generator = new TimeOrderedIdGenerator(() -> NOW);
+
+        // when
+        UUID id = generator.generate();
+
+        // then
+        assertThat(id.version()).isEqualTo(7);
+        assertThat(id.variant()).isEqualTo(2);
+        assertThat(id.getMostSignificantBits() >>> 16).isEqualTo(NOW);
+    }
+
+    @DisplayName("should generate strictly increasing IDs, also within a millisecond and when the clock goes back")
+    @Test
+    void testStrictlyIncreasing() {
+        // given
+        long[] clock = {NOW};
+        IdGenerator generator = new TimeOrderedIdGenerator(() -> clock[0]);
+        List<UUID> ids = new ArrayList<>();
+
+        // when
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(generator.generate());
+        }
+        clock[0] = NOW - 1000;
+        ids.add(generator.generate());
+
+        // then
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(Long.compareUnsigned(ids.get(i - 1).getMostSignificantBits(), ids.get(i).getMostSignificantBits()))
+                    .isNegative();
+        }
+    }
+
+    @DisplayName("should generate unique IDs from concurrent threads")
+    @Test
+    void testConcurrentUnique() {
+        // given
+        IdGenerator generator = new TimeOrderedIdGenerator();
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+
+        // when
+        IntStream.range(0, 100_000).parallel().forEach(i -> ids.add(generator.generate()));
+
+        // then
+        assertThat(ids).hasSize(100_000);
+    }
+
+    @DisplayName("should only assign an ID to entities without one")
+    @Test
+    void testAssignId() {
+        // given
+        IdGenerator generator = new TimeOrderedIdGenerator();
+        UUID existingId = UUID.randomUUID();
+        Owner newOwner = new Owner();
+        Owner existingOwner = Owner.builder().id(existingId).build();
+
+        // when
+        generator.assignId(newOwner);
+        generator.assignId(existingOwner);
+
+        // then
+        assertThat(newOwner.getId()).isNotNull();
+        assertThat(existingOwner.getId()).isEqualTo(existingId);
+    }
+}
@@ -0,0 +1,88 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Completion Trie")
+class CompletionTrieTest {
+
+    private static final int MAX_COMPLETIONS = 3;
+
+    private CompletionTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        this.trie = new CompletionTrie(MAX_COMPLETIONS);
+    }
+
+    @DisplayName("should complete a prefix ignoring case and accents")
+    @Test
+    void testCompleteIgnoresCaseAndAccents() {
+        // given
+        this.trie.add("Müller");
+        this.trie.add("Miller");
+        this.trie.add("Davis");
+
+        // when / then
+        assertThat(this.trie.complete("MU", 10)).containsExactly("Müller");
+        assertThat(this.trie.complete("m", 10)).containsExactly("Miller", "Müller");
+        assertThat(this.trie.complete("x", 10)).isEmpty();
+    }
+
+    @DisplayName("should rank completions by frequency and keep only the most frequent ones")
+    @Test
+    void testCompleteRanksByFrequency() {
+        // given
+        this.trie.add("Schmitt");
+        this.trie.add("Schneider");
+        this.trie.add("Schneider");
+        this.trie.add("Schulz");
+        this.trie.add("Schubert");
+        this.trie.add("Schubert");
+        this.trie.add("Schubert");
+
+        // when / then
+        assertThat(this.trie.complete("sch", 10)).containsExactly("Schubert", "Schneider", "Schmitt");
+        assertThat(this.trie.complete("sch", 2)).containsExactly("Schubert", "Schneider");
+    }
+
+    @DisplayName("should drop values once all occurrences are removed")
+    @Test
+    void testRemove() {
+        // given
+        this.trie.add("Franklin");
+        this.trie.add("Franklin");
+        this.trie.add("Frank");
+
+        // when
+        this.trie.remove("Franklin");
+        this.trie.remove("Frank");
+        this.trie.remove("Unknown");
+
+        // then
+        assertThat(this.trie.complete("fr", 10)).containsExactly("Franklin");
+
+        // when
+        this.trie.remove("Franklin");
+
+        // then
+        assertThat(this.trie.complete("fr", 10)).isEmpty();
+        assertThat(this.trie.complete("", 10)).isEmpty();
+    }
+
+    @DisplayName("should forget all values on clear")
+    @Test
+    void testClear() {
+        // given
+        this.trie.add("Davis");
+
+        // when
+        this.trie.clear();
+
+        // then
+        assertThat(this.trie.complete("d", 10)).isEmpty();
+    }
+}
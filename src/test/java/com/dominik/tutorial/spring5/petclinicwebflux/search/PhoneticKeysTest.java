@@ -0,0 +1,34 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Phonetic Keys")
+class PhoneticKeysTest {
+
+    @DisplayName("should encode similar sounding names with the same keys")
+    @Test
+    void testKeysOfSimilarNames() {
+        assertThat(PhoneticKeys.keys("Schmitt")).containsExactlyInAnyOrderElementsOf(PhoneticKeys.keys("Schmidt"));
+        assertThat(PhoneticKeys.keys("Müller")).containsExactlyInAnyOrderElementsOf(PhoneticKeys.keys("Mueller"));
+        assertThat(PhoneticKeys.keys("Davis")).doesNotContainAnyElementsOf(PhoneticKeys.keys("Franklin"));
+    }
+
+    @DisplayName("should return no keys for values without letters")
+    @Test
+    void testKeysWithoutLetters() {
+        assertThat(PhoneticKeys.keys(null)).isEmpty();
+        assertThat(PhoneticKeys.keys(" - ")).isEmpty();
+    }
+
+    @DisplayName("should compute the edit distance of the normalized values")
+    @Test
+    void testDistance() {
+        assertThat(PhoneticKeys.distance("Schmidt", "schmidt")).isEqualTo(0);
+        assertThat(PhoneticKeys.distance("Schmidt", "Schmitt")).isEqualTo(1);
+        assertThat(PhoneticKeys.distance("Müller", "Mueller")).isEqualTo(1);
+        assertThat(PhoneticKeys.distance("", "Davis")).isEqualTo(5);
+    }
+}
@@ -0,0 +1,44 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Search Keys")
+class SearchKeysTest {
+
+    @DisplayName("should lower-case and accent-fold values")
+    @Test
+    void testNormalize() {
+        assertThat(SearchKeys.normalize("Müller")).isEqualTo("muller");
+        assertThat(SearchKeys.normalize("ÉLODIE Garçon")).isEqualTo("elodie garcon");
+        assertThat(SearchKeys.normalize(null)).isEmpty();
+    }
+
+    @DisplayName("should create all distinct n-grams up to the maximum token length")
+    @Test
+    void testTokens() {
+        // when
+        List<String> tokens = SearchKeys.tokens("anna");
+
+        // then
+        assertThat(tokens).containsExactlyInAnyOrder("a", "n", "an", "nn", "na", "ann", "nna");
+    }
+
+    @DisplayName("should query short fragments by a single token")
+    @Test
+    void testQueryTokensShortFragment() {
+        assertThat(SearchKeys.queryTokens("ic")).containsExactly("ic");
+        assertThat(SearchKeys.queryTokens("ick")).containsExactly("ick");
+    }
+
+    @DisplayName("should query long fragments by all their n-grams of maximum length")
+    @Test
+    void testQueryTokensLongFragment() {
+        assertThat(SearchKeys.queryTokens("picke")).containsExactly("pic", "ick", "cke");
+        assertThat(SearchKeys.tokens("picker")).containsAll(SearchKeys.queryTokens("picke"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.batching;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Batch Loader")
+class BatchLoaderTest {
+
+    private static final String NAME = "test";
+
+    private List<Collection<Integer>> queriedBatches;
+    private MeterRegistry meterRegistry;
+    private BatchLoader<Integer, String> batchLoader;
+
+    @BeforeEach
+    void setUp() {
+        this.queriedBatches = new CopyOnWriteArrayList<>();
+        this.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.batchLoader.dispose();
+    }
+
+    @DisplayName("should load concurrently requested keys with a single query")
+    @Test
+    void testLoadCoalescesKeys() {
+        // given
+        this.batchLoader = this.createLoader(10, Duration.ofMillis(50));
+
+        // when
+        List<List<String>> result = Flux.merge(
+                this.batchLoader.load(1).collectList(),
+                this.batchLoader.load(2).collectList(),
+                this.batchLoader.load(3).collectList())
+                .collectList()
+                .block();
+
+        // then
+        assertThat(this.queriedBatches).hasSize(1);
+        assertThat(this.queriedBatches.get(0)).containsExactlyInAnyOrder(1, 2, 3);
+        assertThat(result).containsExactlyInAnyOrder(List.of("1-a", "1-b"), List.of("2-a", "2-b"), List.of());
+        assertThat(this.meterRegistry.get("petclinic.batch.loader.size").tag("loader", NAME).summary().count())
+                .isEqualTo(1);
+        assertThat(this.meterRegistry.get("petclinic.batch.loader.wait").tag("loader", NAME).timer().count())
+                .isEqualTo(3);
+    }
+
+    @DisplayName("should query a key loaded several times within a batch once and hand its values to every load")
+    @Test
+    void testLoadQueriesDuplicateKeysOnce() {
+        // given
+        this.batchLoader = this.createLoader(10, Duration.ofMillis(50));
+
+        // when
+        List<List<String>> result = Flux.merge(
+                this.batchLoader.load(1).collectList(),
+                this.batchLoader.load(1).collectList())
+                .collectList()
+                .block();
+
+        // then
+        assertThat(this.queriedBatches).containsExactly(List.of(1));
+        assertThat(result).containsExactly(List.of("1-a", "1-b"), List.of("1-a", "1-b"));
+        assertThat(this.meterRegistry.get("petclinic.batch.loader.size").tag("loader", NAME).summary().totalAmount())
+                .isEqualTo(1);
+    }
+
+    @DisplayName("should pass every load directly to the batch function when batching is disabled")
+    @Test
+    void testLoadWithoutBatching() {
+        // given
+        this.batchLoader = this.createLoader(1, Duration.ofMillis(50));
+
+        // when
+        List<String> result = this.batchLoader.load(2).collectList().block();
+        this.batchLoader.load(1).collectList().block();
+
+        // then
+        assertThat(result).containsExactly("2-a", "2-b");
+        assertThat(this.queriedBatches).containsExactly(List.of(2), List.of(1));
+        assertThat(this.meterRegistry.find("petclinic.batch.loader.size").summary()).isNull();
+    }
+
+    private BatchLoader<Integer, String> createLoader(int maxBatchSize, Duration maxWait) {
+        return new BatchLoader<>(NAME, this::query, v -> Integer.parseInt(v.split("-")[0]),
+                maxBatchSize, maxWait, this.meterRegistry);
+    }
+
+    /* Returns two values for each key except 3, which has no values */
+    private Flux<String> query(Collection<Integer> keys) {
+        this.queriedBatches.add(new ArrayList<>(keys));
+        return Flux.fromIterable(keys)
+                .filter(k -> k != 3)
+                .flatMapIterable(k -> List.of(k + "-a", k + "-b"));
+    }
+}
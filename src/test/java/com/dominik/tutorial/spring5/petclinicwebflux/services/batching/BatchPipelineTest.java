@@ -0,0 +1,172 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.batching;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Batch Pipeline")
+class BatchPipelineTest {
+
+    private static final String DESCRIPTION = "Batch test";
+
+    private List<List<Integer>> dispatchedBatches;
+    private Timer waitTimes;
+    private BatchPipeline<Integer, String> pipeline;
+
+    @BeforeEach
+    void setUp() {
+        this.dispatchedBatches = new CopyOnWriteArrayList<>();
+        this.waitTimes = Timer.builder("test.wait").register(new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.pipeline.dispose();
+    }
+
+    @DisplayName("should dispatch concurrently submitted items as one batch and complete each with its result")
+    @Test
+    void testSubmitCoalescesItems() {
+        // given
+        this.pipeline = this.createPipeline(10, Duration.ofMillis(50));
+
+        // when
+        List<String> result = Flux.merge(
+                this.pipeline.submit(1),
+                this.pipeline.submit(2),
+                this.pipeline.submit(3))
+                .collectList()
+                .block();
+
+        // then
+        assertThat(this.dispatchedBatches).hasSize(1);
+        assertThat(this.dispatchedBatches.get(0)).containsExactlyInAnyOrder(1, 2, 3);
+        assertThat(result).containsExactlyInAnyOrder("1-result", "2-result", "3-result");
+        assertThat(this.waitTimes.count()).isEqualTo(3);
+    }
+
+    @DisplayName("should split items into several batches when the maximum batch size is reached")
+    @Test
+    void testSubmitRespectsMaxBatchSize() {
+        // given
+        this.pipeline = this.createPipeline(2, Duration.ofSeconds(5));
+
+        // when
+        List<String> result = Flux.merge(
+                this.pipeline.submit(1),
+                this.pipeline.submit(2),
+                this.pipeline.submit(3),
+                this.pipeline.submit(4))
+                .collectList()
+                .block(Duration.ofSeconds(1));
+
+        // then
+        assertThat(result).hasSize(4);
+        assertThat(this.dispatchedBatches).hasSize(2);
+        this.dispatchedBatches.forEach(batch -> assertThat(batch).hasSize(2));
+    }
+
+    @DisplayName("should pass every item directly to the batch function when batching is disabled")
+    @Test
+    void testSubmitWithoutBatching() {
+        // given
+        this.pipeline = new BatchPipeline<>(DESCRIPTION, this::resolve, 1, Duration.ofMillis(50), null);
+
+        // when
+        String result = this.pipeline.submit(1).block();
+        this.pipeline.submit(2).block();
+
+        // then
+        assertThat(result).isEqualTo("1-result");
+        assertThat(this.dispatchedBatches).containsExactly(List.of(1), List.of(2));
+    }
+
+    @DisplayName("should fail all items of a batch when the batch function fails or resolves nothing")
+    @Test
+    void testSubmitPropagatesError() {
+        // given
+        this.pipeline = new BatchPipeline<>(DESCRIPTION, items -> Mono.error(new IllegalStateException("failed")),
+                10, Duration.ofMillis(10), this.waitTimes);
+        BatchPipeline<Integer, String> emptyPipeline = new BatchPipeline<>(DESCRIPTION, items -> Mono.empty(),
+                10, Duration.ofMillis(10), this.waitTimes);
+
+        // when / then
+        assertThatThrownBy(() -> this.pipeline.submit(1).block()).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> this.pipeline.submit(2).block()).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> emptyPipeline.submit(1).block()).isInstanceOf(IllegalStateException.class);
+        emptyPipeline.dispose();
+    }
+
+    @DisplayName("should fail the waiting items and take new items when the pipeline stops")
+    @Test
+    void testSubmitRestartsStoppedPipeline() {
+        VirtualTimeScheduler scheduler = VirtualTimeScheduler.getOrSet();
+        try {
+            // given
+            AtomicBoolean stalled = new AtomicBoolean(true);
+            this.pipeline = new BatchPipeline<>(DESCRIPTION,
+                    items -> stalled.get() ? Mono.never() : this.resolve(items),
+                    10, Duration.ofMillis(10), this.waitTimes);
+            List<MonoProcessor<String>> stalledItems = new ArrayList<>();
+
+            // when
+            while (stalledItems.stream().noneMatch(MonoProcessor::isError) && stalledItems.size() < 1000) {
+                stalledItems.add(this.pipeline.submit(1).toProcessor());
+                scheduler.advanceTimeBy(Duration.ofMillis(10));
+            }
+            stalled.set(false);
+            MonoProcessor<String> result = this.pipeline.submit(2).toProcessor();
+            scheduler.advanceTimeBy(Duration.ofMillis(10));
+
+            // then
+            assertThat(stalledItems).hasSizeLessThan(1000).allMatch(MonoProcessor::isError);
+            assertThat(result.peek()).isEqualTo("2-result");
+        }
+        finally {
+            VirtualTimeScheduler.reset();
+        }
+    }
+
+    @DisplayName("should fail waiting and new items once disposed")
+    @Test
+    void testSubmitFailsWhenDisposed() {
+        // given
+        this.pipeline = this.createPipeline(10, Duration.ofSeconds(5));
+        MonoProcessor<String> waitingItem = this.pipeline.submit(1).toProcessor();
+
+        // when
+        this.pipeline.dispose();
+
+        // then
+        assertThat(this.pipeline.isDisposed()).isTrue();
+        assertThatThrownBy(waitingItem::block).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> this.pipeline.submit(2).block()).isInstanceOf(IllegalStateException.class);
+        assertThat(this.dispatchedBatches).isEmpty();
+    }
+
+    private BatchPipeline<Integer, String> createPipeline(int maxBatchSize, Duration maxWait) {
+        return new BatchPipeline<>(DESCRIPTION, this::resolve, maxBatchSize, maxWait, this.waitTimes);
+    }
+
+    private Mono<Function<Integer, String>> resolve(List<Integer> items) {
+        this.dispatchedBatches.add(new ArrayList<>(items));
+        return Mono.just(item -> item + "-result");
+    }
+}
@@ -0,0 +1,113 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.batching;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Batch Writer")
+class BatchWriterTest {
+
+    private static final String NAME = "test";
+
+    private List<List<String>> writtenBatches;
+    private MeterRegistry meterRegistry;
+    private BatchWriter<String> batchWriter;
+
+    @BeforeEach
+    void setUp() {
+        this.writtenBatches = new CopyOnWriteArrayList<>();
+        this.meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.batchWriter.dispose();
+    }
+
+    @DisplayName("should write concurrent writes with a single insert and complete each with its own entity")
+    @Test
+    void testWriteCoalescesEntities() {
+        // given
+        this.batchWriter = this.createWriter(10, Duration.ofMillis(50));
+
+        // when
+        List<String> result = Flux.merge(
+                this.batchWriter.write("a"),
+                this.batchWriter.write("b"),
+                this.batchWriter.write("c"))
+                .collectList()
+                .block();
+
+        // then
+        assertThat(this.writtenBatches).hasSize(1);
+        assertThat(this.writtenBatches.get(0)).containsExactlyInAnyOrder("a", "b", "c");
+        assertThat(result).containsExactlyInAnyOrder("a", "b", "c");
+        assertThat(this.meterRegistry.get("petclinic.batch.writer.size").tag("writer", NAME).summary().count())
+                .isEqualTo(1);
+        assertThat(this.meterRegistry.get("petclinic.batch.writer.linger").tag("writer", NAME).timer().count())
+                .isEqualTo(3);
+    }
+
+    @DisplayName("should pass every write directly to the batch function when batching is disabled")
+    @Test
+    void testWriteWithoutBatching() {
+        // given
+        this.batchWriter = this.createWriter(1, Duration.ofMillis(50));
+
+        // when
+        String result = this.batchWriter.write("a").block();
+        this.batchWriter.write("b").block();
+
+        // then
+        assertThat(result).isEqualTo("a");
+        assertThat(this.writtenBatches).containsExactly(List.of("a"), List.of("b"));
+        assertThat(this.meterRegistry.find("petclinic.batch.writer.size").summary()).isNull();
+    }
+
+    @DisplayName("should fail the writes of a batch when the insert does not return every entity")
+    @Test
+    void testWriteFailsOnIncompleteBatch() {
+        // given
+        this.batchWriter = new BatchWriter<>(NAME, entities -> Flux.fromIterable(entities).skip(1),
+                10, Duration.ofMillis(10), this.meterRegistry);
+
+        // when / then
+        assertThatThrownBy(() -> this.batchWriter.write("a").block()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @DisplayName("should fail the writes of a batch when the insert returns other entities than the given ones")
+    @Test
+    void testWriteFailsOnOtherEntities() {
+        // given
+        this.batchWriter = new BatchWriter<>(NAME, entities -> Flux.fromIterable(entities).map(String::new),
+                10, Duration.ofMillis(10), this.meterRegistry);
+
+        // when / then
+        assertThatThrownBy(() -> this.batchWriter.write("a").block()).isInstanceOf(IllegalStateException.class);
+    }
+
+    private BatchWriter<String> createWriter(int maxBatchSize, Duration maxLinger) {
+        return new BatchWriter<>(NAME, this::insert, maxBatchSize, maxLinger, this.meterRegistry);
+    }
+
+    /* Returns the given instances in reverse order, so the writes are not completed by their position */
+    private Flux<String> insert(List<String> entities) {
+        this.writtenBatches.add(new ArrayList<>(entities));
+        List<String> written = new ArrayList<>(entities);
+        Collections.reverse(written);
+        return Flux.fromIterable(written);
+    }
+}
@@ -0,0 +1,85 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.caching;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("ID Filter")
+class IdFilterTest {
+
+    private static final int NUM_IDS = 10_000;
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    @DisplayName("should report every added ID as possibly present")
+    @Test
+    void testNoFalseNegatives() {
+        // given
+        IdFilter filter = new IdFilter(NUM_IDS, FALSE_POSITIVE_PROBABILITY);
+        List<UUID> ids = randomIds(NUM_IDS);
+
+        // when
+        Long loaded = filter.load(Flux.fromIterable(ids)).block();
+
+        // then
+        assertThat(loaded).isEqualTo(NUM_IDS);
+        assertThat(ids).allMatch(filter::mightContain);
+    }
+
+    @DisplayName("should report most IDs which were never added as absent")
+    @Test
+    void testFalsePositiveRate() {
+        // given
+        IdFilter filter = new IdFilter(NUM_IDS, FALSE_POSITIVE_PROBABILITY);
+        filter.load(Flux.fromIterable(randomIds(NUM_IDS))).block();
+
+        // when
+        long falsePositives = randomIds(NUM_IDS).stream().filter(filter::mightContain).count();
+
+        // then
+        assertThat(falsePositives).isLessThan((long) (NUM_IDS * FALSE_POSITIVE_PROBABILITY * 3));
+    }
+
+    @DisplayName("should report every ID as possibly present until the stored IDs are loaded")
+    @Test
+    void testNotLoaded() {
+        // given
+        IdFilter filter = new IdFilter(NUM_IDS, FALSE_POSITIVE_PROBABILITY);
+        UUID savedId = UUID.randomUUID();
+        UUID unknownId = UUID.randomUUID();
+        filter.add(savedId);
+
+        // when / then
+        assertThat(filter.isLoaded()).isFalse();
+        assertThat(filter.mightContain(unknownId)).isTrue();
+        filter.load(Flux.empty()).block();
+        assertThat(filter.isLoaded()).isTrue();
+        assertThat(filter.mightContain(savedId)).isTrue();
+        assertThat(filter.mightContain(unknownId)).isFalse();
+    }
+
+    @DisplayName("should report every ID as possibly present without filter")
+    @Test
+    void testNoFilter() {
+        // given
+        IdFilter filter = IdFilter.noFilter();
+
+        // when
+        filter.load(Flux.empty()).block();
+
+        // then
+        assertThat(filter.mightContain(UUID.randomUUID())).isTrue();
+    }
+
+    private static List<UUID> randomIds(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> UUID.randomUUID())
+                .collect(Collectors.toList());
+    }
+}
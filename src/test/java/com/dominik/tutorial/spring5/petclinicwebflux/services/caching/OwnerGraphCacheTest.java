@@ -0,0 +1,96 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.caching;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Owner Graph Cache")
+class OwnerGraphCacheTest {
+
+    private MeterRegistry meterRegistry;
+    private OwnerGraphCache cache;
+    private Owner owner;
+    private AtomicInteger loads;
+    private Function<UUID, Mono<Owner>> loader;
+
+    @BeforeEach
+    void setUp() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.cache = new OwnerGraphCache(100, Duration.ofMinutes(10), this.meterRegistry);
+        this.owner = new TestDataFactory(1).getOwner();
+        this.loads = new AtomicInteger();
+        this.loader = id -> Mono.fromCallable(() -> {
+            this.loads.incrementAndGet();
+            return this.owner;
+        });
+    }
+
+    @DisplayName("should load an owner once and serve it from the cache afterwards")
+    @Test
+    void testGetCachesOwner() {
+        // when
+        Owner first = this.cache.get(this.owner.getId(), this.loader).block();
+        Owner second = this.cache.get(this.owner.getId(), this.loader).block();
+
+        // then
+        assertThat(first).isSameAs(this.owner);
+        assertThat(second).isSameAs(this.owner);
+        assertThat(this.loads).hasValue(1);
+        assertThat(this.meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(this.meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @DisplayName("should load an owner again after it was invalidated")
+    @Test
+    void testInvalidate() {
+        // given
+        this.cache.get(this.owner.getId(), this.loader).block();
+
+        // when
+        this.cache.invalidate(this.owner.getId());
+        this.cache.get(this.owner.getId(), this.loader).block();
+
+        // then
+        assertThat(this.loads).hasValue(2);
+    }
+
+    @DisplayName("should not cache unknown owners")
+    @Test
+    void testGetUnknownOwner() {
+        // given
+        UUID unknownId = UUID.randomUUID();
+
+        // when
+        Owner result = this.cache.get(unknownId, id -> Mono.empty()).block();
+
+        // then
+        assertThat(result).isNull();
+        assertThat(this.cache.get(unknownId, this.loader).block()).isSameAs(this.owner);
+    }
+
+    @DisplayName("should pass every lookup to the loader without cache")
+    @Test
+    void testNoCache() {
+        // given
+        OwnerGraphCache noCache = OwnerGraphCache.noCache();
+
+        // when
+        noCache.get(this.owner.getId(), this.loader).block();
+        noCache.get(this.owner.getId(), this.loader).block();
+
+        // then
+        assertThat(this.loads).hasValue(2);
+    }
+}
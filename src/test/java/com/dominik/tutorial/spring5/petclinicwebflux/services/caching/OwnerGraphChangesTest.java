@@ -0,0 +1,75 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.caching;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+
+@DisplayName("Owner Graph Changes")
+@ExtendWith(MockitoExtension.class)
+class OwnerGraphChangesTest {
+
+    @Mock
+    private OwnerRepository ownerRepository;
+    @Mock
+    private OwnerGraphCache ownerGraphCache;
+    private OwnerGraphChanges ownerGraphChanges;
+
+    @BeforeEach
+    void setUp() {
+        this.ownerGraphChanges = new OwnerGraphChanges(this.ownerRepository, this.ownerGraphCache);
+    }
+
+    @DisplayName("should increment the graph version and invalidate the cached owner")
+    @Test
+    void testChanged() {
+        // given
+        UUID ownerId = UUID.randomUUID();
+        given(this.ownerRepository.incrementGraphVersion(ownerId)).willReturn(Mono.empty());
+
+        // when
+        this.ownerGraphChanges.changed(ownerId).block();
+
+        // then
+        then(this.ownerRepository).should().incrementGraphVersion(ownerId);
+        then(this.ownerGraphCache).should().invalidate(ownerId);
+    }
+
+    @DisplayName("should increment the graph versions of several owners with a single update")
+    @Test
+    void testChangedSeveral() {
+        // given
+        Set<UUID> ownerIds = Set.of(UUID.randomUUID(), UUID.randomUUID());
+        given(this.ownerRepository.incrementGraphVersions(ownerIds)).willReturn(Mono.empty());
+
+        // when
+        this.ownerGraphChanges.changed(ownerIds).block();
+
+        // then
+        then(this.ownerRepository).should().incrementGraphVersions(ownerIds);
+        ownerIds.forEach(id -> then(this.ownerGraphCache).should().invalidate(id));
+    }
+
+    @DisplayName("should not touch the owner before subscription")
+    @Test
+    void testChangedIsLazy() {
+        // when
+        this.ownerGraphChanges.changed(UUID.randomUUID());
+
+        // then
+        then(this.ownerRepository).should(never()).incrementGraphVersion(any());
+        then(this.ownerGraphCache).should(never()).invalidate(any());
+    }
+}
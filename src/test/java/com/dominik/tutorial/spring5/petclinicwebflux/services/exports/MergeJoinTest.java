@@ -0,0 +1,104 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.exports;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("Merge Join")
+class MergeJoinTest {
+
+    private static final int PREFETCH = 4;
+
+    @DisplayName("should sort UUIDs by their unsigned bytes")
+    @Test
+    void testStoredUuidOrder() {
+        // given
+        UUID low = UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff");
+        UUID high = UUID.fromString("80000000-0000-0000-0000-000000000000");
+
+        // then
+        assertThat(low.compareTo(high)).isPositive();
+        assertThat(MergeJoin.STORED_UUID_ORDER.compare(low, high)).isNegative();
+    }
+
+    @DisplayName("should keep exactly the elements whose key is among the keys, in their order")
+    @Test
+    void testSemiJoin() {
+        // given
+        List<UUID> petIds = this.sortedIds(50);
+        List<UUID> existingPetIds = new ArrayList<>();
+        List<Visit> visits = new ArrayList<>();
+        List<Visit> expected = new ArrayList<>();
+        for (int i = 0; i < petIds.size(); i++) {
+            boolean exists = i % 3 != 0;
+            if (exists) {
+                existingPetIds.add(petIds.get(i));
+            }
+            for (int j = 0; j < i % 4; j++) {
+                Visit visit = this.visit(petIds.get(i));
+                visits.add(visit);
+                if (exists) {
+                    expected.add(visit);
+                }
+            }
+        }
+
+        // when
+        List<Visit> result = MergeJoin.semiJoin(Flux.fromIterable(visits), Visit::getPetId,
+                Flux.fromIterable(existingPetIds), PREFETCH).collectList().block();
+
+        // then
+        assertThat(result).containsExactlyElementsOf(expected);
+    }
+
+    @DisplayName("should drop elements without key")
+    @Test
+    void testSemiJoinWithoutKey() {
+        // given
+        UUID petId = UUID.randomUUID();
+        Visit withPet = this.visit(petId);
+
+        // when
+        List<Visit> result = MergeJoin.semiJoin(Flux.just(this.visit(null), withPet), Visit::getPetId,
+                Flux.just(petId), PREFETCH).collectList().block();
+
+        // then
+        assertThat(result).containsExactly(withPet);
+    }
+
+    @DisplayName("should fail instead of dropping elements if a stream is not sorted")
+    @Test
+    void testSemiJoinUnsorted() {
+        // given
+        List<UUID> petIds = this.sortedIds(2);
+        Flux<Visit> unsortedVisits = Flux.just(this.visit(petIds.get(1)), this.visit(petIds.get(0)));
+
+        // then
+        assertThatThrownBy(() -> MergeJoin.semiJoin(unsortedVisits, Visit::getPetId,
+                Flux.fromIterable(petIds), PREFETCH).blockLast())
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private List<UUID> sortedIds(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> UUID.randomUUID())
+                .sorted(MergeJoin.STORED_UUID_ORDER)
+                .collect(Collectors.toList());
+    }
+
+    private Visit visit(UUID petId) {
+        Visit visit = Visit.builder().id(UUID.randomUUID()).description("Checkup").build();
+        visit.setPetId(petId);
+        return visit;
+    }
+}
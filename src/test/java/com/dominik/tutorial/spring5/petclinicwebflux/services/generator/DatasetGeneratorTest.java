@@ -0,0 +1,181 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.generator;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.BaseEntity;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.imports.ImportRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("Dataset Generator")
+class DatasetGeneratorTest {
+
+    private static final int NUM_OWNERS = 2_500;
+
+    private PetclinicProperties.Generator settings;
+
+    @BeforeEach
+    void setUp() {
+        this.settings = new PetclinicProperties.Generator();
+        this.settings.setOwners(NUM_OWNERS);
+    }
+
+    @DisplayName("should generate the same records for the same settings")
+    @Test
+    void testReproducible() {
+        // when
+        List<ImportRecord> first = this.generate();
+        List<ImportRecord> second = this.generate();
+
+        // then
+        assertThat(this.entities(second)).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(this.entities(first));
+    }
+
+    @DisplayName("should generate other records for another seed")
+    @Test
+    void testSeed() {
+        // given
+        List<UUID> ids = this.ids(this.generate());
+        this.settings.setSeed(this.settings.getSeed() + 1);
+
+        // when
+        List<UUID> otherIds = this.ids(this.generate());
+
+        // then
+        assertThat(otherIds).doesNotContainAnyElementsOf(ids);
+    }
+
+    @DisplayName("should generate the configured number of owners and only reference records generated before")
+    @Test
+    void testReferences() {
+        // when
+        List<ImportRecord> records = this.generate();
+
+        // then
+        Set<UUID> ids = new HashSet<>();
+        Map<UUID, LocalDate> birthDates = new HashMap<>();
+        long owners = 0;
+        for (ImportRecord record : records) {
+            assertThat(record.isFailed()).isFalse();
+            assertThat(ids.add(record.getEntity().getId())).isTrue();
+            switch (record.getType()) {
+                case OWNER:
+                    owners++;
+                    assertThat(record.getLine()).isEqualTo(owners);
+                    break;
+                case PET:
+                    Pet pet = (Pet) record.getEntity();
+                    assertThat(ids).contains(pet.getOwnerId());
+                    birthDates.put(pet.getId(), pet.getBirthDate());
+                    break;
+                default:
+                    Visit visit = (Visit) record.getEntity();
+                    assertThat(birthDates).containsKey(visit.getPetId());
+                    assertThat(visit.getDate()).isAfterOrEqualTo(birthDates.get(visit.getPetId()));
+            }
+        }
+        assertThat(owners).isEqualTo(NUM_OWNERS);
+    }
+
+    @DisplayName("should generate time ordered IDs within the configured years, increasing per type in record order")
+    @Test
+    void testTimeOrderedIds() {
+        // given
+        LocalDate referenceDate = LocalDate.parse(this.settings.getReferenceDate());
+        long earliest = referenceDate.minusYears(this.settings.getYears())
+                .atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        long latest = referenceDate.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+
+        // when
+        List<ImportRecord> records = this.generate();
+
+        // then
+        Map<ImportRecord.Type, UUID> lastIds = new HashMap<>();
+        for (ImportRecord record : records) {
+            UUID id = record.getEntity().getId();
+            assertThat(id.version()).isEqualTo(7);
+            assertThat(id.getMostSignificantBits() >>> 16).isBetween(earliest, latest);
+            UUID lastId = lastIds.put(record.getType(), id);
+            if (lastId != null) {
+                assertThat(Long.compareUnsigned(lastId.getMostSignificantBits(), id.getMostSignificantBits()))
+                        .isNegative();
+            }
+        }
+    }
+
+    @DisplayName("should generate pet birth dates and visit dates within the configured years")
+    @Test
+    void testDates() {
+        // given
+        LocalDate referenceDate = LocalDate.parse(this.settings.getReferenceDate());
+        LocalDate earliest = referenceDate.minusYears(this.settings.getYears());
+
+        // when
+        List<ImportRecord> records = this.generate();
+
+        // then
+        for (ImportRecord record : records) {
+            if (record.getType() == ImportRecord.Type.PET) {
+                assertThat(((Pet) record.getEntity()).getBirthDate()).isBetween(earliest, referenceDate);
+            } else if (record.getType() == ImportRecord.Type.VISIT) {
+                assertThat(((Visit) record.getEntity()).getDate()).isBetween(earliest, referenceDate);
+            }
+        }
+    }
+
+    @DisplayName("should generate about the configured mean numbers of pets and visits")
+    @Test
+    void testMeans() {
+        // when
+        Map<ImportRecord.Type, Long> counts = this.generate().stream()
+                .collect(Collectors.groupingBy(ImportRecord::getType, Collectors.counting()));
+
+        // then
+        double petsPerOwner = (double) counts.get(ImportRecord.Type.PET) / NUM_OWNERS;
+        double visitsPerPet = (double) counts.get(ImportRecord.Type.VISIT) / counts.get(ImportRecord.Type.PET);
+        assertThat(petsPerOwner).isCloseTo(this.settings.getPetsPerOwner(), within(0.15));
+        assertThat(visitsPerPet).isCloseTo(this.settings.getVisitsPerPet(), within(0.5));
+    }
+
+    @DisplayName("should generate no pets and visits for means of zero")
+    @Test
+    void testNoPets() {
+        // given
+        this.settings.setPetsPerOwner(0);
+
+        // when
+        List<ImportRecord> records = this.generate();
+
+        // then
+        assertThat(records).hasSize(NUM_OWNERS)
+                .allMatch(record -> record.getType() == ImportRecord.Type.OWNER);
+    }
+
+    private List<ImportRecord> generate() {
+        return new DatasetGenerator(this.settings).generate().collectList().block();
+    }
+
+    private List<BaseEntity> entities(List<ImportRecord> records) {
+        return records.stream().map(ImportRecord::getEntity).collect(Collectors.toList());
+    }
+
+    private List<UUID> ids(List<ImportRecord> records) {
+        return records.stream().map(record -> record.getEntity().getId()).collect(Collectors.toList());
+    }
+}
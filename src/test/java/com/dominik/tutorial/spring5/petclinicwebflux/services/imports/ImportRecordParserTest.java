@@ -0,0 +1,105 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.imports;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Import Record Parser")
+class ImportRecordParserTest {
+
+    private ImportRecordParser parser;
+
+    @BeforeEach
+    void setUp() {
+        this.parser = new ImportRecordParser(Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    @DisplayName("should parse NDJSON lines to entities of their type")
+    @Test
+    void testParseNdjson() {
+        // given
+        UUID petId = UUID.randomUUID();
+        Flux<String> lines = Flux.just(
+                "{\"type\":\"owner\",\"firstName\":\"George\",\"lastName\":\"Franklin\"}",
+                "",
+                "{\"type\":\"VISIT\",\"petId\":\"" + petId + "\",\"date\":\"2020-01-04\",\"description\":\"Checkup\"}");
+
+        // when
+        List<ImportRecord> records = this.parser.parse(lines, ImportFormat.NDJSON).collectList().block();
+
+        // then
+        assertThat(records).hasSize(2);
+        assertThat(records.get(0).getLine()).isEqualTo(1);
+        assertThat(records.get(0).getType()).isEqualTo(ImportRecord.Type.OWNER);
+        assertThat(((Owner) records.get(0).getEntity()).getLastName()).isEqualTo("Franklin");
+        assertThat(records.get(1).getLine()).isEqualTo(3);
+        Visit visit = (Visit) records.get(1).getEntity();
+        assertThat(visit.getPetId()).isEqualTo(petId);
+        assertThat(visit.getDate()).isEqualTo(LocalDate.of(2020, 1, 4));
+    }
+
+    @DisplayName("should turn unparseable lines into failed records")
+    @Test
+    void testParseInvalidNdjson() {
+        // given
+        Flux<String> lines = Flux.just(
+                "{\"type\":\"owner\"",
+                "[1, 2]",
+                "{\"firstName\":\"George\"}",
+                "{\"type\":\"visit\",\"date\":\"yesterday\"}");
+
+        // when
+        List<ImportRecord> records = this.parser.parse(lines, ImportFormat.NDJSON).collectList().block();
+
+        // then
+        assertThat(records).hasSize(4).allMatch(ImportRecord::isFailed);
+        assertThat(records).extracting(ImportRecord::getLine).containsExactly(1L, 2L, 3L, 4L);
+    }
+
+    @DisplayName("should parse CSV lines by the header line")
+    @Test
+    void testParseCsv() {
+        // given
+        Flux<String> lines = Flux.just(
+                "type,firstName,lastName,address",
+                "owner,George,Franklin,\"110 W. Liberty St., \"\"Upstairs\"\"\"",
+                "owner,Betty,Davis",
+                "owner,Eduardo,Rodriquez,\"2693 Commerce St.");
+
+        // when
+        List<ImportRecord> records = this.parser.parse(lines, ImportFormat.CSV).collectList().block();
+
+        // then
+        assertThat(records).hasSize(3);
+        Owner george = (Owner) records.get(0).getEntity();
+        assertThat(george.getFirstName()).isEqualTo("George");
+        assertThat(george.getAddress()).isEqualTo("110 W. Liberty St., \"Upstairs\"");
+        assertThat(((Owner) records.get(1).getEntity()).getAddress()).isNull();
+        assertThat(records.get(2).isFailed()).isTrue();
+        assertThat(records.get(2).getLine()).isEqualTo(4);
+    }
+
+    @DisplayName("should fail CSV records with more fields than the header")
+    @Test
+    void testParseCsvWithTooManyFields() {
+        // given
+        Flux<String> lines = Flux.just("type,firstName", "owner,George,Franklin");
+
+        // when
+        List<ImportRecord> records = this.parser.parse(lines, ImportFormat.CSV).collectList().block();
+
+        // then
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getError()).contains("3 fields");
+    }
+}
@@ -0,0 +1,60 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.inmemory;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.VisitEvent;
+import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.UUID;
+
+@DisplayName("Visit Event Service In Memory")
+class VisitEventServiceInMemoryTest {
+
+    private static final int BUFFER_SIZE = 2;
+    private static final int NUM_VISITS = 5;
+
+    private VisitEventServiceInMemory visitEventService;
+    private List<VisitEvent> events;
+
+    @BeforeEach
+    void setUp() {
+        this.visitEventService = new VisitEventServiceInMemory(BUFFER_SIZE);
+        UUID ownerId = UUID.randomUUID();
+        List<Visit> visits = TestDataFactory.visitsOnly(NUM_VISITS).getVisits();
+        this.events = List.of(visits.stream()
+                .map(visit -> VisitEvent.created(visit, ownerId))
+                .toArray(VisitEvent[]::new));
+    }
+
+    @DisplayName("should deliver published events to every subscriber")
+    @Test
+    void testPublishToSubscribers() {
+        StepVerifier.create(this.visitEventService.events().take(2))
+                .then(() -> this.visitEventService.publish(this.events.get(0)).block())
+                .then(() -> this.visitEventService.publish(this.events.get(1)).block())
+                .expectNext(this.events.get(0), this.events.get(1))
+                .verifyComplete();
+    }
+
+    @DisplayName("should drop the oldest events of a subscriber that falls behind")
+    @Test
+    void testDropOldest() {
+        StepVerifier.create(this.visitEventService.events(), 0)
+                .then(() -> this.events.forEach(event -> this.visitEventService.publish(event).block()))
+                .thenRequest(NUM_VISITS)
+                .expectNext(this.events.get(NUM_VISITS - 2), this.events.get(NUM_VISITS - 1))
+                .thenCancel()
+                .verify();
+    }
+
+    @DisplayName("should not hold up publishing without subscribers")
+    @Test
+    void testPublishWithoutSubscribers() {
+        StepVerifier.create(this.visitEventService.publish(this.events.get(0)))
+                .verifyComplete();
+    }
+}
@@ -1,16 +1,32 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.IdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.TimeOrderedIdGenerator;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphDepth;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerGraphVersion;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerCursor;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerLastName;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummary;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummaryPage;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.PetName;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.OwnerRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.OwnerAutocompleteService;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.PetService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.IdFilter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphCache;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -34,6 +50,16 @@ class OwnerServiceMongoTest {
     private OwnerRepository ownerRepository;
     @Mock
     private PetService petService;
+    @Mock
+    private OwnerAutocompleteService autocompleteService;
+    @Spy
+    private OwnerGraphCache ownerGraphCache = OwnerGraphCache.noCache();
+    @Spy
+    private KnownIds knownIds = new KnownIds(new IdFilter(100, 0.01), IdFilter.noFilter());
+    @Spy
+    private IdGenerator idGenerator = new TimeOrderedIdGenerator();
+    @Spy
+    private PetclinicProperties properties = new PetclinicProperties();
     @InjectMocks
     private OwnerServiceMongo ownerServiceMongo;
     private TestDataFactory testDataFactory;
@@ -47,8 +73,10 @@ class OwnerServiceMongoTest {
     @Test
     void testFindAll() {
         // given
+        Owner ownerWithPets = this.testDataFactory.getOwner();
+        this.testDataFactory.getPets().forEach(p -> p.setOwnerId(ownerWithPets.getId()));
         given(this.ownerRepository.findAll()).willReturn(Flux.fromIterable(this.testDataFactory.getOwners()));
-        given(this.petService.findByOwnerId(any(UUID.class))).willReturn(Flux.fromIterable(this.testDataFactory.getPets()));
+        given(this.petService.findByOwnerIds(anyCollection(), eq(true))).willReturn(Flux.fromIterable(this.testDataFactory.getPets()));
 
         // when
         Flux<Owner> result = this.ownerServiceMongo.findAll();
@@ -59,9 +87,12 @@ class OwnerServiceMongoTest {
         assertThat(resultList).hasSize(NUM_OWNERS);
         for (int i = 0; i < NUM_OWNERS; i++) {
             assertThat(this.testDataFactory.getOwners().get(i)).isEqualToIgnoringGivenFields(resultList.get(i), "pets");
-            assertThat(resultList.get(i).getPets()).hasSize(NUM_PETS);
         }
+        assertThat(resultList.get(0).getPets()).hasSize(NUM_PETS);
+        assertThat(resultList.get(1).getPets()).isEmpty();
         then(this.ownerRepository).should(times(1)).findAll();
+        then(this.petService).should(times(1)).findByOwnerIds(anyCollection(), eq(true));
+        then(this.petService).shouldHaveNoMoreInteractions();
     }
 
     @DisplayName("should return nothing on findAll with empty DB")
@@ -82,12 +113,13 @@ class OwnerServiceMongoTest {
     @Test
     void testGetById() {
         // given
+        this.properties.getOwnerGraph().setAggregation(false);
         Owner owner = this.testDataFactory.getOwner();
         UUID idExists = owner.getId();
         UUID idNotExists = UUID.randomUUID();
         given(this.ownerRepository.findById(idExists)).willReturn(Mono.just(owner));
         given(this.ownerRepository.findById(idNotExists)).willReturn(Mono.empty());
-        given(this.petService.findByOwnerId(idExists)).willReturn(Flux.fromIterable(this.testDataFactory.getPets()));
+        given(this.petService.findByOwnerId(idExists, true)).willReturn(Flux.fromIterable(this.testDataFactory.getPets()));
 
         // when
         Mono<Owner> resultMonoExists = this.ownerServiceMongo.getById(idExists);
@@ -101,15 +133,170 @@ class OwnerServiceMongoTest {
         assertThat(resultOwner.getPets()).hasSize(NUM_PETS);
         then(this.ownerRepository).should(times(1)).findById(idExists);
         then(this.ownerRepository).should(times(1)).findById(idNotExists);
-        then(this.petService).should(times(1)).findByOwnerId(idExists);
+        then(this.petService).should(times(1)).findByOwnerId(idExists, true);
         then(this.petService).shouldHaveNoMoreInteractions();
     }
 
+    @DisplayName("should return owner by ID with pets from the aggregation")
+    @Test
+    void testGetByIdAggregation() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        owner.setPets(this.testDataFactory.getPets());
+        given(this.ownerRepository.findGraphById(owner.getId())).willReturn(Mono.just(owner));
+
+        // when
+        Owner resultOwner = this.ownerServiceMongo.getById(owner.getId()).block();
+
+        // then
+        assertThat(resultOwner).isNotNull();
+        assertThat(resultOwner.getPets()).hasSize(NUM_PETS);
+        then(this.ownerRepository).should(times(1)).findGraphById(owner.getId());
+        then(this.ownerRepository).shouldHaveNoMoreInteractions();
+        then(this.petService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should keep the owner graph of the given details version")
+    @Test
+    void testGetByIdCurrentDetailsVersion() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        owner.setVersion(2L);
+        owner.setGraphVersion(3L);
+        given(this.ownerRepository.findGraphById(owner.getId())).willReturn(Mono.just(owner));
+
+        // when
+        Owner resultOwner = this.ownerServiceMongo.getById(owner.getId(), "2.3").block();
+
+        // then
+        assertThat(resultOwner).isSameAs(owner);
+        then(this.ownerRepository).should(times(1)).findGraphById(owner.getId());
+        then(this.ownerGraphCache).should(never()).invalidate(any());
+    }
+
+    @DisplayName("should evict and reload an owner graph of another details version")
+    @Test
+    void testGetByIdOutdatedDetailsVersion() {
+        // given
+        Owner outdatedOwner = this.testDataFactory.getOwner();
+        outdatedOwner.setVersion(2L);
+        outdatedOwner.setGraphVersion(3L);
+        Owner currentOwner = Owner.builder().id(outdatedOwner.getId()).build();
+        currentOwner.setVersion(2L);
+        currentOwner.setGraphVersion(4L);
+        given(this.ownerRepository.findGraphById(outdatedOwner.getId()))
+                .willReturn(Mono.just(outdatedOwner), Mono.just(currentOwner));
+
+        // when
+        Owner resultOwner = this.ownerServiceMongo.getById(outdatedOwner.getId(), "2.4").block();
+
+        // then
+        assertThat(resultOwner).isSameAs(currentOwner);
+        then(this.ownerGraphCache).should(times(1)).invalidate(outdatedOwner.getId());
+        then(this.ownerRepository).should(times(2)).findGraphById(outdatedOwner.getId());
+    }
+
+    @DisplayName("should return the details version of an owner from the version projection")
+    @Test
+    void testFindGraphVersion() {
+        // given
+        UUID ownerId = UUID.randomUUID();
+        given(this.ownerRepository.findGraphVersionById(ownerId))
+                .willReturn(Mono.just(graphVersion(2L, 7L)), Mono.just(graphVersion(2L, null)));
+
+        // when / then
+        assertThat(this.ownerServiceMongo.findGraphVersion(ownerId).block().detailsVersion()).isEqualTo("2.7");
+        assertThat(this.ownerServiceMongo.findGraphVersion(ownerId).block().detailsVersion()).isEqualTo("2.0");
+        then(this.ownerRepository).should(times(2)).findGraphVersionById(ownerId);
+        then(this.ownerRepository).shouldHaveNoMoreInteractions();
+        then(this.petService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should return owner by ID without pets, not from the cache")
+    @Test
+    void testGetByIdOwnerOnly() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        given(this.ownerRepository.findById(owner.getId())).willReturn(Mono.just(owner));
+
+        // when
+        Owner resultOwner = this.ownerServiceMongo.getById(owner.getId(), OwnerGraphDepth.OWNER).block();
+
+        // then
+        assertThat(resultOwner).isSameAs(owner);
+        then(this.ownerRepository).should(never()).findGraphById(any());
+        then(this.petService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should return owner by ID with pets, but without their visits")
+    @Test
+    void testGetByIdWithoutVisits() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        given(this.ownerRepository.findById(owner.getId())).willReturn(Mono.just(owner));
+        given(this.petService.findByOwnerId(owner.getId(), false))
+                .willReturn(Flux.fromIterable(this.testDataFactory.getPets()));
+
+        // when
+        Owner resultOwner = this.ownerServiceMongo.getById(owner.getId(), OwnerGraphDepth.PETS).block();
+
+        // then
+        assertThat(resultOwner.getPets()).hasSize(NUM_PETS);
+        then(this.petService).should().findByOwnerId(owner.getId(), false);
+        then(this.petService).shouldHaveNoMoreInteractions();
+    }
+
+    @DisplayName("should list owners with pets without visits, with a single query for the pets")
+    @Test
+    void testFindAllWithoutVisits() {
+        // given
+        given(this.ownerRepository.findAll()).willReturn(Flux.fromIterable(this.testDataFactory.getOwners()));
+        given(this.petService.findByOwnerIds(anyCollection(), eq(false))).willReturn(Flux.empty());
+
+        // when
+        List<Owner> result = this.ownerServiceMongo.findAll(OwnerGraphDepth.PETS).collectList().block();
+
+        // then
+        assertThat(result).hasSize(NUM_OWNERS);
+        then(this.petService).should(times(1)).findByOwnerIds(anyCollection(), eq(false));
+        then(this.petService).shouldHaveNoMoreInteractions();
+    }
+
+    @DisplayName("should not query owners which were never stored")
+    @Test
+    void testUnknownOwnerIdNotQueried() {
+        // given
+        UUID unknownId = UUID.randomUUID();
+        this.knownIds.owners().load(Flux.empty()).block();
+
+        // when / then
+        assertThat(this.ownerServiceMongo.getById(unknownId).hasElement().block()).isFalse();
+        assertThat(this.ownerServiceMongo.getById(unknownId, OwnerGraphDepth.OWNER).hasElement().block()).isFalse();
+        then(this.ownerRepository).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should check the existence of owners unknown to the ID filter in the repository")
+    @Test
+    void testExistsByIdIgnoresIdFilter() {
+        // given
+        UUID unknownId = UUID.randomUUID();
+        this.knownIds.owners().load(Flux.empty()).block();
+        given(this.ownerRepository.existsById(unknownId)).willReturn(Mono.just(true));
+
+        // when
+        Boolean result = this.ownerServiceMongo.existsById(unknownId).block();
+
+        // then
+        assertThat(result).isTrue();
+        then(this.ownerRepository).should(times(1)).existsById(unknownId);
+    }
+
     @DisplayName("should save new owner in repository")
     @Test
     void testSave() {
         // given
         Owner owner = this.testDataFactory.getOwner();
+        given(this.ownerRepository.findLastNameById(owner.getId())).willReturn(Mono.empty());
         given(this.ownerRepository.save(any(Owner.class))).willReturn(Mono.just(owner));
         ArgumentCaptor<Owner> captor = ArgumentCaptor.forClass(Owner.class);
 
@@ -121,6 +308,99 @@ class OwnerServiceMongoTest {
         assertThat(result).isNotNull();
         assertThat(owner).isEqualToComparingFieldByField(result);
         assertThat(owner).isEqualToComparingFieldByField(captor.getValue());
+        then(this.autocompleteService).should(times(1)).lastNameChanged("", owner.getLastName());
+        then(this.ownerGraphCache).should(times(1)).invalidate(owner.getId());
+    }
+
+    @DisplayName("should assign an ID to a new owner before saving it")
+    @Test
+    void testSaveAssignsId() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        owner.setId(null);
+        this.knownIds.owners().load(Flux.empty()).block();
+        given(this.ownerRepository.save(any(Owner.class))).willAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        // when
+        Owner result = this.ownerServiceMongo.save(owner).block();
+
+        // then
+        assertThat(result.getId()).isNotNull();
+        assertThat(this.knownIds.owners().mightContain(result.getId())).isTrue();
+        then(this.ownerRepository).should(never()).findLastNameById(any());
+        then(this.autocompleteService).should(times(1)).lastNameChanged("", owner.getLastName());
+    }
+
+    @DisplayName("should pass the previous last name of an existing owner to the autocompletion")
+    @Test
+    void testSaveExistingOwnerUpdatesAutocompletion() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        OwnerLastName previousLastName = () -> "Previous";
+        given(this.ownerRepository.findLastNameById(owner.getId())).willReturn(Mono.just(previousLastName));
+        given(this.ownerRepository.save(any(Owner.class))).willReturn(Mono.just(owner));
+
+        // when
+        this.ownerServiceMongo.save(owner).block();
+
+        // then
+        then(this.autocompleteService).should(times(1)).lastNameChanged("Previous", owner.getLastName());
+    }
+
+    @DisplayName("should maintain the last name search keys on save")
+    @Test
+    void testSaveUpdatesSearchKeys() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        owner.setLastName("Müller");
+        given(this.ownerRepository.findLastNameById(owner.getId())).willReturn(Mono.empty());
+        given(this.ownerRepository.save(any(Owner.class))).willReturn(Mono.just(owner));
+        ArgumentCaptor<Owner> captor = ArgumentCaptor.forClass(Owner.class);
+
+        // when
+        this.ownerServiceMongo.save(owner).block();
+
+        // then
+        then(this.ownerRepository).should(times(1)).save(captor.capture());
+        assertThat(captor.getValue().getLastNameKey()).isEqualTo("muller");
+        assertThat(captor.getValue().getLastNameTokens()).contains("m", "mu", "mul", "lle", "ler");
+        assertThat(captor.getValue().getLastNamePhoneticKeys()).isNotEmpty();
+    }
+
+    @DisplayName("should delete the pets of an owner before the owner and remove it from cache and autocompletion")
+    @Test
+    void testDelete() {
+        // given
+        Owner owner = this.testDataFactory.getOwner();
+        OwnerLastName lastName = owner::getLastName;
+        given(this.ownerRepository.findLastNameById(owner.getId())).willReturn(Mono.just(lastName));
+        given(this.petService.deleteByOwnerId(owner.getId())).willReturn(Mono.just(3L));
+        given(this.ownerRepository.deleteById(owner.getId())).willReturn(Mono.empty());
+
+        // when
+        this.ownerServiceMongo.delete(owner.getId()).block();
+
+        // then
+        InOrder inOrder = inOrder(this.petService, this.ownerRepository, this.ownerGraphCache);
+        inOrder.verify(this.petService).deleteByOwnerId(owner.getId());
+        inOrder.verify(this.ownerRepository).deleteById(owner.getId());
+        inOrder.verify(this.ownerGraphCache).invalidate(owner.getId());
+        then(this.autocompleteService).should(times(1)).lastNameChanged(owner.getLastName(), "");
+    }
+
+    @DisplayName("should not delete pets when the owner does not exist")
+    @Test
+    void testDeleteNotExisting() {
+        // given
+        UUID ownerId = UUID.randomUUID();
+        given(this.ownerRepository.findLastNameById(ownerId)).willReturn(Mono.empty());
+
+        // when
+        this.ownerServiceMongo.delete(ownerId).block();
+
+        // then
+        then(this.petService).should(never()).deleteByOwnerId(any());
+        then(this.ownerRepository).should(never()).deleteById(any(UUID.class));
     }
 
     @DisplayName("should find owner with pet by last name fragment")
@@ -129,8 +409,9 @@ class OwnerServiceMongoTest {
         // given
         String searchString = "anything";
         Owner owner = this.testDataFactory.getOwner();
-        given(this.ownerRepository.findByLastNameContainingIgnoreCase(anyString())).willReturn(Flux.just(owner));
-        given(this.petService.findByOwnerId(owner.getId())).willReturn(Flux.fromIterable(this.testDataFactory.getPets()));
+        this.testDataFactory.getPets().forEach(p -> p.setOwnerId(owner.getId()));
+        given(this.ownerRepository.searchByLastName(anyString())).willReturn(Flux.just(owner));
+        given(this.petService.findByOwnerIds(anyCollection(), eq(true))).willReturn(Flux.fromIterable(this.testDataFactory.getPets()));
 
         // when
         Flux<Owner> result = this.ownerServiceMongo.findByLastNameFragment(searchString);
@@ -140,6 +421,159 @@ class OwnerServiceMongoTest {
         assertThat(resultOwner).isNotNull();
         assertThat(owner).isEqualToIgnoringGivenFields(resultOwner, "pets");
         assertThat(resultOwner.getPets()).hasSize(NUM_PETS);
-        then(this.ownerRepository).should(times(1)).findByLastNameContainingIgnoreCase(searchString);
+        then(this.ownerRepository).should(times(1)).searchByLastName(searchString);
+    }
+
+    @DisplayName("should return a page of owner summaries with pet names and a token for the next page")
+    @Test
+    void testFindSummaryPage() {
+        // given
+        this.properties.getOwnerList().setPageSize(1);
+        List<OwnerSummary> summaries = this.testDataFactory.getOwnerSummaries();
+        OwnerSummary firstOwner = summaries.get(0);
+        given(this.ownerRepository.findSummariesAfter(null, null, 2)).willReturn(Flux.fromIterable(summaries));
+        given(this.petService.findNamesByOwnerIds(anyCollection())).willReturn(Flux.just(
+                this.petName(firstOwner.getId(), "Leo"), this.petName(firstOwner.getId(), "Max")));
+
+        // when
+        OwnerSummaryPage result = this.ownerServiceMongo.findSummaryPage(null, null).block();
+
+        // then
+        assertThat(result).isNotNull();
+        assertThat(result.getOwners()).hasSize(1);
+        assertThat(result.getOwners().get(0).getPetNames()).containsExactly("Leo", "Max");
+        assertThat(result.hasNext()).isTrue();
+        OwnerCursor nextCursor = OwnerCursor.fromToken(result.getNextToken());
+        assertThat(nextCursor.getId()).isEqualTo(firstOwner.getId());
+        assertThat(nextCursor.getLastName()).isEqualTo(firstOwner.getLastName());
+        assertThat(nextCursor.getFirstName()).isEqualTo(firstOwner.getFirstName());
+        then(this.petService).should(times(1)).findNamesByOwnerIds(anyCollection());
+        then(this.petService).shouldHaveNoMoreInteractions();
+    }
+
+    @DisplayName("should return the last page without a next page token")
+    @Test
+    void testFindSummaryPageLastPage() {
+        // given
+        String searchString = "anything";
+        OwnerCursor after = new OwnerCursor("last", "first", UUID.randomUUID());
+        OwnerSummary summary = this.testDataFactory.getOwnerSummaries().get(0);
+        given(this.ownerRepository.findSummariesAfter(eq(searchString), eq(after), anyInt())).willReturn(Flux.just(summary));
+        given(this.petService.findNamesByOwnerIds(anyCollection())).willReturn(Flux.just(this.petName(summary.getId(), "Leo")));
+
+        // when
+        OwnerSummaryPage result = this.ownerServiceMongo.findSummaryPage(searchString, after).block();
+
+        // then
+        assertThat(result).isNotNull();
+        assertThat(result.getOwners()).hasSize(1);
+        assertThat(result.getOwners().get(0).getPetNames()).containsExactly("Leo");
+        assertThat(result.hasNext()).isFalse();
+        then(this.ownerRepository).should(times(1)).findSummariesAfter(searchString, after, 21);
+    }
+
+    @DisplayName("should rank the last names of the phonetic buckets by their edit distance and query the owners in that order")
+    @Test
+    void testFindFuzzySummaryPage() {
+        // given
+        OwnerSummary schmidt = this.summary("Schmidt");
+        OwnerSummary schmitt = this.summary("Schmitt");
+        given(this.ownerRepository.findLastNamesByPhoneticKeys(anyCollection()))
+                .willReturn(Flux.just("Schmied", "Schmitt", "Schmidt"));
+        given(this.ownerRepository.findSummariesByLastNames(List.of("Schmidt", "Schmied", "Schmitt"), 0, 21))
+                .willReturn(Flux.just(schmidt, schmitt));
+        given(this.petService.findNamesByOwnerIds(anyCollection())).willReturn(Flux.just(this.petName(schmidt.getId(), "Leo")));
+
+        // when
+        OwnerSummaryPage result = this.ownerServiceMongo.findFuzzySummaryPage("Schmidt", 0).block();
+
+        // then
+        assertThat(result).isNotNull();
+        assertThat(result.getOwners()).containsExactly(schmidt, schmitt);
+        assertThat(schmidt.getPetNames()).containsExactly("Leo");
+        assertThat(result.hasNext()).isFalse();
+    }
+
+    @DisplayName("should only query the owners of the requested fuzzy search page and link the following one")
+    @Test
+    void testFindFuzzySummaryPageLimit() {
+        // given
+        this.properties.getOwnerList().setPageSize(1);
+        OwnerSummary schmitt = this.summary("Schmitt");
+        given(this.ownerRepository.findLastNamesByPhoneticKeys(anyCollection())).willReturn(Flux.just("Schmitt"));
+        given(this.ownerRepository.findSummariesByLastNames(List.of("Schmitt"), 2, 2))
+                .willReturn(Flux.just(schmitt, this.summary("Schmitt")));
+        given(this.petService.findNamesByOwnerIds(anyCollection())).willReturn(Flux.empty());
+
+        // when
+        OwnerSummaryPage result = this.ownerServiceMongo.findFuzzySummaryPage("Schmitt", 2).block();
+
+        // then
+        assertThat(result).isNotNull();
+        assertThat(result.getOwners()).containsExactly(schmitt);
+        assertThat(result.getNextToken()).isEqualTo("3");
+    }
+
+    @DisplayName("should not query owners if no last name shares a phonetic key")
+    @Test
+    void testFindFuzzySummaryPageNoMatch() {
+        // given
+        given(this.ownerRepository.findLastNamesByPhoneticKeys(anyCollection())).willReturn(Flux.empty());
+
+        // when
+        OwnerSummaryPage result = this.ownerServiceMongo.findFuzzySummaryPage("Schmitt", 0).block();
+
+        // then
+        assertThat(result).isNotNull();
+        assertThat(result.getOwners()).isEmpty();
+        then(this.ownerRepository).should(never()).findSummariesByLastNames(anyList(), anyLong(), anyInt());
+    }
+
+    @DisplayName("should not query owners for a last name without phonetic keys")
+    @Test
+    void testFindFuzzySummaryPageBlank() {
+        // when
+        OwnerSummaryPage result = this.ownerServiceMongo.findFuzzySummaryPage("  ", 0).block();
+
+        // then
+        assertThat(result).isNotNull();
+        assertThat(result.getOwners()).isEmpty();
+        then(this.ownerRepository).shouldHaveNoInteractions();
+    }
+
+    private OwnerSummary summary(String lastName) {
+        return OwnerSummary.builder()
+                .id(UUID.randomUUID())
+                .firstName("First")
+                .lastName(lastName)
+                .build();
+    }
+
+    private PetName petName(UUID ownerId, String name) {
+        return new PetName() {
+            @Override
+            public UUID getOwnerId() {
+                return ownerId;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+        };
+    }
+
+    private static OwnerGraphVersion graphVersion(Long version, Long graphVersion) {
+        return new OwnerGraphVersion() {
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+
+            @Override
+            public Long getGraphVersion() {
+                return graphVersion;
+            }
+        };
     }
-}
\ No newline at end of file
+}
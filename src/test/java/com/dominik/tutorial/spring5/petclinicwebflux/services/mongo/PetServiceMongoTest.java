@@ -1,26 +1,40 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
 
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.IdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.ids.TimeOrderedIdGenerator;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.EntityId;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.PetName;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.PetRepository;
 import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchLoader;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.IdFilter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.KnownIds;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphChanges;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.times;
 
 @DisplayName("Pet Service Mongo")
@@ -35,6 +49,16 @@ class PetServiceMongoTest {
     private VisitService visitService;
     @Mock
     private PetRepository petRepository;
+    @Mock
+    private BatchLoader<UUID, Pet> petsByOwnerLoader;
+    @Mock
+    private OwnerGraphChanges ownerGraphChanges;
+    @Spy
+    private KnownIds knownIds = new KnownIds(IdFilter.noFilter(), new IdFilter(100, 0.01));
+    @Spy
+    private IdGenerator idGenerator = new TimeOrderedIdGenerator();
+    @Spy
+    private PetclinicProperties properties = new PetclinicProperties();
     @InjectMocks
     private PetServiceMongo petService;
     private TestDataFactory testDataFactory;
@@ -114,13 +138,129 @@ class PetServiceMongoTest {
         then(this.petRepository).should(times(1)).findById(petId);
     }
 
+    @DisplayName("should not query pets which were never stored")
+    @Test
+    void testUnknownPetIdNotQueried() {
+        // given
+        UUID unknownId = UUID.randomUUID();
+        UUID ownerId = UUID.randomUUID();
+        this.knownIds.pets().load(Flux.empty()).block();
+
+        // when / then
+        assertThat(this.petService.findById(unknownId).hasElement().block()).isFalse();
+        assertThat(this.petService.findByIdAndOwner(unknownId, ownerId).hasElement().block()).isFalse();
+        then(this.petRepository).shouldHaveNoInteractions();
+        then(this.visitService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should check the existence of pets unknown to the ID filter in the repository")
+    @Test
+    void testExistsByIdAndOwnerIgnoresIdFilter() {
+        // given
+        UUID unknownId = UUID.randomUUID();
+        UUID ownerId = UUID.randomUUID();
+        this.knownIds.pets().load(Flux.empty()).block();
+        given(this.petRepository.existsByIdAndOwnerId(unknownId, ownerId)).willReturn(Mono.just(true));
+
+        // when
+        Boolean result = this.petService.existsByIdAndOwner(unknownId, ownerId).block();
+
+        // then
+        assertThat(result).isTrue();
+        then(this.petRepository).should(times(1)).existsByIdAndOwnerId(unknownId, ownerId);
+    }
+
+    @DisplayName("should find pets of an owner through the batch loader")
+    @Test
+    void testFindByOwnerId() {
+        // given
+        Pet pet = this.testDataFactory.getPet();
+        UUID ownerId = UUID.randomUUID();
+        pet.setOwnerId(ownerId);
+        this.testDataFactory.getVisits().forEach(v -> v.setPetId(pet.getId()));
+        given(this.petsByOwnerLoader.load(ownerId)).willReturn(Flux.just(pet));
+        given(this.visitService.findByPets(anyCollection())).willReturn(Flux.fromIterable(this.testDataFactory.getVisits()));
+
+        // when
+        List<Pet> result = this.petService.findByOwnerId(ownerId).collectList().block();
+
+        // then
+        assertThat(result).hasSize(NUM_PETS);
+        assertThat(result.get(0).getVisits()).hasSize(NUM_VISITS);
+        then(this.petsByOwnerLoader).should(times(1)).load(ownerId);
+        then(this.petRepository).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should find pets of an owner without looking up their visits")
+    @Test
+    void testFindByOwnerIdWithoutVisits() {
+        // given
+        Pet pet = this.testDataFactory.getPet();
+        UUID ownerId = UUID.randomUUID();
+        given(this.petsByOwnerLoader.load(ownerId)).willReturn(Flux.just(pet));
+
+        // when
+        List<Pet> result = this.petService.findByOwnerId(ownerId, false).collectList().block();
+
+        // then
+        assertThat(result).containsExactly(pet);
+        then(this.visitService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should find pets of several owners with their visits in one batch")
+    @Test
+    void testFindByOwnerIds() {
+        // given
+        Pet pet = this.testDataFactory.getPet();
+        UUID ownerId = UUID.randomUUID();
+        pet.setOwnerId(ownerId);
+        this.testDataFactory.getVisits().forEach(v -> v.setPetId(pet.getId()));
+        given(this.petRepository.findByOwnerIdIn(anyCollection())).willReturn(Flux.just(pet));
+        given(this.visitService.findByPets(anyCollection())).willReturn(Flux.fromIterable(this.testDataFactory.getVisits()));
+
+        // when
+        List<Pet> result = this.petService.findByOwnerIds(List.of(ownerId, UUID.randomUUID())).collectList().block();
+
+        // then
+        assertThat(result).hasSize(NUM_PETS);
+        assertThat(result.get(0).getVisits()).hasSize(NUM_VISITS);
+        then(this.petRepository).should(times(1)).findByOwnerIdIn(anyCollection());
+        then(this.visitService).should(times(1)).findByPets(anyCollection());
+        then(this.visitService).shouldHaveNoMoreInteractions();
+    }
+
+    @DisplayName("should not query anything for an empty list of owners")
+    @Test
+    void testFindByOwnerIdsEmpty() {
+        // when
+        List<Pet> result = this.petService.findByOwnerIds(List.of()).collectList().block();
+
+        // then
+        assertThat(result).isEmpty();
+        then(this.petRepository).shouldHaveNoInteractions();
+        then(this.visitService).shouldHaveNoInteractions();
+    }
+
+    @DisplayName("should not query pet names for an empty list of owners")
+    @Test
+    void testFindNamesByOwnerIdsEmpty() {
+        // when
+        List<PetName> result = this.petService.findNamesByOwnerIds(List.of()).collectList().block();
+
+        // then
+        assertThat(result).isEmpty();
+        then(this.petRepository).shouldHaveNoInteractions();
+    }
+
     @DisplayName("should save new pet in repository")
     @Test
     void testSaveNewPet() {
         // given
         UUID ownerId = UUID.randomUUID();
         Pet pet = this.testDataFactory.getPet();
+        this.knownIds.pets().load(Flux.empty()).block();
         given(this.petRepository.save(eq(pet))).willReturn(Mono.just(pet));
+        given(this.ownerGraphChanges.changed(ownerId)).willReturn(Mono.empty());
         ArgumentCaptor<Pet> captor = ArgumentCaptor.forClass(Pet.class);
 
         // when
@@ -131,19 +271,67 @@ class PetServiceMongoTest {
         Pet capturedPet = captor.getValue();
         assertThat(pet).isEqualToIgnoringGivenFields(capturedPet, "ownerId");
         assertThat(ownerId.toString()).isEqualTo(capturedPet.getOwnerId().toString());
+        then(this.ownerGraphChanges).should(times(1)).changed(ownerId);
+        assertThat(this.knownIds.pets().mightContain(pet.getId())).isTrue();
     }
 
-    @DisplayName("should delete a pet from repository")
+    @DisplayName("should delete a pet and its visits from repository")
     @Test
     void testDelete() {
         // given
         Pet pet = this.testDataFactory.getPet();
+        pet.setOwnerId(UUID.randomUUID());
+        given(this.petRepository.findById(pet.getId())).willReturn(Mono.just(pet));
+        given(this.visitService.deleteByPets(List.of(pet.getId()))).willReturn(Mono.just(5L));
         given(this.petRepository.deleteById(pet.getId())).willReturn(Mono.empty());
+        given(this.ownerGraphChanges.changed(pet.getOwnerId())).willReturn(Mono.empty());
 
         // when
         this.petService.delete(pet.getId()).block();
 
         // then
-        then(this.petRepository).should(times(1)).deleteById(pet.getId());
+        InOrder inOrder = inOrder(this.visitService, this.petRepository, this.ownerGraphChanges);
+        inOrder.verify(this.visitService).deleteByPets(List.of(pet.getId()));
+        inOrder.verify(this.petRepository).deleteById(pet.getId());
+        inOrder.verify(this.ownerGraphChanges).changed(pet.getOwnerId());
+    }
+
+    @DisplayName("should delete the visits of all pets of an owner in batches and then the pets")
+    @Test
+    void testDeleteByOwnerId() {
+        // given
+        UUID ownerId = UUID.randomUUID();
+        List<UUID> petIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        this.properties.getDeletes().setBatchSize(2);
+        given(this.petRepository.findIdsByOwnerId(ownerId))
+                .willReturn(Flux.fromIterable(petIds).map(id -> (EntityId) () -> id));
+        given(this.visitService.deleteByPets(anyCollection())).willReturn(Mono.just(1L));
+        given(this.petRepository.deleteByOwnerId(ownerId)).willReturn(Mono.just(3L));
+
+        // when
+        Long deleted = this.petService.deleteByOwnerId(ownerId).block();
+
+        // then
+        assertThat(deleted).isEqualTo(3L);
+        InOrder inOrder = inOrder(this.visitService, this.petRepository);
+        inOrder.verify(this.visitService).deleteByPets(petIds.subList(0, 2));
+        inOrder.verify(this.visitService).deleteByPets(petIds.subList(2, 3));
+        inOrder.verify(this.petRepository).deleteByOwnerId(ownerId);
+    }
+
+    @DisplayName("should not delete visits of an owner without pets")
+    @Test
+    void testDeleteByOwnerIdWithoutPets() {
+        // given
+        UUID ownerId = UUID.randomUUID();
+        given(this.petRepository.findIdsByOwnerId(ownerId)).willReturn(Flux.empty());
+        given(this.petRepository.deleteByOwnerId(ownerId)).willReturn(Mono.just(0L));
+
+        // when
+        Long deleted = this.petService.deleteByOwnerId(ownerId).block();
+
+        // then
+        assertThat(deleted).isEqualTo(0L);
+        then(this.visitService).should(times(0)).deleteByPets(anyCollection());
     }
 }
\ No newline at end of file
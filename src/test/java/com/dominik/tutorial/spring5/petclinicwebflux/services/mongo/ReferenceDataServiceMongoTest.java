@@ -0,0 +1,100 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.config.PetclinicProperties;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.ReferenceData;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.Vet;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.PetTypeService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VetService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+@DisplayName("Reference Data Service Mongo")
+@ExtendWith(MockitoExtension.class)
+class ReferenceDataServiceMongoTest {
+
+    private static final Vet VET_1 = Vet.builder().firstName("Frank").lastName("Schmitt")
+            .specialties(List.of("Radiology", "Dental")).build();
+    private static final Vet VET_2 = Vet.builder().firstName("Emma").lastName("Watson")
+            .specialties(List.of("Dental", "Oncology")).build();
+
+    @Mock
+    private VetService vetService;
+    @Mock
+    private PetTypeService petTypeService;
+    @Spy
+    private PetclinicProperties properties = new PetclinicProperties();
+    @InjectMocks
+    private ReferenceDataServiceMongo referenceDataService;
+
+    @DisplayName("should load a new version of vets, specialties and pet types on refresh")
+    @Test
+    void testRefresh() {
+        // given
+        given(this.vetService.findAll()).willReturn(Flux.just(VET_1, VET_2));
+        given(this.petTypeService.findAll()).willReturn(Flux.just("Cat", "Dog"));
+
+        // when
+        ReferenceData first = this.referenceDataService.refresh().block();
+        ReferenceData second = this.referenceDataService.refresh().block();
+
+        // then
+        assertThat(first.getVersion()).isEqualTo(1);
+        assertThat(second.getVersion()).isEqualTo(2);
+        assertThat(second.getVets()).containsExactly(VET_1, VET_2);
+        assertThat(second.getSpecialties()).containsExactly("Dental", "Oncology", "Radiology");
+        assertThat(second.getPetTypes()).containsExactly("Cat", "Dog");
+        assertThat(this.referenceDataService.getSnapshot()).isSameAs(second);
+    }
+
+    @DisplayName("should return the current snapshot and refresh it in the background once it is stale")
+    @Test
+    void testGetSnapshotRefreshAhead() {
+        // given
+        given(this.vetService.findAll()).willReturn(Flux.just(VET_1));
+        given(this.petTypeService.findAll()).willReturn(Flux.just("Cat"));
+
+        // when
+        ReferenceData beforeLoad = this.referenceDataService.getSnapshot();
+        ReferenceData afterLoad = this.referenceDataService.getSnapshot();
+        ReferenceData fresh = this.referenceDataService.getSnapshot();
+
+        // then
+        assertThat(beforeLoad.getVersion()).isEqualTo(0);
+        assertThat(beforeLoad.getVets()).isEmpty();
+        assertThat(afterLoad.getVersion()).isEqualTo(1);
+        assertThat(fresh).isSameAs(afterLoad);
+        then(this.vetService).should(times(1)).findAll();
+    }
+
+    @DisplayName("should keep the current snapshot when the refresh fails")
+    @Test
+    void testGetSnapshotRefreshFails() {
+        // given
+        this.properties.getReferenceData().setRefreshAfter(Duration.ZERO);
+        given(this.vetService.findAll()).willReturn(Flux.just(VET_1), Flux.error(new IllegalStateException("down")));
+        given(this.petTypeService.findAll()).willReturn(Flux.just("Cat"));
+        ReferenceData loaded = this.referenceDataService.refresh().block();
+
+        // when
+        ReferenceData result = this.referenceDataService.getSnapshot();
+
+        // then
+        assertThat(result).isSameAs(loaded);
+        assertThat(this.referenceDataService.getSnapshot()).isSameAs(loaded);
+        then(this.vetService).should(times(3)).findAll();
+    }
+}
@@ -0,0 +1,52 @@
+package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
+
+import com.dominik.tutorial.spring5.petclinicwebflux.model.VisitEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("Visit Event Service Mongo")
+class VisitEventServiceMongoTest {
+
+    private static final Instant START = Instant.ofEpochMilli(1_000);
+
+    @DisplayName("should drop events of the last millisecond which were seen before the cursor was opened again")
+    @Test
+    void testTailPositionDropsSeenEventsOfSameMillisecond() {
+        // given
+        VisitEventServiceMongo.TailPosition position = new VisitEventServiceMongo.TailPosition(START);
+        VisitEvent first = event(START.plusMillis(1));
+        VisitEvent second = event(START.plusMillis(1));
+        position.advance(first);
+
+        // when / then
+        assertThat(position.lastSeen()).isEqualTo(START.plusMillis(1));
+        assertThat(position.advance(first)).isFalse();
+        assertThat(position.advance(second)).isTrue();
+        assertThat(position.advance(second)).isFalse();
+    }
+
+    @DisplayName("should deliver events with a later or earlier time and keep the latest time")
+    @Test
+    void testTailPositionDeliversOtherTimes() {
+        // given
+        VisitEventServiceMongo.TailPosition position = new VisitEventServiceMongo.TailPosition(START);
+
+        // when / then
+        assertThat(position.advance(event(START))).isTrue();
+        assertThat(position.advance(event(START.plusMillis(5)))).isTrue();
+        assertThat(position.advance(event(START.plusMillis(2)))).isTrue();
+        assertThat(position.lastSeen()).isEqualTo(START.plusMillis(5));
+    }
+
+    private static VisitEvent event(Instant createdAt) {
+        return VisitEvent.builder()
+                .visitId(UUID.randomUUID())
+                .createdAt(createdAt)
+                .build();
+    }
+}
@@ -1,7 +1,12 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.services.mongo;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.VisitEvent;
 import com.dominik.tutorial.spring5.petclinicwebflux.repositories.VisitRepository;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.VisitEventService;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchLoader;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.batching.BatchWriter;
+import com.dominik.tutorial.spring5.petclinicwebflux.services.caching.OwnerGraphChanges;
 import com.dominik.tutorial.spring5.petclinicwebflux.testdata.TestDataFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -19,6 +24,7 @@ import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.eq;
@@ -32,6 +38,14 @@ class VisitServiceMongoTest {
 
     @Mock
     private VisitRepository visitRepository;
+    @Mock
+    private BatchLoader<UUID, Visit> visitsByPetLoader;
+    @Mock
+    private BatchWriter<Visit> visitWriter;
+    @Mock
+    private OwnerGraphChanges ownerGraphChanges;
+    @Mock
+    private VisitEventService visitEventService;
     @InjectMocks
     private VisitServiceMongo visitService;
     private TestDataFactory testDataFactory;
@@ -41,31 +55,61 @@ class VisitServiceMongoTest {
         this.testDataFactory = TestDataFactory.visitsOnly(NUM_VISIT);
     }
 
-    @DisplayName("should save new visit in repository")
+    @DisplayName("should save new visit through the batch writer and record the change of the given owner")
     @Test
     void testCreateVisitValid() {
         // given
         UUID petId = UUID.randomUUID();
+        UUID ownerId = UUID.randomUUID();
         Visit visit = this.testDataFactory.getVisit();
-        given(this.visitRepository.save(any(Visit.class))).willReturn(Mono.just(visit));
+        given(this.visitWriter.write(any(Visit.class))).willReturn(Mono.just(visit));
+        given(this.ownerGraphChanges.changed(ownerId)).willReturn(Mono.empty());
+        given(this.visitEventService.publish(any(VisitEvent.class))).willReturn(Mono.empty());
         ArgumentCaptor<Visit> captor = ArgumentCaptor.forClass(Visit.class);
 
         // when
-        Visit result = this.visitService.createVisit(petId, visit).block();
+        Visit result = this.visitService.createVisit(ownerId, petId, visit).block();
 
         // then
-        then(this.visitRepository).should(times(1)).save(captor.capture());
+        then(this.visitWriter).should(times(1)).write(captor.capture());
         Visit capturedVisit = captor.getValue();
         assertThat(petId.toString()).isEqualTo(capturedVisit.getPetId().toString());
         assertThat(visit).isEqualToIgnoringGivenFields(capturedVisit, "petId");
+        assertThat(result).isSameAs(visit);
+        then(this.ownerGraphChanges).should(times(1)).changed(ownerId);
     }
 
-    @DisplayName("should find existing visits by pet ID")
+    @DisplayName("should publish a new visit with the owner of the pet, and keep it if publishing fails")
+    @Test
+    void testCreateVisitPublishes() {
+        // given
+        UUID petId = UUID.randomUUID();
+        UUID ownerId = UUID.randomUUID();
+        Visit visit = this.testDataFactory.getVisit();
+        given(this.visitWriter.write(any(Visit.class))).willReturn(Mono.just(visit));
+        given(this.ownerGraphChanges.changed(ownerId)).willReturn(Mono.empty());
+        given(this.visitEventService.publish(any(VisitEvent.class))).willReturn(Mono.error(new IllegalStateException()));
+        ArgumentCaptor<VisitEvent> captor = ArgumentCaptor.forClass(VisitEvent.class);
+
+        // when
+        Visit result = this.visitService.createVisit(ownerId, petId, visit).block();
+
+        // then
+        assertThat(result).isSameAs(visit);
+        then(this.visitEventService).should(times(1)).publish(captor.capture());
+        VisitEvent event = captor.getValue();
+        assertThat(event.getVisitId()).isEqualTo(visit.getId());
+        assertThat(event.getPetId()).isEqualTo(petId);
+        assertThat(event.getOwnerId()).isEqualTo(ownerId);
+        assertThat(event.getCreatedAt()).isNotNull();
+    }
+
+    @DisplayName("should find existing visits by pet ID through the batch loader")
     @Test
     void testFindByPet() {
         // given
         UUID petId = UUID.randomUUID();
-        given(this.visitRepository.findByPetId(eq(petId))).willReturn(Flux.fromIterable(this.testDataFactory.getVisits()));
+        given(this.visitsByPetLoader.load(eq(petId))).willReturn(Flux.fromIterable(this.testDataFactory.getVisits()));
 
         // when
         List<Visit> result = this.visitService.findByPet(petId).collectList().block();
@@ -76,4 +120,19 @@ class VisitServiceMongoTest {
             assertThat(this.testDataFactory.getVisits().get(i)).isEqualToIgnoringGivenFields(result.get(i), "petId");
         }
     }
-}
\ No newline at end of file
+
+    @DisplayName("should find visits of several pets with a single query")
+    @Test
+    void testFindByPets() {
+        // given
+        List<UUID> petIds = List.of(UUID.randomUUID(), UUID.randomUUID());
+        given(this.visitRepository.findByPetIdIn(anyCollection())).willReturn(Flux.fromIterable(this.testDataFactory.getVisits()));
+
+        // when
+        List<Visit> result = this.visitService.findByPets(petIds).collectList().block();
+
+        // then
+        assertThat(result).hasSize(NUM_VISIT);
+        then(this.visitRepository).should(times(1)).findByPetIdIn(petIds);
+    }
+}
@@ -1,6 +1,7 @@
 package com.dominik.tutorial.spring5.petclinicwebflux.testdata;
 
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Owner;
+import com.dominik.tutorial.spring5.petclinicwebflux.model.OwnerSummary;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Pet;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Vet;
 import com.dominik.tutorial.spring5.petclinicwebflux.model.Visit;
@@ -85,6 +86,25 @@ public class TestDataFactory {
         return visits;
     }
 
+    public List<OwnerSummary> getOwnerSummaries() {
+        List<OwnerSummary> result = new ArrayList<>();
+        for (Owner owner : this.owners) {
+            List<String> petNames = new ArrayList<>();
+            owner.getPets().forEach(p -> petNames.add(p.getName()));
+            result.add(OwnerSummary.builder()
+                    .id(owner.getId())
+                    .firstName(owner.getFirstName())
+                    .lastName(owner.getLastName())
+                    .address(owner.getAddress())
+                    .city(owner.getCity())
+                    .telephone(owner.getTelephone())
+                    .petNames(petNames)
+                    .build());
+        }
+
+        return result;
+    }
+
     public Owner getOwner() {
         return owners.get(0);
     }